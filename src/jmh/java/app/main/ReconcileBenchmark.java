@@ -0,0 +1,89 @@
+package app.main;
+
+import javafx.collections.ListChangeListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import system.rss.Item;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class ReconcileBenchmark
+ *
+ * Measures a refresh which adds 20 Items to a FeedList with 5000 Items, as RenderedItems sees it.
+ * It runs without a JavaFX toolkit, with a listener standing in for the ListView which counts the
+ * Items it would have to render. reconcile inserts only the new Items, while replaceAll is what
+ * was done before, telling the listener that every Item was removed and added. Each call goes from
+ * one list to the other, so every other call removes the 20 Items again.
+ *
+ * Run with: gradle jmh -Pbenchmark=ReconcileBenchmark
+ *
+ * @author Axel Nilsson (axnion)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReconcileBenchmark {
+    private ArrayList<Item> before;
+    private ArrayList<Item> after;
+    private RenderedItems reconciled;
+    private RenderedItems replaced;
+    private boolean refreshed;
+    private int rendered;
+
+    @Setup
+    public void createItems() {
+        String url = "http://benchmark.com/feed.xml";
+        before = new ArrayList<>();
+        after = new ArrayList<>();
+
+        // Sorted by date descending, with the 20 new Items spread over the newest part
+        for(int i = 5020; i > 0; i--) {
+            Item item = new Item("Item " + i, url + "/" + i, "", new Date(i), "item" + i, url,
+                    false, false);
+
+            after.add(item);
+            if(i % 50 != 0 || i <= 4000)
+                before.add(item);
+        }
+
+        reconciled = new RenderedItems("Benchmark", new ArrayList<>(before));
+        replaced = new RenderedItems("Benchmark", new ArrayList<>(before));
+
+        ListChangeListener<Item> listener = change -> {
+            while(change.next()) {
+                rendered += change.getAddedSize();
+            }
+        };
+        reconciled.addListener(listener);
+        replaced.addListener(listener);
+    }
+
+    @Benchmark
+    public int reconcile() {
+        refreshed = !refreshed;
+        reconciled.reconcile(refreshed ? after : before);
+        return rendered;
+    }
+
+    @Benchmark
+    public int replaceAll() {
+        refreshed = !refreshed;
+        replaced.reconcile(new ArrayList<>());
+        replaced.reconcile(refreshed ? after : before);
+        return rendered;
+    }
+}
@@ -0,0 +1,110 @@
+package system;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import system.rss.Feed;
+import system.rss.Item;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class LookupBenchmark
+ *
+ * Measures finding a FeedList by name, a Feed by URL, and an Item by id, which are indexed, as the
+ * number of Items grows. The Configuration holds 100 FeedLists with 100 Feeds each, and the Items
+ * are split over the Feeds of the last FeedList. The time of setVisited and getItemById should stay
+ * the same for every number of Items. For comparison getItemByIdScan searches the Items the way
+ * getItemById used to.
+ *
+ * Run with: gradle jmh -Pbenchmark=LookupBenchmark
+ *
+ * @author Axel Nilsson (axnion)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int items;
+
+    private String listName;
+    private String url;
+    private String itemId;
+    private Feed feed;
+    private String lastId;
+    private boolean status;
+
+    @Setup
+    public void createConfiguration() {
+        FeedRegistry registry = new FeedRegistry();
+        ArrayList<FeedList> feedLists = new ArrayList<>();
+
+        for(int i = 0; i < 100; i++) {
+            FeedList feedList = new FeedList("FeedList " + i, "DATE_DEC", true, registry);
+            feedLists.add(feedList);
+
+            for(int j = 0; j < 100; j++) {
+                String feedUrl = "http://benchmark.com/" + i + "/" + j + "/feed.xml";
+                ArrayList<Item> feedItems = new ArrayList<>();
+
+                for(int k = 0; i == 99 && k < items / 100; k++) {
+                    feedItems.add(new Item("Item " + k, feedUrl + "/" + k, "", new Date(k),
+                            "benchmark-" + j + "-" + k, feedUrl, false, false));
+                }
+
+                feedList.addFetched(new Feed("Feed " + j, feedUrl, "", "", feedUrl, feedItems));
+            }
+        }
+
+        Configuration.setDao(new DataAccessObjectJSON());
+        Configuration.setFeedLists(feedLists);
+
+        // The last Item of the last Feed of the last FeedList is the slowest to search for
+        FeedList last = feedLists.get(99);
+        listName = last.getName();
+        feed = last.get(99);
+        url = feed.getUrlToXML();
+        itemId = feed.getItems().get(feed.getItems().size() - 1).getId();
+
+        // getItemById and getItemByIdScan look for the last Item of a single Feed with every Item
+        ArrayList<Item> allItems = last.getAllItems();
+        feed = new Feed("All", "http://benchmark.com/all", "", "", "http://benchmark.com/all",
+                allItems);
+        lastId = allItems.get(allItems.size() - 1).getId();
+    }
+
+    @Benchmark
+    public boolean setVisited() {
+        status = !status;
+        Configuration.setVisited(listName, url, itemId, status);
+        return status;
+    }
+
+    @Benchmark
+    public Item getItemById() {
+        return feed.getItemById(lastId);
+    }
+
+    @Benchmark
+    public Item getItemByIdScan() {
+        for(Item item : feed.getItems()) {
+            if(item.getId().equals(lastId))
+                return item;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,217 @@
+package system;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import system.rss.BenchmarkFeeds;
+import system.rss.Feed;
+import system.rss.Item;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class SaveFileBenchmark
+ *
+ * Measures saving and loading a configuration with 100 000 Items through DataAccessObjectJSON,
+ * which streams the file with JsonGenerator and JsonParser. For comparison saveTree and loadTree
+ * do the same work the way DataAccessObjectJSON used to, by building a Map for every Item before
+ * writing and by reading the whole file into a JsonNode tree before loading. saveBinary and
+ * loadBinary save and load the same configuration through DataAccessObjectBinary.
+ *
+ * Besides the time per call the peakHeap counter adds up the peak heap usage in bytes of each call,
+ * divide it by calls to get the peak heap per call.
+ *
+ * Run with: gradle jmh -Pbenchmark=SaveFileBenchmark
+ *
+ * @author Axel Nilsson (axnion)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx1g"})
+public class SaveFileBenchmark {
+    @Param({"100000"})
+    public int items;
+
+    @Param({"true", "false"})
+    public boolean prettyPrint;
+
+    private ArrayList<FeedList> feedLists;
+    private DataAccessObjectJSON dao;
+    private DataAccessObjectBinary binaryDao;
+    private File file;
+    private File binaryFile;
+
+    @Setup
+    public void createConfiguration() throws IOException {
+        file = File.createTempFile("benchmarkSave", ".json");
+        file.deleteOnExit();
+
+        dao = new DataAccessObjectJSON();
+        dao.setPath(file.getPath());
+        dao.setPrettyPrint(prettyPrint);
+
+        binaryFile = File.createTempFile("benchmarkSave", ".bin");
+        binaryFile.deleteOnExit();
+
+        binaryDao = new DataAccessObjectBinary();
+        binaryDao.setPath(binaryFile.getPath());
+
+        feedLists = new ArrayList<>();
+        FeedList feedList = new FeedList("Benchmark", "DATE_DEC", true);
+        feedLists.add(feedList);
+
+        // The Items are split over 100 Feeds
+        for(int i = 0; i < 100; i++) {
+            ArrayList<Item> feedItems = new ArrayList<>();
+            String url = "http://benchmark.com/" + i + "/feed.xml";
+
+            for(int j = 0; j < items / 100; j++) {
+                feedItems.add(new Item("Item " + j, "http://benchmark.com/" + i + "/" + j,
+                        BenchmarkFeeds.DESCRIPTION, new Date(1451606400000L + j * 3600000L),
+                        "benchmark-" + i + "-" + j, url, j % 2 == 0, j % 7 == 0));
+            }
+
+            feedList.addFetched(new Feed("Feed " + i, "http://benchmark.com/" + i, "", "", url,
+                    feedItems));
+        }
+
+        dao.save(feedLists, new Date());
+        binaryDao.save(feedLists, new Date());
+    }
+
+    @TearDown
+    public void deleteFile() {
+        file.delete();
+        binaryFile.delete();
+    }
+
+    /**
+     * Records the peak heap usage of each call.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long peakHeap;
+        public long calls;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            peakHeap = 0;
+            calls = 0;
+        }
+
+        @Setup(Level.Invocation)
+        public void resetPeak() {
+            System.gc();
+            for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                pool.resetPeakUsage();
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void recordPeak() {
+            long peak = 0;
+            for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if(pool.getType() == MemoryType.HEAP)
+                    peak += pool.getPeakUsage().getUsed();
+            }
+            peakHeap += peak;
+            calls++;
+        }
+    }
+
+    @Benchmark
+    public File save(Counters counters) throws IOException {
+        dao.save(feedLists, new Date());
+        return file;
+    }
+
+    @Benchmark
+    public ArrayList<FeedList> load(Counters counters) throws IOException {
+        return dao.load(new FeedRegistry());
+    }
+
+    @Benchmark
+    public File saveBinary(Counters counters) throws IOException {
+        binaryDao.save(feedLists, new Date());
+        return binaryFile;
+    }
+
+    @Benchmark
+    public ArrayList<FeedList> loadBinary(Counters counters) throws IOException {
+        return binaryDao.load(new FeedRegistry());
+    }
+
+    @Benchmark
+    public File saveTree(Counters counters) throws IOException {
+        ArrayList<Map<String, Object>> feedListMaps = new ArrayList<>();
+
+        for(FeedList feedList : feedLists) {
+            ArrayList<Map<String, Object>> feedMaps = new ArrayList<>();
+
+            for(Feed feed : feedList.getFeeds()) {
+                ArrayList<Map<String, Object>> itemMaps = new ArrayList<>();
+
+                for(Item item : feed.getItems()) {
+                    Map<String, Object> itemMap = new HashMap<>();
+                    itemMap.put("id", item.getId());
+                    itemMap.put("title", item.getTitle());
+                    itemMap.put("link", item.getLink());
+                    itemMap.put("description", item.getDescription());
+                    itemMap.put("date", item.getDate().getTime());
+                    itemMap.put("visited", item.isVisited());
+                    itemMap.put("starred", item.isStarred());
+                    itemMaps.add(itemMap);
+                }
+
+                Map<String, Object> feedMap = new HashMap<>();
+                feedMap.put("urlToXML", feed.getUrlToXML());
+                feedMap.put("title", feed.getTitle());
+                feedMap.put("items", itemMaps);
+                feedMaps.add(feedMap);
+            }
+
+            Map<String, Object> feedListMap = new HashMap<>();
+            feedListMap.put("name", feedList.getName());
+            feedListMap.put("feeds", feedMaps);
+            feedListMaps.add(feedListMap);
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        if(prettyPrint)
+            mapper.writerWithDefaultPrettyPrinter().writeValue(file, feedListMaps);
+        else
+            mapper.writeValue(file, feedListMaps);
+        return file;
+    }
+
+    @Benchmark
+    public JsonNode loadTree(Counters counters) throws IOException {
+        return new ObjectMapper().readTree(file);
+    }
+}
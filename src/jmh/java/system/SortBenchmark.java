@@ -0,0 +1,86 @@
+package system;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import system.rss.Feed;
+import system.rss.Item;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class SortBenchmark
+ *
+ * Measures getAllItems on a FeedList with 100 Feeds, where the Items are split over the Feeds.
+ * getAllItems gets the Items when nothing has changed, getAllItemsAfterRefresh after one Feed has
+ * new Items, and getAllItemsAfterReverse after the order has changed from descending to ascending
+ * or back, none of which should sort every Item.
+ *
+ * Run with: gradle jmh -Pbenchmark=SortBenchmark
+ *
+ * @author Axel Nilsson (axnion)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortBenchmark {
+    @Param({"1000", "10000", "100000"})
+    public int items;
+
+    private FeedList feedList;
+    private Feed refreshed;
+    private boolean ascending;
+
+    @Setup
+    public void createFeedList() {
+        Random random = new Random(1);
+        feedList = new FeedList("FeedList", "DATE_DEC", true, new FeedRegistry());
+
+        for(int i = 0; i < 100; i++) {
+            String url = "http://benchmark.com/" + i + "/feed.xml";
+            ArrayList<Item> feedItems = new ArrayList<>();
+
+            for(int j = 0; j < items / 100; j++) {
+                feedItems.add(new Item("Item " + j, url + "/" + j, "",
+                        new Date(random.nextInt(1000000)), url + "/" + j, url, false, false));
+            }
+
+            feedList.addFetched(new Feed("Feed " + i, url, "", "", url, feedItems));
+        }
+
+        refreshed = feedList.get(0);
+        feedList.getAllItems();
+    }
+
+    @Benchmark
+    public ArrayList<Item> getAllItems() {
+        return feedList.getAllItems();
+    }
+
+    @Benchmark
+    public ArrayList<Item> getAllItemsAfterRefresh() {
+        refreshed.itemsChanged();
+        return feedList.getAllItems();
+    }
+
+    @Benchmark
+    public ArrayList<Item> getAllItemsAfterReverse() {
+        ascending = !ascending;
+        feedList.setSortingRules(ascending ? "DATE_ASC" : "DATE_DEC");
+        return feedList.getAllItems();
+    }
+}
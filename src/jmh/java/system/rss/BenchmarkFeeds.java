@@ -0,0 +1,78 @@
+package system.rss;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Class BenchmarkFeeds
+ *
+ * Creates large RSS feeds on disk to run the benchmarks on. Each item has a description of about
+ * one kilobyte, so a feed with 5000 items is a few megabytes.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class BenchmarkFeeds {
+    /**
+     * A description of about one kilobyte.
+     */
+    public static final String DESCRIPTION = createDescription();
+
+    /**
+     * Writes an RSS feed with the given number of items to a temporary file which is deleted when
+     * the JVM exits. The items are ordered newest first.
+     *
+     * @param items         The number of items in the feed.
+     * @return              The file the feed was written to.
+     * @throws IOException  If the file could not be written.
+     */
+    public static File writeFeed(int items) throws IOException {
+        File file = File.createTempFile("benchmarkFeed" + items + "-", ".xml");
+        file.deleteOnExit();
+
+        try(PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            writer.println("<rss version=\"2.0\">");
+            writer.println("    <channel>");
+            writer.println("        <title>Benchmark feed</title>");
+            writer.println("        <link>http://benchmark.com</link>");
+            writer.println("        <description>A feed with " + items + " items</description>");
+
+            long date = 1451606400000L + items * 3600000L;
+            for(int i = items; i > 0; i--) {
+                writer.println("        <item>");
+                writer.println("            <title>Item " + i + "</title>");
+                writer.println("            <link>http://benchmark.com/" + i + "</link>");
+                writer.println("            <pubDate>" + formatDate(date) + "</pubDate>");
+                writer.println("            <guid>benchmark-" + i + "</guid>");
+                writer.println("            <description>" + DESCRIPTION + "</description>");
+                writer.println("        </item>");
+                date -= 3600000L;
+            }
+
+            writer.println("    </channel>");
+            writer.println("</rss>");
+        }
+
+        return file;
+    }
+
+    private static String createDescription() {
+        StringBuilder description = new StringBuilder();
+        while(description.length() < 1000) {
+            description.append("Lorem ipsum dolor sit amet, consectetur adipiscing elit. ");
+        }
+        return description.toString();
+    }
+
+    private static String formatDate(long date) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z",
+                Locale.ENGLISH);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(new Date(date));
+    }
+}
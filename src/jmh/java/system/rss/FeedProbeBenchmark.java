@@ -0,0 +1,84 @@
+package system.rss;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class FeedProbeBenchmark
+ *
+ * Compares reading only the title of a large feed though getMinimalFeed with reading the whole
+ * feed, which is what getMinimalFeed used to do. Besides the time per call the bytesRead counter
+ * shows how many bytes were read from the XML file, divide it by calls to get bytes per call.
+ *
+ * Run with: gradle jmh -Pbenchmark=FeedProbeBenchmark
+ *
+ * @author Axel Nilsson (axnion)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeedProbeBenchmark {
+    @Param({"500", "5000"})
+    public int items;
+
+    private String url;
+
+    @Setup
+    public void createFeed() throws IOException {
+        url = BenchmarkFeeds.writeFeed(items).getPath();
+    }
+
+    /**
+     * Counts the bytes read by the RssParser in each call.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+        public long bytesRead;
+        public long calls;
+
+        private RssParser rssParser;
+
+        @Setup(Level.Iteration)
+        public void createParser() {
+            rssParser = new RssParser();
+            bytesRead = 0;
+            calls = 0;
+        }
+    }
+
+    @Benchmark
+    public String probe(Counters counters) {
+        long before = counters.rssParser.getBytesRead();
+        String title = counters.rssParser.getMinimalFeed(url).title;
+        counters.bytesRead += counters.rssParser.getBytesRead() - before;
+        counters.calls++;
+        return title;
+    }
+
+    @Benchmark
+    public String fullRead(Counters counters) {
+        long before = counters.rssParser.getBytesRead();
+        String title = counters.rssParser.getFeed(url).getTitle();
+        counters.bytesRead += counters.rssParser.getBytesRead() - before;
+        counters.calls++;
+        return title;
+    }
+}
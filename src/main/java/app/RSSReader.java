@@ -5,6 +5,7 @@ import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.application.Application;
 import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.ContextMenu;
@@ -17,15 +18,26 @@ import javafx.scene.text.Text;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 import system.Configuration;
+import system.Snapshot;
+import system.exceptions.FeedAlreadyExists;
+import system.rss.Feed;
+import system.rss.FeedMinimal;
+import system.rss.FeedSniffer;
+import system.rss.RefreshStats;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import static java.lang.System.exit;
 
 /**
  * Class RSSReader
  *
+ * Network and disk I/O, like refreshing Feeds, adding a Feed, loading, and saving, is run in the
+ * background by a TaskRunner. The application thread only applies the finished results.
+ *
  * @author Axel Nilsson (axnion)
  */
 public class RSSReader extends Application {
@@ -33,6 +45,8 @@ public class RSSReader extends Application {
     public static ContextMenu openContextMenu;
     private static HBox messageBox;
     private static BrowserAccess browserAccess;
+    private static TaskRunner taskRunner;
+    private static Task<RefreshStats> refreshTask;
 
     public static void main(String[] args) {
         launch(args);
@@ -44,6 +58,18 @@ public class RSSReader extends Application {
         browserAccess = new BrowserAccess();
         openContextMenu = null;
 
+        HBox taskBox = new HBox();
+        taskBox.setSpacing(10);
+        taskRunner = new TaskRunner(taskBox);
+        messageBox.getChildren().add(taskBox);
+        messageBox.setSpacing(10);
+
+        // Refreshed Feeds are applied on the application thread
+        Configuration.setApplier(Platform::runLater);
+
+        // The view only changes what shows the parts of the Configuration which changed
+        Configuration.addListener(event -> wrapper.changed(event));
+
         messageBox.setMaxHeight(20);
         messageBox.setMinHeight(20);
         messageBox.setAlignment(Pos.CENTER);
@@ -69,95 +95,136 @@ public class RSSReader extends Application {
         primaryStage.setScene(primaryScene);
         primaryStage.show();
 
-        Timeline guiUpdater = new Timeline(new KeyFrame(Duration.seconds(5),
-                event -> wrapper.update()));
-        guiUpdater.setCycleCount(Animation.INDEFINITE);
-        guiUpdater.play();
-
-        Timeline timeline = new Timeline();
-        timeline.getKeyFrames().add(new KeyFrame(
-                Duration.seconds(Configuration.getUpdatePeriod()),
-                event -> Configuration.update()
-        ));
-        timeline.getKeyFrames().add(new KeyFrame(
-                Duration.seconds(Configuration.getAutoSavePeriod()),
-                event -> {
-                    try {
-                        Configuration.save();
-                    } catch(Exception expt) {
-                        showMessage("Autosave failed");
-                    }
-                }
-        ));
+        // Feeds are only refreshed when their FeedSchedule says they are due
+        Timeline feedPoller = new Timeline(new KeyFrame(Duration.minutes(1),
+                event -> refreshFeeds()));
+        feedPoller.setCycleCount(Animation.INDEFINITE);
+        feedPoller.play();
+
+        // Changes to visited and starred are journaled, the journal is compacted when it has grown
+        Timeline journalCompactor = new Timeline(new KeyFrame(Duration.minutes(5), event -> {
+            if(Configuration.needsCompaction())
+                saveConfiguration();
+        }));
+        journalCompactor.setCycleCount(Animation.INDEFINITE);
+        journalCompactor.play();
+
+        // FeedLists which have not been used for a while are unloaded if they are loaded lazily
+        Timeline feedListUnloader = new Timeline(new KeyFrame(Duration.minutes(1),
+                event -> Configuration.unloadIdleFeedLists()));
+        feedListUnloader.setCycleCount(Animation.INDEFINITE);
+        feedListUnloader.play();
+
+        // The saved Feeds are shown first and then refreshed in the background
+        taskRunner.run("Loading", job -> {
+            Configuration.loadDefaultSettings();
+            return null;
+        }, result -> {
+            Configuration.startAutoSave();
+            refreshFeeds();
+        }, expt -> showMessage("Loading failed"));
+    }
 
-        Configuration.loadDefaultSettings();
+    @Override
+    public void stop() {
+        // Saves the changes the AutoSaver has not saved yet
+        Configuration.stopAutoSave();
     }
 
     public static void addFeedList(String listName) {
         Configuration.addFeedList(listName);
-        wrapper.addFeedList(listName);
     }
 
     public static void removeFeedList(String listName) {
         Configuration.removeFeedList(listName);
-        wrapper.removeFeedList(listName);
     }
 
     public static void addFeed(String urlToXml, String listName) {
-        Configuration.addFeed(urlToXml, listName);
-        wrapper.update();
+        taskRunner.<Feed>run("Adding feed", job -> Configuration.fetchFeed(urlToXml, listName),
+                feed -> {
+                    try {
+                        Configuration.addFeed(feed, listName);
+                    }
+                    catch(FeedAlreadyExists expt) {
+                        showMessage("Feed already in " + listName);
+                    }
+                }, expt -> showMessage("Adding feed failed"));
     }
 
     public static void removeFeed(String urlToXml, String listName) {
         Configuration.removeFeed(urlToXml, listName);
-        wrapper.update();
+    }
+
+    /**
+     * Finds the feeds at url in the background and passes them to onFound.
+     *
+     * @param url       The URL to look for feeds at.
+     * @param onFound   Called on the application thread with the feeds found.
+     */
+    public static void findFeeds(String url, Consumer<ArrayList<FeedMinimal>> onFound) {
+        taskRunner.run("Looking for feeds", job -> new FeedSniffer().getFeeds(url), onFound,
+                expt -> onFound.accept(new ArrayList<>()));
+    }
+
+    /**
+     * Refreshes the Feeds which are due in the background. Nothing is done if the last refresh is
+     * still running.
+     */
+    public static void refreshFeeds() {
+        if(refreshTask != null && !refreshTask.isDone())
+            return;
+
+        refreshTask = taskRunner.run("Refreshing feeds",
+                job -> Configuration.update(job::progress),
+                stats -> { },
+                expt -> showMessage("Refresh failed"));
     }
 
     public static void newConfiguration() {
-        try {
+        taskRunner.run("Loading", job -> {
             Configuration.reset();
-        }
-        catch(Exception expt) {
+            return null;
+        }, result -> { }, expt -> {
             expt.printStackTrace();
-        }
-
-        wrapper.reset();
-        wrapper.update();
+            wrapper.reset();
+        });
     }
 
     public static void loadConfiguration(String path) {
-        try {
+        taskRunner.run("Loading " + path, job -> {
             Configuration.load(path);
-        }
-        catch(Exception expt) {
+            return null;
+        }, result -> {
+            showMessage("Loaded " + path);
+            refreshFeeds();
+        }, expt -> {
             expt.printStackTrace();
-        }
-
-        wrapper.reset();
-        wrapper.update();
-        showMessage("Loaded " + path);
+            showMessage("Loading " + path + " failed");
+        });
     }
 
     public static void saveConfiguration() {
-        try {
-            Configuration.save();
-        }
-        catch(Exception expt) {
-            expt.printStackTrace();
-        }
+        Snapshot snapshot = Configuration.getSnapshot();
 
-        showMessage("Saved");
+        taskRunner.run("Saving", job -> {
+            Configuration.save(snapshot);
+            return null;
+        }, result -> showMessage("Saved"), expt -> {
+            expt.printStackTrace();
+            showMessage("Saving failed");
+        });
     }
 
     public static void saveConfiguration(String path) {
-        try {
-            Configuration.save(path);
-        }
-        catch(Exception expt) {
-            expt.printStackTrace();
-        }
+        Snapshot snapshot = Configuration.getSnapshot();
 
-        showMessage("Saved to " + path);
+        taskRunner.run("Saving", job -> {
+            Configuration.save(snapshot, path);
+            return null;
+        }, result -> showMessage("Saved to " + path), expt -> {
+            expt.printStackTrace();
+            showMessage("Saving to " + path + " failed");
+        });
     }
 
     public static void openLink(String url) {
@@ -170,7 +237,7 @@ public class RSSReader extends Application {
         messageBox.getChildren().add(text);
 
         Timeline updateTimer = new Timeline(new KeyFrame(Duration.seconds(10),
-                event -> messageBox.getChildren().clear()));
+                event -> messageBox.getChildren().remove(text)));
         updateTimer.setCycleCount(1);
         updateTimer.play();
     }
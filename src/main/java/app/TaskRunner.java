@@ -0,0 +1,113 @@
+package app;
+
+import app.misc.TaskIndicator;
+import javafx.concurrent.Task;
+import javafx.scene.layout.HBox;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Class TaskRunner
+ *
+ * TaskRunner runs the slow work of the application, such as refreshing Feeds, downloading a new
+ * Feed, and saving, on background threads so the JavaFX application thread is never blocked by
+ * network or disk I/O. Each piece of work is wrapped in a JavaFX Task. The Work runs on a daemon
+ * thread and does not touch the GUI, and when it is done its result is handed to onSucceeded on
+ * the application thread, which applies it.
+ *
+ * While a Task runs a TaskIndicator showing its message and progress is added to the taskBox. The
+ * TaskIndicator has a button which cancels the Task, in which case onSucceeded is never called.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+class TaskRunner {
+    private ExecutorService executor;
+    private HBox taskBox;
+
+    /**
+     * Constructor
+     *
+     * @param taskBox The HBox where a TaskIndicator is shown for each running Task.
+     */
+    TaskRunner(HBox taskBox) {
+        this.taskBox = taskBox;
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "TaskRunner");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs work on a background thread.
+     *
+     * @param title         A short text describing the work, shown while it runs.
+     * @param work          The Work to run in the background.
+     * @param onSucceeded   Called on the application thread with the result of work.
+     * @param onFailed      Called on the application thread with the exception thrown by work.
+     * @param <T>           The type of the result of work.
+     * @return              The Task running work, which can be used to cancel it.
+     */
+    <T> Task<T> run(String title, Work<T> work, Consumer<T> onSucceeded,
+                    Consumer<Throwable> onFailed) {
+        Job<T> job = new Job<>(title, work);
+        TaskIndicator indicator = new TaskIndicator(job);
+
+        job.setOnSucceeded(event -> {
+            taskBox.getChildren().remove(indicator);
+            onSucceeded.accept(job.getValue());
+        });
+        job.setOnFailed(event -> {
+            taskBox.getChildren().remove(indicator);
+            onFailed.accept(job.getException());
+        });
+        job.setOnCancelled(event -> taskBox.getChildren().remove(indicator));
+
+        taskBox.getChildren().add(indicator);
+        executor.execute(job);
+        return job;
+    }
+
+    /**
+     * Interface Work
+     *
+     * The work done in the background by a Task. It is given the Job running it so it can report
+     * its progress.
+     */
+    interface Work<T> {
+        T call(Job<T> job) throws Exception;
+    }
+
+    /**
+     * Class Job
+     *
+     * A Task running a piece of Work.
+     */
+    static class Job<T> extends Task<T> {
+        private final Work<T> work;
+
+        Job(String title, Work<T> work) {
+            this.work = work;
+            updateTitle(title);
+            updateMessage(title);
+        }
+
+        /**
+         * Reports the progress of the Work. Can be called from any thread.
+         *
+         * @param done  The amount of work done.
+         * @param total The total amount of work.
+         */
+        void progress(long done, long total) {
+            updateProgress(done, total);
+            updateMessage(getTitle() + " " + done + "/" + total);
+        }
+
+        @Override
+        protected T call() throws Exception {
+            return work.call(this);
+        }
+    }
+}
@@ -5,24 +5,23 @@ import app.menu.SideMenu;
 import javafx.scene.Node;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
-import system.Configuration;
-
-import java.util.Date;
+import system.ConfigurationEvent;
 
 /**
  * Class Wrapper
  *
+ * Holds the SideMenu and the FeedListContainer, and passes each change to the Configuration on to
+ * the parts of them which show what has changed.
+ *
  * @author Axel Nilsson (axnion)
  */
 class Wrapper extends HBox {
     private SideMenu sideMenu;
     private FeedListContainer feedListContainer;
-    private Date lastUpdated;
 
     Wrapper() {
         reset();
         getStyleClass().add("Wrapper");
-        lastUpdated = new Date();
     }
 
     void reset() {
@@ -35,24 +34,69 @@ class Wrapper extends HBox {
 
         getChildren().add(sideMenu);
         getChildren().add(feedListConainerNode);
-    }
 
-    void addFeedList(String listName) {
-        sideMenu.addFeedList(listName);
-        feedListContainer.addFeedList(listName);
+        sideMenu.updateFeedLists();
+        feedListContainer.updateFeedLists();
     }
 
-    void removeFeedList(String listName) {
-        sideMenu.removeFeedList(listName);
-        feedListContainer.removeFeedList(listName);
-    }
+    /**
+     * Changes the parts of the view which show what the event is about. Called on the application
+     * thread by the Configuration, see RSSReader.start.
+     *
+     * @param event The change to the Configuration.
+     */
+    void changed(ConfigurationEvent event) {
+        String listName = event.getListName();
 
-    void update() {
-        if(lastUpdated.before(Configuration.getLastUpdated())) {
-            sideMenu.updateFeedLists();
-            feedListContainer.updateFeedLists();
-            lastUpdated = new Date();
-            System.out.println("Update: Wrapper");
+        switch(event.getType()) {
+            case FEED_LIST_ADDED:
+                sideMenu.addFeedList(listName);
+                feedListContainer.addFeedList(listName);
+                break;
+            case FEED_LIST_REMOVED:
+                sideMenu.removeFeedList(listName);
+                feedListContainer.removeFeedList(listName);
+                break;
+            case FEED_LIST_LOADED:
+                sideMenu.updateFeedList(listName);
+                feedListContainer.updateFeedList(listName);
+                break;
+            case FEED_ADDED:
+                sideMenu.addFeed(listName, event.getFeedIdentifier());
+                feedListContainer.updateFeedList(listName);
+                break;
+            case FEED_REMOVED:
+                sideMenu.removeFeed(listName, event.getFeedIdentifier());
+                feedListContainer.updateFeedList(listName);
+                break;
+            case ITEMS_ADDED:
+                sideMenu.updateFeed(listName, event.getFeedIdentifier());
+                feedListContainer.updateFeedList(listName);
+                break;
+            case SORTING_CHANGED:
+                feedListContainer.updateFeedList(listName);
+                break;
+            case ITEM_CHANGED:
+                // The Item can be shown in several FeedLists, since they can share the Feed
+                sideMenu.updateFeed(event.getFeedIdentifier());
+                feedListContainer.refreshItems();
+                break;
+            case MARKED_READ:
+                // A whole FeedList is marked when there is no Feed, and its Feeds can be shared
+                if(event.getFeedIdentifier() != null)
+                    sideMenu.updateFeed(event.getFeedIdentifier());
+                else
+                    sideMenu.updateFeedLists();
+                feedListContainer.refreshItems();
+                break;
+            case SETTINGS_CHANGED:
+                // Hiding the visited status marks Items visited, which can be in several FeedLists
+                sideMenu.updateFeedLists();
+                feedListContainer.updateFeedLists();
+                break;
+            case RELOADED:
+                reset();
+                break;
         }
     }
-}
\ No newline at end of file
+}
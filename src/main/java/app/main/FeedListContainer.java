@@ -1,76 +1,150 @@
 package app.main;
 
+import javafx.geometry.Bounds;
 import javafx.scene.Node;
 import javafx.scene.control.ScrollPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
-import system.rss.Item;
 import system.Configuration;
 import system.FeedList;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Class FeedListContainer
  *
+ * Shows a FeedListPane for each FeedList side by side. A FeedList which is loaded lazily and has
+ * not been loaded gets an empty pane, and is loaded in the background once its pane is scrolled
+ * into view. Its Items are shown when the Configuration tells that it has been loaded.
+ *
  * @author Axel Nilsson (axnion)
  */
 public class FeedListContainer extends HBox {
     private HBox container;
+    private ScrollPane scrollPane;
     private ArrayList<FeedListPane> feedListPanes;
 
     public FeedListContainer() {
         feedListPanes = new ArrayList<>();
         container = new HBox();
 
-        ScrollPane scrollPane = new ScrollPane(container);
+        scrollPane = new ScrollPane(container);
         scrollPane.setFitToHeight(true);
         scrollPane.setFitToWidth(true);
         scrollPane.setHbarPolicy(ScrollPane.ScrollBarPolicy.AS_NEEDED);
         scrollPane.setVbarPolicy(ScrollPane.ScrollBarPolicy.NEVER);
 
+        // Panes come into view when scrolled to, when the window grows, or when panes are hidden
+        scrollPane.hvalueProperty().addListener(observable -> loadShownFeedLists());
+        scrollPane.viewportBoundsProperty().addListener(observable -> loadShownFeedLists());
+        container.widthProperty().addListener(observable -> loadShownFeedLists());
+
         Node scrollPaneNode = scrollPane;
         setHgrow(scrollPane, Priority.ALWAYS);
         getChildren().add(scrollPaneNode);
     }
 
     public void addFeedList(String listName) {
-        FeedListPane newFeedListPane = new FeedListPane(listName);
-        feedListPanes.add(newFeedListPane);
         updateFeedLists();
     }
 
     public void removeFeedList(String listName) {
-        for(int i = 0; i < feedListPanes.size(); i++) {
-            if(feedListPanes.get(i).getName().equals(listName)) {
-                feedListPanes.remove(i);
-                updateFeedLists();
-                break;
-            }
-        }
+        updateFeedLists();
     }
 
+    /**
+     * Reconciles the FeedListPanes with the FeedLists by their names. The pane of a FeedList which
+     * is still there is kept and updated, so it keeps its scroll position and shown details, and
+     * only the panes of new FeedLists, or of FeedLists whose showVisitedStatus changed, are
+     * created. The panes of FeedLists which are not loaded are not updated, see RenderedItems.
+     */
     public void updateFeedLists() {
-        container.getChildren().clear();
+        HashMap<String, FeedListPane> panesByName = new HashMap<>();
+        for(FeedListPane feedListPane : feedListPanes) {
+            panesByName.put(feedListPane.getName(), feedListPane);
+        }
 
-        Node node;
+        ArrayList<FeedListPane> panes = new ArrayList<>();
+        for(FeedList feedList : Configuration.getFeedLists()) {
+            FeedListPane feedListPane = panesByName.get(feedList.getName());
 
-        ArrayList<FeedList> feedLists = Configuration.getFeedLists();
+            if(feedListPane != null &&
+                    feedListPane.getShowVisitedStatus() == feedList.getShowVisitedStatus()) {
+                feedListPane.update();
+            }
+            else {
+                feedListPane = new FeedListPane(feedList.getName(),
+                        feedList.getShowVisitedStatus());
+            }
+
+            panes.add(feedListPane);
+        }
 
-        for(FeedList feedList : feedLists) {
-            ArrayList<Item> items = Configuration.getAllItemsFromFeedList(feedList.getName());
+        feedListPanes = panes;
+        showFeedListPanes();
+    }
 
-            FeedListPane feedListPane = new FeedListPane(feedList.getName());
-            if(items.size() != 0) {
-                for(Item item : items) {
-                    feedListPane.addItemPane(new ItemPane(item, feedList.getName(),
-                            feedList.getShowVisitedStatus()));
-                }
+    /**
+     * Gets the Items of one FeedList again, after its Feeds, their Items, or its sorting changed.
+     *
+     * @param listName The name of the FeedList which changed.
+     */
+    public void updateFeedList(String listName) {
+        for(FeedListPane feedListPane : feedListPanes) {
+            if(feedListPane.getName().equals(listName))
+                feedListPane.update();
+        }
 
-                node = feedListPane;
+        showFeedListPanes();
+    }
+
+    /**
+     * Shows the visible Items of every FeedList again, after the status of an Item changed.
+     */
+    public void refreshItems() {
+        for(FeedListPane feedListPane : feedListPanes) {
+            feedListPane.refreshItems();
+        }
+    }
+
+    /**
+     * Shows the FeedListPanes which have any Items, and the panes of FeedLists which are not
+     * loaded, since it is not known if they have any until they are.
+     */
+    private void showFeedListPanes() {
+        ArrayList<Node> shown = new ArrayList<>();
+
+        for(FeedListPane feedListPane : feedListPanes) {
+            if(feedListPane.getItemCount() != 0 ||
+                    !Configuration.isFeedListLoaded(feedListPane.getName())) {
+                Node node = feedListPane;
                 setHgrow(node, Priority.ALWAYS);
-                container.getChildren().add(node);
+                shown.add(node);
             }
         }
+
+        // The children are only replaced if the panes shown have changed
+        if(!container.getChildren().equals(shown))
+            container.getChildren().setAll(shown);
+
+        loadShownFeedLists();
+    }
+
+    /**
+     * Loads the FeedLists whose panes are in view in the background, if they are not loaded. A
+     * pane which has not been laid out has no width yet, and is looked at again once it has.
+     */
+    private void loadShownFeedLists() {
+        Bounds viewport = scrollPane.localToScene(scrollPane.getLayoutBounds());
+
+        for(Node node : container.getChildren()) {
+            FeedListPane feedListPane = (FeedListPane) node;
+
+            if(feedListPane.getWidth() > 0 &&
+                    !Configuration.isFeedListLoaded(feedListPane.getName()) &&
+                    feedListPane.localToScene(feedListPane.getLayoutBounds()).intersects(viewport))
+                Configuration.loadFeedListInBackground(feedListPane.getName());
+        }
     }
 }
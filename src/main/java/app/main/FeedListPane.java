@@ -2,22 +2,33 @@ package app.main;
 
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.control.ScrollPane;
+import javafx.scene.control.ListView;
 import javafx.scene.layout.*;
 import javafx.scene.text.Text;
+import system.rss.Item;
+
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Class FeedListPane
  *
+ * Shows the Items of a FeedList in a ListView, which only creates ItemCells for the rows that are
+ * visible and reuses them while scrolling. When the FeedList changes, RenderedItems only inserts,
+ * removes, or moves the Items which changed, so the scroll position and the shown details stay.
+ *
  * @author Axel Nilsson (axnion)
  */
 class FeedListPane extends VBox {
     private String name;
-    private VBox container;
+    private boolean showVisitedStatus;
+    private RenderedItems items;
+    private ListView<Item> itemList;
 
-    FeedListPane(String name) {
+    FeedListPane(String name, boolean showVisitedStatus) {
         this.name = name;
-        container = new VBox();
+        this.showVisitedStatus = showVisitedStatus;
+        items = new RenderedItems(name);
 
         setMinWidth(500);
         getStyleClass().add("FeedListPane");
@@ -28,24 +39,39 @@ class FeedListPane extends VBox {
         titlePane.setPadding(new Insets(5));
         titlePane.setAlignment(Pos.CENTER);
 
-        ScrollPane scroll = new ScrollPane(container);
-        scroll.setFitToHeight(true);
-        scroll.setFitToWidth(true);
-        scroll.setHbarPolicy(ScrollPane.ScrollBarPolicy.NEVER);
-        scroll.setVbarPolicy(ScrollPane.ScrollBarPolicy.AS_NEEDED);
+        Set<String> shownDetails = new HashSet<>();
+        itemList = new ListView<>(items);
+        itemList.getStyleClass().add("ItemList");
+        itemList.setCellFactory(view -> new ItemCell(name, showVisitedStatus, shownDetails));
+        setVgrow(itemList, Priority.ALWAYS);
 
         getChildren().add(titlePane);
-        getChildren().add(scroll);
+        getChildren().add(itemList);
+    }
+
+    int getItemCount() {
+        return items.size();
     }
 
-    void addItemPane(ItemPane itemPane) {
-        container.getChildren().add(itemPane);
+    void update() {
+        items.update();
+    }
+
+    /**
+     * Shows the visible Items again, for when the status of an Item has changed.
+     */
+    void refreshItems() {
+        itemList.refresh();
     }
 
     String getName() {
         return name;
     }
 
+    boolean getShowVisitedStatus() {
+        return showVisitedStatus;
+    }
+
     void setName(String name) {
         this.name = name;
     }
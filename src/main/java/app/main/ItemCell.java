@@ -0,0 +1,37 @@
+package app.main;
+
+import javafx.scene.control.ListCell;
+import system.rss.Item;
+
+import java.util.Set;
+
+/**
+ * Class ItemCell
+ *
+ * A cell in the ListView of a FeedListPane. Each cell holds one ItemPane which is given the Item
+ * of the row the cell shows, so scrolling reuses the same panes instead of creating new ones.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+class ItemCell extends ListCell<Item> {
+    private ItemPane itemPane;
+
+    ItemCell(String feedListName, boolean showVisitedStatus, Set<String> shownDetails) {
+        itemPane = new ItemPane(feedListName, showVisitedStatus, shownDetails);
+        getStyleClass().add("ItemCell");
+    }
+
+    @Override
+    protected void updateItem(Item item, boolean empty) {
+        super.updateItem(item, empty);
+        setText(null);
+
+        if(empty || item == null) {
+            setGraphic(null);
+        }
+        else {
+            itemPane.setItem(item);
+            setGraphic(itemPane);
+        }
+    }
+}
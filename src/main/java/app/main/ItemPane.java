@@ -23,6 +23,7 @@ import system.Configuration;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Class ItemPane
@@ -32,55 +33,59 @@ import java.util.List;
 class ItemPane extends VBox {
     private Item item;
     private String feedListName;
-    private boolean detailsVisible;
-    private ArrayList<TextFlow> details;
+    private boolean showVisitedStatus;
+    private Set<String> shownDetails;
+    private Text itemTitle;
+    private ToggleColorButton starredButton;
     private VBox detailsContainer;
     private ContextMenu contextMenu;
-    private boolean showVisitedStatus;
-
-    ItemPane(Item item, String feedListName, boolean showVisitedStatus) {
-        this.item = item;
+    private MenuItem changeVisited;
+
+    /**
+     * Creates an empty ItemPane, which shows an Item after setItem. The pane can be given another
+     * Item later, so an ItemCell reuses it for each row it shows.
+     *
+     * @param feedListName      The name of the FeedList of the Items.
+     * @param showVisitedStatus True if the visited status of the Items should be shown.
+     * @param shownDetails      The keys of the Items which have their details shown, shared by
+     *                          the panes of a FeedListPane so it follows an Item between panes.
+     */
+    ItemPane(String feedListName, boolean showVisitedStatus, Set<String> shownDetails) {
         this.feedListName = feedListName;
         this.showVisitedStatus = showVisitedStatus;
-        detailsVisible = false;
-        details = new ArrayList<>();
+        this.shownDetails = shownDetails;
         detailsContainer = new VBox();
 
         setMinWidth(470);
 
-        setVisited(item.isVisited());
-
-        //createDetailsGroup(item);
-        getChildren().add(createItemBar(feedListName));
+        createContextMenu();
+        getChildren().add(createItemBar());
         getChildren().add(detailsContainer);
     }
 
-    private HBox createItemBar(String feedListName) {
-        HBox itemBar = new HBox();
-
-        Text itemTitle = new Text(item.getTitle());
+    /**
+     * Shows item in the pane.
+     *
+     * @param item The Item to show.
+     */
+    void setItem(Item item) {
+        this.item = item;
 
-        if(item.getTitle().length() >= 50) {
-            itemTitle = new Text(item.getTitle().substring(0, 50) + "...");
-        }
+        if(item.getTitle().length() >= 50)
+            itemTitle.setText(item.getTitle().substring(0, 50) + "...");
+        else
+            itemTitle.setText(item.getTitle());
 
-        itemTitle.setFill(Color.WHITE);
+        starredButton.setStatus(item.isStarred());
+        setVisited(item.isVisited());
+        showDetails();
+    }
 
+    private HBox createItemBar() {
+        HBox itemBar = new HBox();
 
-//        itemBar.widthProperty().addListener(event -> {
-//            Text cutTitle = new Text();
-//            cutTitle.setText(item.getTitle());
-//
-//            while(cutTitle.getLayoutBounds().getWidth() >=
-//                    itemBar.getLayoutBounds().getWidth() - 100) {
-//                String title = cutTitle.getText().substring(1, cutTitle.getText().length() - 10)
-//                        + "...";
-//
-//                cutTitle.setText(title);
-//            }
-//
-//            itemTitle.setText(cutTitle.getText());
-//        });
+        itemTitle = new Text();
+        itemTitle.setFill(Color.WHITE);
 
         VBox titleContainer = new VBox(itemTitle);
         titleContainer.setOnMouseClicked(event -> {
@@ -92,9 +97,8 @@ class ItemPane extends VBox {
             }
         });
 
-        ToggleColorButton starredButton = new ToggleColorButton(MaterialIcon.STAR,
-                "ToggleColorButtonOn", "ToggleColorButtonOff", item.isStarred(),
-                "20px", "Star this item");
+        starredButton = new ToggleColorButton(MaterialIcon.STAR, "ToggleColorButtonOn",
+                "ToggleColorButtonOff", false, "20px", "Star this item");
 
         starredButton.setOnMouseClicked(event -> {
             if(event.getButton().equals(MouseButton.PRIMARY)) {
@@ -111,17 +115,13 @@ class ItemPane extends VBox {
         return itemBar;
     }
 
-    private void createContextMenu(boolean visited) {
+    private void createContextMenu() {
         contextMenu = new ContextMenu();
 
         if(showVisitedStatus) {
-            MenuItem changeVisited;
-            if(visited)
-                changeVisited = new MenuItem("Set to not visited");
-            else
-                changeVisited = new MenuItem("Set to visited");
-
+            changeVisited = new MenuItem();
             changeVisited.setOnAction(event -> {
+                boolean visited = item.isVisited();
                 setVisited(!visited);
                 Configuration.setVisited(feedListName, item.getFeedIdentifier(), item.getId(),
                         !visited);
@@ -129,7 +129,6 @@ class ItemPane extends VBox {
 
             MenuItem showDetails = new MenuItem("Show Details");
             showDetails.setOnAction(event -> showHideDetails());
-            contextMenu.getItems().clear();
             contextMenu.getItems().add(changeVisited);
             contextMenu.getItems().add(showDetails);
         }
@@ -145,7 +144,9 @@ class ItemPane extends VBox {
         });
     }
 
-    private void createDetailsGroup() {
+    private ArrayList<TextFlow> createDetailsGroup() {
+        ArrayList<TextFlow> details = new ArrayList<>();
+
         TextFlow linkFlow = new TextFlow();
         Text linkLabel = new Text("Link: ");
         linkLabel.getStyleClass().add("DetailsLable");
@@ -198,17 +199,25 @@ class ItemPane extends VBox {
         dateFlow.getChildren().addAll(dateLabel, dateText);
         dateFlow.setMinWidth(440);
         details.add(dateFlow);
+
+        return details;
     }
 
     private void showHideDetails() {
-        if(detailsVisible) {
-            detailsContainer.getChildren().clear();
-        }
-        else {
-            detailsContainer.getChildren().addAll(details);
+        String key = RenderedItems.keyOf(item);
+        if(!shownDetails.remove(key))
+            shownDetails.add(key);
+
+        showDetails();
+    }
+
+    private void showDetails() {
+        detailsContainer.getChildren().clear();
+
+        if(shownDetails.contains(RenderedItems.keyOf(item))) {
+            detailsContainer.getChildren().addAll(createDetailsGroup());
             detailsContainer.minHeight(100);
         }
-        detailsVisible = !detailsVisible;
     }
 
     private void setVisited(boolean status) {
@@ -216,7 +225,10 @@ class ItemPane extends VBox {
         getStyleClass().add("ItemPane");
 
         if(showVisitedStatus) {
-            createContextMenu(status);
+            if(status)
+                changeVisited.setText("Set to not visited");
+            else
+                changeVisited.setText("Set to visited");
 
             if(!status)
                 getStyleClass().add("NotVisited");
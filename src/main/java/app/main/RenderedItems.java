@@ -0,0 +1,199 @@
+package app.main;
+
+import javafx.collections.ObservableListBase;
+import system.Configuration;
+import system.rss.Item;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Class RenderedItems
+ *
+ * The sorted Items of a FeedList as the ListView of a FeedListPane renders them. When the FeedList
+ * changes, update gets its Items again and reconciles them with the rendered ones by their key,
+ * the URL of their Feed and their id. Only the Items which were added, removed, or moved are
+ * inserted or removed, so the ListView keeps its scroll position and its cells, and an Item which
+ * was replaced by an equal Item from a refresh is only set in its place.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+class RenderedItems extends ObservableListBase<Item> {
+    private String listName;
+    private ArrayList<Item> items;
+
+    RenderedItems(String listName) {
+        this(listName, Configuration.isFeedListLoaded(listName) ?
+                Configuration.getAllItemsFromFeedList(listName) : new ArrayList<>());
+    }
+
+    RenderedItems(String listName, ArrayList<Item> items) {
+        this.listName = listName;
+        this.items = items;
+    }
+
+    /**
+     * Returns the key of an Item, which is the same for an Item from a refresh of the Feed with the
+     * same id.
+     *
+     * @param item  An Item.
+     * @return      A String containing the URL of the Feed and the id of the Item.
+     */
+    static String keyOf(Item item) {
+        return item.getFeedIdentifier() + " " + item.getId();
+    }
+
+    @Override
+    public Item get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Gets the Items of the FeedList again and reconciles them with the rendered Items. A FeedList
+     * which is not loaded is left as it is rendered, so it is not loaded by the update.
+     */
+    void update() {
+        if(Configuration.isFeedListLoaded(listName))
+            reconcile(Configuration.getAllItemsFromFeedList(listName));
+    }
+
+    /**
+     * Changes the rendered Items into next, telling the listeners about each Item inserted,
+     * removed, or set.
+     *
+     * The Items at the start and the end which have the same keys in both are skipped first, which
+     * is usually most of them. Of the Items left in the middle, the ones which are in both keep
+     * their places if they are in the same order in both. The longest sequence of them which is in
+     * the same order stays, and every other Item which is in both is moved by removing and
+     * inserting it. When fewer than half of the Items stay, every Item is replaced instead, which
+     * is what a change of the sorting does.
+     *
+     * @param next The Items to render, in order.
+     */
+    void reconcile(ArrayList<Item> next) {
+        int start = 0;
+        int end = items.size();
+        int nextEnd = next.size();
+
+        while(start < end && start < nextEnd && sameKey(items.get(start), next.get(start))) {
+            start++;
+        }
+        while(end > start && nextEnd > start &&
+                sameKey(items.get(end - 1), next.get(nextEnd - 1))) {
+            end--;
+            nextEnd--;
+        }
+
+        HashMap<String, Integer> nextIndexes = new HashMap<>((nextEnd - start) * 2);
+        for(int i = start; i < nextEnd; i++) {
+            nextIndexes.putIfAbsent(keyOf(next.get(i)), i);
+        }
+
+        // The index in next of each rendered Item in the middle, or -1 if it is not in next
+        int[] sources = new int[end - start];
+        boolean[] claimed = new boolean[next.size()];
+        for(int i = start; i < end; i++) {
+            Integer index = nextIndexes.get(keyOf(items.get(i)));
+
+            if(index != null && !claimed[index]) {
+                sources[i - start] = index;
+                claimed[index] = true;
+            }
+            else {
+                sources[i - start] = -1;
+            }
+        }
+
+        boolean[] stays = longestIncreasing(sources);
+        int staying = start + items.size() - end;
+        for(boolean stay : stays) {
+            if(stay)
+                staying++;
+        }
+
+        beginChange();
+
+        if(staying < Math.max(items.size(), next.size()) / 2) {
+            if(!items.isEmpty())
+                nextRemove(0, new ArrayList<>(items));
+            items = new ArrayList<>(next);
+            if(!items.isEmpty())
+                nextAdd(0, items.size());
+        }
+        else {
+            boolean[] placed = new boolean[next.size()];
+            for(int i = 0; i < next.size(); i++) {
+                placed[i] = i < start || i >= nextEnd;
+            }
+
+            for(int i = end - 1; i >= start; i--) {
+                if(stays[i - start])
+                    placed[sources[i - start]] = true;
+                else
+                    nextRemove(i, items.remove(i));
+            }
+
+            // What is left is in the order of next, so each Item is inserted at its index in next
+            for(int i = 0; i < next.size(); i++) {
+                if(!placed[i]) {
+                    items.add(i, next.get(i));
+                    nextAdd(i, i + 1);
+                }
+                else if(items.get(i) != next.get(i)) {
+                    nextSet(i, items.set(i, next.get(i)));
+                }
+            }
+        }
+
+        endChange();
+    }
+
+    private static boolean sameKey(Item item, Item other) {
+        return item == other || (item.getId().equals(other.getId()) &&
+                item.getFeedIdentifier().equals(other.getFeedIdentifier()));
+    }
+
+    /**
+     * Finds the longest increasing subsequence of the indexes which are not -1.
+     *
+     * @param indexes   An array of distinct indexes, or -1.
+     * @return          An array which is true at the positions of the subsequence.
+     */
+    private static boolean[] longestIncreasing(int[] indexes) {
+        int[] tails = new int[indexes.length];      // Position of the last index of each length
+        int[] previous = new int[indexes.length];   // Position of the index before each index
+        int length = 0;
+
+        for(int i = 0; i < indexes.length; i++) {
+            if(indexes[i] == -1)
+                continue;
+
+            int low = 0;
+            int high = length;
+            while(low < high) {
+                int middle = (low + high) >>> 1;
+                if(indexes[tails[middle]] < indexes[i])
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+
+            previous[i] = low > 0 ? tails[low - 1] : -1;
+            tails[low] = i;
+            if(low == length)
+                length++;
+        }
+
+        boolean[] inSequence = new boolean[indexes.length];
+        for(int i = length > 0 ? tails[length - 1] : -1; i != -1; i = previous[i]) {
+            inSequence[i] = true;
+        }
+
+        return inSequence;
+    }
+}
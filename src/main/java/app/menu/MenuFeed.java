@@ -10,16 +10,23 @@ import javafx.scene.input.MouseButton;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
+import system.Configuration;
 import system.rss.Feed;
 
 /**
  * Class MenuFeed
  *
+ * A Feed in the side menu, showing its title and how many of its Items are unread. The MenuFeed is
+ * kept while the Feed is in the FeedList and changed with update when the Feed has changed.
+ *
  * @author Axel Nilsson (axnion)
  */
 class MenuFeed extends VBox{
     private Feed feed;
     private String feedListName;
+    private Text title;
+    private Text unreadCount;
+    private int unread;
 
     MenuFeed(Feed feed, String feedListName) {
         this.feed = feed;
@@ -30,7 +37,8 @@ class MenuFeed extends VBox{
         Image image;
 
         try {
-            image = new Image(feed.getImage());
+            // Loaded in the background so a long list of Feeds does not wait for every image
+            image = new Image(feed.getImage(), true);
         }
         catch (IllegalArgumentException expt) {
             image = new Image("file:img/default_feed.png");
@@ -39,27 +47,67 @@ class MenuFeed extends VBox{
         ImageView imageView = new ImageView(image);
         imageView.setFitHeight(30);
         imageView.setFitWidth(30);
+        image.errorProperty().addListener((observable, oldValue, error) -> {
+            if(error)
+                imageView.setImage(new Image("file:img/default_feed.png"));
+        });
 
         getStyleClass().add("MenuFeed");
 
-        String titleStr = feed.getTitle();
-        if(titleStr.length() >= 50) {
-            titleStr = titleStr.substring(0, 50) + "...";
-        }
-        Text title = new Text(titleStr);
+        title = new Text();
         title.getStyleClass().add("MenuFeedTitle");
 
+        unreadCount = new Text();
+        unreadCount.getStyleClass().add("MenuUnreadCount");
+
         HBox container = new HBox();
         container.getChildren().add(imageView);
         container.getChildren().add(title);
+        container.getChildren().add(unreadCount);
 
         getChildren().add(container);
+        update();
+    }
+
+    /**
+     * Shows the current title and unread count of the Feed.
+     *
+     * @return The change in the number of unread Items since the last update.
+     */
+    int update() {
+        String titleStr = feed.getTitle();
+        if(titleStr.length() >= 50) {
+            titleStr = titleStr.substring(0, 50) + "...";
+        }
+        title.setText(titleStr);
+
+        int oldUnread = unread;
+        unread = feed.getUnreadCount();
+        unreadCount.setText(unread > 0 ? " " + unread : "");
+
+        return unread - oldUnread;
+    }
+
+    /**
+     * Replaces the Feed shown, which happens when the FeedList has been loaded again.
+     *
+     * @param feed  The Feed with the same identifier.
+     * @return      The change in the number of unread Items.
+     */
+    int setFeed(Feed feed) {
+        this.feed = feed;
+        return update();
+    }
+
+    int getUnread() {
+        return unread;
     }
 
     private void createContextMenu() {
         ContextMenu rightClickMenu = new ContextMenu();
 
         MenuItem showDetails = new MenuItem("Show details");
+        MenuItem markRead = new MenuItem("Mark all as read");
         MenuItem deleteFeed = new MenuItem("Delete feed");
 
 //        Menu move = new Menu("Move");
@@ -70,11 +118,16 @@ class MenuFeed extends VBox{
 //
 //        });
 
+        markRead.setOnAction(event -> {
+            Configuration.markFeedRead(feedListName, feed.getUrlToXML());
+        });
+
         deleteFeed.setOnAction(event -> {
             RSSReader.removeFeed(feed.getUrlToXML(), feedListName);
         });
 
         rightClickMenu.getItems().add(showDetails);
+        rightClickMenu.getItems().add(markRead);
         rightClickMenu.getItems().add(deleteFeed);
 
         setOnMouseClicked(event -> {
@@ -4,6 +4,7 @@ import app.RSSReader;
 import app.misc.ClickButton;
 import app.misc.ToggleIconButton;
 import de.jensd.fx.glyphs.materialicons.MaterialIcon;
+import javafx.collections.ObservableList;
 import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.input.KeyCode;
@@ -16,32 +17,38 @@ import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
 import system.rss.Feed;
 import system.rss.FeedMinimal;
-import system.rss.FeedSniffer;
 import system.Configuration;
 import system.FeedList;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Class MenuFeedList
  *
+ * A FeedList in the side menu with a MenuFeed for each of its Feeds, indexed by the identifier of
+ * the Feed, and the number of unread Items in the FeedList. Feeds are added, removed, and updated
+ * in place, so a change to one Feed does not create the MenuFeeds of the others again.
+ *
  * @author Axel Nilsson (axnion)
  */
 class MenuFeedList extends VBox{
     private boolean visible;
     private FeedList feedList;
     private BorderPane titlePane;
+    private Text unreadCount;
+    private int unread;
     private HBox settings;
     private VBox settingsContainer;
     private VBox feedsContainer;
-    private ArrayList<MenuFeed> menuFeeds;
+    private HashMap<String, MenuFeed> menuFeeds;
     private ToggleIconButton showFeedsButton;
     private HBox addFeedMenuContainer;
     private VBox newFeedContainer;
 
     MenuFeedList(FeedList feedList) {
         this.feedList = feedList;
-        menuFeeds = new ArrayList<>();
+        menuFeeds = new HashMap<>();
         settings = new HBox();
         settingsContainer = new VBox();
         feedsContainer = new VBox();
@@ -54,6 +61,9 @@ class MenuFeedList extends VBox{
         Text title = new Text(feedList.getName());
         title.getStyleClass().add("MenuFeedListTitle");
 
+        unreadCount = new Text();
+        unreadCount.getStyleClass().add("MenuUnreadCount");
+
         showFeedsButton = new ToggleIconButton(MaterialIcon.ARROW_DROP_DOWN, MaterialIcon.ARROW_DROP_UP,
                 "MenuButton", "30px", "Show/Hide Feeds");
         showFeedsButton.setOnMouseClicked(event -> {
@@ -64,10 +74,14 @@ class MenuFeedList extends VBox{
         });
 
         titlePane = new BorderPane();
-        titlePane.setLeft(title);
+        titlePane.setLeft(new HBox(title, unreadCount));
         titlePane.setRight(showFeedsButton);
         createContextMenu();
 
+        // The MenuFeeds stay in feedsContainer while it is hidden, so they are kept up to date
+        feedsContainer.managedProperty().bind(feedsContainer.visibleProperty());
+        feedsContainer.setVisible(false);
+
         getChildren().add(titlePane);
         getChildren().add(addFeedMenuContainer);
         getChildren().add(settingsContainer);
@@ -75,32 +89,119 @@ class MenuFeedList extends VBox{
         getChildren().add(newFeedContainer);
     }
 
+    /**
+     * Brings the MenuFeeds up to date with all Feeds of the FeedList. MenuFeeds of Feeds which are
+     * still in the FeedList are kept, and the children of feedsContainer are only replaced if the
+     * Feeds have been added, removed, or moved. A FeedList which is not loaded is left as it is,
+     * and is loaded in the background when its Feeds are shown.
+     */
     void update() {
+        if(!Configuration.isFeedListLoaded(feedList.getName()))
+            return;
+
         ArrayList<Feed> feeds = Configuration.getAllFeedsFromFeedList(feedList.getName());
-        menuFeeds.clear();
+        HashMap<String, MenuFeed> current = new HashMap<>();
+        ArrayList<MenuFeed> ordered = new ArrayList<>(feeds.size());
 
-        for(int i = 0; i < feeds.size(); i++) {
-            MenuFeed menuFeed = new MenuFeed(feeds.get(i), feedList.getName());
+        for(Feed feed : feeds) {
+            MenuFeed menuFeed = menuFeeds.get(feed.getUrlToXML());
 
-            if(i % 2 == 0) {
-                menuFeed.setStyle("-fx-background-color: #575757");
-            }
-            menuFeeds.add(menuFeed);
+            if(menuFeed == null)
+                menuFeed = new MenuFeed(feed, feedList.getName());
+            else
+                menuFeed.setFeed(feed);
+
+            current.put(feed.getUrlToXML(), menuFeed);
+            ordered.add(menuFeed);
         }
 
-        if(visible) {
-            feedsContainer.getChildren().clear();
-            feedsContainer.getChildren().addAll(menuFeeds);
+        menuFeeds = current;
+        if(!feedsContainer.getChildren().equals(ordered)) {
+            feedsContainer.getChildren().setAll(ordered);
+            stripe(0);
+        }
+
+        unread = 0;
+        for(MenuFeed menuFeed : ordered) {
+            unread += menuFeed.getUnread();
+        }
+        showUnreadCount();
+    }
+
+    /**
+     * Adds a MenuFeed for a Feed which has been added last in the FeedList.
+     *
+     * @param url The identifier of the Feed.
+     */
+    void addFeed(String url) {
+        if(menuFeeds.containsKey(url))
+            return;
+
+        MenuFeed menuFeed = new MenuFeed(Configuration.getFeedFromFeedList(feedList.getName(),
+                url), feedList.getName());
+        menuFeeds.put(url, menuFeed);
+        feedsContainer.getChildren().add(menuFeed);
+        stripe(feedsContainer.getChildren().size() - 1);
+
+        unread += menuFeed.getUnread();
+        showUnreadCount();
+    }
+
+    /**
+     * Removes the MenuFeed of a Feed which has been removed from the FeedList.
+     *
+     * @param url The identifier of the Feed.
+     */
+    void removeFeed(String url) {
+        MenuFeed menuFeed = menuFeeds.remove(url);
+        if(menuFeed == null)
+            return;
+
+        int index = feedsContainer.getChildren().indexOf(menuFeed);
+        feedsContainer.getChildren().remove(index);
+        stripe(index);
+
+        unread -= menuFeed.getUnread();
+        showUnreadCount();
+    }
+
+    /**
+     * Updates the title and unread count of the MenuFeed of a Feed, if the FeedList has it.
+     *
+     * @param url The identifier of the Feed.
+     */
+    void updateFeed(String url) {
+        MenuFeed menuFeed = menuFeeds.get(url);
+        if(menuFeed == null)
+            return;
+
+        unread += menuFeed.update();
+        showUnreadCount();
+    }
+
+    private void showUnreadCount() {
+        unreadCount.setText(unread > 0 ? " " + unread : "");
+    }
+
+    /**
+     * Gives every other MenuFeed a darker background, from the MenuFeed at index and down.
+     */
+    private void stripe(int index) {
+        ObservableList<Node> children = feedsContainer.getChildren();
+
+        for(int i = index; i < children.size(); i++) {
+            children.get(i).setStyle(i % 2 == 0 ? "-fx-background-color: #575757" : "");
         }
     }
 
     private void showHideFeeds() {
         if(visible) {
-            feedsContainer.getChildren().clear();
+            feedsContainer.setVisible(false);
             settingsContainer.getChildren().clear();
         }
         else {
-            feedsContainer.getChildren().addAll(menuFeeds);
+            Configuration.loadFeedListInBackground(feedList.getName());
+            feedsContainer.setVisible(true);
             settingsContainer.getChildren().add(settings);
         }
 
@@ -113,7 +214,7 @@ class MenuFeedList extends VBox{
             visible = false;
             showFeedsButton.toggle();
         }
-        feedsContainer.getChildren().clear();
+        feedsContainer.setVisible(false);
     }
 
     private void showAddFeedMenu() {
@@ -147,9 +248,11 @@ class MenuFeedList extends VBox{
 
     private void displayFeeds(String url) {
         newFeedContainer.getChildren().clear();
+        RSSReader.findFeeds(url, this::displayFeeds);
+    }
 
-        FeedSniffer feedSniffer = new FeedSniffer();
-        ArrayList<FeedMinimal> feeds = feedSniffer.getFeeds(url);
+    private void displayFeeds(ArrayList<FeedMinimal> feeds) {
+        newFeedContainer.getChildren().clear();
 
         if(feeds.size() == 0) {
             Text errorMessage = new Text("No feed where found");
@@ -167,6 +270,7 @@ class MenuFeedList extends VBox{
 
         MenuItem addFeedButton = new MenuItem("Add Feed");
         MenuItem removeFeedListButton = new MenuItem("Remove this List");
+        MenuItem markReadButton = new MenuItem("Mark all as read");
         CheckMenuItem showVisitedStatus = new CheckMenuItem("Show items visited status");
         showVisitedStatus.setSelected(Configuration.getFeedListByName(feedList.getName())
                 .getShowVisitedStatus());
@@ -210,8 +314,8 @@ class MenuFeedList extends VBox{
         dateDec.setToggleGroup(sortingAlternatives);
         sortingMenu.getItems().addAll(titleAsc, titleDec, dateAsc, dateDec);
 
-        rightClickMenu.getItems().addAll(addFeedButton, showVisitedStatus, sortingMenu,
-                removeFeedListButton);
+        rightClickMenu.getItems().addAll(addFeedButton, markReadButton, showVisitedStatus,
+                sortingMenu, removeFeedListButton);
 
         titlePane.setOnMouseClicked(event -> {
             if(event.getButton().equals(MouseButton.SECONDARY)) {
@@ -225,6 +329,7 @@ class MenuFeedList extends VBox{
 
         addFeedButton.setOnAction(event -> showAddFeedMenu());
         removeFeedListButton.setOnAction(event -> RSSReader.removeFeedList(feedList.getName()));
+        markReadButton.setOnAction(event -> Configuration.markFeedListRead(feedList.getName()));
         showVisitedStatus.setOnAction(event -> Configuration.setShowVisitedStatus(feedList
                         .getName(), showVisitedStatus.isSelected()));
     }
@@ -62,6 +62,26 @@ public class SideMenu extends VBox {
         treeView.updateFeedList();
     }
 
+    public void updateFeedList(String listName) {
+        treeView.updateFeedList(listName);
+    }
+
+    public void addFeed(String listName, String url) {
+        treeView.addFeed(listName, url);
+    }
+
+    public void removeFeed(String listName, String url) {
+        treeView.removeFeed(listName, url);
+    }
+
+    public void updateFeed(String listName, String url) {
+        treeView.updateFeed(listName, url);
+    }
+
+    public void updateFeed(String url) {
+        treeView.updateFeed(url);
+    }
+
     private void createMenuButtons() {
         HBox buttons = new HBox();
         buttons.setSpacing(10);
@@ -17,10 +17,14 @@ import system.FeedList;
 import system.exceptions.FeedListAlreadyExists;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 /**
  * Class TreeView
  *
+ * The FeedLists in the side menu. Each FeedList has a MenuFeedList, indexed by the name of the
+ * FeedList, which is added, removed, and updated in place when the FeedList changes.
+ *
  * @author Axel Nilsson (axnion)
  */
 class TreeView extends VBox {
@@ -28,7 +32,7 @@ class TreeView extends VBox {
     private HBox topBar;
     private TextField inputBar;
     private Text errorMessage;
-    private ArrayList<MenuFeedList> menuFeedLists;
+    private HashMap<String, MenuFeedList> menuFeedLists;
     private ClickButton addFeedListButton;
 
     TreeView() {
@@ -50,7 +54,7 @@ class TreeView extends VBox {
         });
 
         treeViewContainer = new VBox();
-        menuFeedLists = new ArrayList<>();
+        menuFeedLists = new HashMap<>();
         topBar.getChildren().add(addFeedListButton);
 
         getChildren().add(topBar);
@@ -60,47 +64,85 @@ class TreeView extends VBox {
     }
 
     void addFeedList(String listName) {
-        menuFeedLists.add(new MenuFeedList(Configuration.getFeedListByName(listName)));
+        if(menuFeedLists.containsKey(listName))
+            return;
 
-        treeViewContainer.getChildren().clear();
-        treeViewContainer.getChildren().addAll(menuFeedLists);
+        MenuFeedList menuFeedList = new MenuFeedList(Configuration.getFeedListByName(listName));
+        menuFeedList.update();
+        menuFeedLists.put(listName, menuFeedList);
+        treeViewContainer.getChildren().add(menuFeedList);
     }
 
     void removeFeedList(String listName) {
-        for(MenuFeedList menuFeedList : menuFeedLists) {
-            if(menuFeedList.getName().equals(listName)) {
-                menuFeedLists.remove(menuFeedList);
-                break;
-            }
-        }
+        MenuFeedList menuFeedList = menuFeedLists.remove(listName);
+
+        if(menuFeedList != null)
+            treeViewContainer.getChildren().remove(menuFeedList);
+    }
+
+    void updateFeedList(String listName) {
+        MenuFeedList menuFeedList = menuFeedLists.get(listName);
 
-        treeViewContainer.getChildren().clear();
-        treeViewContainer.getChildren().addAll(menuFeedLists);
+        if(menuFeedList != null)
+            menuFeedList.update();
     }
 
+    /**
+     * Brings the MenuFeedLists up to date with all FeedLists in the Configuration. MenuFeedLists of
+     * FeedLists which still exist are kept and updated, and the children of treeViewContainer are
+     * only replaced if FeedLists have been added, removed, or moved.
+     */
     void updateFeedList() {
         ArrayList<FeedList> feedLists = Configuration.getFeedLists();
-        boolean feedListExists;
+        HashMap<String, MenuFeedList> current = new HashMap<>();
+        ArrayList<MenuFeedList> ordered = new ArrayList<>(feedLists.size());
 
         for(FeedList feedList : feedLists) {
-            feedListExists = false;
-            for(MenuFeedList menuFeedList : menuFeedLists) {
-                if(feedList.getName().equals(menuFeedList.getName())) {
-                    feedListExists = true;
-                    menuFeedList.update();
-                }
-            }
+            MenuFeedList menuFeedList = menuFeedLists.get(feedList.getName());
 
-            if(!feedListExists) {
-                MenuFeedList newMenuFeedList = new MenuFeedList(feedList);
-                newMenuFeedList.update();
-                menuFeedLists.add(newMenuFeedList);
-            }
+            if(menuFeedList == null)
+                menuFeedList = new MenuFeedList(feedList);
 
+            menuFeedList.update();
+            current.put(feedList.getName(), menuFeedList);
+            ordered.add(menuFeedList);
         }
 
-        treeViewContainer.getChildren().clear();
-        treeViewContainer.getChildren().addAll(menuFeedLists);
+        menuFeedLists = current;
+        if(!treeViewContainer.getChildren().equals(ordered))
+            treeViewContainer.getChildren().setAll(ordered);
+    }
+
+    void addFeed(String listName, String url) {
+        MenuFeedList menuFeedList = menuFeedLists.get(listName);
+
+        if(menuFeedList != null)
+            menuFeedList.addFeed(url);
+    }
+
+    void removeFeed(String listName, String url) {
+        MenuFeedList menuFeedList = menuFeedLists.get(listName);
+
+        if(menuFeedList != null)
+            menuFeedList.removeFeed(url);
+    }
+
+    void updateFeed(String listName, String url) {
+        MenuFeedList menuFeedList = menuFeedLists.get(listName);
+
+        if(menuFeedList != null)
+            menuFeedList.updateFeed(url);
+    }
+
+    /**
+     * Updates a Feed in every MenuFeedList which has it, since FeedLists share their Feeds.
+     *
+     * @param url The identifier of the Feed.
+     */
+    void updateFeed(String url) {
+        for(MenuFeedList menuFeedList : menuFeedLists.values()) {
+            menuFeedList.updateFeed(url);
+        }
     }
 
     private void showAddFeedListInput() {
@@ -112,7 +154,6 @@ class TreeView extends VBox {
                 try {
                     RSSReader.addFeedList(inputBar.getText());
                     hideAddFeedListInput();
-                    updateFeedList();
                 }
                 catch(FeedListAlreadyExists err) {
                     errorMessage.setText("A list with that name already exists");
@@ -0,0 +1,39 @@
+package app.misc;
+
+import de.jensd.fx.glyphs.materialicons.MaterialIcon;
+import javafx.concurrent.Task;
+import javafx.geometry.Pos;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.HBox;
+import javafx.scene.text.Text;
+
+/**
+ * Class TaskIndicator
+ *
+ * Shows the message and progress of a running Task, and a button which cancels it.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class TaskIndicator extends HBox {
+    public TaskIndicator(Task<?> task) {
+        Text message = new Text();
+        message.setStyle("-fx-fill: white");
+        message.textProperty().bind(task.messageProperty());
+
+        ProgressBar progressBar = new ProgressBar();
+        progressBar.setPrefWidth(80);
+        progressBar.progressProperty().bind(task.progressProperty());
+
+        ClickButton cancelButton = new ClickButton(MaterialIcon.CLOSE, "MenuButton", "16px",
+                "Cancel");
+        cancelButton.setOnMouseClicked(event -> {
+            if(event.getButton().equals(MouseButton.PRIMARY))
+                task.cancel();
+        });
+
+        setSpacing(5);
+        setAlignment(Pos.CENTER);
+        getChildren().addAll(message, progressBar, cancelButton);
+    }
+}
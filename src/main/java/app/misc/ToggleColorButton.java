@@ -51,4 +51,9 @@ public class ToggleColorButton extends VBox {
     public boolean getCurrentStatus() {
         return currentStatus;
     }
+
+    public void setStatus(boolean status) {
+        if(status != currentStatus)
+            toggle();
+    }
 }
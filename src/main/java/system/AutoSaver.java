@@ -0,0 +1,163 @@
+package system;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class AutoSaver
+ *
+ * AutoSaver saves the Configuration in the background after it has changed. Configuration tells
+ * it about every change through changed, and the save is put off until no change has been made
+ * for delay milliseconds, so a burst of changes, like a refresh applying new Items to many Feeds,
+ * is written once. To make sure a steady stream of changes is saved at all, a save is never put
+ * off more than maxDelay milliseconds after the first change. Changes to visited and starred which
+ * are journaled are not told about, since the journal already keeps them.
+ *
+ * Saves run one at a time on a single daemon thread. When a save runs Configuration.autoSave is
+ * called, which does nothing if the Configuration has not changed since it was last saved. The
+ * snapshot a save waits for is taken on the thread of the applier, which is where stop is called
+ * from when the application exits, so stop cancels the snapshot if it has not been taken instead
+ * of waiting for a save which waits for it.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+class AutoSaver {
+    private ScheduledExecutorService executor;
+    private ScheduledFuture<?> pending;
+    private FutureTask<Snapshot> snapshot;  // The snapshot the running save waits for, or null
+    private long delay;
+    private long maxDelay;
+    private long firstChange;
+
+    /**
+     * Constructor
+     *
+     * @param delay     Milliseconds without changes before a save.
+     * @param maxDelay  The most milliseconds a save is put off after the first unsaved change.
+     */
+    AutoSaver(long delay, long maxDelay) {
+        this.delay = delay;
+        this.maxDelay = maxDelay;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "AutoSaver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Tells the AutoSaver the Configuration has changed. Schedules a save delay milliseconds from
+     * now, replacing the save scheduled by the last change unless that would put it off more than
+     * maxDelay.
+     */
+    synchronized void changed() {
+        if(executor.isShutdown())
+            return;
+
+        long now = System.currentTimeMillis();
+
+        if(pending == null) {
+            firstChange = now;
+        }
+        else {
+            long latest = firstChange + maxDelay;
+
+            if(now + delay > latest) {
+                // Putting the save off any longer would pass maxDelay, so a save is due at latest
+                if(pending.getDelay(TimeUnit.MILLISECONDS) > latest - now && pending.cancel(false))
+                    pending = executor.schedule(this::save, Math.max(0, latest - now),
+                            TimeUnit.MILLISECONDS);
+                return;
+            }
+
+            if(!pending.cancel(false))
+                return;
+        }
+
+        pending = executor.schedule(this::save, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the AutoSaver. A save which is running is waited for, but a scheduled save is dropped,
+     * and so is a running save whose snapshot has not been taken yet, so Configuration.autoSave
+     * should be called after stop to save the last changes.
+     *
+     * @throws InterruptedException If interrupted while waiting for a running save.
+     */
+    void stop() throws InterruptedException {
+        synchronized(this) {
+            if(pending != null)
+                pending.cancel(false);
+
+            if(snapshot != null)
+                snapshot.cancel(false);
+
+            pending = null;
+            executor.shutdown();
+        }
+
+        if(!executor.awaitTermination(10, TimeUnit.SECONDS))
+            executor.shutdownNow();
+    }
+
+    /**
+     * Returns true if a save is scheduled and has not started.
+     *
+     * @return True if a save is pending.
+     */
+    synchronized boolean isPending() {
+        return pending != null;
+    }
+
+    /**
+     * Waits for the snapshot of the running save, which has been handed to the applier. Returns
+     * null if stop has been called, as the save is then dropped.
+     *
+     * @param task  The task taking the snapshot on the applier.
+     * @return      The snapshot, or null if the save was dropped by stop.
+     * @throws InterruptedException If interrupted while waiting.
+     * @throws ExecutionException   If the snapshot could not be taken.
+     */
+    Snapshot awaitSnapshot(FutureTask<Snapshot> task)
+            throws InterruptedException, ExecutionException {
+        synchronized(this) {
+            if(executor.isShutdown()) {
+                task.cancel(false);
+                return null;
+            }
+
+            snapshot = task;
+        }
+
+        try {
+            return task.get();
+        }
+        catch(CancellationException expt) {
+            return null;
+        }
+        finally {
+            synchronized(this) {
+                snapshot = null;
+            }
+        }
+    }
+
+    private void save() {
+        // Changes made from here on are not in the snapshot, so they schedule a new save
+        synchronized(this) {
+            pending = null;
+        }
+
+        try {
+            Configuration.autoSave(this);
+        }
+        catch(Exception expt) {
+            expt.printStackTrace();
+        }
+    }
+}
@@ -5,12 +5,27 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import system.rss.Feed;
 import system.exceptions.FeedListAlreadyExists;
 import system.exceptions.FeedListDoesNotExist;
+import system.rss.FeedRefresher;
+import system.rss.FeedScheduler;
 import system.rss.Item;
+import system.rss.RefreshStats;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Timer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
 
 /**
  * Class Configuration
@@ -23,24 +38,50 @@ import java.util.Timer;
  * here.
  *
  * Configuration also holds the DatabaseAccessObjectSQLite which is used to load and save user data to
- * a database.
+ * a database. Changes to the visited and starred status of Items are also appended to a Journal
+ * next to the save file, so they are kept without saving, and replayed when the file is loaded.
+ *
+ * Each change is told to the ConfigurationListeners as a ConfigurationEvent, so a view can change
+ * only what shows the changed part instead of looking for changes.
  *
  * @author Axel Nilsson (axnion)
  */
 public class Configuration {
     private static ArrayList<FeedList> feedLists = new ArrayList<>();
+    private static HashMap<String, FeedList> feedListsByName = new HashMap<>();
     private static DataAccessObject dao = new DataAccessObjectJSON();
     private static Date lastUpdated = new Date();
+    private static boolean pollsUnsaved;    // Polled FeedSchedules not in a snapshot yet
     private static int updatePeriod = 360000;
     private static int autoSavePeriod = 360000;
     private static Timer updateTimer;
-    private static Timer autoSaveTimer;
+    private static AutoSaver autoSaver;
+    private static long autoSaveDelay = 5000;
+    private static long autoSaveMaxDelay = 60000;
+    private static FeedRefresher refresher = new FeedRefresher();
+    private static FeedRegistry registry = new FeedRegistry();
+    private static Executor applier = Runnable::run;
+    private static Journal journal;
+    private static long compactionThreshold = 65536;
+    private static long unloadAfter = 600000;
+    private static HashSet<FeedList> loading = new HashSet<>();
+    private static final ExecutorService feedListLoader = Executors.newSingleThreadExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "FeedListLoader");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private static final Object saveLock = new Object();
+    private static CopyOnWriteArrayList<ConfigurationListener> listeners =
+            new CopyOnWriteArrayList<>();
 
     public static void loadDefaultSettings() {
         System.out.println("Loading default settings");
 
         try {
             JsonNode node = new ObjectMapper().readTree(new File("settings.json"));
+            loadRefreshSettings(node);
+            loadSaveFormat(node);
             Configuration.load(node.get("defaultSaveFile").asText());
         }
         catch(Exception expt) {
@@ -60,8 +101,11 @@ public class Configuration {
      */
     public static void addFeedList(String listName) {
         if(!feedListExists(listName)) {
-            feedLists.add(new FeedList(listName, "DATE_DEC", true));
-            lastUpdated = new Date();
+            FeedList feedList = new FeedList(listName, "DATE_DEC", true, registry);
+            feedLists.add(feedList);
+            feedListsByName.put(listName, feedList);
+            changed();
+            fire(ConfigurationEvent.Type.FEED_LIST_ADDED, listName, null, null);
         }
         else
             throw new FeedListAlreadyExists(listName);
@@ -78,8 +122,12 @@ public class Configuration {
      */
     public static void removeFeedList(String listName) {
         if(feedListExists(listName)) {
-            feedLists.remove(getFeedListByName(listName));
-            lastUpdated = new Date();
+            FeedList feedList = getFeedListByName(listName);
+            feedList.clear();
+            feedLists.remove(feedList);
+            feedListsByName.remove(listName);
+            changed();
+            fire(ConfigurationEvent.Type.FEED_LIST_REMOVED, listName, null, null);
         }
         else
             throw new FeedListDoesNotExist(listName);
@@ -93,7 +141,33 @@ public class Configuration {
      */
     public static void addFeed(String url, String listName) {
         getFeedListByName(listName).add(url);
-        lastUpdated = new Date();
+        changed();
+        fire(ConfigurationEvent.Type.FEED_ADDED, listName, url, null);
+    }
+
+    /**
+     * Same as addFeed above, but takes a Feed which has already been fetched using fetchFeed.
+     *
+     * @param feed      The Feed to be added.
+     * @param listName  The name of the FeedList the Feed is added to.
+     */
+    public static void addFeed(Feed feed, String listName) {
+        getFeedListByName(listName).addFetched(feed);
+        changed();
+        fire(ConfigurationEvent.Type.FEED_ADDED, listName, feed.getUrlToXML(), null);
+    }
+
+    /**
+     * Returns the Feed for url without adding it to any FeedList. This does the slow part of
+     * addFeed and can be called on a background thread, and the Feed is then added with
+     * addFeed(Feed, String).
+     *
+     * @param url       The URL to the Feed.
+     * @param listName  The name of the FeedList the Feed will be added to.
+     * @return          The Feed for url.
+     */
+    public static Feed fetchFeed(String url, String listName) {
+        return getFeedListByName(listName).fetch(url);
     }
 
     /**
@@ -104,7 +178,8 @@ public class Configuration {
      */
     public static void removeFeed(String url, String listName) {
         getFeedListByName(listName).remove(url);
-        lastUpdated = new Date();
+        changed();
+        fire(ConfigurationEvent.Type.FEED_REMOVED, listName, url, null);
     }
 
 //    /**
@@ -137,46 +212,211 @@ public class Configuration {
 //
 //    public static void stopFeedListUpdater() {
 //        updateTimer.cancel();
-//    }
-//
-//    public static void startAutoSave() {
-//        autoSaveTimer = new Timer();
-//        autoSaveTimer.schedule(new AutoSaveTask(), 0, autoSavePeriod);
-//    }
-//
-//    public static void stopAutoSave() {
-//        autoSaveTimer.cancel();
 //    }
 
-    public static void update() {
-        boolean updated = false;
+    /**
+     * Refreshes the Feeds in every loaded FeedList which are due to be polled at the same time
+     * using the FeedRefresher. A Feed which is in several FeedLists is only refreshed once, and the
+     * Feeds of a FeedList which is not loaded are refreshed once it is. If the Items of any Feed
+     * were changed lastUpdated is updated to current time and an ITEMS_ADDED event is fired for
+     * each FeedList holding it.
+     *
+     * A polled Feed also gets a new FeedSchedule and may get new validators. They are not worth a
+     * save of their own, as most polls change nothing else, so they are saved by the next save, or
+     * when the AutoSaver is stopped.
+     *
+     * @return A RefreshStats with the statistics of the refresh.
+     */
+    public static RefreshStats update() {
+        return update(null);
+    }
 
-        System.out.println("UpdaterThread running");
+    /**
+     * Same as update above, but tells listener each time a Feed is done. The FeedLists are only
+     * read and the Feeds only changed by the applier, see setApplier, so update can be called on
+     * a background thread. The due Feeds are picked and copied by the applier before the refresh
+     * starts, and only the copies are refreshed.
+     *
+     * @param listener  A ProgressListener told each time a Feed is done, or null.
+     * @return          A RefreshStats with the statistics of the refresh.
+     */
+    public static RefreshStats update(FeedRefresher.ProgressListener listener) {
+        HashMap<Feed, Long> itemsVersions = new HashMap<>();
 
-        for(FeedList feedList : Configuration.getFeedLists()) {
-            if(feedList.update())
-                updated = true;
-        }
+        FeedRefresher.Batch batch = callOnApplier(() -> {
+            LinkedHashMap<String, Feed> feeds = new LinkedHashMap<>();
+
+            for(FeedList feedList : feedLists) {
+                if(!feedList.isLoaded())
+                    continue;
+
+                for(Feed feed : feedList.getFeeds()) {
+                    feeds.putIfAbsent(feed.getUrlToXML(), feed);
+                    itemsVersions.put(feed, feed.getItemsVersion());
+                }
+            }
+
+            return refresher.prepareDue(new ArrayList<>(feeds.values()));
+        });
+
+        RefreshStats stats = refresher.refresh(batch, listener);
+
+        // Passed to the applier so it runs after the Feeds have been changed
+        applier.execute(() -> {
+            if(stats.getRefreshed() + stats.getFailed() + stats.getTimedOut() > 0)
+                pollsUnsaved = true;
 
-        if(updated) {
-            Configuration.setLastUpdated(new Date());
-            System.out.println("Update: Configuration");
+            if(stats.getNewItems() > 0)
+                System.out.println("Update: Configuration");
+
+            boolean itemsChanged = false;
+
+            for(FeedList feedList : feedLists) {
+                if(!feedList.isLoaded())
+                    continue;
+
+                for(Feed feed : feedList.getFeeds()) {
+                    Long itemsVersion = itemsVersions.get(feed);
+                    if(itemsVersion != null && itemsVersion != feed.getItemsVersion()) {
+                        itemsChanged = true;
+                        fire(ConfigurationEvent.Type.ITEMS_ADDED, feedList.getName(),
+                                feed.getUrlToXML(), null);
+                    }
+                }
+            }
+
+            if(itemsChanged)
+                changed();
+        });
+
+        return stats;
+    }
+
+    /**
+     * Runs task on the applier and waits for its result, so a background thread can read the
+     * FeedLists on the thread they are changed on. If the calling thread is interrupted while it
+     * waits the task is cancelled, unless it has already started.
+     *
+     * @param task  The task to run on the applier.
+     * @return      The result of task.
+     */
+    private static <T> T callOnApplier(Callable<T> task) {
+        FutureTask<T> future = new FutureTask<>(task);
+        applier.execute(future);
+
+        try {
+            return future.get();
+        }
+        catch(InterruptedException expt) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the applier");
         }
+        catch(ExecutionException expt) {
+            if(expt.getCause() instanceof RuntimeException)
+                throw (RuntimeException) expt.getCause();
+            if(expt.getCause() instanceof Error)
+                throw (Error) expt.getCause();
+            throw new IllegalStateException(expt.getCause());
+        }
+    }
+
+    /**
+     * Reads the settings for the FeedRefresher from the settings file. The settings are
+     * refreshThreads, refreshThreadsPerHost, and refreshTimeout in seconds, and for the
+     * FeedScheduler pollMinInterval, pollMaxInterval, and pollDefaultInterval in minutes. The
+     * AutoSaver settings autoSaveDelay and autoSaveMaxDelay in seconds are read here as well.
+     * Settings which are missing keep their default values.
+     *
+     * @param node The root JsonNode of the settings file.
+     */
+    private static void loadRefreshSettings(JsonNode node) {
+        FeedScheduler scheduler = refresher.getScheduler();
+
+        if(node.has("refreshThreads"))
+            refresher.setThreads(node.get("refreshThreads").asInt());
+        if(node.has("refreshThreadsPerHost"))
+            refresher.setThreadsPerHost(node.get("refreshThreadsPerHost").asInt());
+        if(node.has("refreshTimeout"))
+            refresher.setFeedTimeout(node.get("refreshTimeout").asInt() * 1000);
+        if(node.has("pollMinInterval"))
+            scheduler.setMinInterval(node.get("pollMinInterval").asLong() * 60000);
+        if(node.has("pollMaxInterval"))
+            scheduler.setMaxInterval(node.get("pollMaxInterval").asLong() * 60000);
+        if(node.has("pollDefaultInterval"))
+            scheduler.setDefaultInterval(node.get("pollDefaultInterval").asLong() * 60000);
+        if(node.has("autoSaveDelay"))
+            autoSaveDelay = node.get("autoSaveDelay").asLong() * 1000;
+        if(node.has("autoSaveMaxDelay"))
+            autoSaveMaxDelay = node.get("autoSaveMaxDelay").asLong() * 1000;
     }
 
     /**
-     * Takes a String and checks the ArrayList feedLists if any of the FeedList objects has a name
-     * that is the same as the listName argument and returns that FeedList.
+     * Reads the saveFormat setting from the settings file and picks the DataAccessObject. The
+     * format "json" saves everything to a single file with DataAccessObjectJSON, which is the
+     * default, "sharded" saves each FeedList to a file of its own with DataAccessObjectSharded,
+     * "sqlite" saves to an SQLite database with DataAccessObjectSQLite, and "binary" saves a
+     * compact snapshot which loads faster with DataAccessObjectBinary. With the sharded format
+     * the setting lazyLoading loads each FeedList when it is first used, and unloadAfter is the
+     * number of minutes a FeedList is kept loaded after it was last used.
+     *
+     * @param node The root JsonNode of the settings file.
+     */
+    private static void loadSaveFormat(JsonNode node) {
+        String format = node.path("saveFormat").asText("json");
+
+        if(format.equals("sharded") && !(dao instanceof DataAccessObjectSharded))
+            setDao(new DataAccessObjectSharded());
+        else if(format.equals("sqlite") && !(dao instanceof DataAccessObjectSQLite))
+            setDao(new DataAccessObjectSQLite());
+        else if(format.equals("binary") && !(dao instanceof DataAccessObjectBinary))
+            setDao(new DataAccessObjectBinary());
+        else if(format.equals("json") && dao.getClass() != DataAccessObjectJSON.class)
+            setDao(new DataAccessObjectJSON());
+
+        if(dao instanceof DataAccessObjectSharded)
+            ((DataAccessObjectSharded) dao).setLazy(node.path("lazyLoading").asBoolean(false));
+        if(node.has("unloadAfter"))
+            unloadAfter = node.get("unloadAfter").asLong() * 60000;
+    }
+
+    /**
+     * Takes a String and looks up the FeedList in feedLists which has a name that is the same as
+     * the listName argument and returns that FeedList.
      *
      * @param listName  The name of the FeedList to be returned
      * @return          A FeedList object with the name that is the same as listName argument.
      */
     public static FeedList getFeedListByName(String listName) {
-        for(FeedList list : feedLists) {
-            if(list.getName().equals(listName))
-                return list;
+        FeedList list = findFeedList(listName);
+        if(list == null)
+            throw new FeedListDoesNotExist(listName);
+
+        list.markUsed();
+        return list;
+    }
+
+    /**
+     * Returns the FeedList named listName using feedListsByName, which indexes feedLists on the
+     * names of the FeedLists. The index is rebuilt if feedLists has been changed without it, which
+     * is noticed by the size, or if the FeedList found has been renamed.
+     *
+     * @param listName  The name of the FeedList.
+     * @return          The FeedList named listName, or null if there is none.
+     */
+    private static FeedList findFeedList(String listName) {
+        FeedList list = feedListsByName.get(listName);
+
+        if(feedListsByName.size() != feedLists.size() ||
+                (list != null && !list.getName().equals(listName))) {
+            feedListsByName = new HashMap<>();
+            for(FeedList feedList : feedLists) {
+                feedListsByName.putIfAbsent(feedList.getName(), feedList);
+            }
+            list = feedListsByName.get(listName);
         }
-        throw new FeedListDoesNotExist(listName);
+
+        return list;
     }
 
     /**
@@ -190,6 +430,76 @@ public class Configuration {
         return getFeedListByName(listName).getAllItems();
     }
 
+    /**
+     * Returns a window of the Items returned by getAllItemsFromFeedList, so a view can get only the
+     * Items it shows. The cost grows with limit and not with the number of Items in the FeedList.
+     *
+     * @param listName  A String containing the name of the FeedList we want Items from.
+     * @param offset    The position of the first Item to return.
+     * @param limit     The most Items to return.
+     * @return          An ArrayList of at most limit Items, which is empty if offset is past the
+     *                  last Item.
+     */
+    public static ArrayList<Item> getItemsFromFeedList(String listName, int offset, int limit) {
+        return getFeedListByName(listName).getItems(offset, limit);
+    }
+
+    /**
+     * Returns the number of Items in the FeedList with the name specified in listName, which is the
+     * total to page through with getItemsFromFeedList.
+     *
+     * @param listName  A String containing the name of the FeedList.
+     * @return          The number of Items in every Feed of the FeedList.
+     */
+    public static int getItemCountOfFeedList(String listName) {
+        return getFeedListByName(listName).getItemCount();
+    }
+
+    /**
+     * Returns the number of Items in the FeedList with the name specified in listName which have
+     * not been visited. The count is kept by the Feeds, so it can be asked for often.
+     *
+     * @param listName  A String containing the name of the FeedList.
+     * @return          The number of unread Items in every Feed of the FeedList.
+     */
+    public static int getUnreadCountOfFeedList(String listName) {
+        return getFeedListByName(listName).getUnreadCount();
+    }
+
+    /**
+     * Returns the number of starred Items in the FeedList with the name specified in listName.
+     *
+     * @param listName  A String containing the name of the FeedList.
+     * @return          The number of starred Items in every Feed of the FeedList.
+     */
+    public static int getStarredCountOfFeedList(String listName) {
+        return getFeedListByName(listName).getStarredCount();
+    }
+
+    /**
+     * Returns the number of Items in a Feed of the FeedList with the name specified in listName
+     * which have not been visited.
+     *
+     * @param listName          A String containing the name of the FeedList.
+     * @param feedIdentifier    Identifier (URL) of the Feed.
+     * @return                  The number of unread Items in the Feed.
+     */
+    public static int getUnreadCountOfFeed(String listName, String feedIdentifier) {
+        return getFeedFromFeedList(listName, feedIdentifier).getUnreadCount();
+    }
+
+    /**
+     * Returns the number of starred Items in a Feed of the FeedList with the name specified in
+     * listName.
+     *
+     * @param listName          A String containing the name of the FeedList.
+     * @param feedIdentifier    Identifier (URL) of the Feed.
+     * @return                  The number of starred Items in the Feed.
+     */
+    public static int getStarredCountOfFeed(String listName, String feedIdentifier) {
+        return getFeedFromFeedList(listName, feedIdentifier).getStarredCount();
+    }
+
     /**
      * Returns all Feed objects from the FeedList with a name equals to listName.
      *
@@ -201,6 +511,18 @@ public class Configuration {
         return getFeedListByName(listName).getFeeds();
     }
 
+    /**
+     * Returns the Feed with the identifier from the FeedList with a name equals to listName, using
+     * the index of the FeedList instead of going through all of its Feeds.
+     *
+     * @param listName          The name of the FeedList holding the Feed.
+     * @param feedIdentifier    Identifier (URL) of the Feed.
+     * @return                  The Feed with the identifier.
+     */
+    public static Feed getFeedFromFeedList(String listName, String feedIdentifier) {
+        return getFeedListByName(listName).getFeedByUrl(feedIdentifier);
+    }
+
     /**
      * Calls the setSortingRules on the FeedList with a name specified though the listName
      * parameter.
@@ -211,19 +533,28 @@ public class Configuration {
      */
     public static void setSortingRules(String listName, String sorting) {
         getFeedListByName(listName).setSortingRules(sorting);
-        setLastUpdated(new Date());
+        changed();
+        fire(ConfigurationEvent.Type.SORTING_CHANGED, listName, null, null);
     }
 
     /**
      * Calls the setShowVisitedStatus on a Feedlist with a name corresponding to the value of
-     * listName.,
+     * listName. The Feeds which are marked read by hiding the visited status are journaled as in
+     * markFeedRead.
      *
      * @param listName  The name of the Feedlist to be altered
      * @param status    The new show visited status of the FeedList
      */
     public static void setShowVisitedStatus(String listName, boolean status) {
-        getFeedListByName(listName).setShowVisitedStatus(status);
-        setLastUpdated(new Date());
+        LinkedHashMap<String, Long> marked = getFeedListByName(listName)
+                .setShowVisitedStatus(status);
+
+        for(String feedIdentifier : marked.keySet()) {
+            saveReadUpTo(listName, feedIdentifier, marked.get(feedIdentifier));
+        }
+
+        changed();
+        fire(ConfigurationEvent.Type.SETTINGS_CHANGED, listName, null, null);
     }
 
     /**
@@ -238,7 +569,9 @@ public class Configuration {
     public static void setVisited(String listName, String feedIdentifier, String itemId,
                                   boolean status) {
         getFeedListByName(listName).setVisited(feedIdentifier, itemId, status);
-        setLastUpdated(new Date());
+        if(!saveStatus(Journal.VISITED, status, listName, feedIdentifier, itemId))
+            changed();
+        fire(ConfigurationEvent.Type.ITEM_CHANGED, listName, feedIdentifier, itemId);
     }
 
     /**
@@ -253,22 +586,150 @@ public class Configuration {
     public static void setStarred(String listName, String feedIdentifier, String itemId,
                                   boolean status) {
         getFeedListByName(listName).setStarred(feedIdentifier, itemId, status);
-        setLastUpdated(new Date());
+        if(!saveStatus(Journal.STARRED, status, listName, feedIdentifier, itemId))
+            changed();
+        fire(ConfigurationEvent.Type.ITEM_CHANGED, listName, feedIdentifier, itemId);
+    }
+
+    /**
+     * Sets every Item of a Feed as visited without going through the Items, by moving the
+     * watermark the Feed keeps the visited status in. The watermark is appended to the journal
+     * if there is one.
+     *
+     * @param listName          Name of the FeedList holding the Feed.
+     * @param feedIdentifier    Identifier (URL) of the Feed.
+     */
+    public static void markFeedRead(String listName, String feedIdentifier) {
+        long upTo = getFeedListByName(listName).markRead(feedIdentifier);
+        if(!saveReadUpTo(listName, feedIdentifier, upTo))
+            changed();
+        fire(ConfigurationEvent.Type.MARKED_READ, listName, feedIdentifier, null);
+    }
+
+    /**
+     * Sets every Item of every Feed in a FeedList as visited, one Feed at a time as in
+     * markFeedRead, so it takes time in the number of Feeds and not in the number of Items.
+     *
+     * @param listName Name of the FeedList.
+     */
+    public static void markFeedListRead(String listName) {
+        FeedList feedList = getFeedListByName(listName);
+        boolean saved = true;
+
+        for(Feed feed : feedList.getFeeds()) {
+            String feedIdentifier = feed.getUrlToXML();
+            saved &= saveReadUpTo(listName, feedIdentifier, feedList.markRead(feedIdentifier));
+        }
+
+        if(!saved)
+            changed();
+        fire(ConfigurationEvent.Type.MARKED_READ, listName, null, null);
+    }
+
+    /**
+     * Updates lastUpdated after a change and tells the AutoSaver, if it is running. lastUpdated
+     * always moves forward, so a change made in the same millisecond as a snapshot is still seen
+     * as unsaved.
+     */
+    private static void changed() {
+        lastUpdated = new Date(Math.max(System.currentTimeMillis(), lastUpdated.getTime() + 1));
+
+        if(autoSaver != null)
+            autoSaver.changed();
+    }
+
+    /**
+     * Tells every ConfigurationListener about a change, on the thread which made the change.
+     */
+    private static void fire(ConfigurationEvent.Type type, String listName, String feedIdentifier,
+                             String itemId) {
+        ConfigurationEvent event = new ConfigurationEvent(type, listName, feedIdentifier, itemId);
+
+        for(ConfigurationListener listener : listeners) {
+            listener.changed(event);
+        }
+    }
+
+    /**
+     * Adds a ConfigurationListener which is told about each change to the Configuration. It is
+     * told on the thread which made the change, except for the changes of update, load, and reset,
+     * which it is told about through the applier, see setApplier.
+     *
+     * @param listener The ConfigurationListener to add.
+     */
+    public static void addListener(ConfigurationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a ConfigurationListener added with addListener.
+     *
+     * @param listener The ConfigurationListener to remove.
+     */
+    public static void removeListener(ConfigurationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Saves a changed flag right away through the dao if it can save a single Item, and if not
+     * appends it to the journal if there is one. The change is already made, so if it can't be
+     * saved it is only lost if the application stops before the next save.
+     *
+     * A change which is saved this way does not make the Configuration dirty, so it is not worth
+     * a save of the whole Configuration. The journal is compacted by a save once needsCompaction
+     * says it has grown large enough.
+     *
+     * @return True if the change was saved or journaled, false if it needs the next save.
+     */
+    private static boolean saveStatus(char flag, boolean status, String listName,
+                                      String feedIdentifier, String itemId) {
+        try {
+            boolean saved = flag == Journal.VISITED ?
+                    dao.saveVisited(feedIdentifier, itemId, status) :
+                    dao.saveStarred(feedIdentifier, itemId, status);
+
+            if(!saved && journal != null) {
+                journal.append(flag, status, listName, feedIdentifier, itemId);
+                saved = true;
+            }
+
+            return saved;
+        }
+        catch(Exception expt) {
+            expt.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Appends the watermark a Feed was marked read up to to the journal, if there is one. No dao
+     * can save it without saving everything, so without a journal it is saved by the next save.
+     *
+     * @return True if the watermark was journaled, false if it needs the next save.
+     */
+    private static boolean saveReadUpTo(String listName, String feedIdentifier, long upTo) {
+        try {
+            if(journal == null)
+                return false;
+
+            journal.append(Journal.READ, true, listName, feedIdentifier, Long.toString(upTo));
+            return true;
+        }
+        catch(Exception expt) {
+            expt.printStackTrace();
+            return false;
+        }
     }
 
     /**
-     * Iterates though feedLists and returns true if any of the FeedList objects has a name that is
-     * equals to listName.
+     * Returns true if any of the FeedList objects in feedLists has a name that is equals to
+     * listName.
      *
      * @param listName  The name of the FeedList the method is looking for.
      * @return          True if a FeedList with the correct name is found, if not then false.
      */
     private  static boolean feedListExists(String listName) {
-        for(FeedList list : feedLists) {
-            if(list.getName().equals(listName))
-                return true;
-        }
-        return false;
+        return findFeedList(listName) != null;
     }
 
     /*
@@ -282,9 +743,7 @@ public class Configuration {
      * @throws Exception Problems with database.
      */
     public static void reset() throws Exception {
-        dao.setPath("temp.sqlite");
-        feedLists = dao.load();
-        lastUpdated = new Date();
+        load("temp.sqlite");
     }
 
     /**
@@ -293,7 +752,171 @@ public class Configuration {
      * @throws Exception Problems with database.
      */
     public static void save() throws Exception {
-        dao.save(getFeedLists(), getLastUpdated());
+        save(getSnapshot());
+    }
+
+    /**
+     * Calls the save method on DatabaseAccessObjectSQLite with a snapshot from getSnapshot. Used
+     * to save on a background thread while the FeedLists may change. Only one save runs at a time.
+     * A snapshot taken before the one saved last is not saved, since the rotated journals it does
+     * not cover may already have been deleted.
+     *
+     * @param snapshot A Snapshot returned by getSnapshot.
+     * @throws Exception Problems with database.
+     */
+    public static void save(Snapshot snapshot) throws Exception {
+        synchronized(saveLock) {
+            Date lastSaved = dao.getLastSaved();
+            if(lastSaved != null && snapshot.getLastUpdated().before(lastSaved))
+                return;
+
+            dao.save(snapshot.getFeedLists(), snapshot.getLastUpdated());
+
+            if(journal != null)
+                journal.compacted(snapshot.getGeneration());
+        }
+    }
+
+    /**
+     * Changes the path in DatabaseAccessObjectSQLite and calls the save method with a snapshot
+     * from getSnapshot.
+     *
+     * @param snapshot  A Snapshot returned by getSnapshot.
+     * @param path      A String containing the path we want the database to be saved.
+     * @throws Exception Problems with database.
+     */
+    public static void save(Snapshot snapshot, String path) throws Exception {
+        synchronized(saveLock) {
+            dao.setPath(path);
+            dao.save(snapshot.getFeedLists(), snapshot.getLastUpdated());
+
+            if(journal != null)
+                journal.moveTo(path, snapshot.getGeneration());
+        }
+    }
+
+    /**
+     * Saves the Configuration if it has changed since it was last saved. Called from a background
+     * thread, so the snapshot is taken by the applier, which runs it on the thread the FeedLists
+     * are changed on.
+     *
+     * @return True if the Configuration was saved.
+     * @throws Exception Problems with database.
+     */
+    static boolean autoSave() throws Exception {
+        if(!isDirty())
+            return false;
+
+        save(callOnApplier(Configuration::getSnapshot));
+        return true;
+    }
+
+    /**
+     * Same as above, but called by the AutoSaver on its own thread, which waits for the snapshot
+     * through it so the snapshot can be cancelled when the AutoSaver is stopped.
+     *
+     * @param saver The AutoSaver running the save.
+     * @return      True if the Configuration was saved, false if it had not changed or the
+     *              AutoSaver was stopped before the snapshot was taken.
+     * @throws Exception Problems with database.
+     */
+    static boolean autoSave(AutoSaver saver) throws Exception {
+        if(!isDirty())
+            return false;
+
+        FutureTask<Snapshot> task = new FutureTask<>(Configuration::getSnapshot);
+        applier.execute(task);
+
+        Snapshot snapshot = saver.awaitSnapshot(task);
+        if(snapshot == null)
+            return false;
+
+        save(snapshot);
+        return true;
+    }
+
+    /**
+     * Returns true if the Configuration has changed since it was last saved.
+     *
+     * @return True if there are unsaved changes.
+     */
+    public static boolean isDirty() {
+        Date lastSaved = dao.getLastSaved();
+        return lastSaved == null || lastUpdated.after(lastSaved);
+    }
+
+    /**
+     * Starts saving the Configuration in the background after it changes, see AutoSaver.
+     */
+    public static void startAutoSave() {
+        stopAutoSave();
+        autoSaver = new AutoSaver(autoSaveDelay, autoSaveMaxDelay);
+    }
+
+    /**
+     * Stops the AutoSaver and saves the last changes, if any, on the calling thread. The
+     * FeedSchedules of the Feeds polled since the last snapshot are saved as well.
+     */
+    public static void stopAutoSave() {
+        if(autoSaver == null)
+            return;
+
+        try {
+            autoSaver.stop();
+            autoSaver = null;
+
+            if(isDirty() || pollsUnsaved)
+                save(getSnapshot());
+        }
+        catch(Exception expt) {
+            expt.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns copies of every FeedList holding snapshots of their Feeds and Items, see
+     * FeedList.snapshot. The copies don't change when the FeedLists, Feeds, or Items do, so they
+     * can be saved on another thread.
+     *
+     * The journal is rotated, since the changes in it are in the snapshot once it is saved, and
+     * the snapshot is given the generation of the rotated journal.
+     *
+     * @return A Snapshot of the FeedLists.
+     */
+    public static Snapshot getSnapshot() {
+        ArrayList<FeedList> snapshot = new ArrayList<>();
+
+        long generation = 0;
+
+        if(journal != null) {
+            try {
+                generation = journal.rotate();
+
+                // A FeedList which is not loaded is saved without the records it has deferred,
+                // so they are kept in the new journal
+                for(FeedList feedList : feedLists) {
+                    if(feedList.isLoaded())
+                        continue;
+
+                    for(String record : feedList.getDeferred()) {
+                        journal.append(record);
+                    }
+                }
+            }
+            catch(IOException expt) {
+                expt.printStackTrace();
+            }
+        }
+
+        FeedRegistry snapshotRegistry = new FeedRegistry();
+        HashMap<Feed, Feed> snapshots = new HashMap<>();
+        pollsUnsaved = false;
+
+        for(FeedList feedList : feedLists) {
+            snapshot.add(feedList.snapshot(snapshotRegistry, snapshots));
+        }
+
+        return new Snapshot(snapshot, lastUpdated, generation);
     }
 
     /**
@@ -303,20 +926,152 @@ public class Configuration {
      * @throws Exception Problems with database.
      */
     public static void save(String path) throws Exception {
-        dao.setPath(path);
-        dao.save(getFeedLists(), getLastUpdated());
+        save(getSnapshot(), path);
+    }
+
+    /**
+     * Returns true if the Feeds of the FeedList are loaded, so a view can show it without loading
+     * it. A FeedList which is not loaded lazily is always loaded.
+     *
+     * @param listName  The name of the FeedList.
+     * @return          True if the FeedList is loaded.
+     */
+    public static boolean isFeedListLoaded(String listName) {
+        FeedList feedList = findFeedList(listName);
+        if(feedList == null)
+            throw new FeedListDoesNotExist(listName);
+
+        return feedList.isLoaded();
+    }
+
+    /**
+     * Loads a FeedList which is loaded lazily without blocking the calling thread, for when a view
+     * is about to show it. Its file is read on a background thread and the Feeds are installed by
+     * the applier, which then fires FEED_LIST_LOADED. Nothing is done if the FeedList is loaded or
+     * already being loaded, and a FeedList which can't be read is left as it is.
+     *
+     * @param listName The name of the FeedList.
+     */
+    public static void loadFeedListInBackground(String listName) {
+        FeedList feedList = getFeedListByName(listName);
+        FeedList.Loader loader = feedList.getLoader();
+
+        if(feedList.isLoaded() || loader == null || !loading.add(feedList))
+            return;
+
+        feedListLoader.execute(() -> {
+            ArrayList<Feed> read = null;
+
+            try {
+                read = loader.read();
+            }
+            catch(Exception expt) {
+                expt.printStackTrace();
+            }
+
+            ArrayList<Feed> feeds = read;
+            applier.execute(() -> {
+                loading.remove(feedList);
+
+                // The FeedList may have been removed, or replaced by a load, while it was read
+                if(feeds != null && feedLists.contains(feedList) && feedList.install(feeds))
+                    fire(ConfigurationEvent.Type.FEED_LIST_LOADED, feedList.getName(), null, null);
+            });
+        });
+    }
+
+    /**
+     * Unloads the FeedLists which have not been used for unloadAfter milliseconds and are saved
+     * as they are, so their Feeds can be garbage collected. They are loaded again when they are
+     * used.
+     *
+     * @return The number of FeedLists unloaded.
+     */
+    public static int unloadIdleFeedLists() {
+        long idleSince = System.currentTimeMillis() - unloadAfter;
+        int unloaded = 0;
+
+        for(FeedList feedList : feedLists) {
+            if(feedList.isLoaded() && feedList.getLastUsed() <= idleSince && feedList.unload())
+                unloaded++;
+        }
+
+        return unloaded;
+    }
+
+    /**
+     * Returns true if the journal has grown large enough to be compacted by saving.
+     *
+     * @return True if the journal should be compacted.
+     */
+    public static boolean needsCompaction() {
+        return journal != null && journal.getSize() >= compactionThreshold;
     }
 
     /**
      * Changes the path in DatabaseAccessObjectSQLite and then calls the load method. Updates lastUpdated.
      *
+     * The save file is loaded and its journal replayed on the calling thread, and the loaded
+     * FeedLists then replace feedLists through the applier, see setApplier, since feedLists is
+     * only changed on the thread of the applier. No save runs while the save file is loaded.
+     *
      * @param path A String containing the path to the database to be loaded.
      * @throws Exception Problems with database.
      */
     public static void load(String path) throws Exception {
-        dao.setPath(path);
-        feedLists = dao.load();
-        lastUpdated = new Date();
+        FeedRegistry loadedRegistry = new FeedRegistry();
+        ArrayList<FeedList> loaded;
+        Journal loadedJournal;
+
+        synchronized(saveLock) {
+            dao.setPath(path);
+            loaded = dao.load(loadedRegistry);
+            loadedJournal = openJournal(loaded);
+        }
+
+        applier.execute(() -> {
+            closeJournal();
+            registry = loadedRegistry;
+            feedLists = loaded;
+            feedListsByName = new HashMap<>();
+            journal = loadedJournal;
+            lastUpdated = new Date();
+            pollsUnsaved = false;
+            dao.setLastSaved(lastUpdated);
+            fire(ConfigurationEvent.Type.RELOADED, null, null, null);
+        });
+    }
+
+    /**
+     * Opens the journal of the save file at the path of dao and replays it onto the FeedLists
+     * loaded from the save file.
+     *
+     * @param loaded    The FeedLists loaded from the save file.
+     * @return          The Journal of the save file, or null if dao has no path.
+     * @throws IOException If the journal could not be read.
+     */
+    private static Journal openJournal(ArrayList<FeedList> loaded) throws IOException {
+        if(dao.getPath() == null)
+            return null;
+
+        Journal opened = new Journal(dao.getPath());
+        opened.replay(loaded);
+        return opened;
+    }
+
+    /**
+     * Closes the journal of the last loaded save file, if there is one.
+     */
+    private static void closeJournal() {
+        try {
+            if(journal != null)
+                journal.close();
+        }
+        catch(IOException expt) {
+            expt.printStackTrace();
+        }
+
+        journal = null;
     }
 
     /*
@@ -341,6 +1096,45 @@ public class Configuration {
         return dao;
     }
 
+    /**
+     * Access method for refresher.
+     *
+     * @return The FeedRefresher used to update the Feeds.
+     */
+    static FeedRefresher getRefresher() {
+        return refresher;
+    }
+
+    /**
+     * Sets the Executor which applies refreshed Feeds and the new lastUpdated after an update,
+     * see FeedRefresher. It runs its tasks on the thread the FeedLists are changed on, so update
+     * and load read and replace the FeedLists through it, and it must not wait for them.
+     *
+     * @param executor The Executor which applies the results of an update.
+     */
+    public static void setApplier(Executor executor) {
+        applier = executor;
+        refresher.setApplier(executor);
+    }
+
+    /**
+     * Access method for registry.
+     *
+     * @return The FeedRegistry holding the Feeds shared by the FeedLists.
+     */
+    static FeedRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Access method for journal.
+     *
+     * @return The Journal of the loaded save file, or null if nothing has been loaded.
+     */
+    static Journal getJournal() {
+        return journal;
+    }
+
     /**
      * Access method for lastUpdated.
      *
@@ -375,6 +1169,7 @@ public class Configuration {
      */
     static void setFeedLists(ArrayList<FeedList> newFeedLists) {
         feedLists = newFeedLists;
+        feedListsByName = new HashMap<>();
     }
 
     /**
@@ -384,6 +1179,45 @@ public class Configuration {
      */
     static void setDao(DataAccessObject newDao) {
         dao = newDao;
+        journal = null;
+    }
+
+    /**
+     * Mutator method for the delays of the AutoSaver, used by the next startAutoSave.
+     *
+     * @param delay     Milliseconds without changes before a save.
+     * @param maxDelay  The most milliseconds a save is put off after the first unsaved change.
+     */
+    static void setAutoSaveDelays(long delay, long maxDelay) {
+        autoSaveDelay = delay;
+        autoSaveMaxDelay = maxDelay;
+    }
+
+    /**
+     * Mutator method for compactionThreshold.
+     *
+     * @param bytes The size of the journal in bytes at which needsCompaction returns true.
+     */
+    static void setCompactionThreshold(long bytes) {
+        compactionThreshold = bytes;
+    }
+
+    /**
+     * Mutator method for unloadAfter.
+     *
+     * @param millis Milliseconds a FeedList is kept loaded after it was last used.
+     */
+    static void setUnloadAfter(long millis) {
+        unloadAfter = millis;
+    }
+
+    /**
+     * Mutator method for refresher.
+     *
+     * @param newRefresher A FeedRefresher to be set as the new refresher.
+     */
+    static void setRefresher(FeedRefresher newRefresher) {
+        refresher = newRefresher;
     }
 
     /**
@@ -0,0 +1,89 @@
+package system;
+
+/**
+ * Class ConfigurationEvent
+ *
+ * Tells a ConfigurationListener what has changed in the Configuration, so a view only has to
+ * change what shows the changed part. The type tells what happened, and the name of the FeedList,
+ * the URL of the Feed, and the id of the Item tell where, as far as the type needs them. The parts
+ * the type does not need are null.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class ConfigurationEvent {
+    /**
+     * Enum Type
+     *
+     * What has changed.
+     */
+    public enum Type {
+        FEED_LIST_ADDED,    // A FeedList was added
+        FEED_LIST_REMOVED,  // A FeedList was removed
+        FEED_LIST_LOADED,   // A FeedList loaded lazily was loaded in the background
+        FEED_ADDED,         // A Feed was added to a FeedList
+        FEED_REMOVED,       // A Feed was removed from a FeedList
+        ITEMS_ADDED,        // A refresh changed the Items of a Feed, usually by adding some
+        ITEM_CHANGED,       // The visited or starred status of an Item was changed
+        MARKED_READ,        // Every Item of a Feed, or of a FeedList if there is no Feed, was read
+        SORTING_CHANGED,    // The sorting rules of a FeedList were changed
+        SETTINGS_CHANGED,   // The showVisitedStatus of a FeedList was changed
+        RELOADED            // Every FeedList was replaced by a load or a reset
+    }
+
+    private final Type type;
+    private final String listName;
+    private final String feedIdentifier;
+    private final String itemId;
+
+    /**
+     * Constructor
+     *
+     * @param type              What has changed.
+     * @param listName          The name of the FeedList which has changed, or null.
+     * @param feedIdentifier    The URL of the Feed which has changed, or null.
+     * @param itemId            The id of the Item which has changed, or null.
+     */
+    ConfigurationEvent(Type type, String listName, String feedIdentifier, String itemId) {
+        this.type = type;
+        this.listName = listName;
+        this.feedIdentifier = feedIdentifier;
+        this.itemId = itemId;
+    }
+
+    @Override
+    public String toString() {
+        return type + " " + listName + " " + feedIdentifier + " " + itemId;
+    }
+
+    /*
+    ----------------------------------- ACCESSORS AND MUTATORS -------------------------------------
+    */
+
+    /**
+     * @return What has changed.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return The name of the FeedList which has changed, or null for RELOADED.
+     */
+    public String getListName() {
+        return listName;
+    }
+
+    /**
+     * @return The URL of the Feed which has changed, or null if the event is not about a Feed.
+     */
+    public String getFeedIdentifier() {
+        return feedIdentifier;
+    }
+
+    /**
+     * @return The id of the Item which has changed, or null if the event is not ITEM_CHANGED.
+     */
+    public String getItemId() {
+        return itemId;
+    }
+}
@@ -0,0 +1,12 @@
+package system;
+
+/**
+ * Interface ConfigurationListener
+ *
+ * Told by the Configuration each time it changes, see Configuration.addListener.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public interface ConfigurationListener {
+    void changed(ConfigurationEvent event);
+}
@@ -15,11 +15,12 @@ interface DataAccessObject {
     /**
      * Loads from current database and returns the result as an ArrayList containing FeedLists.
      *
+     * @param registry      The FeedRegistry the loaded FeedLists share their Feeds though.
      * @return              An ArrayList containing FeedLists which houses the data loaded from the
      *                      database.
      * @throws Exception    If something goes wrong while loading data from database.
      */
-    ArrayList<FeedList> load() throws Exception;
+    ArrayList<FeedList> load(FeedRegistry registry) throws Exception;
 
     /**
      * Takes data from the ArrayList of FeedLists and inserts it into a save file or database.
@@ -32,6 +33,30 @@ interface DataAccessObject {
      */
     void save(ArrayList<FeedList> feedLists, Date configurationLastUpdate) throws Exception;
 
+    /**
+     * Saves the visited status of a single Item right away, if it can be done without saving
+     * everything.
+     *
+     * @param feedUrl       The URL of the Feed holding the Item.
+     * @param itemId        The id of the Item.
+     * @param status        The new visited status of the Item.
+     * @return              True if the status was saved, false if it is saved by the next save.
+     * @throws Exception    If something goes wrong while saving to database.
+     */
+    boolean saveVisited(String feedUrl, String itemId, boolean status) throws Exception;
+
+    /**
+     * Saves the starred status of a single Item right away, if it can be done without saving
+     * everything.
+     *
+     * @param feedUrl       The URL of the Feed holding the Item.
+     * @param itemId        The id of the Item.
+     * @param status        The new starred status of the Item.
+     * @return              True if the status was saved, false if it is saved by the next save.
+     * @throws Exception    If something goes wrong while saving to database.
+     */
+    boolean saveStarred(String feedUrl, String itemId, boolean status) throws Exception;
+
     /**
      * Mutator method for a path to where we want to save/load the data.
      *
@@ -46,4 +71,20 @@ interface DataAccessObject {
      * @return  A String containing the path to the database/save file.
      */
     String getPath();
+
+    /**
+     * Access method for the lastUpdated of the FeedLists last saved to or loaded from the current
+     * path, which tells if there is anything new to save.
+     *
+     * @return  A Date object with the lastUpdated of the last save.
+     */
+    Date getLastSaved();
+
+    /**
+     * Mutator method for the lastUpdated of the FeedLists last saved to or loaded from the
+     * current path.
+     *
+     * @param lastSaved A Date object with the lastUpdated of the last save.
+     */
+    void setLastSaved(Date lastSaved);
 }
@@ -0,0 +1,402 @@
+package system;
+
+import system.rss.Feed;
+import system.rss.FeedSchedule;
+import system.rss.Item;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Class DataAccessObjectBinary
+ *
+ * Saves the FeedLists to a compact binary snapshot which loads faster than the JSON save file, as
+ * nothing has to be parsed. The file starts with a magic number and the version of the format,
+ * followed by every Feed once and then the FeedLists with the index of each of their Feeds.
+ *
+ * Strings are written as their length in bytes followed by the UTF-8 bytes, where the length -1 is
+ * null. Dates are milliseconds since the epoch, and the visited and starred status of an Item, the
+ * skip days, and the skip hours of a FeedSchedule are packed into bits.
+ *
+ * The file is memory mapped while it is loaded. The descriptions of the Items, which are most of
+ * the file, are copied out undecoded and only decoded the first time they are used. The file is
+ * unmapped when the load is done so it can be replaced by the next save, which is written through
+ * a temporary file like the JSON save file.
+ *
+ * importJSON and exportJSON convert between the two formats.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+class DataAccessObjectBinary implements DataAccessObject {
+    private static final int MAGIC = 0x52535342;    // "RSSB"
+    private static final int VERSION = 1;
+    private static final byte VISITED = 1;
+    private static final byte STARRED = 2;
+    private static final byte SHOW_VISITED_STATUS = 1;
+
+    private String path;
+    private Date lastSaved;
+
+    /**
+     * Loads the FeedLists from the snapshot at path.
+     *
+     * @param registry      The FeedRegistry the loaded FeedLists share their Feeds though.
+     * @return              An ArrayList of the loaded FeedLists.
+     * @throws IOException  If the file can't be read, is not a snapshot, or is of another version.
+     */
+    public ArrayList<FeedList> load(FeedRegistry registry) throws IOException {
+        MappedByteBuffer buffer;
+
+        try(FileChannel channel = FileChannel.open(new File(path).toPath(),
+                StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE)
+                throw new IOException(path + " is too large to be mapped");
+
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        try {
+            if(buffer.remaining() < 8 || buffer.getInt() != MAGIC)
+                throw new IOException(path + " is not a binary save file");
+
+            int version = buffer.getInt();
+            if(version != VERSION)
+                throw new IOException(path + " is of version " + version + ", expected " +
+                        VERSION);
+
+            Feed[] feeds = new Feed[buffer.getInt()];
+            for(int i = 0; i < feeds.length; i++) {
+                feeds[i] = readFeed(buffer);
+            }
+
+            ArrayList<FeedList> feedLists = new ArrayList<>();
+            int count = buffer.getInt();
+
+            for(int i = 0; i < count; i++) {
+                String name = readString(buffer);
+                String sortingRules = readString(buffer);
+                byte flags = buffer.get();
+                FeedList feedList = new FeedList(name, sortingRules,
+                        (flags & SHOW_VISITED_STATUS) != 0, registry);
+
+                int feedCount = buffer.getInt();
+                for(int j = 0; j < feedCount; j++) {
+                    feedList.addFetched(feeds[buffer.getInt()]);
+                }
+
+                feedLists.add(feedList);
+            }
+
+            return feedLists;
+        }
+        catch(BufferUnderflowException | IndexOutOfBoundsException |
+                NegativeArraySizeException | IllegalArgumentException expt) {
+            throw new IOException(path + " is corrupt", expt);
+        }
+        finally {
+            unmap(buffer);
+        }
+    }
+
+    private static Feed readFeed(MappedByteBuffer buffer) {
+        String url = readString(buffer);
+        String title = readString(buffer);
+        String link = readString(buffer);
+        String description = readString(buffer);
+        String image = readString(buffer);
+        String eTag = readString(buffer);
+        String lastModified = readString(buffer);
+
+        int ttl = buffer.getInt();
+        int hours = buffer.getInt();
+        byte days = buffer.get();
+        long syndicationPeriod = buffer.getLong();
+        long lastPolled = buffer.getLong();
+        long nextPoll = buffer.getLong();
+        int failures = buffer.getInt();
+
+        int count = buffer.getInt();
+        ArrayList<Item> items = new ArrayList<>(count);
+
+        for(int i = 0; i < count; i++) {
+            String id = readString(buffer);
+            String itemTitle = readString(buffer);
+            String itemLink = readString(buffer);
+            byte[] itemDescription = readBytes(buffer);
+            long date = buffer.getLong();
+            byte flags = buffer.get();
+
+            items.add(new Item(itemTitle, itemLink, itemDescription, new Date(date), id, url,
+                    (flags & VISITED) != 0, (flags & STARRED) != 0));
+        }
+
+        Feed feed = new Feed(title, link, description, image, url, items);
+        feed.setValidators(eTag, lastModified);
+
+        Set<Integer> skipHours = new TreeSet<>();
+        for(int hour = 0; hour < 24; hour++) {
+            if((hours & (1 << hour)) != 0)
+                skipHours.add(hour);
+        }
+
+        Set<DayOfWeek> skipDays = EnumSet.noneOf(DayOfWeek.class);
+        for(DayOfWeek day : DayOfWeek.values()) {
+            if((days & (1 << day.ordinal())) != 0)
+                skipDays.add(day);
+        }
+
+        FeedSchedule schedule = feed.getSchedule();
+        schedule.setHints(ttl, skipHours, skipDays, syndicationPeriod);
+        schedule.setState(lastPolled, nextPoll, failures);
+        return feed;
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        byte[] bytes = readBytes(buffer);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if(length == -1)
+            return null;
+        if(length > buffer.remaining())
+            throw new BufferUnderflowException();
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Unmaps the buffer right away instead of when it is garbage collected, as some platforms
+     * can't replace a file which is mapped. Nothing may read the buffer afterwards. Where the
+     * buffer can't be unmapped it is left to the garbage collector.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            cleaner.getClass().getMethod("clean").invoke(cleaner);
+        }
+        catch(Exception expt) {
+            // Unmapped when the buffer is garbage collected
+        }
+    }
+
+    /**
+     * Saves the FeedLists to the snapshot at path. A Feed shared by several FeedLists is written
+     * once.
+     *
+     * @param feedLists                 An ArrayList of the FeedLists to save.
+     * @param configurationLastUpdated  A Date object with the last time the FeedLists changed.
+     * @throws IOException              If the file can't be written.
+     */
+    public void save(ArrayList<FeedList> feedLists, Date configurationLastUpdated)
+            throws IOException {
+        LinkedHashMap<String, Integer> indexes = new LinkedHashMap<>();
+        ArrayList<Feed> feeds = new ArrayList<>();
+
+        for(FeedList feedList : feedLists) {
+            for(Feed feed : feedList.getFeeds()) {
+                if(indexes.putIfAbsent(feed.getUrlToXML(), feeds.size()) == null)
+                    feeds.add(feed);
+            }
+        }
+
+        File file = new File(path).getAbsoluteFile();
+        File temp = new File(file.getPath() + ".tmp");
+
+        try {
+            try(FileOutputStream output = new FileOutputStream(temp);
+                DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output,
+                        65536))) {
+                data.writeInt(MAGIC);
+                data.writeInt(VERSION);
+
+                data.writeInt(feeds.size());
+                for(Feed feed : feeds) {
+                    writeFeed(data, feed);
+                }
+
+                data.writeInt(feedLists.size());
+                for(FeedList feedList : feedLists) {
+                    writeString(data, feedList.getName());
+                    writeString(data, feedList.getSortingRules());
+                    data.writeByte(feedList.getShowVisitedStatus() ? SHOW_VISITED_STATUS : 0);
+
+                    data.writeInt(feedList.getFeeds().size());
+                    for(Feed feed : feedList.getFeeds()) {
+                        data.writeInt(indexes.get(feed.getUrlToXML()));
+                    }
+                }
+
+                data.flush();
+                output.getFD().sync();
+            }
+
+            DataAccessObjectJSON.replace(temp, file);
+        }
+        finally {
+            temp.delete();
+        }
+
+        lastSaved = configurationLastUpdated;
+    }
+
+    private static void writeFeed(DataOutputStream data, Feed feed) throws IOException {
+        writeString(data, feed.getUrlToXML());
+        writeString(data, feed.getTitle());
+        writeString(data, feed.getLink());
+        writeString(data, feed.getDescription());
+        writeString(data, feed.getImage());
+        writeString(data, feed.getETag());
+        writeString(data, feed.getLastModified());
+
+        FeedSchedule schedule = feed.getSchedule();
+        int hours = 0;
+        for(int hour : schedule.getSkipHours()) {
+            hours |= 1 << hour;
+        }
+        int days = 0;
+        for(DayOfWeek day : schedule.getSkipDays()) {
+            days |= 1 << day.ordinal();
+        }
+
+        data.writeInt(schedule.getTtl());
+        data.writeInt(hours);
+        data.writeByte(days);
+        data.writeLong(schedule.getSyndicationPeriod());
+        data.writeLong(schedule.getLastPolled());
+        data.writeLong(schedule.getNextPoll());
+        data.writeInt(schedule.getFailures());
+
+        data.writeInt(feed.getItems().size());
+        for(Item item : feed.getItems()) {
+            writeString(data, item.getId());
+            writeString(data, item.getTitle());
+            writeString(data, item.getLink());
+            writeBytes(data, item.getDescriptionUTF8());
+            data.writeLong(item.getDate().getTime());
+            data.writeByte((item.isVisited() ? VISITED : 0) | (item.isStarred() ? STARRED : 0));
+        }
+    }
+
+    private static void writeString(DataOutputStream data, String string) throws IOException {
+        writeBytes(data, string == null ? null : string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream data, byte[] bytes) throws IOException {
+        if(bytes == null) {
+            data.writeInt(-1);
+            return;
+        }
+
+        data.writeInt(bytes.length);
+        data.write(bytes);
+    }
+
+    /**
+     * Replaces the snapshot at path with the FeedLists in a JSON save file.
+     *
+     * @param jsonPath      The path to the JSON save file.
+     * @throws IOException  If a file can't be read or written.
+     */
+    void importJSON(String jsonPath) throws IOException {
+        DataAccessObjectJSON json = new DataAccessObjectJSON();
+        json.setPath(jsonPath);
+        save(json.load(new FeedRegistry()), new Date());
+    }
+
+    /**
+     * Writes the FeedLists in the snapshot at path to a JSON save file.
+     *
+     * @param jsonPath      The path to the JSON save file.
+     * @throws IOException  If a file can't be read or written.
+     */
+    void exportJSON(String jsonPath) throws IOException {
+        DataAccessObjectJSON json = new DataAccessObjectJSON();
+        json.setPath(jsonPath);
+        json.save(load(new FeedRegistry()), new Date());
+    }
+
+    /**
+     * A single Item can't be saved without writing the whole file, so the status is saved by the
+     * next save.
+     *
+     * @return False.
+     */
+    public boolean saveVisited(String feedUrl, String itemId, boolean status) {
+        return false;
+    }
+
+    /**
+     * A single Item can't be saved without writing the whole file, so the status is saved by the
+     * next save.
+     *
+     * @return False.
+     */
+    public boolean saveStarred(String feedUrl, String itemId, boolean status) {
+        return false;
+    }
+
+    /*
+    ----------------------------------- ACCESSORS AND MUTATORS -------------------------------------
+    */
+
+    /**
+     * Accessor method for path.
+     *
+     * @return  A String containing the path to the snapshot.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Accessor method for lastSaved.
+     *
+     * @return  A Date object containing the lastUpdated of the FeedLists last saved to or loaded
+     *          from the current path.
+     */
+    public Date getLastSaved() {
+        return lastSaved;
+    }
+
+    /**
+     * Mutator method for path.
+     *
+     * @param pathParam A String containing the path to the snapshot.
+     */
+    public void setPath(String pathParam) {
+        path = pathParam;
+        lastSaved = new Date(0);
+    }
+
+    /**
+     * Mutator method for lastSaved.
+     *
+     * @param lastSavedParam    A Date object with the lastUpdated of the FeedLists last saved to
+     *                          or loaded from the current path.
+     */
+    public void setLastSaved(Date lastSavedParam) {
+        lastSaved = lastSavedParam;
+    }
+}
@@ -1,128 +1,488 @@
 package system;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectWriter;
 import system.rss.Feed;
+import system.rss.FeedSchedule;
 import system.rss.Item;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DayOfWeek;
 import java.util.*;
 
 /**
  * Class DataAccessObjectJSON
  *
+ * Saves the FeedLists to a JSON file and loads them again. The file holds the full content of
+ * every Feed and its Items, so loading needs no network access. The file is written and read as a
+ * stream of tokens with JsonGenerator and JsonParser, so the document is never built in memory.
+ *
+ * The visited status of the Items is saved as the watermark of each Feed, the date up to which
+ * every Item has been visited, and the ids of the Items toggled on their own. Save files from
+ * before that have a visited flag on each Item, which the Feed turns into a watermark.
+ *
  * @author Axel Nilsson (axnion)
  */
 class DataAccessObjectJSON implements DataAccessObject {
     private String path;
     private Date lastSaved;
+    private boolean prettyPrint;
+    private ObjectMapper mapper;
 
     DataAccessObjectJSON() {
         path = "temp.json";
         lastSaved = new Date(0);
+        prettyPrint = true;
+        mapper = new ObjectMapper();
     }
 
-    public ArrayList<FeedList> load() throws IOException {
+    /**
+     * Loads the FeedLists from the save file. The file is read one token at a time, so only the
+     * FeedList being read is held in memory besides the loaded Feeds.
+     *
+     * @param registry      The FeedRegistry the loaded FeedLists share their Feeds though.
+     * @return              An ArrayList of the loaded FeedLists.
+     * @throws IOException  If the file can't be read or is not a save file.
+     */
+    public ArrayList<FeedList> load(FeedRegistry registry) throws IOException {
         ArrayList<FeedList> feedLists = new ArrayList<>();
-        ObjectMapper objectMapper = new ObjectMapper();
-
-        JsonNode node = objectMapper.readTree(new File(path));
 
-        for(int i = 0; i < node.size(); i++) {
-            String name = node.get(i).get("name").textValue();
-            String sortingRules = node.get(i).get("sortingRules").textValue();
-            boolean showVisitedStatus = node.get(i).get("showVisitedStatus").booleanValue();
+        try(JsonParser parser = mapper.getFactory().createParser(new File(path))) {
+            if(parser.nextToken() != JsonToken.START_ARRAY)
+                throw new JsonParseException(parser, "Expected an array of FeedLists");
 
-            FeedList feedList = new FeedList(name, sortingRules, showVisitedStatus);
-            loadFeeds(node.get(i).get("feeds"), feedList);
-            feedLists.add(feedList);
+            while(parser.nextToken() == JsonToken.START_OBJECT) {
+                feedLists.add(readFeedList(parser, registry));
+            }
         }
 
         return feedLists;
     }
 
-    private void loadFeeds(JsonNode node, FeedList feedList) {
-        for(int i = 0; i < node.size(); i++) {
-            feedList.add(node.get(i).get("urlToXML").textValue());
-            loadItems(node.get(i).get("items"), feedList.get(feedList.size() - 1));
+    FeedList readFeedList(JsonParser parser, FeedRegistry registry) throws IOException {
+        return readFeedList(parser, registry, null);
+    }
+
+    /**
+     * Reads a FeedList from the parser. If feedList is given the Feeds are added to it instead of
+     * to a new FeedList, and the name and settings read are ignored.
+     *
+     * @param parser        A JsonParser positioned at the start of the FeedList object.
+     * @param registry      The FeedRegistry a new FeedList shares its Feeds through.
+     * @param feedList      The FeedList to add the Feeds to, or null to create a new FeedList.
+     * @return              The FeedList the Feeds were added to.
+     * @throws IOException  If the FeedList can't be read.
+     */
+    FeedList readFeedList(JsonParser parser, FeedRegistry registry, FeedList feedList)
+            throws IOException {
+        String name = null;
+        String sortingRules = null;
+        boolean showVisitedStatus = true;
+        ArrayList<SavedFeed> feeds = new ArrayList<>();
+
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            switch(field) {
+                case "name":
+                    name = parser.getText();
+                    break;
+                case "sortingRules":
+                    sortingRules = parser.getText();
+                    break;
+                case "showVisitedStatus":
+                    showVisitedStatus = parser.getBooleanValue();
+                    break;
+                case "feeds":
+                    while(parser.nextToken() == JsonToken.START_OBJECT) {
+                        feeds.add(readFeed(parser));
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
         }
+
+        if(feedList == null)
+            feedList = new FeedList(name, sortingRules, showVisitedStatus, registry);
+
+        for(SavedFeed feed : feeds) {
+            loadFeed(feed, feedList);
+        }
+
+        return feedList;
     }
 
-    private void loadItems(JsonNode node, Feed feed) {
-        ArrayList<Item> items = feed.getItems();
-        boolean found;
+    private SavedFeed readFeed(JsonParser parser) throws IOException {
+        SavedFeed feed = new SavedFeed();
 
-        for(Item item : items) {
-            found = false;
-            for(int i = 0; i < node.size(); i++) {
-                if(item.getId().equals(node.get(i).get("id").textValue())) {
-                    item.setVisited(node.get(i).get("visited").booleanValue());
-                    item.setStarred(node.get(i).get("starred").booleanValue());
-                    found = true;
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+
+            switch(field) {
+                case "title":
+                    feed.title = parser.getText();
+                    break;
+                case "link":
+                    feed.link = parser.getText();
+                    break;
+                case "description":
+                    feed.description = parser.getText();
+                    break;
+                case "image":
+                    feed.image = parser.getText();
+                    break;
+                case "urlToXML":
+                    feed.url = parser.getText();
+                    break;
+                case "eTag":
+                    feed.eTag = token == JsonToken.VALUE_NULL ? null : parser.getText();
+                    break;
+                case "lastModified":
+                    feed.lastModified = token == JsonToken.VALUE_NULL ? null : parser.getText();
                     break;
-                }
+                case "schedule":
+                    feed.schedule = parser.readValueAsTree();
+                    break;
+                case "readUpTo":
+                    feed.readUpTo = parser.getLongValue();
+                    break;
+                case "readExceptions":
+                    while(parser.nextToken() == JsonToken.VALUE_STRING) {
+                        feed.readExceptions.add(parser.getText());
+                    }
+                    break;
+                case "items":
+                    while(parser.nextToken() == JsonToken.START_OBJECT) {
+                        feed.items.add(readItem(parser));
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
             }
+        }
 
-            if(!found) {
-                item.setVisited(false);
-                item.setStarred(false);
+        return feed;
+    }
+
+    private SavedItem readItem(JsonParser parser) throws IOException {
+        SavedItem item = new SavedItem();
+
+        while(parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            switch(field) {
+                case "id":
+                    item.id = parser.getText();
+                    break;
+                case "title":
+                    item.title = parser.getText();
+                    break;
+                case "link":
+                    item.link = parser.getText();
+                    break;
+                case "description":
+                    item.description = parser.getText();
+                    break;
+                case "date":
+                    item.date = parser.getLongValue();
+                    break;
+                case "visited":
+                    item.visited = parser.getBooleanValue();
+                    break;
+                case "starred":
+                    item.starred = parser.getBooleanValue();
+                    break;
+                default:
+                    parser.skipChildren();
             }
         }
+
+        return item;
+    }
+
+    /**
+     * Adds a Feed read from the save file to the FeedList. The content of the Feed is in the save
+     * file so no feed is downloaded, and the Feeds are refreshed later when they are due. Save
+     * files from before the content was stored only have the URL and the status of each Item, so
+     * those Feeds are downloaded and given the saved status.
+     *
+     * @param saved     The Feed read from the save file.
+     * @param feedList  The FeedList the Feed is added to.
+     */
+    private void loadFeed(SavedFeed saved, FeedList feedList) {
+        if(saved.title != null) {
+            feedList.addFetched(saved.createFeed());
+        }
+        else {
+            feedList.add(saved.url);
+            Feed feed = feedList.get(feedList.size() - 1);
+            loadItems(saved.items, feed);
+            loadValidators(saved, feed);
+        }
+
+        loadSchedule(saved.schedule, feedList.get(feedList.size() - 1));
+    }
+
+    /**
+     * Gives the FeedSchedule of the Feed the hints and polling state from the save file. If the
+     * Feed was polled when it was loaded the FeedSchedule is already up to date and is kept.
+     *
+     * @param node  The JsonNode of the schedule in the save file, or null.
+     * @param feed  The Feed that was loaded.
+     */
+    private void loadSchedule(JsonNode node, Feed feed) {
+        FeedSchedule schedule = feed.getSchedule();
+
+        if(node == null || schedule.getLastPolled() != 0)
+            return;
+
+        Set<Integer> skipHours = new TreeSet<>();
+        for(JsonNode hour : node.path("skipHours")) {
+            skipHours.add(hour.asInt());
+        }
+
+        Set<DayOfWeek> skipDays = EnumSet.noneOf(DayOfWeek.class);
+        for(JsonNode day : node.path("skipDays")) {
+            skipDays.add(DayOfWeek.valueOf(day.asText()));
+        }
+
+        schedule.setHints(node.path("ttl").asInt(-1), skipHours, skipDays,
+                node.path("syndicationPeriod").asLong());
+        schedule.setState(node.path("lastPolled").asLong(), node.path("nextPoll").asLong(),
+                node.path("failures").asInt());
+    }
+
+    /**
+     * Gives a downloaded Feed the ETag and Last-Modified validators from the save file. The Feed
+     * was just fetched, so if the server sent validators of its own those are newer and are kept.
+     * The saved validators are also ignored if the fetch gave no Items, since a not modified answer
+     * would then leave the Feed empty.
+     *
+     * @param saved The Feed read from the save file.
+     * @param feed  The Feed that was loaded.
+     */
+    private void loadValidators(SavedFeed saved, Feed feed) {
+        if(feed.getETag() != null || feed.getLastModified() != null || feed.getItems().isEmpty())
+            return;
+
+        feed.setValidators(saved.eTag, saved.lastModified);
+    }
+
+    /**
+     * Gives the Items of a downloaded Feed the visited and starred status from the save file.
+     * Items which are not in the save file are new and are set to not visited.
+     */
+    private void loadItems(ArrayList<SavedItem> savedItems, Feed feed) {
+        HashMap<String, SavedItem> saved = new HashMap<>();
+        for(SavedItem item : savedItems) {
+            saved.put(item.id, item);
+        }
+
+        for(Item item : feed.getItems()) {
+            SavedItem savedItem = saved.get(item.getId());
+
+            item.setVisited(savedItem != null && savedItem.visited);
+            item.setStarred(savedItem != null && savedItem.starred);
+        }
+        feed.statusChanged();
     }
 
+    /**
+     * Saves the FeedLists to the save file. The file is written one FeedList, Feed, and Item at a
+     * time without building the whole document in memory first.
+     *
+     * The FeedLists are written to a temporary file next to the save file, which is forced to the
+     * disk and then renamed over the save file. If the application stops while saving the old save
+     * file is left as it was.
+     *
+     * @param feedLists                 An ArrayList of the FeedLists to save.
+     * @param configurationLastUpdated  A Date object with the last time the FeedLists changed.
+     * @throws IOException              If the file can't be written.
+     */
     public void save(ArrayList<FeedList> feedLists, Date configurationLastUpdated)
             throws IOException {
-        Map[] feedListMaps = new Map[feedLists.size()];
+        write(new File(path), generator -> {
+            generator.writeStartArray();
+            for(FeedList feedList : feedLists) {
+                writeFeedList(generator, feedList);
+            }
+            generator.writeEndArray();
+        });
 
-        for(int i = 0; i < feedLists.size(); i++) {
-            feedListMaps[i] = createFeedListMap(feedLists.get(i));
-        }
+        lastSaved = configurationLastUpdated;
+    }
 
-        ObjectMapper mapper = new ObjectMapper();
-        ObjectWriter writer = mapper.writer(new DefaultPrettyPrinter());
-        writer.writeValue(new File(path), feedListMaps);
+    /**
+     * A single Item can't be saved without writing the whole file, so the status is saved by the
+     * next save.
+     *
+     * @return False.
+     */
+    public boolean saveVisited(String feedUrl, String itemId, boolean status) {
+        return false;
     }
 
-    private Map<String, Object> createFeedListMap(FeedList feedList) {
-        Map[] feedMaps = new Map[feedList.getFeeds().size()];
+    /**
+     * A single Item can't be saved without writing the whole file, so the status is saved by the
+     * next save.
+     *
+     * @return False.
+     */
+    public boolean saveStarred(String feedUrl, String itemId, boolean status) {
+        return false;
+    }
+
+    /**
+     * Writes a JSON file through a temporary file which is forced to the disk and then renamed
+     * over file.
+     *
+     * @param file      The file to write.
+     * @param content   Writes the content of the file to the JsonGenerator.
+     * @throws IOException If the file can't be written.
+     */
+    void write(File file, Content content) throws IOException {
+        file = file.getAbsoluteFile();
+        File temp = new File(file.getPath() + ".tmp");
+
+        try {
+            try(FileOutputStream output = new FileOutputStream(temp);
+                JsonGenerator generator = mapper.getFactory().createGenerator(output,
+                        JsonEncoding.UTF8)) {
+                if(prettyPrint)
+                    generator.setPrettyPrinter(new DefaultPrettyPrinter());
 
-        for(int i = 0; i < feedList.getFeeds().size(); i++) {
-            feedMaps[i] = createFeedMap(feedList.getFeeds().get(i));
+                content.write(generator);
+
+                generator.flush();
+                output.getFD().sync();
+            }
+
+            replace(temp, file);
+        }
+        finally {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Renames temp to file, replacing file in a single step where the file system allows it, and
+     * forces the rename to the disk.
+     */
+    static void replace(File temp, File file) throws IOException {
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(AtomicMoveNotSupportedException expt) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        // Not every platform can open a directory to force it, the rename is then left to the OS
+        try(FileChannel directory = FileChannel.open(file.getParentFile().toPath(),
+                StandardOpenOption.READ)) {
+            directory.force(true);
         }
+        catch(IOException expt) {
+            // Nothing more can be done
+        }
+    }
 
-        Map<String, Object> feedListMap = new HashMap<>();
-        feedListMap.put("name", feedList.getName());
-        feedListMap.put("sortingRules", feedList.getSortingRules());
-        feedListMap.put("showVisitedStatus", feedList.getShowVisitedStatus());
-        feedListMap.put("feeds", feedMaps);
+    void writeFeedList(JsonGenerator generator, FeedList feedList) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("name", feedList.getName());
+        generator.writeStringField("sortingRules", feedList.getSortingRules());
+        generator.writeBooleanField("showVisitedStatus", feedList.getShowVisitedStatus());
 
-        return feedListMap;
+        generator.writeArrayFieldStart("feeds");
+        for(Feed feed : feedList.getFeeds()) {
+            writeFeed(generator, feed);
+        }
+        generator.writeEndArray();
+
+        generator.writeEndObject();
     }
 
-    private Map<String, Object> createFeedMap(Feed feed) {
-        Map[] itemMaps = new Map[feed.getItems().size()];
+    private void writeFeed(JsonGenerator generator, Feed feed) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("urlToXML", feed.getUrlToXML());
+        generator.writeStringField("title", feed.getTitle());
+        generator.writeStringField("link", feed.getLink());
+        generator.writeStringField("description", feed.getDescription());
+        generator.writeStringField("image", feed.getImage());
+
+        if(feed.getETag() != null)
+            generator.writeStringField("eTag", feed.getETag());
+        if(feed.getLastModified() != null)
+            generator.writeStringField("lastModified", feed.getLastModified());
 
-        for(int i = 0; i < feed.getItems().size(); i++) {
-            itemMaps[i] = createItemMap(feed.getItems().get(i));
+        writeSchedule(generator, feed.getSchedule());
+
+        generator.writeNumberField("readUpTo", feed.getReadUpTo());
+        generator.writeArrayFieldStart("readExceptions");
+        for(String itemId : feed.getReadExceptions()) {
+            generator.writeString(itemId);
         }
+        generator.writeEndArray();
 
-        Map<String, Object> feedMap = new HashMap<>();
-        feedMap.put("urlToXML", feed.getUrlToXML());
-        feedMap.put("items", itemMaps);
+        generator.writeArrayFieldStart("items");
+        for(Item item : feed.getItems()) {
+            writeItem(generator, item);
+        }
+        generator.writeEndArray();
 
-        return feedMap;
+        generator.writeEndObject();
     }
 
-    private Map<String, Object> createItemMap(Item item) {
-        Map<String, Object> itemMap = new HashMap<>();
-        itemMap.put("id", item.getId());
-        itemMap.put("visited", item.isVisited());
-        itemMap.put("starred", item.isStarred());
+    private void writeSchedule(JsonGenerator generator, FeedSchedule schedule)
+            throws IOException {
+        generator.writeObjectFieldStart("schedule");
+        generator.writeNumberField("ttl", schedule.getTtl());
+
+        generator.writeArrayFieldStart("skipHours");
+        for(int hour : schedule.getSkipHours()) {
+            generator.writeNumber(hour);
+        }
+        generator.writeEndArray();
 
-        return itemMap;
+        generator.writeArrayFieldStart("skipDays");
+        for(DayOfWeek day : schedule.getSkipDays()) {
+            generator.writeString(day.name());
+        }
+        generator.writeEndArray();
+
+        generator.writeNumberField("syndicationPeriod", schedule.getSyndicationPeriod());
+        generator.writeNumberField("lastPolled", schedule.getLastPolled());
+        generator.writeNumberField("nextPoll", schedule.getNextPoll());
+        generator.writeNumberField("failures", schedule.getFailures());
+        generator.writeEndObject();
+    }
+
+    private void writeItem(JsonGenerator generator, Item item) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("id", item.getId());
+        generator.writeStringField("title", item.getTitle());
+        generator.writeStringField("link", item.getLink());
+        generator.writeStringField("description", item.getDescription());
+        generator.writeNumberField("date", item.getDate().getTime());
+        generator.writeBooleanField("starred", item.isStarred());
+        generator.writeEndObject();
     }
 
     /*
@@ -141,12 +501,32 @@ class DataAccessObjectJSON implements DataAccessObject {
     /**
      * Accessor method for lastSaved.
      *
-     * @return  A Date object containing the last time this object saved to the current path.
+     * @return  A Date object containing the lastUpdated of the FeedLists last saved to or loaded
+     *          from the current path.
      */
-    Date getLastSaved() {
+    public Date getLastSaved() {
         return lastSaved;
     }
 
+    /**
+     * Accessor method for prettyPrint.
+     *
+     * @return  True if the save file is indented to be read by humans.
+     */
+    boolean isPrettyPrint() {
+        return prettyPrint;
+    }
+
+    /**
+     * Mutator method for prettyPrint. A save file without indentation is smaller and faster to
+     * write.
+     *
+     * @param prettyPrint   True if the save file should be indented to be read by humans.
+     */
+    void setPrettyPrint(boolean prettyPrint) {
+        this.prettyPrint = prettyPrint;
+    }
+
     /**
      * Mutator method for path.
      *
@@ -160,10 +540,78 @@ class DataAccessObjectJSON implements DataAccessObject {
     /**
      * Mutator method for lastsaved.
      *
-     * @param lastSavedParam    A Date object to be set as the last time this object last saved to
-     *                          current path.
+     * @param lastSavedParam    A Date object with the lastUpdated of the FeedLists last saved to
+     *                          or loaded from the current path.
      */
-    void setLastSaved(Date lastSavedParam) {
+    public void setLastSaved(Date lastSavedParam) {
         lastSaved = lastSavedParam;
     }
+
+    /**
+     * Access method for mapper.
+     *
+     * @return The ObjectMapper creating the JsonParsers and JsonGenerators.
+     */
+    ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    /**
+     * Interface Content
+     *
+     * Writes the content of a file, see write.
+     */
+    interface Content {
+        void write(JsonGenerator generator) throws IOException;
+    }
+
+    /**
+     * Class SavedFeed
+     *
+     * A Feed as read from the save file, before it is added to its FeedList.
+     */
+    private static class SavedFeed {
+        private String title;
+        private String link = "";
+        private String description = "";
+        private String image = "";
+        private String url;
+        private String eTag;
+        private String lastModified;
+        private JsonNode schedule;
+        private Long readUpTo;      // Null in save files with a visited flag on each Item
+        private ArrayList<String> readExceptions = new ArrayList<>();
+        private ArrayList<SavedItem> items = new ArrayList<>();
+
+        private Feed createFeed() {
+            ArrayList<Item> feedItems = new ArrayList<>(items.size());
+
+            for(SavedItem item : items) {
+                feedItems.add(new Item(item.title, item.link, item.description,
+                        new Date(item.date), item.id, url, item.visited, item.starred));
+            }
+
+            Feed feed = new Feed(title, link, description, image, url, feedItems);
+            feed.setValidators(eTag, lastModified);
+
+            if(readUpTo != null)
+                feed.restoreReadState(readUpTo, readExceptions);
+            return feed;
+        }
+    }
+
+    /**
+     * Class SavedItem
+     *
+     * An Item as read from the save file.
+     */
+    private static class SavedItem {
+        private String id = "";
+        private String title = "";
+        private String link = "";
+        private String description = "";
+        private long date;
+        private boolean visited;
+        private boolean starred;
+    }
 }
@@ -0,0 +1,483 @@
+package system;
+
+import system.rss.Feed;
+import system.rss.FeedSchedule;
+import system.rss.Item;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Class DataAccessObjectSQLite
+ *
+ * Saves the FeedLists to an SQLite database. Every Feed and every Item is a row of its own, so
+ * unlike the JSON save files a save only writes what has changed:
+ *
+ * - The FeedLists and which Feeds they hold are small and are written on every save.
+ * - A Feed whose version or FeedSchedule has changed since it was last saved or loaded has its
+ *   row and Items upserted. A refresh which finds new Items in many Feeds is written as one
+ *   transaction with the upserts batched.
+ * - The visited and starred status of an Item is updated in its row right away through
+ *   saveVisited and saveStarred, without waiting for a save.
+ *
+ * Items are indexed on their Feed and id, which is their primary key, and on their date. The
+ * database is in WAL mode, so a save does not rewrite the database file and a crash while saving
+ * leaves the last committed save.
+ *
+ * The connection is opened on the first use of a path and is kept open until the path changes.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+class DataAccessObjectSQLite implements DataAccessObject {
+    private static final String[] SCHEMA = {
+            "CREATE TABLE IF NOT EXISTS feedLists (name TEXT PRIMARY KEY, position INTEGER, " +
+                    "sortingRules TEXT, showVisitedStatus INTEGER)",
+            "CREATE TABLE IF NOT EXISTS feedListFeeds (feedList TEXT, feed TEXT, position INTEGER, " +
+                    "PRIMARY KEY(feedList, feed))",
+            "CREATE TABLE IF NOT EXISTS feeds (url TEXT PRIMARY KEY, title TEXT, link TEXT, " +
+                    "description TEXT, image TEXT, eTag TEXT, lastModified TEXT, ttl INTEGER, " +
+                    "skipHours TEXT, skipDays TEXT, syndicationPeriod INTEGER, " +
+                    "lastPolled INTEGER, nextPoll INTEGER, failures INTEGER)",
+            "CREATE TABLE IF NOT EXISTS items (feed TEXT, id TEXT, title TEXT, link TEXT, " +
+                    "description TEXT, date INTEGER, visited INTEGER, starred INTEGER, " +
+                    "position INTEGER, saved INTEGER, PRIMARY KEY(feed, id))",
+            "CREATE INDEX IF NOT EXISTS itemsByDate ON items(date)"
+    };
+
+    private String path;
+    private Date lastSaved;
+    private Connection connection;
+    private HashMap<String, ArrayList<Long>> savedVersions;
+    private long saves;
+    private int written;
+
+    DataAccessObjectSQLite() {
+        path = "temp.sqlite";
+        lastSaved = new Date(0);
+        savedVersions = new HashMap<>();
+    }
+
+    /**
+     * Loads the FeedLists from the database. The rows are read one at a time and Items are read in
+     * the order of their Feed, so only the Feeds and Items themselves are held in memory.
+     *
+     * @param registry      The FeedRegistry the loaded FeedLists share their Feeds though.
+     * @return              An ArrayList of the loaded FeedLists.
+     * @throws SQLException If the database can't be read.
+     */
+    public synchronized ArrayList<FeedList> load(FeedRegistry registry) throws SQLException {
+        Connection connection = getConnection();
+        LinkedHashMap<String, Feed> feeds = new LinkedHashMap<>();
+        ArrayList<FeedList> feedLists = new ArrayList<>();
+
+        try(Statement statement = connection.createStatement()) {
+            try(ResultSet rows = statement.executeQuery("SELECT * FROM feeds")) {
+                while(rows.next()) {
+                    feeds.put(rows.getString("url"), readFeed(rows));
+                }
+            }
+
+            try(ResultSet rows = statement.executeQuery(
+                    "SELECT * FROM items ORDER BY feed, position")) {
+                while(rows.next()) {
+                    Feed feed = feeds.get(rows.getString("feed"));
+                    if(feed != null)
+                        feed.getItems().add(readItem(rows));
+                }
+            }
+
+            try(ResultSet rows = statement.executeQuery(
+                    "SELECT * FROM feedLists ORDER BY position")) {
+                while(rows.next()) {
+                    feedLists.add(new FeedList(rows.getString("name"),
+                            rows.getString("sortingRules"),
+                            rows.getInt("showVisitedStatus") != 0, registry));
+                }
+            }
+        }
+
+        try(PreparedStatement select = connection.prepareStatement(
+                "SELECT feed FROM feedListFeeds WHERE feedList = ? ORDER BY position")) {
+            for(FeedList feedList : feedLists) {
+                select.setString(1, feedList.getName());
+
+                try(ResultSet rows = select.executeQuery()) {
+                    while(rows.next()) {
+                        Feed feed = feeds.get(rows.getString("feed"));
+                        if(feed != null)
+                            feedList.addFetched(feed);
+                    }
+                }
+            }
+        }
+
+        savedVersions.clear();
+        for(FeedList feedList : feedLists) {
+            for(Feed feed : feedList.getFeeds()) {
+                savedVersions.put(feed.getUrlToXML(), getVersions(feed));
+            }
+        }
+
+        return feedLists;
+    }
+
+    private Feed readFeed(ResultSet rows) throws SQLException {
+        Feed feed = new Feed(rows.getString("title"), rows.getString("link"),
+                rows.getString("description"), rows.getString("image"), rows.getString("url"),
+                new ArrayList<>());
+        feed.setValidators(rows.getString("eTag"), rows.getString("lastModified"));
+
+        Set<Integer> skipHours = new TreeSet<>();
+        for(String hour : rows.getString("skipHours").split(",")) {
+            if(!hour.isEmpty())
+                skipHours.add(Integer.parseInt(hour));
+        }
+
+        Set<DayOfWeek> skipDays = EnumSet.noneOf(DayOfWeek.class);
+        for(String day : rows.getString("skipDays").split(",")) {
+            if(!day.isEmpty())
+                skipDays.add(DayOfWeek.valueOf(day));
+        }
+
+        FeedSchedule schedule = feed.getSchedule();
+        schedule.setHints(rows.getInt("ttl"), skipHours, skipDays,
+                rows.getLong("syndicationPeriod"));
+        schedule.setState(rows.getLong("lastPolled"), rows.getLong("nextPoll"),
+                rows.getInt("failures"));
+
+        return feed;
+    }
+
+    private Item readItem(ResultSet rows) throws SQLException {
+        return new Item(rows.getString("title"), rows.getString("link"),
+                rows.getString("description"), new Date(rows.getLong("date")),
+                rows.getString("id"), rows.getString("feed"), rows.getInt("visited") != 0,
+                rows.getInt("starred") != 0);
+    }
+
+    /**
+     * Saves the FeedLists to the database in one transaction. The FeedLists and the Feeds they
+     * hold are rewritten, while only the Feeds which have changed since they were last saved or
+     * loaded have their Items upserted. Feeds and Items which are no longer in any FeedList are
+     * deleted.
+     *
+     * @param feedLists                 An ArrayList of the FeedLists to save.
+     * @param configurationLastUpdated  A Date object with the last time the FeedLists changed.
+     * @throws SQLException             If the database can't be written.
+     */
+    public synchronized void save(ArrayList<FeedList> feedLists, Date configurationLastUpdated)
+            throws SQLException {
+        Connection connection = getConnection();
+        LinkedHashMap<String, Feed> feeds = new LinkedHashMap<>();
+        HashMap<String, ArrayList<Long>> versions = new HashMap<>();
+        long save = ++saves;
+        written = 0;
+
+        try {
+            try(Statement statement = connection.createStatement()) {
+                statement.executeUpdate("DELETE FROM feedLists");
+                statement.executeUpdate("DELETE FROM feedListFeeds");
+            }
+
+            try(PreparedStatement insertFeedList = connection.prepareStatement(
+                    "INSERT INTO feedLists VALUES (?, ?, ?, ?)");
+                PreparedStatement insertFeed = connection.prepareStatement(
+                        "INSERT INTO feedListFeeds VALUES (?, ?, ?)")) {
+                for(int i = 0; i < feedLists.size(); i++) {
+                    FeedList feedList = feedLists.get(i);
+                    insertFeedList.setString(1, feedList.getName());
+                    insertFeedList.setInt(2, i);
+                    insertFeedList.setString(3, feedList.getSortingRules());
+                    insertFeedList.setInt(4, feedList.getShowVisitedStatus() ? 1 : 0);
+                    insertFeedList.addBatch();
+
+                    for(int j = 0; j < feedList.size(); j++) {
+                        Feed feed = feedList.get(j);
+                        insertFeed.setString(1, feedList.getName());
+                        insertFeed.setString(2, feed.getUrlToXML());
+                        insertFeed.setInt(3, j);
+                        insertFeed.addBatch();
+                        feeds.putIfAbsent(feed.getUrlToXML(), feed);
+                    }
+                }
+
+                insertFeedList.executeBatch();
+                insertFeed.executeBatch();
+            }
+
+            for(Feed feed : feeds.values()) {
+                ArrayList<Long> feedVersions = getVersions(feed);
+
+                if(!feedVersions.equals(savedVersions.get(feed.getUrlToXML()))) {
+                    writeFeed(connection, feed, save);
+                    written++;
+                }
+
+                versions.put(feed.getUrlToXML(), feedVersions);
+            }
+
+            try(Statement statement = connection.createStatement()) {
+                statement.executeUpdate(
+                        "DELETE FROM feeds WHERE url NOT IN (SELECT feed FROM feedListFeeds)");
+                statement.executeUpdate(
+                        "DELETE FROM items WHERE feed NOT IN (SELECT url FROM feeds)");
+            }
+
+            connection.commit();
+        }
+        catch(SQLException expt) {
+            connection.rollback();
+            throw expt;
+        }
+
+        savedVersions = versions;
+        lastSaved = configurationLastUpdated;
+    }
+
+    /**
+     * Upserts the row of a Feed and its Items. Items which are no longer in the Feed are the ones
+     * not written by this save, and are deleted.
+     */
+    private void writeFeed(Connection connection, Feed feed, long save) throws SQLException {
+        FeedSchedule schedule = feed.getSchedule();
+
+        try(PreparedStatement insert = connection.prepareStatement(
+                "INSERT OR REPLACE INTO feeds VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            insert.setString(1, feed.getUrlToXML());
+            insert.setString(2, feed.getTitle());
+            insert.setString(3, feed.getLink());
+            insert.setString(4, feed.getDescription());
+            insert.setString(5, feed.getImage());
+            insert.setString(6, feed.getETag());
+            insert.setString(7, feed.getLastModified());
+            insert.setInt(8, schedule.getTtl());
+            insert.setString(9, join(schedule.getSkipHours()));
+            insert.setString(10, join(schedule.getSkipDays()));
+            insert.setLong(11, schedule.getSyndicationPeriod());
+            insert.setLong(12, schedule.getLastPolled());
+            insert.setLong(13, schedule.getNextPoll());
+            insert.setInt(14, schedule.getFailures());
+            insert.executeUpdate();
+        }
+
+        // SQLite 3.8 has no ON CONFLICT DO UPDATE, so an Item is updated and inserted if missing
+        try(PreparedStatement update = connection.prepareStatement(
+                "UPDATE items SET title = ?, link = ?, description = ?, date = ?, visited = ?, " +
+                        "starred = ?, position = ?, saved = ? WHERE feed = ? AND id = ?");
+            PreparedStatement insert = connection.prepareStatement(
+                    "INSERT OR IGNORE INTO items (title, link, description, date, visited, " +
+                            "starred, position, saved, feed, id) " +
+                            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            ArrayList<Item> items = feed.getItems();
+
+            for(int i = 0; i < items.size(); i++) {
+                setItem(update, items.get(i), i, save, feed.getUrlToXML());
+                update.addBatch();
+                setItem(insert, items.get(i), i, save, feed.getUrlToXML());
+                insert.addBatch();
+            }
+
+            update.executeBatch();
+            insert.executeBatch();
+        }
+
+        try(PreparedStatement delete = connection.prepareStatement(
+                "DELETE FROM items WHERE feed = ? AND saved <> ?")) {
+            delete.setString(1, feed.getUrlToXML());
+            delete.setLong(2, save);
+            delete.executeUpdate();
+        }
+    }
+
+    private static void setItem(PreparedStatement statement, Item item, int position, long save,
+                                String feedUrl) throws SQLException {
+        statement.setString(1, item.getTitle());
+        statement.setString(2, item.getLink());
+        statement.setString(3, item.getDescription());
+        statement.setLong(4, item.getDate().getTime());
+        statement.setInt(5, item.isVisited() ? 1 : 0);
+        statement.setInt(6, item.isStarred() ? 1 : 0);
+        statement.setInt(7, position);
+        statement.setLong(8, save);
+        statement.setString(9, feedUrl);
+        statement.setString(10, item.getId());
+    }
+
+    /**
+     * Updates the visited status of an Item in its row.
+     *
+     * @param feedUrl   The URL of the Feed holding the Item.
+     * @param itemId    The id of the Item.
+     * @param status    The new visited status.
+     * @return          True, the status is saved.
+     * @throws SQLException If the database can't be written.
+     */
+    public synchronized boolean saveVisited(String feedUrl, String itemId, boolean status)
+            throws SQLException {
+        return updateItem("UPDATE items SET visited = ? WHERE feed = ? AND id = ?", feedUrl,
+                itemId, status);
+    }
+
+    /**
+     * Updates the starred status of an Item in its row.
+     *
+     * @param feedUrl   The URL of the Feed holding the Item.
+     * @param itemId    The id of the Item.
+     * @param status    The new starred status.
+     * @return          True, the status is saved.
+     * @throws SQLException If the database can't be written.
+     */
+    public synchronized boolean saveStarred(String feedUrl, String itemId, boolean status)
+            throws SQLException {
+        return updateItem("UPDATE items SET starred = ? WHERE feed = ? AND id = ?", feedUrl,
+                itemId, status);
+    }
+
+    private boolean updateItem(String sql, String feedUrl, String itemId, boolean status)
+            throws SQLException {
+        Connection connection = getConnection();
+
+        try(PreparedStatement update = connection.prepareStatement(sql)) {
+            update.setInt(1, status ? 1 : 0);
+            update.setString(2, feedUrl);
+            update.setString(3, itemId);
+            update.executeUpdate();
+            connection.commit();
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the versions which tell if a Feed has changed, the version of the Feed followed by
+     * the next poll and failures of its FeedSchedule.
+     */
+    private static ArrayList<Long> getVersions(Feed feed) {
+        ArrayList<Long> versions = new ArrayList<>();
+        versions.add(feed.getVersion());
+        versions.add(feed.getSchedule().getNextPoll());
+        versions.add((long) feed.getSchedule().getFailures());
+        return versions;
+    }
+
+    private static String join(Set<?> values) {
+        StringBuilder joined = new StringBuilder();
+
+        for(Object value : values) {
+            if(joined.length() > 0)
+                joined.append(',');
+            joined.append(value);
+        }
+
+        return joined.toString();
+    }
+
+    /**
+     * Opens the connection to the database at path if it is not open, and creates the tables if
+     * they don't exist.
+     */
+    private Connection getConnection() throws SQLException {
+        if(connection != null)
+            return connection;
+
+        connection = DriverManager.getConnection("jdbc:sqlite:" + path);
+
+        try(Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode = WAL");
+            statement.execute("PRAGMA synchronous = NORMAL");
+
+            for(String table : SCHEMA) {
+                statement.executeUpdate(table);
+            }
+        }
+
+        connection.setAutoCommit(false);
+        connection.commit();
+        return connection;
+    }
+
+    /**
+     * Closes the connection to the database. It is opened again when the database is next used.
+     *
+     * @throws SQLException If the connection can't be closed.
+     */
+    synchronized void close() throws SQLException {
+        if(connection != null) {
+            connection.close();
+            connection = null;
+        }
+    }
+
+    /*
+    ----------------------------------- ACCESSORS AND MUTATORS -------------------------------------
+    */
+
+    /**
+     * Accessor method for path.
+     *
+     * @return  A String containing the path to the database.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Accessor method for lastSaved.
+     *
+     * @return  A Date object containing the lastUpdated of the FeedLists last saved to or loaded
+     *          from the current path.
+     */
+    public Date getLastSaved() {
+        return lastSaved;
+    }
+
+    /**
+     * Access method for written.
+     *
+     * @return The number of Feeds whose Items were written by the last save.
+     */
+    int getWritten() {
+        return written;
+    }
+
+    /**
+     * Mutator method for path. The connection to the old database is closed, and every Feed is
+     * written by the next save.
+     *
+     * @param path  A String containing the path to the database.
+     */
+    public synchronized void setPath(String path) {
+        try {
+            close();
+        }
+        catch(SQLException expt) {
+            expt.printStackTrace();
+        }
+
+        this.path = path;
+        savedVersions = new HashMap<>();
+        setLastSaved(new Date(0));
+    }
+
+    /**
+     * Mutator method for lastSaved.
+     *
+     * @param lastSavedParam    A Date object with the lastUpdated of the FeedLists last saved to
+     *                          or loaded from the current path.
+     */
+    public void setLastSaved(Date lastSavedParam) {
+        lastSaved = lastSavedParam;
+    }
+}
@@ -0,0 +1,486 @@
+package system;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import system.rss.Feed;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class DataAccessObjectSharded
+ *
+ * Saves each FeedList to a file of its own, so a save only writes the FeedLists which have changed
+ * since the last save instead of every FeedList, Feed, and Item. The files are kept in a directory
+ * next to the save file, named after the save file with ".lists" added, and hold a FeedList in the
+ * same format as the FeedLists in a DataAccessObjectJSON save file. The save file itself is a small
+ * manifest with the name, settings, and file of each FeedList in order.
+ *
+ * A FeedList has changed when its version, or the version or FeedSchedule of one of its Feeds, is
+ * not the same as when it was last saved or loaded. A Feed shared by several FeedLists is written
+ * to the file of each of them.
+ *
+ * Every file is written through a temporary file and renamed into place. The file of a new
+ * FeedList is written before the manifest pointing at it, and the files of removed FeedLists are
+ * deleted after, so the manifest always points at files which exist. The files are loaded in
+ * parallel.
+ *
+ * If lazy is set the files are not loaded with the manifest. Each FeedList is created from the
+ * manifest with a ShardLoader, which reads its file the first time its Feeds are needed or when
+ * Configuration loads it in the background, and a FeedList which is not loaded is not written by
+ * a save since its file has not changed.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+class DataAccessObjectSharded extends DataAccessObjectJSON {
+    private LinkedHashMap<String, String> files;
+    private LinkedHashMap<String, ArrayList<String>> manifest;
+    private HashMap<String, ArrayList<Long>> savedVersions;
+    private int written;
+    private boolean lazy;
+
+    DataAccessObjectSharded() {
+        files = new LinkedHashMap<>();
+        manifest = new LinkedHashMap<>();
+        savedVersions = new HashMap<>();
+    }
+
+    /**
+     * Loads the manifest and then the file of each FeedList in parallel. If lazy is set, the
+     * FeedLists with their settings in the manifest are created with a ShardLoader instead.
+     *
+     * @param registry      The FeedRegistry the loaded FeedLists share their Feeds though.
+     * @return              An ArrayList of the loaded FeedLists in the order of the manifest.
+     * @throws IOException  If a file can't be read.
+     */
+    @Override
+    public synchronized ArrayList<FeedList> load(FeedRegistry registry) throws IOException {
+        LinkedHashMap<String, ArrayList<String>> entries = readManifest();
+        ArrayList<FeedList> feedLists = new ArrayList<>();
+        ArrayList<FeedList> eager = new ArrayList<>();
+
+        files = new LinkedHashMap<>();
+        for(String name : entries.keySet()) {
+            ArrayList<String> entry = entries.get(name);
+            files.put(name, entry.get(0));
+
+            FeedList feedList = null;
+            if(entry.get(1) != null) {
+                feedList = new FeedList(name, entry.get(1), Boolean.parseBoolean(entry.get(2)),
+                        registry);
+                if(lazy)
+                    feedList.setLoader(new ShardLoader(getListFile(entry.get(0)),
+                            entry.subList(3, entry.size())));
+            }
+
+            feedLists.add(feedList);
+            if(feedList == null || feedList.getLoader() == null)
+                eager.add(feedList);
+        }
+
+        if(!eager.isEmpty()) {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(eager.size(),
+                    Runtime.getRuntime().availableProcessors()), runnable -> {
+                Thread thread = new Thread(runnable, "SaveFileLoader");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            try {
+                ArrayList<String> fileNames = new ArrayList<>(files.values());
+                ArrayList<Future<FeedList>> loading = new ArrayList<>();
+                for(int i = 0; i < feedLists.size(); i++) {
+                    FeedList feedList = feedLists.get(i);
+                    String file = fileNames.get(i);
+
+                    if(feedList == null || feedList.getLoader() == null) {
+                        loading.add(executor.submit(() -> readFeedListFile(getListFile(file),
+                                registry, feedList)));
+                    }
+                }
+
+                int next = 0;
+                for(int i = 0; i < feedLists.size(); i++) {
+                    if(feedLists.get(i) == null || feedLists.get(i).getLoader() == null)
+                        feedLists.set(i, loading.get(next++).get());
+                }
+            }
+            catch(InterruptedException expt) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading " + getPath(), expt);
+            }
+            catch(ExecutionException expt) {
+                if(expt.getCause() instanceof IOException)
+                    throw (IOException) expt.getCause();
+                throw new IOException("Could not load " + getPath(), expt.getCause());
+            }
+            finally {
+                executor.shutdownNow();
+            }
+        }
+
+        manifest = entries;
+        savedVersions.clear();
+        for(FeedList feedList : feedLists) {
+            if(feedList.isLoaded())
+                savedVersions.put(files.get(feedList.getName()), getVersions(feedList));
+        }
+
+        return feedLists;
+    }
+
+    /**
+     * Reads the manifest. Each entry holds the file, sorting rules, and show visited status of a
+     * FeedList followed by the URLs of its Feeds, where the settings are null and the URLs missing
+     * in manifests written before they were added.
+     */
+    private LinkedHashMap<String, ArrayList<String>> readManifest() throws IOException {
+        LinkedHashMap<String, ArrayList<String>> entries = new LinkedHashMap<>();
+
+        try(JsonParser parser = getMapper().getFactory().createParser(new File(getPath()))) {
+            if(parser.nextToken() != JsonToken.START_ARRAY)
+                throw new JsonParseException(parser, "Expected an array of FeedList files");
+
+            while(parser.nextToken() == JsonToken.START_OBJECT) {
+                String name = null;
+                String file = null;
+                String sortingRules = null;
+                String showVisitedStatus = null;
+                ArrayList<String> urls = new ArrayList<>();
+
+                while(parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    parser.nextToken();
+
+                    if(field.equals("name"))
+                        name = parser.getText();
+                    else if(field.equals("file"))
+                        file = parser.getText();
+                    else if(field.equals("sortingRules"))
+                        sortingRules = parser.getText();
+                    else if(field.equals("showVisitedStatus"))
+                        showVisitedStatus = parser.getText();
+                    else if(field.equals("feeds"))
+                        while(parser.nextToken() == JsonToken.VALUE_STRING) {
+                            urls.add(parser.getText());
+                        }
+                    else
+                        parser.skipChildren();
+                }
+
+                ArrayList<String> entry = createEntry(file, sortingRules, showVisitedStatus);
+                entry.addAll(urls);
+                entries.put(name, entry);
+            }
+        }
+
+        return entries;
+    }
+
+    private static ArrayList<String> createEntry(String file, String sortingRules,
+                                                 String showVisitedStatus) {
+        ArrayList<String> entry = new ArrayList<>();
+        entry.add(file);
+        entry.add(sortingRules);
+        entry.add(showVisitedStatus);
+        return entry;
+    }
+
+    private FeedList readFeedListFile(File file, FeedRegistry registry, FeedList feedList)
+            throws IOException {
+        try(JsonParser parser = getMapper().getFactory().createParser(file)) {
+            if(parser.nextToken() != JsonToken.START_OBJECT)
+                throw new JsonParseException(parser, "Expected a FeedList");
+
+            return readFeedList(parser, registry, feedList);
+        }
+    }
+
+    /**
+     * Writes the files of the FeedLists which have changed since they were last saved or loaded,
+     * and the manifest if FeedLists have been added, removed, moved, renamed, or had their settings
+     * changed. The file of a FeedList which is not loaded has not changed, and is only copied if
+     * it is loaded from another save file.
+     *
+     * @param feedLists                 An ArrayList of the FeedLists to save.
+     * @param configurationLastUpdated  A Date object with the last time the FeedLists changed.
+     * @throws IOException              If a file can't be written.
+     */
+    @Override
+    public synchronized void save(ArrayList<FeedList> feedLists, Date configurationLastUpdated)
+            throws IOException {
+        LinkedHashMap<String, String> saved = new LinkedHashMap<>();
+        LinkedHashMap<String, ArrayList<String>> entries = new LinkedHashMap<>();
+        HashMap<String, ArrayList<Long>> versions = new HashMap<>();
+        written = 0;
+
+        File directory = getListFile("");
+        if(!directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Could not create " + directory);
+
+        ArrayList<String> fileNames = new ArrayList<>();
+        HashSet<String> writtenUrls = new HashSet<>();
+
+        for(FeedList feedList : feedLists) {
+            ShardLoader loader = getShardLoader(feedList);
+
+            String file = files.get(feedList.getName());
+            if(loader != null && loader.isInDirectory(directory))
+                file = loader.getFile().getName();
+            if(file == null || saved.containsValue(file))
+                file = createFileName(saved);
+
+            saved.put(feedList.getName(), file);
+            fileNames.add(file);
+
+            if(feedList.isLoaded()) {
+                ArrayList<Long> feedListVersions = getVersions(feedList);
+
+                if(!feedListVersions.equals(savedVersions.get(file)) ||
+                        !getListFile(file).exists()) {
+                    write(getListFile(file), generator -> writeFeedList(generator, feedList));
+                    written++;
+
+                    for(Feed feed : feedList.getFeeds()) {
+                        writtenUrls.add(feed.getUrlToXML());
+                    }
+                }
+
+                versions.put(file, feedListVersions);
+                if(loader != null)
+                    loader.setFile(getListFile(file));
+            }
+            else if(!loader.getFile().equals(getListFile(file))) {
+                Files.copy(loader.getFile().toPath(), getListFile(file).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                loader.setFile(getListFile(file));
+                written++;
+            }
+            else if(savedVersions.containsKey(file)) {
+                versions.put(file, savedVersions.get(file));
+            }
+        }
+
+        // A FeedList which is not loaded still holds the old state of the Feeds it shares with
+        // the FeedLists written above, so it is loaded and written as well
+        for(int i = 0; i < feedLists.size(); i++) {
+            FeedList feedList = feedLists.get(i);
+            String file = fileNames.get(i);
+
+            if(!feedList.isLoaded() &&
+                    !Collections.disjoint(getShardLoader(feedList).getUrls(), writtenUrls)) {
+                versions.put(file, getVersions(feedList));
+                write(getListFile(file), generator -> writeFeedList(generator, feedList));
+                feedList.release();
+                written++;
+            }
+        }
+
+        for(int i = 0; i < feedLists.size(); i++) {
+            FeedList feedList = feedLists.get(i);
+            ArrayList<String> entry = createEntry(fileNames.get(i), feedList.getSortingRules(),
+                    String.valueOf(feedList.getShowVisitedStatus()));
+
+            if(feedList.isLoaded()) {
+                for(Feed feed : feedList.getFeeds()) {
+                    entry.add(feed.getUrlToXML());
+                }
+                if(getShardLoader(feedList) != null)
+                    getShardLoader(feedList).setUrls(entry.subList(3, entry.size()));
+            }
+            else {
+                entry.addAll(getShardLoader(feedList).getUrls());
+            }
+
+            entries.put(feedList.getName(), entry);
+        }
+
+        if(!new ArrayList<>(entries.entrySet()).equals(new ArrayList<>(manifest.entrySet())) ||
+                !new File(getPath()).exists()) {
+            write(new File(getPath()), generator -> {
+                generator.writeStartArray();
+                for(String name : entries.keySet()) {
+                    generator.writeStartObject();
+                    generator.writeStringField("name", name);
+                    generator.writeStringField("file", entries.get(name).get(0));
+                    generator.writeStringField("sortingRules", entries.get(name).get(1));
+                    generator.writeBooleanField("showVisitedStatus",
+                            Boolean.parseBoolean(entries.get(name).get(2)));
+                    generator.writeArrayFieldStart("feeds");
+                    for(String url : entries.get(name).subList(3, entries.get(name).size())) {
+                        generator.writeString(url);
+                    }
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+            });
+            written++;
+        }
+
+        for(String file : files.values()) {
+            if(!saved.containsValue(file))
+                getListFile(file).delete();
+        }
+
+        files = saved;
+        manifest = entries;
+        savedVersions = versions;
+        setLastSaved(configurationLastUpdated);
+    }
+
+    private static ShardLoader getShardLoader(FeedList feedList) {
+        return feedList.getLoader() instanceof ShardLoader ?
+                (ShardLoader) feedList.getLoader() : null;
+    }
+
+    /**
+     * Returns the versions which tell if a FeedList has changed. The first is the version of the
+     * FeedList, followed by the version, next poll, and failures of each Feed.
+     */
+    private static ArrayList<Long> getVersions(FeedList feedList) {
+        ArrayList<Long> versions = new ArrayList<>();
+        versions.add(feedList.getVersion());
+
+        for(Feed feed : feedList.getFeeds()) {
+            versions.add(feed.getVersion());
+            versions.add(feed.getSchedule().getNextPoll());
+            versions.add((long) feed.getSchedule().getFailures());
+        }
+
+        return versions;
+    }
+
+    private String createFileName(LinkedHashMap<String, String> saved) {
+        for(int i = 0; ; i++) {
+            String file = "list" + i + ".json";
+            if(!files.containsValue(file) && !saved.containsValue(file))
+                return file;
+        }
+    }
+
+    private File getListFile(String file) {
+        return new File(getPath() + ".lists", file);
+    }
+
+    /*
+    ----------------------------------- ACCESSORS AND MUTATORS -------------------------------------
+    */
+
+    /**
+     * Access method for written.
+     *
+     * @return The number of files written by the last save, including the manifest.
+     */
+    int getWritten() {
+        return written;
+    }
+
+    /**
+     * Access method for lazy.
+     *
+     * @return True if the files of the FeedLists are loaded when they are needed.
+     */
+    boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Mutator method for lazy. Takes effect on the next load.
+     *
+     * @param lazyParam True if the files of the FeedLists should be loaded when they are needed.
+     */
+    void setLazy(boolean lazyParam) {
+        lazy = lazyParam;
+    }
+
+    /**
+     * Mutator method for path. Every FeedList is written by the next save.
+     *
+     * @param path  A String containing the path to the manifest.
+     */
+    @Override
+    public void setPath(String path) {
+        super.setPath(path);
+        files = new LinkedHashMap<>();
+        manifest = new LinkedHashMap<>();
+        savedVersions = new HashMap<>();
+    }
+
+    /**
+     * Class ShardLoader
+     *
+     * Loads a FeedList from its file the first time its Feeds are needed. A FeedList is saved as it
+     * is when it has not changed since it was loaded or saved to the current save file. The URLs of
+     * the Feeds in the file are kept so a save can tell which Feeds a FeedList which is not loaded
+     * holds.
+     */
+    class ShardLoader implements FeedList.Loader {
+        private volatile File file;
+        private volatile ArrayList<String> urls;
+
+        ShardLoader(File fileParam, List<String> urlsParam) {
+            file = fileParam;
+            urls = new ArrayList<>(urlsParam);
+        }
+
+        /**
+         * Reads the file into a FeedList of its own, so nothing shared is touched. A save
+         * replaces the file in one step, so the file is read without waiting for a save.
+         */
+        @Override
+        public ArrayList<Feed> read() throws IOException {
+            return readFeedListFile(file, new FeedRegistry(), null).getFeeds();
+        }
+
+        @Override
+        public void loaded(FeedList feedList) {
+            synchronized(DataAccessObjectSharded.this) {
+                if(isInDirectory(getListFile("")))
+                    savedVersions.put(file.getName(), getVersions(feedList));
+            }
+        }
+
+        @Override
+        public boolean isSaved(FeedList feedList) {
+            synchronized(DataAccessObjectSharded.this) {
+                return isInDirectory(getListFile("")) &&
+                        getVersions(feedList).equals(savedVersions.get(file.getName()));
+            }
+        }
+
+        private boolean isInDirectory(File directory) {
+            return directory.equals(file.getParentFile());
+        }
+
+        File getFile() {
+            return file;
+        }
+
+        void setFile(File fileParam) {
+            file = fileParam;
+        }
+
+        ArrayList<String> getUrls() {
+            return urls;
+        }
+
+        void setUrls(List<String> urlsParam) {
+            urls = new ArrayList<>(urlsParam);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package system;
 
+import system.exceptions.DatabaseError;
 import system.exceptions.FeedAlreadyExists;
 import system.exceptions.FeedDoesNotExist;
 import system.rss.Feed;
@@ -7,7 +8,9 @@ import system.rss.Item;
 import system.rss.RssParser;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Class FeedList
@@ -20,6 +23,16 @@ import java.util.LinkedList;
  *
  * The class has some methods taken from List like get, add, remove, and size.
  *
+ * The Feed objects are taken from a FeedRegistry, so a URL which is in several FeedLists is only
+ * downloaded and stored once and every FeedList holds the same Feed object. The Feeds are kept in
+ * order in feeds and indexed on their URL in feedsByUrl, so finding a Feed does not search them.
+ *
+ * A FeedList can be loaded lazily. It is then created with only its name and settings and a
+ * Loader, and its Feeds are loaded the first time they are needed, or read on another thread and
+ * installed before that, see install. A loaded FeedList which has not been used for a while can
+ * be unloaded again, which releases its Feeds. Journal records replayed while the FeedList is not
+ * loaded are deferred until it is.
+ *
  * @author Axel Nilsson (axnion)
  */
 public class FeedList {
@@ -28,6 +41,14 @@ public class FeedList {
     private boolean showVisitedStatus;
     private RssParser rssParser;
     private ArrayList<Feed> feeds;
+    private HashMap<String, Feed> feedsByUrl;
+    private FeedRegistry registry;
+    private long version;
+    private Loader loader;
+    private boolean loaded;
+    private ArrayList<String> deferred; // Journal records waiting for the FeedList to be loaded
+    private long lastUsed;
+    private SortedItems sortedItems;
 
     /**
      * Constructor
@@ -41,11 +62,33 @@ public class FeedList {
      *                                  should be displayed.
      */
     FeedList(String nameParam, String sortingRulesParam, boolean showVisitedStatusParam) {
+        this(nameParam, sortingRulesParam, showVisitedStatusParam, new FeedRegistry());
+    }
+
+    /**
+     * Constructor
+     * Same as the constructor above but takes the Feeds from a FeedRegistry shared with other
+     * FeedLists.
+     *
+     * @param nameParam                 The unique name of the FeedList. Is used as identifier.
+     * @param sortingRulesParam         The rules the sorting will follow when sorting all Item
+     *                                  objects from the Feeds.
+     * @param showVisitedStatusParam    True if the visited status of all Items in this FeedList
+     *                                  should be displayed.
+     * @param registryParam             The FeedRegistry holding the shared Feed objects.
+     */
+    FeedList(String nameParam, String sortingRulesParam, boolean showVisitedStatusParam,
+             FeedRegistry registryParam) {
         name = nameParam;
         sortingRules = sortingRulesParam;
         showVisitedStatus = showVisitedStatusParam;
         rssParser = new RssParser();
         feeds = new ArrayList<>();
+        feedsByUrl = new HashMap<>();
+        sortedItems = new SortedItems();
+        registry = registryParam;
+        loaded = true;
+        deferred = new ArrayList<>();
     }
 
     /**
@@ -55,23 +98,86 @@ public class FeedList {
      * @return      A Feed at the specified index in the FeedList.
      */
     Feed get(int index) {
+        load();
         return feeds.get(index);
     }
 
     /**
      * Used to add a new Feed to feeds. The url to the XML file is passed as an argument though the
-     * url parameter. The url is then passed to the getFeed method in the RssParser object which
-     * returns a Feed object which is added to feeds.
+     * url parameter. If another FeedList already has the Feed the FeedRegistry returns that Feed
+     * object, if not the url is passed to the getFeed method in the RssParser object which returns
+     * a Feed object which is added to feeds.
      *
      * @param url   The url to the XML file of the Feed to be added.
      */
     void add(String url) {
-        if(getIndexOf(url) == -1)
-            feeds.add(rssParser.getFeed(url));
+        load();
+
+        if(findFeed(url) == null) {
+            Feed feed = registry.acquire(url, this, rssParser);
+            feeds.add(feed);
+            feedsByUrl.put(url, feed);
+            version++;
+        }
         else
             throw new FeedAlreadyExists(url, getName());
     }
 
+    /**
+     * Same as add above, but takes a Feed which has already been fetched, for example on a
+     * background thread using fetch.
+     *
+     * @param feed  The Feed to be added.
+     */
+    void addFetched(Feed feed) {
+        load();
+
+        if(findFeed(feed.getUrlToXML()) == null) {
+            Feed acquired = registry.acquire(feed, this);
+            feeds.add(acquired);
+            feedsByUrl.put(acquired.getUrlToXML(), acquired);
+            version++;
+        }
+        else
+            throw new FeedAlreadyExists(feed.getUrlToXML(), getName());
+    }
+
+    /**
+     * Returns the Feed for url without adding it to the FeedList. If another FeedList already has
+     * the Feed that Feed object is returned, if not it is fetched using the RssParser.
+     *
+     * @param url   The url to the XML file of the Feed.
+     * @return      The Feed for url.
+     */
+    Feed fetch(String url) {
+        return registry.fetch(url, rssParser);
+    }
+
+    /**
+     * Creates a copy of the FeedList holding snapshots of its Feeds, which is used to save the
+     * FeedList on another thread while the original and its Feeds may change. A Feed shared with
+     * another FeedList is only copied once, and the copies share it through their own registry, so
+     * a copy which is not loaded takes the copied Feeds when the save loads it.
+     *
+     * @param snapshotRegistry  The FeedRegistry shared by the copies of the FeedLists.
+     * @param snapshots         The snapshots of the Feeds copied so far, by the copied Feed.
+     * @return                  A new FeedList with the same name, settings, and versions. If this
+     *                          FeedList is not loaded neither is the copy.
+     */
+    FeedList snapshot(FeedRegistry snapshotRegistry, Map<Feed, Feed> snapshots) {
+        FeedList copy = new FeedList(name, sortingRules, showVisitedStatus, snapshotRegistry);
+
+        for(Feed feed : feeds) {
+            Feed snapshot = snapshots.computeIfAbsent(feed, Feed::snapshot);
+            copy.feeds.add(snapshotRegistry.acquire(snapshot, copy));
+        }
+
+        copy.version = version;
+        copy.loader = loader;
+        copy.loaded = loaded;
+        return copy;
+    }
+
     /**
      * Used to remove the Feed object with the same url as the url passed as an argument though the
      * url parameter. If no Feed with that url is found then FeedDoesNotExist exception is thrown.
@@ -79,33 +185,55 @@ public class FeedList {
      * @param url   The url to the XML file of the Feed to be removed.
      */
     void remove(String url) {
-        int index = getIndexOf(url);
-
-        if(index > -1) {
-            feeds.remove(index);
+        load();
+        Feed feed = findFeed(url);
+
+        if(feed != null) {
+            feeds.remove(feed);
+            feedsByUrl.remove(url);
+            registry.release(url, this);
+            version++;
         }
         else
             throw new FeedDoesNotExist(url, getName());
     }
 
+    /**
+     * Removes all Feed objects from the FeedList and releases them from the FeedRegistry. Used
+     * when the FeedList itself is removed.
+     */
+    void clear() {
+        loader = null;
+        loaded = true;
+
+        for(Feed feed : feeds) {
+            registry.release(feed.getUrlToXML(), this);
+        }
+        feeds.clear();
+        feedsByUrl.clear();
+        version++;
+    }
+
     /**
      * Returns the amount of elements in the FeedList.
      *
      * @return  An integer describing the number of elements in the FeedList
      */
     int size() {
+        load();
         return feeds.size();
     }
 
     /**
      * Calls the update method on all Feeds.
      *
-     * @return True if a Feed got updated.
+     * @return True if a Feed got new Items.
      */
     boolean update() {
+        load();
         boolean updated = false;
         for(Feed feed : feeds) {
-            if(rssParser.updateFeed(feed))
+            if(rssParser.updateFeed(feed).hasNewItems())
                 updated = true;
         }
         return updated;
@@ -113,21 +241,71 @@ public class FeedList {
 
     /**
      * Returns all Item objects in an ArrayList from all of the Feed objects the FeedList holds. The
-     * returned ArrayList is also sorted according to the rules in sortingRules.
+     * returned ArrayList is also sorted according to the SortOrder named by sortingRules. The
+     * Items are kept sorted in sortedItems, so only Feeds which have changed are sorted again.
      *
      * @return  An ArrayList containing all Item objects from all Feed objects in this
      *          FeedList that is sorted according to sortingRules.
      */
     ArrayList<Item> getAllItems() {
-        ArrayList<Item> items = new ArrayList<>();
+        return getItems(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns a window of the Items returned by getAllItems, with at most limit Items starting at
+     * offset. Only the Items in the window are copied from sortedItems.
+     *
+     * @param offset    The position of the first Item to return.
+     * @param limit     The most Items to return.
+     * @return          An ArrayList with the Items in the window, which is empty if offset is past
+     *                  the last Item.
+     */
+    ArrayList<Item> getItems(int offset, int limit) {
+        load();
+        return sortedItems.get(feeds, SortOrder.fromRules(sortingRules), offset, limit);
+    }
+
+    /**
+     * Returns the number of Items in all of the Feed objects the FeedList holds, which is the size
+     * of what getAllItems returns.
+     *
+     * @return The number of Items in the FeedList.
+     */
+    int getItemCount() {
+        load();
+        return sortedItems.size(feeds, SortOrder.fromRules(sortingRules));
+    }
+
+    /**
+     * Returns the number of Items in the FeedList which have not been visited. Each Feed keeps its
+     * own count, so no Item is looked at.
+     *
+     * @return The number of unread Items in the FeedList.
+     */
+    int getUnreadCount() {
+        load();
+        int unread = 0;
 
         for(Feed feed : feeds) {
-            items.addAll(feed.getItems());
+            unread += feed.getUnreadCount();
         }
+        return unread;
+    }
 
-        items = sort(items);
+    /**
+     * Returns the number of Items in the FeedList which have been starred, using the count of each
+     * Feed like getUnreadCount.
+     *
+     * @return The number of starred Items in the FeedList.
+     */
+    int getStarredCount() {
+        load();
+        int starred = 0;
 
-        return items;
+        for(Feed feed : feeds) {
+            starred += feed.getStarredCount();
+        }
+        return starred;
     }
 
     /**
@@ -138,93 +316,151 @@ public class FeedList {
      * @param url   The url of the Feed the method is searching for.
      * @return      A Feed object from feeds with a urlToXml which is the same as url.
      */
-    private Feed getFeedByUrl(String url) {
-        int index = getIndexOf(url);
-        if(index != -1)
-            return feeds.get(index);
+    Feed getFeedByUrl(String url) {
+        load();
+        Feed feed = findFeed(url);
+        if(feed != null)
+            return feed;
         else
             throw new FeedDoesNotExist(url, name);
     }
 
     /**
-     * Returns an integer containing the index of a Feed object in the FeedList with the same
-     * identifier as the argument Feed.
+     * Returns the Feed object in the FeedList with url as its identifier, using feedsByUrl. The
+     * index is rebuilt if feeds has been changed without it, which is noticed by the size.
      *
-     * @param url   A String containing the url to the feed we want to get the index of.
-     * @return      An integer with the index of the Feed object in the FeedList. If it does not
-     *              exist then -1 is returned.
+     * @param url   A String containing the url to the feed we want.
+     * @return      The Feed with the url, or null if it does not exist.
      */
-    private int getIndexOf(String url) {
-        for(int i = 0; i < feeds.size(); i++) {
-            if(feeds.get(i).getUrlToXML().equals(url))
-                return i;
+    private Feed findFeed(String url) {
+        if(feedsByUrl.size() != feeds.size()) {
+            feedsByUrl = new HashMap<>();
+            for(Feed feed : feeds) {
+                feedsByUrl.put(feed.getUrlToXML(), feed);
+            }
         }
-        return -1;
+
+        return feedsByUrl.get(url);
     }
 
     /**
-     * Sorts an ArrayList of Item objects using the merge sort algorithm.
+     * Loads the Feeds using the loader if the FeedList is not loaded.
+     */
+    private void load() {
+        if(loaded)
+            return;
+
+        try {
+            install(loader.read());
+        }
+        catch(DatabaseError expt) {
+            throw expt;
+        }
+        catch(Exception expt) {
+            throw new DatabaseError("Could not load the FeedList \"" + name + "\": " +
+                    expt.getMessage());
+        }
+    }
+
+    /**
+     * Adds the Feeds read by the loader to the FeedList if it is not loaded, and then applies the
+     * journal records deferred while it was not loaded. The Feeds can be read on another thread,
+     * but are installed on the thread the FeedList is changed on. A Feed which another FeedList
+     * already holds is taken from the FeedRegistry instead of the one which was read, since it may
+     * have changed since it was saved.
      *
-     * @param items An ArrayList of Item objects to be sorted
-     * @return      An ArrayList containing all Item objects from the argument ArrayList but sorted
-     *              according to the rules specified in the rules argument.
+     * @param read  The Feeds returned by Loader.read.
+     * @return      True if the Feeds were added, false if the FeedList was already loaded.
      */
-    private ArrayList<Item> sort(ArrayList<Item> items) {
-        if(items.size() <= 1)
-            return items;
+    boolean install(ArrayList<Feed> read) {
+        if(loaded)
+            return false;
 
-        ArrayList<Item> out = new ArrayList<>();
-        ArrayList<Item> left = new ArrayList<>();
-        ArrayList<Item> right = new ArrayList<>();
-        LinkedList<Item> leftQueue = new LinkedList<>();
-        LinkedList<Item> rightQueue = new LinkedList<>();
+        loaded = true;
+
+        try {
+            for(Feed feed : read) {
+                addFetched(feed);
+            }
+        }
+        catch(RuntimeException expt) {
+            release();
+            throw new DatabaseError("Could not load the FeedList \"" + name + "\": " +
+                    expt.getMessage());
+        }
 
-        boolean titleAsc;
-        boolean titleDec;
-        boolean dateAsc;
-        boolean dateDec;
+        loader.loaded(this);
 
-        for(Item item : items) {
-            if(left.size() < items.size() / 2)
-                left.add(item);
-            else
-                right.add(item);
+        for(String record : deferred) {
+            Journal.apply(record, this);
         }
+        deferred.clear();
+        return true;
+    }
+
+    /**
+     * Keeps a journal record for the FeedList until it is loaded, so replaying the journal does
+     * not load it.
+     *
+     * @param record A record read from the journal, without its line end.
+     */
+    void defer(String record) {
+        deferred.add(record);
+    }
 
-        left = sort(left);
-        right = sort(right);
+    /**
+     * Accessor method for deferred.
+     *
+     * @return The journal records which wait for the FeedList to be loaded.
+     */
+    ArrayList<String> getDeferred() {
+        return deferred;
+    }
 
-        leftQueue.addAll(left);
-        rightQueue.addAll(right);
+    /**
+     * Unloads the Feeds if the loader says the FeedList is saved as it is. The Feeds are released
+     * from the FeedRegistry, so a Feed which no loaded FeedList holds can be garbage collected,
+     * and are loaded again the next time they are needed.
+     *
+     * @return True if the FeedList was unloaded.
+     */
+    boolean unload() {
+        if(loader == null || (loaded && !loader.isSaved(this)))
+            return false;
 
-        for(int i = 0; i < items.size(); i++) {
-            if(leftQueue.isEmpty()) {
-                out.add(rightQueue.pop());
-                continue;
-            }
-            else if(rightQueue.isEmpty()) {
-                out.add(leftQueue.pop());
-                continue;
-            }
+        release();
+        return true;
+    }
 
-            titleAsc = sortingRules.equals("TITLE_ASC") && leftQueue.peek()
-                    .compareTitle(rightQueue.peek()) <= 0;
-            titleDec = sortingRules.equals("TITLE_DEC") && leftQueue.peek()
-                    .compareTitle(rightQueue.peek()) > 0;
-            dateAsc =  sortingRules.equals("DATE_ASC")  && leftQueue.peek()
-                    .compareDate(rightQueue.peek()) <= 0;
-            dateDec =  sortingRules.equals("DATE_DEC")  && leftQueue.peek()
-                    .compareDate(rightQueue.peek()) > 0;
-
-            if(titleAsc || titleDec || dateAsc || dateDec) {
-                out.add(leftQueue.pop());
-            }
-            else {
-                out.add(rightQueue.pop());
-            }
+    /**
+     * Unloads the Feeds without asking the loader if the FeedList is saved, for when the caller
+     * has just saved it.
+     */
+    void release() {
+        for(Feed feed : feeds) {
+            registry.release(feed.getUrlToXML(), this);
         }
 
-        return out;
+        feeds = new ArrayList<>();
+        feedsByUrl = new HashMap<>();
+        sortedItems = new SortedItems();
+        loaded = false;
+    }
+
+    /**
+     * Returns true if the Feeds of the FeedList are loaded.
+     *
+     * @return True if the FeedList is loaded.
+     */
+    boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Remembers that the user has used the FeedList now, see getLastUsed.
+     */
+    void markUsed() {
+        lastUsed = System.currentTimeMillis();
     }
 
     /**
@@ -240,6 +476,27 @@ public class FeedList {
         getFeedByUrl(feedIdentifier).setVisited(itemId, status);
     }
 
+    /**
+     * Sets every Item of the Feed with the identifier as visited, see Feed.markAllRead.
+     *
+     * @param feedIdentifier    The unique identifier of the Feed.
+     * @return                  The watermark the Feed was marked read up to.
+     */
+    long markRead(String feedIdentifier) {
+        return getFeedByUrl(feedIdentifier).markAllRead();
+    }
+
+    /**
+     * Marks the Feed with the identifier read up to a watermark returned by markRead, see
+     * Feed.markReadUpTo.
+     *
+     * @param feedIdentifier    The unique identifier of the Feed.
+     * @param upTo              The watermark returned by markRead.
+     */
+    void markReadUpTo(String feedIdentifier, long upTo) {
+        getFeedByUrl(feedIdentifier).markReadUpTo(upTo);
+    }
+
     /**
      * Calls the setStarred method of a Feed object which identifier is equal to the argument passed
      * though feedIdentifier parameter, and passes itemId and status as arguments.
@@ -293,12 +550,41 @@ public class FeedList {
         return rssParser;
     }
 
+    /**
+     * Accessor method for registry
+     *
+     * @return The FeedRegistry this FeedList takes its Feed objects from
+     */
+    FeedRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Accessor method for lastUsed.
+     *
+     * @return The time in milliseconds when the user last used the FeedList.
+     */
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Accessor method for version, a number which grows each time the settings of the FeedList
+     * or the Feeds it holds are changed. Changes to the Feeds themselves are counted by the Feeds.
+     *
+     * @return The version of the FeedList
+     */
+    long getVersion() {
+        return version;
+    }
+
     /**
      * Accessor method for feeds
      *
      * @return An ArrayList containing Feed objects
      */
     ArrayList<Feed> getFeeds() {
+        load();
         return feeds;
     }
 
@@ -309,6 +595,7 @@ public class FeedList {
      */
     void setName(String nameParam) {
         name = nameParam;
+        version++;
     }
 
     /**
@@ -318,22 +605,35 @@ public class FeedList {
      */
     void setSortingRules(String sortingRulesParam) {
         sortingRules = sortingRulesParam;
+        version++;
     }
 
     /**
-     * Mutator method for showVisitedStatus
+     * Mutator method for showVisitedStatus. When the visited status is hidden all Items are set to
+     * visited, except the Items of Feeds shared with a FeedList which still shows visited status.
+     * Each Feed is marked read with markAllRead, so no Item is looked at.
      *
      * @param showVisitedStatusParam True if
+     * @return  The watermarks the Feeds were marked read up to by their URLs, so the marks can be
+     *          journaled like markRead. Empty if the visited status is shown.
      */
-    void setShowVisitedStatus(boolean showVisitedStatusParam) {
+    LinkedHashMap<String, Long> setShowVisitedStatus(boolean showVisitedStatusParam) {
+        LinkedHashMap<String, Long> marked = new LinkedHashMap<>();
         showVisitedStatus = showVisitedStatusParam;
+        version++;
 
         if(!showVisitedStatus) {
-            ArrayList<Item> items = getAllItems();
-            for(Item item : items) {
-                item.setVisited(true);
+            load();
+
+            for(Feed feed : feeds) {
+                if(registry.isVisitedStatusShownElsewhere(feed.getUrlToXML(), this))
+                    continue;
+
+                marked.put(feed.getUrlToXML(), feed.markAllRead());
             }
         }
+
+        return marked;
     }
 
     /**
@@ -352,5 +652,63 @@ public class FeedList {
      */
     void setFeeds(ArrayList<Feed> feedsParam) {
         feeds = feedsParam;
+        feedsByUrl = new HashMap<>();
+        loaded = true;
+        version++;
+    }
+
+    /**
+     * Access method for loader.
+     *
+     * @return The Loader which loads the Feeds, or null if the FeedList is not loaded lazily.
+     */
+    Loader getLoader() {
+        return loader;
+    }
+
+    /**
+     * Mutator method for loader. The FeedList is not loaded until its Feeds are needed, when
+     * loader is called, or until they are installed.
+     *
+     * @param loaderParam The Loader which loads the Feeds.
+     */
+    void setLoader(Loader loaderParam) {
+        loader = loaderParam;
+        loaded = false;
+        feeds = new ArrayList<>();
+        feedsByUrl = new HashMap<>();
+        sortedItems = new SortedItems();
+    }
+
+    /**
+     * Interface Loader
+     *
+     * Loads the Feeds of a FeedList which is loaded lazily.
+     */
+    interface Loader {
+        /**
+         * Reads the Feeds of the FeedList from storage. It can be called on any thread, as it
+         * does not touch the FeedList or the Feeds of other FeedLists.
+         *
+         * @return              The Feeds which were read, to give to install.
+         * @throws Exception    If the Feeds can't be read.
+         */
+        ArrayList<Feed> read() throws Exception;
+
+        /**
+         * Called by install once the Feeds have been added to feedList.
+         *
+         * @param feedList  The FeedList which was loaded.
+         */
+        void loaded(FeedList feedList);
+
+        /**
+         * Returns true if feedList is saved as it is, so it can be unloaded without losing
+         * anything.
+         *
+         * @param feedList  A loaded FeedList.
+         * @return          True if feedList is saved.
+         */
+        boolean isSaved(FeedList feedList);
     }
 }
@@ -0,0 +1,156 @@
+package system;
+
+import system.rss.Feed;
+import system.rss.RssParser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Class FeedRegistry
+ *
+ * FeedRegistry holds one Feed object for each URL, shared by every FeedList subscribing to that
+ * URL. When a FeedList adds a URL which another FeedList already has, the existing Feed is returned
+ * instead of downloading and storing the feed again. The registry keeps track of which FeedLists
+ * reference each Feed, and a Feed is dropped when the last FeedList releases it.
+ *
+ * Since the Feed is shared the visited and starred status of its Items is the same in every
+ * FeedList. Settings such as showVisitedStatus still belong to each FeedList.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+class FeedRegistry {
+    private HashMap<String, Entry> entries;
+
+    /**
+     * Constructor
+     *
+     * Creates an empty registry.
+     */
+    FeedRegistry() {
+        entries = new HashMap<>();
+    }
+
+    /**
+     * Returns the Feed for url and registers feedList as one of its owners. If no FeedList has the
+     * Feed yet it is fetched using rssParser. The fetch is done without holding the lock, so a
+     * slow server does not block other FeedLists.
+     *
+     * @param url       The URL to the XML file of the Feed.
+     * @param feedList  The FeedList which references the Feed.
+     * @param rssParser The RssParser used if the Feed has to be fetched.
+     * @return          The shared Feed for url.
+     */
+    Feed acquire(String url, FeedList feedList, RssParser rssParser) {
+        return acquire(fetch(url, rssParser), feedList);
+    }
+
+    /**
+     * Registers feedList as one of the owners of feed. If another Feed with the same URL is already
+     * in the registry that Feed is returned instead and feed is thrown away.
+     *
+     * @param feed      A Feed, normally returned by fetch.
+     * @param feedList  The FeedList which references the Feed.
+     * @return          The shared Feed for the URL of feed.
+     */
+    synchronized Feed acquire(Feed feed, FeedList feedList) {
+        Entry entry = entries.computeIfAbsent(feed.getUrlToXML(), key -> new Entry(feed));
+        entry.owners.add(feedList);
+        return entry.feed;
+    }
+
+    /**
+     * Returns the Feed for url if it is in the registry, or else fetches it using rssParser without
+     * registering it. The fetch is done without holding the lock and can be done on a background
+     * thread before the Feed is acquired.
+     *
+     * @param url       The URL to the XML file of the Feed.
+     * @param rssParser The RssParser used if the Feed has to be fetched.
+     * @return          The Feed for url.
+     */
+    Feed fetch(String url, RssParser rssParser) {
+        synchronized(this) {
+            Entry entry = entries.get(url);
+
+            if(entry != null)
+                return entry.feed;
+        }
+
+        return rssParser.getFeed(url);
+    }
+
+    /**
+     * Removes feedList from the owners of the Feed for url. When no owners are left the Feed is
+     * removed from the registry.
+     *
+     * @param url       The URL to the XML file of the Feed.
+     * @param feedList  The FeedList which no longer references the Feed.
+     */
+    synchronized void release(String url, FeedList feedList) {
+        Entry entry = entries.get(url);
+
+        if(entry == null)
+            return;
+
+        entry.owners.remove(feedList);
+
+        if(entry.owners.isEmpty())
+            entries.remove(url);
+    }
+
+    /**
+     * Checks if any FeedList other than feedList references the Feed for url and shows the visited
+     * status of its Items.
+     *
+     * @param url       The URL to the XML file of the Feed.
+     * @param feedList  The FeedList to leave out.
+     * @return          True if another owner of the Feed shows visited status.
+     */
+    synchronized boolean isVisitedStatusShownElsewhere(String url, FeedList feedList) {
+        Entry entry = entries.get(url);
+
+        if(entry == null)
+            return false;
+
+        for(FeedList owner : entry.owners) {
+            if(owner != feedList && owner.getShowVisitedStatus())
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of FeedLists referencing the Feed for url.
+     *
+     * @param url   The URL to the XML file of the Feed.
+     * @return      The number of owners, or 0 if the Feed is not in the registry.
+     */
+    synchronized int getReferenceCount(String url) {
+        Entry entry = entries.get(url);
+        return entry == null ? 0 : entry.owners.size();
+    }
+
+    /**
+     * Returns the number of distinct Feeds in the registry.
+     *
+     * @return The number of Feeds.
+     */
+    synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Class Entry
+     *
+     * A Feed and the FeedLists referencing it.
+     */
+    private static class Entry {
+        private final Feed feed;
+        private final ArrayList<FeedList> owners;
+
+        Entry(Feed feed) {
+            this.feed = feed;
+            this.owners = new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package system;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Class Journal
+ *
+ * Journal is an append-only log of the changes to the visited and starred status of Items, kept
+ * next to the save file. Instead of rewriting the whole save file when the user reads or stars an
+ * Item a record of a few bytes is appended to the journal. When the save file is loaded the
+ * journal is replayed on top of it.
+ *
+ * Each record is a line with the flag, V for visited or S for starred, followed by 1 or 0, and the
+ * name of the FeedList, the URL of the Feed, and the id of the Item, separated by tabs. A record
+ * sets the flag to a value instead of toggling it, so replaying a record twice does no harm. A
+ * Feed marked read is recorded with the flag R, followed by 1, and the watermark it was marked
+ * read up to in place of the id. It is skipped if the Feed is already read up to the watermark.
+ *
+ * The journal is compacted by saving a new snapshot of the FeedLists to the save file. When the
+ * snapshot is taken the journal is rotated to a file numbered by a generation, so records appended
+ * while the snapshot is written go to a new journal. The snapshot knows its generation, and once
+ * it is saved the rotated journals up to that generation are deleted, since their records were
+ * all appended before the snapshot was taken. The rotated journals of a snapshot taken after it
+ * are kept until that snapshot is saved. If the application stops before that every journal is
+ * replayed, the rotated ones first in the order of their generations.
+ *
+ * A record which was only partly written when the application stopped has no line end and is
+ * ignored. It is cut off before the next record is appended, so that record starts a line of its
+ * own instead of being appended to the broken one.
+ *
+ * A record for a FeedList which is loaded lazily and has not been loaded is deferred by the
+ * FeedList until it is loaded, so replaying the journal does not load every FeedList. Since such a
+ * FeedList is not in a snapshot, Configuration appends its deferred records to the new journal
+ * when the journal is rotated.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+class Journal {
+    static final char VISITED = 'V';
+    static final char STARRED = 'S';
+    static final char READ = 'R';
+
+    private File file;
+    private long generation;    // The generation of the last rotated journal
+    private OutputStream output;
+
+    /**
+     * Constructor
+     *
+     * @param savePath The path to the save file the journal belongs to.
+     */
+    Journal(String savePath) {
+        file = new File(savePath + ".journal");
+        TreeMap<Long, File> rotated = getRotated();
+        generation = rotated.isEmpty() ? 0 : rotated.lastKey();
+    }
+
+    /**
+     * Appends a record of a changed flag to the journal. The record is written to the file right
+     * away but is not forced to the disk.
+     *
+     * @param flag      VISITED, STARRED, or READ.
+     * @param status    The new value of the flag.
+     * @param listName  The name of the FeedList where the flag was changed.
+     * @param feedUrl   The URL of the Feed holding the Item.
+     * @param itemId    The id of the Item, or the watermark for READ.
+     * @throws IOException If the record could not be written.
+     */
+    synchronized void append(char flag, boolean status, String listName, String feedUrl,
+                             String itemId) throws IOException {
+        append(String.valueOf(flag) + (status ? '1' : '0') + '\t' + escape(listName) + '\t' +
+                escape(feedUrl) + '\t' + escape(itemId));
+    }
+
+    /**
+     * Appends a record as it was read from a journal, like a record deferred by a FeedList.
+     *
+     * @param record The record without its line end.
+     * @throws IOException If the record could not be written.
+     */
+    synchronized void append(String record) throws IOException {
+        if(output == null)
+            output = open();
+
+        output.write((record + '\n').getBytes(StandardCharsets.UTF_8));
+        output.flush();
+    }
+
+    /**
+     * Opens the journal for appending. A partly written record at the end of the journal is cut
+     * off first, by cutting the journal off after its last line end.
+     *
+     * @return An OutputStream appending to the journal.
+     * @throws IOException If the journal could not be opened.
+     */
+    private OutputStream open() throws IOException {
+        try(RandomAccessFile access = new RandomAccessFile(file, "rw")) {
+            long end = access.length();
+
+            while(end > 0) {
+                access.seek(end - 1);
+                if(access.read() == '\n')
+                    break;
+                end--;
+            }
+
+            access.setLength(end);
+        }
+
+        return new FileOutputStream(file, true);
+    }
+
+    /**
+     * Applies the records in the rotated journal and then the journal to the FeedLists. Records
+     * for FeedLists, Feeds, or Items which no longer exist are skipped, and records for FeedLists
+     * which are not loaded are deferred by them and counted as applied.
+     *
+     * @param feedLists The FeedLists loaded from the save file.
+     * @return          The number of records applied.
+     * @throws IOException If a journal could not be read.
+     */
+    synchronized int replay(ArrayList<FeedList> feedLists) throws IOException {
+        int applied = 0;
+
+        for(File rotated : getRotated().values()) {
+            applied += replay(rotated, feedLists);
+        }
+
+        return applied + replay(file, feedLists);
+    }
+
+    /**
+     * Moves the records in the journal to a rotated journal of the next generation and starts a
+     * new journal. Called when a snapshot of the FeedLists is taken. The rotated journals of
+     * earlier snapshots which have not been saved are kept as they are.
+     *
+     * @return The generation the snapshot covers, which is the last generation if the journal
+     *         was empty.
+     * @throws IOException If the journal could not be rotated.
+     */
+    synchronized long rotate() throws IOException {
+        close();
+
+        if(!file.exists())
+            return generation;
+
+        File rotated = getRotated(generation + 1);
+        if(!file.renameTo(rotated))
+            throw new IOException("Could not rotate " + file);
+
+        return ++generation;
+    }
+
+    /**
+     * Deletes the rotated journals up to a generation. Called when the snapshot taken at the
+     * rotate which returned the generation has been saved, since their records are then in the
+     * save file.
+     *
+     * @param covered   The generation returned by rotate for the saved snapshot.
+     * @throws IOException If a rotated journal could not be deleted.
+     */
+    synchronized void compacted(long covered) throws IOException {
+        for(File rotated : getRotated().headMap(covered, true).values()) {
+            delete(rotated);
+        }
+    }
+
+    /**
+     * Moves the journal to belong to another save file. The rotated journals up to the generation
+     * of the snapshot saved to the other save file are deleted. The records in the journal and in
+     * later rotated journals were appended after that snapshot, so they are moved along.
+     *
+     * @param savePath  The path to the save file the journal now belongs to.
+     * @param covered   The generation returned by rotate for the saved snapshot.
+     * @throws IOException If the journal could not be moved.
+     */
+    synchronized void moveTo(String savePath, long covered) throws IOException {
+        close();
+        compacted(covered);
+
+        Journal other = new Journal(savePath);
+        for(File rotated : other.getRotated().values()) {
+            delete(rotated);
+        }
+        delete(other.file);
+
+        TreeMap<Long, File> later = getRotated();
+        File previous = file;
+        file = other.file;
+
+        for(Map.Entry<Long, File> rotated : later.entrySet()) {
+            move(rotated.getValue(), getRotated(rotated.getKey()));
+        }
+
+        if(previous.exists())
+            move(previous, file);
+    }
+
+    /**
+     * Closes the journal file. It is opened again by the next append.
+     */
+    synchronized void close() throws IOException {
+        if(output != null) {
+            output.close();
+            output = null;
+        }
+    }
+
+    /**
+     * Returns the size of the journal and the rotated journal, which tells how much would be
+     * gained by compacting.
+     *
+     * @return The size in bytes.
+     */
+    synchronized long getSize() {
+        long size = file.length();
+
+        for(File rotated : getRotated().values()) {
+            size += rotated.length();
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns the rotated journals by their generations, which are the numbers after the name of
+     * the journal.
+     */
+    private TreeMap<Long, File> getRotated() {
+        TreeMap<Long, File> rotated = new TreeMap<>();
+        String prefix = file.getName() + ".";
+        File[] files = file.getAbsoluteFile().getParentFile().listFiles();
+
+        if(files == null)
+            return rotated;
+
+        for(File candidate : files) {
+            String name = candidate.getName();
+
+            if(name.startsWith(prefix)) {
+                try {
+                    rotated.put(Long.parseLong(name.substring(prefix.length())), candidate);
+                }
+                catch(NumberFormatException expt) {
+                    // Not a rotated journal
+                }
+            }
+        }
+
+        return rotated;
+    }
+
+    private File getRotated(long generation) {
+        return new File(file.getPath() + "." + generation);
+    }
+
+    private int replay(File journal, ArrayList<FeedList> feedLists) throws IOException {
+        if(!journal.exists())
+            return 0;
+
+        int applied = 0;
+        HashMap<String, FeedList> byName = new HashMap<>();
+        for(FeedList feedList : feedLists) {
+            byName.putIfAbsent(feedList.getName(), feedList);
+        }
+
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(journal), StandardCharsets.UTF_8))) {
+            StringBuilder line = new StringBuilder();
+            int character;
+
+            // Lines are read by hand, since readLine would also return a last line without end
+            while((character = reader.read()) != -1) {
+                if(character != '\n') {
+                    line.append((char) character);
+                    continue;
+                }
+
+                if(apply(line.toString(), byName))
+                    applied++;
+                line.setLength(0);
+            }
+        }
+
+        return applied;
+    }
+
+    private boolean apply(String record, HashMap<String, FeedList> feedLists) {
+        String[] fields = record.split("\t", -1);
+
+        if(fields.length != 4 || fields[0].length() != 2)
+            return false;
+
+        FeedList feedList = feedLists.get(unescape(fields[1]));
+        if(feedList == null)
+            return false;
+
+        if(!feedList.isLoaded()) {
+            feedList.defer(record);
+            return true;
+        }
+
+        return apply(record, feedList);
+    }
+
+    /**
+     * Applies a record to a FeedList, which is the FeedList the record names. Used for the records
+     * a FeedList deferred once it is loaded.
+     *
+     * @param record    The record without its line end.
+     * @param feedList  The FeedList to apply it to.
+     * @return          True if the record was applied.
+     */
+    static boolean apply(String record, FeedList feedList) {
+        String[] fields = record.split("\t", -1);
+
+        if(fields.length != 4 || fields[0].length() != 2)
+            return false;
+
+        char flag = fields[0].charAt(0);
+        boolean status = fields[0].charAt(1) == '1';
+        String feedUrl = unescape(fields[2]);
+        String itemId = unescape(fields[3]);
+
+        try {
+            if(flag == VISITED)
+                feedList.setVisited(feedUrl, itemId, status);
+            else if(flag == STARRED)
+                feedList.setStarred(feedUrl, itemId, status);
+            else if(flag == READ)
+                feedList.markReadUpTo(feedUrl, Long.parseLong(itemId));
+            else
+                return false;
+
+            return true;
+        }
+        catch(RuntimeException expt) {
+            // The Feed or Item has been removed since the record was written
+            return false;
+        }
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String text) {
+        if(text.indexOf('\\') == -1)
+            return text;
+
+        StringBuilder result = new StringBuilder();
+
+        for(int i = 0; i < text.length(); i++) {
+            char character = text.charAt(i);
+
+            if(character == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(++i);
+                result.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+            }
+            else {
+                result.append(character);
+            }
+        }
+
+        return result.toString();
+    }
+
+    private static void move(File from, File to) throws IOException {
+        if(!from.renameTo(to))
+            throw new IOException("Could not move " + from + " to " + to);
+    }
+
+    private static void delete(File file) throws IOException {
+        if(file.exists() && !file.delete())
+            throw new IOException("Could not delete " + file);
+    }
+}
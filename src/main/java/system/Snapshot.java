@@ -0,0 +1,65 @@
+package system;
+
+import java.util.ArrayList;
+import java.util.Date;
+
+/**
+ * Class Snapshot
+ *
+ * Copies of the FeedLists taken by Configuration.getSnapshot, together with the lastUpdated of the
+ * Configuration when they were taken. The copies hold snapshots of the Feeds and Items, so they
+ * don't change with the FeedLists and can be saved on another thread, and once saved the
+ * Configuration knows which changes made it to the save file. The generation of the journal
+ * rotated for the snapshot tells which rotated journals can be deleted once it is saved.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class Snapshot {
+    private final ArrayList<FeedList> feedLists;
+    private final Date lastUpdated;
+    private final long generation;
+
+    /**
+     * Constructor
+     *
+     * @param feedLists     The copied FeedLists.
+     * @param lastUpdated   The lastUpdated of the Configuration when the copies were taken.
+     * @param generation    The generation returned by Journal.rotate, or 0 without a journal.
+     */
+    Snapshot(ArrayList<FeedList> feedLists, Date lastUpdated, long generation) {
+        this.feedLists = feedLists;
+        this.lastUpdated = lastUpdated;
+        this.generation = generation;
+    }
+
+    /*
+    ----------------------------------- ACCESSORS AND MUTATORS -------------------------------------
+    */
+
+    /**
+     * Access method for feedLists.
+     *
+     * @return An ArrayList of the copied FeedLists.
+     */
+    public ArrayList<FeedList> getFeedLists() {
+        return feedLists;
+    }
+
+    /**
+     * Access method for lastUpdated.
+     *
+     * @return The lastUpdated of the Configuration when the snapshot was taken.
+     */
+    public Date getLastUpdated() {
+        return lastUpdated;
+    }
+
+    /**
+     * Access method for generation.
+     *
+     * @return The generation of the journal rotated when the snapshot was taken.
+     */
+    long getGeneration() {
+        return generation;
+    }
+}
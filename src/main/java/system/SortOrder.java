@@ -0,0 +1,73 @@
+package system;
+
+import system.rss.Item;
+
+import java.util.Comparator;
+
+/**
+ * Enum SortOrder
+ *
+ * The orders the Items of a FeedList can be sorted in, named as the sorting rules Strings of
+ * FeedList. An order sorts either by title or by date, ascending or descending. A descending order
+ * is the ascending order reversed, so Items which are equal come in the reverse order as well.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public enum SortOrder {
+    TITLE_ASC(true, false),
+    TITLE_DEC(true, true),
+    DATE_ASC(false, false),
+    DATE_DEC(false, true);
+
+    private final boolean byTitle;
+    private final boolean descending;
+
+    SortOrder(boolean byTitle, boolean descending) {
+        this.byTitle = byTitle;
+        this.descending = descending;
+    }
+
+    /**
+     * Returns the SortOrder named by sorting rules. Sorting rules which are not known sort by date
+     * descending, which is the default.
+     *
+     * @param sortingRules  The sorting rules of a FeedList.
+     * @return              The SortOrder with the same name, or DATE_DEC.
+     */
+    public static SortOrder fromRules(String sortingRules) {
+        for(SortOrder order : values()) {
+            if(order.name().equals(sortingRules))
+                return order;
+        }
+
+        return DATE_DEC;
+    }
+
+    /**
+     * Returns the ascending Comparator of the order, which is the same for the ascending and
+     * descending order of the same field.
+     *
+     * @return A Comparator comparing Items by title or by date.
+     */
+    public Comparator<Item> getComparator() {
+        return byTitle ? Item::compareTitle : Item::compareDate;
+    }
+
+    /**
+     * Returns true if this order sorts by the same field as other, so Items sorted by one only have
+     * to be reversed to be sorted by the other.
+     *
+     * @param other Another SortOrder.
+     * @return      True if both sort by title or both sort by date.
+     */
+    public boolean hasSameField(SortOrder other) {
+        return byTitle == other.byTitle;
+    }
+
+    /**
+     * @return True if the order is descending.
+     */
+    public boolean isDescending() {
+        return descending;
+    }
+}
@@ -0,0 +1,286 @@
+package system;
+
+import system.rss.Feed;
+import system.rss.Item;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Class SortedItems
+ *
+ * Keeps the Items of the Feeds in a FeedList sorted, so they do not have to be sorted each time
+ * they are asked for. Each Feed has a run of its Items sorted on their own, which is only sorted
+ * again when the Items of the Feed have changed. The runs are merged into one sorted view, which
+ * remembers the Feed of each Item. When a Feed is added, removed, or refreshed only its Items are
+ * taken out of the view and its new run is merged into it, and when many Feeds have changed every
+ * run is merged again with a k-way merge.
+ *
+ * The runs and the view are kept in ascending order, and a descending order is given by reading
+ * the view backwards, so changing between ascending and descending does no sorting. Changing to
+ * an order of another field sorts every run again.
+ *
+ * Items which are equal in the ascending order come in the order of their Feeds and then in the
+ * order of the Items in the Feed.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+class SortedItems {
+    private static final int MERGE_LIMIT = 4;   // Most changed runs merged into the view one by one
+
+    private SortOrder order;
+    private ArrayList<Feed> feeds;  // The Feeds of the runs, in order
+    private ArrayList<Run> runs;
+    private Item[] view;            // Every Item in ascending order
+    private int[] owners;           // The index in feeds of the Feed of each Item in view
+
+    /**
+     * Constructor
+     */
+    SortedItems() {
+        feeds = new ArrayList<>();
+        runs = new ArrayList<>();
+        view = new Item[0];
+        owners = new int[0];
+    }
+
+    /**
+     * Returns a window of the Items of the Feeds sorted in the order. The view is first brought up
+     * to date with the Feeds, see update, and then only the Items in the window are copied.
+     *
+     * @param currentFeeds  The Feeds of the FeedList in order.
+     * @param currentOrder  The order to sort the Items in.
+     * @param offset        The position in the order of the first Item to return.
+     * @param limit         The most Items to return.
+     * @return              A new ArrayList with the sorted Items from offset, which is empty if
+     *                      offset is past the last Item.
+     */
+    ArrayList<Item> get(ArrayList<Feed> currentFeeds, SortOrder currentOrder, int offset,
+                        int limit) {
+        if(offset < 0 || limit < 0)
+            throw new IllegalArgumentException("Negative offset or limit: " + offset + ", " +
+                    limit);
+
+        sync(currentFeeds, currentOrder);
+
+        int end = offset + Math.min(limit, Math.max(0, view.length - offset));
+        ArrayList<Item> items = new ArrayList<>(Math.max(0, end - offset));
+
+        for(int i = offset; i < end; i++) {
+            items.add(order.isDescending() ? view[view.length - 1 - i] : view[i]);
+        }
+
+        return items;
+    }
+
+    /**
+     * Returns the number of Items of the Feeds, after bringing the view up to date with them.
+     *
+     * @param currentFeeds  The Feeds of the FeedList in order.
+     * @param currentOrder  The order to sort the Items in.
+     * @return              The number of Items in the view.
+     */
+    int size(ArrayList<Feed> currentFeeds, SortOrder currentOrder) {
+        sync(currentFeeds, currentOrder);
+        return view.length;
+    }
+
+    /**
+     * Brings the view up to date with the Feeds and the order. A new field sorts every run again,
+     * anything else is handled by update.
+     */
+    private void sync(ArrayList<Feed> currentFeeds, SortOrder currentOrder) {
+        if(order == null || !order.hasSameField(currentOrder)) {
+            order = currentOrder;
+            rebuild(currentFeeds);
+        }
+        else {
+            order = currentOrder;
+            update(currentFeeds);
+        }
+    }
+
+    /**
+     * Brings the view up to date with the Feeds. The Feeds which are still in the same order as
+     * before keep their runs, and the Items of every other Feed, and of Feeds whose Items have
+     * changed, are taken out of the view. Then a new run is sorted for each of those Feeds which
+     * are still there and merged into the view. A Feed which has been moved is handled as if it
+     * was removed and added again.
+     *
+     * @param currentFeeds The Feeds of the FeedList in order.
+     */
+    private void update(ArrayList<Feed> currentFeeds) {
+        int[] moved = new int[feeds.size()];    // The new index of each Feed, or -1 if it changed
+        ArrayList<Integer> changed = new ArrayList<>();
+        ArrayList<Run> currentRuns = new ArrayList<>();
+        int next = 0;
+
+        for(int i = 0; i < feeds.size(); i++) {
+            moved[i] = -1;
+
+            if(next < currentFeeds.size() && feeds.get(i) == currentFeeds.get(next)) {
+                Run run = runs.get(i);
+                if(run.isCurrent(feeds.get(i)))
+                    moved[i] = next;
+                else
+                    changed.add(next);
+
+                currentRuns.add(run);
+                next++;
+            }
+        }
+
+        for(int i = next; i < currentFeeds.size(); i++) {
+            changed.add(i);
+            currentRuns.add(null);
+        }
+
+        if(changed.isEmpty() && next == feeds.size())
+            return;
+
+        if(changed.size() > MERGE_LIMIT) {
+            rebuild(currentFeeds);
+            return;
+        }
+
+        // Take the Items of Feeds which are gone or have changed out of the view
+        int size = 0;
+        for(int i = 0; i < view.length; i++) {
+            int owner = moved[owners[i]];
+            if(owner != -1) {
+                view[size] = view[i];
+                owners[size++] = owner;
+            }
+        }
+        view = Arrays.copyOf(view, size);
+        owners = Arrays.copyOf(owners, size);
+
+        feeds = new ArrayList<>(currentFeeds);
+        runs = currentRuns;
+
+        for(int index : changed) {
+            Run run = new Run(feeds.get(index), order.getComparator());
+            runs.set(index, run);
+            mergeIntoView(run, index);
+        }
+    }
+
+    /**
+     * Sorts a new run for every Feed and merges them into the view with a k-way merge, taking the
+     * next Item from the run with the lowest Item each time.
+     *
+     * @param currentFeeds The Feeds of the FeedList in order.
+     */
+    private void rebuild(ArrayList<Feed> currentFeeds) {
+        Comparator<Item> comparator = order.getComparator();
+        feeds = new ArrayList<>(currentFeeds);
+        runs = new ArrayList<>();
+        int size = 0;
+
+        for(Feed feed : feeds) {
+            Run run = new Run(feed, comparator);
+            runs.add(run);
+            size += run.items.length;
+        }
+
+        // A cursor is the index of a run and the position in it, ties go to the earliest run
+        PriorityQueue<int[]> cursors = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+            int result = comparator.compare(runs.get(a[0]).items[a[1]],
+                    runs.get(b[0]).items[b[1]]);
+            return result != 0 ? result : Integer.compare(a[0], b[0]);
+        });
+
+        for(int i = 0; i < runs.size(); i++) {
+            if(runs.get(i).items.length > 0)
+                cursors.add(new int[] {i, 0});
+        }
+
+        view = new Item[size];
+        owners = new int[size];
+        int next = 0;
+
+        while(!cursors.isEmpty()) {
+            int[] cursor = cursors.poll();
+            Item[] items = runs.get(cursor[0]).items;
+            view[next] = items[cursor[1]];
+            owners[next++] = cursor[0];
+
+            if(++cursor[1] < items.length)
+                cursors.add(cursor);
+        }
+    }
+
+    /**
+     * Merges a run into the view, which does not hold any of its Items.
+     *
+     * @param run   The run to merge.
+     * @param owner The index of the Feed of the run.
+     */
+    private void mergeIntoView(Run run, int owner) {
+        Comparator<Item> comparator = order.getComparator();
+        Item[] items = run.items;
+        Item[] merged = new Item[view.length + items.length];
+        int[] mergedOwners = new int[merged.length];
+        int fromView = 0;
+        int fromRun = 0;
+
+        for(int i = 0; i < merged.length; i++) {
+            boolean takeRun;
+
+            if(fromRun == items.length) {
+                takeRun = false;
+            }
+            else if(fromView == view.length) {
+                takeRun = true;
+            }
+            else {
+                int result = comparator.compare(items[fromRun], view[fromView]);
+                takeRun = result < 0 || (result == 0 && owner < owners[fromView]);
+            }
+
+            if(takeRun) {
+                merged[i] = items[fromRun++];
+                mergedOwners[i] = owner;
+            }
+            else {
+                merged[i] = view[fromView];
+                mergedOwners[i] = owners[fromView++];
+            }
+        }
+
+        view = merged;
+        owners = mergedOwners;
+    }
+
+    /**
+     * Class Run
+     *
+     * The Items of a Feed sorted in ascending order, with what the Items of the Feed were when it
+     * was sorted.
+     */
+    private static class Run {
+        private final ArrayList<Item> source;
+        private final int size;
+        private final long itemsVersion;
+        private final Item[] items;
+
+        Run(Feed feed, Comparator<Item> comparator) {
+            source = feed.getItems();
+            size = source.size();
+            itemsVersion = feed.getItemsVersion();
+            items = source.toArray(new Item[size]);
+            Arrays.sort(items, comparator);
+        }
+
+        /**
+         * Returns true if the Items of the Feed are the ones which were sorted. Adding or removing
+         * Items without itemsChanged is noticed by the size.
+         */
+        boolean isCurrent(Feed feed) {
+            return feed.getItems() == source && source.size() == size &&
+                    feed.getItemsVersion() == itemsVersion;
+        }
+    }
+}
@@ -3,6 +3,8 @@ package system.rss;
 import system.rss.exceptions.ItemDoesNotExist;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 
 /**
  * Class Feed
@@ -12,6 +14,19 @@ import java.util.ArrayList;
  * Item objects represents all the items in the feed, and lastly it has a url to the XML file to be
  * able to update.
  *
+ * The Items are indexed on their id, so getItemById does not have to search through every Item.
+ * The index is built the first time it is needed and rebuilt when the Items are replaced, so a
+ * change made directly to the ArrayList from getItems should be followed by itemsChanged.
+ *
+ * The number of unread and starred Items are counted once for each ArrayList of Items and then
+ * changed by setVisited and setStarred, so asking for them does not go through the Items. A change
+ * made directly to the status of an Item should be followed by statusChanged.
+ *
+ * The visited status of the Items is kept in a ReadState, as a date up to which every Item has
+ * been visited and the ids of the Items which have been toggled on their own, so markAllRead does
+ * not go through the Items. Items are adopted by the ReadState the first time it is used after
+ * they were added, and keep the visited status they had.
+ *
  * @author Axel Nilsson (axnion)
  */
 public class Feed {
@@ -21,6 +36,20 @@ public class Feed {
     private String image;
     private String urlToXML;        // The URL to the XML file, used when updating the feed
     private ArrayList<Item> items;  // An array holding the items in the feed
+    private String eTag;            // The ETag validator from the last fetch of the XML file
+    private String lastModified;    // The Last-Modified validator from the last fetch
+    private FeedSchedule schedule;  // Decides when the feed should be polled next
+    private volatile long version;  // Counts the changes, so a save can skip unchanged feeds
+    private volatile long itemsVersion; // Counts the changes to the items, not to their status
+    private volatile ItemIndex index;   // The Items by id, or null until it is needed
+    private volatile ItemCounts counts; // The unread and starred Items, or null until needed
+    private long copiedVersion = -1;    // The version of the Feed this Feed is a copy of
+    private ReadState readState;        // The visited status of the items, or null for a copy
+    private ArrayList<Item> adopted;    // The items readState has adopted, null until it is used
+    private int adoptedSize;
+    private ArrayList<Item> snapshotItems;  // The Item copies of the last snapshot, or null
+    private ReadState snapshotState;        // The ReadState of the copies in snapshotItems
+    private long snapshotVersion;           // The version snapshotItems were copied at
 
     /**
      * Constructor
@@ -36,21 +65,26 @@ public class Feed {
         this.image = "";
         this.urlToXML = urlToXml;
         this.items = new ArrayList<>();
+        this.schedule = new FeedSchedule();
+        this.readState = new ReadState();
     }
 
     /**
      * Constructor
      *
-     * Takes each arguments and assigns the value to the corresponding field.
+     * Takes each arguments and assigns the value to the corresponding field. Also used to restore a
+     * Feed from a save file.
      */
-    Feed(String title, String link, String description, String image, String urlToXml,
-         ArrayList<Item> items) {
+    public Feed(String title, String link, String description, String image, String urlToXml,
+                ArrayList<Item> items) {
         this.title = title;
         this.link = link;
         this.description = description;
         this.image = image;
         this.urlToXML = urlToXml;
         this.items = items;
+        this.schedule = new FeedSchedule();
+        this.readState = new ReadState();
     }
 
     /**
@@ -61,7 +95,33 @@ public class Feed {
      * @param status    True if the user has visited the item, if not then false.
      */
     public void setVisited(String itemId, boolean status) {
-        getItemById(itemId).setVisited(status);
+        Item item = getItemById(itemId);
+        ItemCounts current = getCounts();
+        boolean old = item.isVisited();
+
+        item.setVisited(status);
+        if(old != status)
+            current.unread += status ? -1 : 1;
+        version++;
+    }
+
+    /**
+     * Counts a change made directly to the items of the feed, see getVersion.
+     */
+    public void itemsChanged() {
+        index = null;
+        adoptedSize = -1;   // An Item may have been replaced without changing the size
+        itemsVersion++;
+        version++;
+    }
+
+    /**
+     * Counts a change made directly to the visited or starred status of the items, so the number
+     * of unread and starred items are counted again.
+     */
+    public void statusChanged() {
+        counts = null;
+        version++;
     }
 
     /**
@@ -72,7 +132,14 @@ public class Feed {
      * @param status    True if the user has visited the item, if not then false.
      */
     public void setStarred(String itemId, boolean status) {
-        getItemById(itemId).setStarred(status);
+        Item item = getItemById(itemId);
+        ItemCounts current = getCounts();
+        boolean old = item.isStarred();
+
+        item.setStarred(status);
+        if(old != status)
+            current.starred += status ? 1 : -1;
+        version++;
     }
 
     /**
@@ -83,12 +150,194 @@ public class Feed {
      * @return      An Item with an id matching the argument id.
      */
     public Item getItemById(String id) {
+        ItemIndex current = index;
+
+        // Adding or removing Items without itemsChanged is noticed by the size
+        if(current == null || current.items != items || current.size != items.size()) {
+            current = new ItemIndex(items);
+            index = current;
+        }
+
+        Item item = current.byId.get(id);
+        if(item == null)
+            throw new ItemDoesNotExist(id, urlToXML);
+        return item;
+    }
+
+    /**
+     * Returns the counts of unread and starred Items, counting them if they have not been counted
+     * for the current Items.
+     */
+    private ItemCounts getCounts() {
+        adoptItems();
+        ItemCounts current = counts;
+
+        // Adding or removing Items without itemsChanged is noticed by the size
+        if(current == null || current.items != items || current.size != items.size()) {
+            current = new ItemCounts(items);
+            counts = current;
+        }
+
+        return current;
+    }
+
+    /**
+     * Lets readState adopt the items which it has not adopted, keeping their visited status, and
+     * forgets the toggled items which are no longer in the Feed. The first time readState is used
+     * it is fitted to the items instead. Adding or removing Items without itemsChanged is noticed
+     * by the size.
+     */
+    private synchronized void adoptItems() {
+        if(readState == null || (adopted == items && adoptedSize == items.size()))
+            return;
+
+        if(adopted == null) {
+            readState.fit(items);
+        }
+        else {
+            for(Item item : items) {
+                if(item.getReadState() != readState)
+                    readState.adopt(item, item.isVisited());
+            }
+            readState.retain(items);
+        }
+
         for(Item item : items) {
-            if(item.getId().equals(id))
-                return item;
+            item.setReadState(readState);
+        }
+        adopted = items;
+        adoptedSize = items.size();
+    }
+
+    /**
+     * Sets every Item of the Feed as visited by moving the watermark of the ReadState past them.
+     * Only the status of the Items is changed, so the itemsVersion is kept.
+     *
+     * @return The new watermark, which markReadUpTo takes to do the same again.
+     */
+    public long markAllRead() {
+        ItemCounts current = getCounts();
+        long upTo = readState.markAllRead();
+
+        current.unread = 0;
+        version++;
+        return upTo;
+    }
+
+    /**
+     * Does what the markAllRead which returned upTo did, unless the Feed has already been marked
+     * read up to it or later. Used when replaying a journal on top of a save file.
+     *
+     * @param upTo A watermark returned by markAllRead.
+     */
+    public void markReadUpTo(long upTo) {
+        adoptItems();
+
+        if(readState.markReadUpTo(upTo)) {
+            counts = null;
+            version++;
+        }
+    }
+
+    /**
+     * Replaces the visited status of the items with a saved watermark and toggled items.
+     *
+     * @param upTo          The watermark from getReadUpTo.
+     * @param exceptions    The ids of the toggled items from getReadExceptions.
+     */
+    public void restoreReadState(long upTo, Collection<String> exceptions) {
+        adoptItems();
+        readState.restore(upTo, exceptions);
+        counts = null;
+        snapshotItems = null;
+    }
+
+    /**
+     * Creates a copy of this Feed with its own ArrayList of Items, but holding the same Item
+     * objects. The copy is made on the thread this Feed is changed on, and can then be updated on
+     * another thread without changing this Feed.
+     *
+     * @return A new Feed with the same content as this Feed.
+     */
+    Feed copy() {
+        Feed copy = new Feed(title, link, description, image, urlToXML, new ArrayList<>(items));
+        copy.setValidators(eTag, lastModified);
+        copy.schedule = schedule.copy();
+        copy.readState = null;  // The Items of the copy keep the ReadState of this Feed
+
+        // The counts are only carried over if they are counted for the current Items
+        copy.copiedVersion = version;
+        ItemCounts current = counts;
+        if(current != null && current.items == items && current.size == items.size())
+            copy.counts = new ItemCounts(copy.items, current.unread, current.starred);
+        return copy;
+    }
+
+    /**
+     * Creates a copy of this Feed with copies of its Items and their visited status, which keeps
+     * the state this Feed has now while this Feed changes. Unlike copy it is made to be saved on
+     * another thread, so it has the same versions as this Feed and is not updated.
+     *
+     * The copies of the Items are only made again when the version has changed since the last
+     * snapshot, as nothing changes them. Otherwise the snapshot shares them with the last one, so
+     * a snapshot of many Feeds only copies the Items of the Feeds which were changed.
+     *
+     * @return A new Feed with the same content, status, and versions as this Feed.
+     */
+    public Feed snapshot() {
+        adoptItems();
+
+        // Items added or removed without itemsChanged are noticed by the size
+        if(snapshotItems == null || snapshotVersion != version ||
+                snapshotItems.size() != items.size()) {
+            ReadState state = readState != null ? readState.copy() : null;
+
+            ArrayList<Item> copies = new ArrayList<>(items.size());
+            for(Item item : items) {
+                copies.add(item.copy(state));
+            }
+
+            snapshotItems = copies;
+            snapshotState = state;
+            snapshotVersion = version;
         }
-        throw new ItemDoesNotExist(id, urlToXML);
-     }
+
+        Feed snapshot = new Feed(title, link, description, image, urlToXML, snapshotItems);
+        snapshot.setValidators(eTag, lastModified);
+        snapshot.schedule = schedule.copy();
+        snapshot.readState = snapshotState;
+        snapshot.adopted = snapshotItems;
+        snapshot.adoptedSize = snapshotItems.size();
+
+        // Set last, as the setters above count as changes
+        snapshot.version = version;
+        snapshot.itemsVersion = itemsVersion;
+        return snapshot;
+    }
+
+    /**
+     * Replaces the content of this Feed with the content of other, which is normally an updated
+     * copy of this Feed.
+     *
+     * @param other The Feed to take the content from.
+     */
+    void setContent(Feed other) {
+        title = other.getTitle();
+        link = other.getLink();
+        description = other.getDescription();
+        image = other.getImage();
+        items = other.getItems();
+        eTag = other.getETag();
+        lastModified = other.getLastModified();
+        schedule = other.getSchedule();
+        index = null;
+        // The counts of other are kept up to date by the update, unless this Feed was changed
+        // after other was copied from it
+        counts = other.copiedVersion == version ? other.counts : null;
+        adoptItems();
+        itemsVersion++;
+        version++;
+    }
 
     /*
     ------------------------------- ACCESSORS AND MUTATORS -----------------------------------------
@@ -133,12 +382,81 @@ public class Feed {
         return urlToXML;
     }
 
+    /**
+     * @return A String containing the ETag from the last fetch of the XML file, or null
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * @return A String containing the Last-Modified from the last fetch of the XML file, or null
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return The FeedSchedule deciding when the feed should be polled next
+     */
+    public FeedSchedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * @return The number of items which have not been visited
+     */
+    public int getUnreadCount() {
+        return getCounts().unread;
+    }
+
+    /**
+     * @return The date in milliseconds up to which every item has been visited, except the items
+     *         in getReadExceptions
+     */
+    public long getReadUpTo() {
+        adoptItems();
+        return readState.getReadUpTo();
+    }
+
+    /**
+     * @return The ids of the items which have the other visited status than getReadUpTo gives them
+     */
+    public ArrayList<String> getReadExceptions() {
+        adoptItems();
+        return readState.getExceptions();
+    }
+
+    /**
+     * @return The number of items which have been starred
+     */
+    public int getStarredCount() {
+        return getCounts().starred;
+    }
+
+    /**
+     * @return A number which grows each time the content of the feed or the status of its items
+     *         is changed through the feed
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return A number which grows each time the items of the feed are changed, but not when only
+     *         the status of an item is changed
+     */
+    public long getItemsVersion() {
+        return itemsVersion;
+    }
+
     /**
      * Sets the title of the feed to the content of title argument.
      * @param title A String containing the title we want to set the feeds title to.
      */
     void setTitle(String title) {
         this.title = title;
+        version++;
     }
 
     /**
@@ -147,6 +465,7 @@ public class Feed {
      */
     void setLink(String link) {
         this.link = link;
+        version++;
     }
 
     /**
@@ -155,10 +474,12 @@ public class Feed {
      */
     void setDescription(String description) {
         this.description = description;
+        version++;
     }
 
     void setImage(String image) {
         this.image = image;
+        version++;
     }
 
     /**
@@ -167,6 +488,21 @@ public class Feed {
      */
     void setItems(ArrayList<Item> items) {
         this.items = items;
+        index = null;
+        itemsVersion++;
+        version++;
+    }
+
+    /**
+     * Same as setItems above, but with the number of unread and starred Items already known, which
+     * is the case after an update that knows which Items were added and removed.
+     * @param items     A ArrayList of Item objects
+     * @param unread    The number of Items which have not been visited
+     * @param starred   The number of Items which have been starred
+     */
+    void setItems(ArrayList<Item> items, int unread, int starred) {
+        setItems(items);
+        counts = new ItemCounts(items, unread, starred);
     }
 
     /**
@@ -176,4 +512,71 @@ public class Feed {
     void setUrlToXML(String urlToXML) {
         this.urlToXML = urlToXML;
     }
-}
\ No newline at end of file
+
+    /**
+     * Sets the validators the server sent with the XML file. They are sent back on the next fetch
+     * so the server can answer that nothing has changed.
+     * @param eTag          A String containing the ETag, or null
+     * @param lastModified  A String containing the Last-Modified, or null
+     */
+    public void setValidators(String eTag, String lastModified) {
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        version++;
+    }
+
+    /**
+     * Class ItemIndex
+     *
+     * The Items of a Feed by id, together with the ArrayList and size it was built from so it can
+     * tell when it is out of date. If several Items have the same id the first is kept, as the
+     * search it replaces would find.
+     */
+    private static class ItemIndex {
+        private final ArrayList<Item> items;
+        private final int size;
+        private final HashMap<String, Item> byId;
+
+        private ItemIndex(ArrayList<Item> items) {
+            this.items = items;
+            size = items.size();
+            byId = new HashMap<>(size * 2);
+
+            for(Item item : items) {
+                byId.putIfAbsent(item.getId(), item);
+            }
+        }
+    }
+
+    /**
+     * Class ItemCounts
+     *
+     * The number of unread and starred Items of a Feed, together with the ArrayList and size they
+     * were counted from so it can tell when they are out of date.
+     */
+    private static class ItemCounts {
+        private final ArrayList<Item> items;
+        private final int size;
+        private int unread;
+        private int starred;
+
+        private ItemCounts(ArrayList<Item> items) {
+            this.items = items;
+            size = items.size();
+
+            for(Item item : items) {
+                if(!item.isVisited())
+                    unread++;
+                if(item.isStarred())
+                    starred++;
+            }
+        }
+
+        private ItemCounts(ArrayList<Item> items, int unread, int starred) {
+            this.items = items;
+            size = items.size();
+            this.unread = unread;
+            this.starred = starred;
+        }
+    }
+}
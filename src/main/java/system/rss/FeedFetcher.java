@@ -0,0 +1,271 @@
+package system.rss;
+
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Class FeedFetcher
+ *
+ * FeedFetcher is the fetch layer under RssParser. It opens a stream to the XML file of a feed. A
+ * URL with a protocol is opened as a URL and a String without a protocol is opened as a path on
+ * the local file system.
+ *
+ * When the URL is an HTTP URL the request is made conditional by sending the ETag and
+ * Last-Modified validators from the last fetch as If-None-Match and If-Modified-Since headers. If
+ * the server answers 304 Not Modified the Response has no stream and the feed does not have to be
+ * parsed at all.
+ *
+ * Every byte read from the returned streams is counted, before any decompression, so it is
+ * possible to see how much data the fetches actually transferred.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+class FeedFetcher {
+    private int connectTimeout;
+    private int readTimeout;
+    private final AtomicLong bytesRead;
+
+    /**
+     * Constructor
+     *
+     * Initializes the timeouts to 10 seconds for connecting and 30 seconds for reading.
+     */
+    FeedFetcher() {
+        connectTimeout = 10000;
+        readTimeout = 30000;
+        bytesRead = new AtomicLong();
+    }
+
+    /**
+     * Opens the XML file at url without any validators.
+     *
+     * @param url           A String containing the URL to the XML file.
+     * @return              A Response with a stream to the XML file.
+     * @throws IOException  If the XML file could not be opened.
+     */
+    Response fetch(String url) throws IOException {
+        return fetch(url, null, null);
+    }
+
+    /**
+     * Opens the XML file at url. If url is an HTTP URL and any of the validators are not null they
+     * are sent with the request, and if the server answers 304 Not Modified a Response without a
+     * stream is returned.
+     *
+     * @param url           A String containing the URL to the XML file.
+     * @param eTag          The ETag from the last fetch of the XML file, or null.
+     * @param lastModified  The Last-Modified from the last fetch of the XML file, or null.
+     * @return              A Response with a stream to the XML file, or a not modified Response.
+     * @throws IOException  If the XML file could not be opened.
+     */
+    Response fetch(String url, String eTag, String lastModified) throws IOException {
+        URLConnection connection;
+
+        try {
+            connection = new URL(url).openConnection();
+        }
+        catch(MalformedURLException expt) {
+            return new Response(count(new FileInputStream(url)), null, null, null);
+        }
+
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+
+        if(!(connection instanceof HttpURLConnection))
+            return new Response(count(connection.getInputStream()), null, null, null);
+
+        HttpURLConnection http = (HttpURLConnection) connection;
+        http.setRequestProperty("Accept-Encoding", "gzip");
+
+        if(eTag != null)
+            http.setRequestProperty("If-None-Match", eTag);
+        if(lastModified != null)
+            http.setRequestProperty("If-Modified-Since", lastModified);
+
+        int status = http.getResponseCode();
+
+        if(status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            http.disconnect();
+            return new Response(null, eTag, lastModified, null);
+        }
+
+        if(status >= 400) {
+            http.disconnect();
+            throw new IOException("Server answered " + status + " for \"" + url + "\"");
+        }
+
+        InputStream input = count(http.getInputStream());
+
+        if("gzip".equalsIgnoreCase(http.getContentEncoding()))
+            input = new GZIPInputStream(input);
+
+        return new Response(input, http.getHeaderField("ETag"),
+                http.getHeaderField("Last-Modified"), http);
+    }
+
+    private InputStream count(InputStream input) {
+        return new CountingInputStream(input, bytesRead);
+    }
+
+    /*
+    ------------------------------- ACCESSORS AND MUTATORS -----------------------------------------
+    */
+
+    /**
+     * Accessor method for connectTimeout
+     *
+     * @return Number of milliseconds to wait for a connection to be established.
+     */
+    int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Accessor method for readTimeout
+     *
+     * @return Number of milliseconds to wait for data when reading.
+     */
+    int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Accessor method for bytesRead
+     *
+     * @return The total number of bytes read from all streams this FeedFetcher has opened.
+     */
+    long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    /**
+     * Mutator method for connectTimeout
+     *
+     * @param milliseconds Number of milliseconds to wait for a connection to be established.
+     */
+    void setConnectTimeout(int milliseconds) {
+        connectTimeout = milliseconds;
+    }
+
+    /**
+     * Mutator method for readTimeout
+     *
+     * @param milliseconds Number of milliseconds to wait for data when reading.
+     */
+    void setReadTimeout(int milliseconds) {
+        readTimeout = milliseconds;
+    }
+
+    /**
+     * Class Response
+     *
+     * The result of a fetch. Holds the stream to the XML file and the validators the server sent
+     * with it. If the XML file has not been modified since the validators were received the stream
+     * is null.
+     */
+    static class Response implements AutoCloseable {
+        private final InputStream stream;
+        private final String eTag;
+        private final String lastModified;
+        private final HttpURLConnection connection;
+
+        Response(InputStream stream, String eTag, String lastModified,
+                 HttpURLConnection connection) {
+            this.stream = stream;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.connection = connection;
+        }
+
+        /**
+         * Closes the stream and, for HTTP, the connection. Used to stop a download before the
+         * whole XML file has been read.
+         */
+        public void close() {
+            if(stream != null) {
+                try {
+                    stream.close();
+                }
+                catch(IOException expt) {
+                    // Nothing to do, the connection is closed below
+                }
+            }
+
+            if(connection != null)
+                connection.disconnect();
+        }
+
+        /**
+         * @return True if the server answered 304 Not Modified.
+         */
+        boolean isNotModified() {
+            return stream == null;
+        }
+
+        /**
+         * @return The stream to the XML file, or null if it was not modified.
+         */
+        InputStream getStream() {
+            return stream;
+        }
+
+        /**
+         * @return The ETag sent by the server, or null if there was none.
+         */
+        String getETag() {
+            return eTag;
+        }
+
+        /**
+         * @return The Last-Modified sent by the server, or null if there was none.
+         */
+        String getLastModified() {
+            return lastModified;
+        }
+    }
+
+    /**
+     * Class CountingInputStream
+     *
+     * An InputStream which adds the number of bytes read though it to a counter.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private final AtomicLong counter;
+
+        CountingInputStream(InputStream input, AtomicLong counter) {
+            super(input);
+            this.counter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if(value != -1)
+                counter.incrementAndGet();
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if(read > 0)
+                counter.addAndGet(read);
+            return read;
+        }
+
+        @Override
+        public long skip(long length) throws IOException {
+            long skipped = super.skip(length);
+            counter.addAndGet(skipped);
+            return skipped;
+        }
+    }
+}
@@ -3,14 +3,15 @@ package system.rss;
 /**
  * Class FeedMinimal
  *
- * This is a minimal representation of a feed. It only contains the title of the feed and the url to
- * the XML file.
+ * This is a minimal representation of a feed. It only contains the title of the feed, the type of
+ * the feed, and the url to the XML file.
  *
  * @author Axel Nilsson (axnion)
  */
 public class FeedMinimal {
     public String urlToXml;
     public String title;
+    public String type;
 
     /**
      * Constructor
@@ -18,9 +19,11 @@ public class FeedMinimal {
      *
      * @param urlToXml  The URL to the RSS file.
      * @param title     The title of the feed.
+     * @param type      The type of the feed, for example 'rss' or 'rdf'.
      */
-    FeedMinimal(String urlToXml, String title) {
+    FeedMinimal(String urlToXml, String title, String type) {
         this.urlToXml = urlToXml;
         this.title = title;
+        this.type = type;
     }
 }
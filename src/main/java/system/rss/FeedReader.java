@@ -0,0 +1,547 @@
+package system.rss;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class FeedReader
+ *
+ * FeedReader is a single pass reader of an RSS feed built on top of a StAX XMLStreamReader. It
+ * never builds a Document, instead Item objects are created straight from the event stream and
+ * handed out one at a time though nextItem. The channel title, link, description, and image are
+ * picked up along the way and can be read when the items have been consumed.
+ *
+ * The reader follows the same rules as the old DOM based RssParser. The first title, link,
+ * description, and image element found inside the channel is used only if it is a direct child of
+ * the channel, items without a guid or link are skipped, items without a title are "Untitled", and
+ * items without a date get the epoch date.
+ *
+ * The ttl, skipHours, skipDays, sy:updatePeriod, and sy:updateFrequency elements of the channel
+ * are read as well, to be used as hints for when the feed should be polled.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+class FeedReader implements AutoCloseable {
+    private static final XMLInputFactory factory = createFactory();
+
+    private static final int CHANNEL_TITLE = 0;
+    private static final int CHANNEL_LINK = 1;
+    private static final int CHANNEL_DESCRIPTION = 2;
+    private static final int CHANNEL_IMAGE = 3;
+    private static final int CHANNEL_TTL = 4;
+    private static final int CHANNEL_UPDATE_PERIOD = 5;
+    private static final int CHANNEL_UPDATE_FREQUENCY = 6;
+    private static final String[] CHANNEL_FIELDS = {"title", "link", "description", "image", "ttl",
+            "sy:updatePeriod", "sy:updateFrequency"};
+
+    private static final int ITEM_GUID = 0;
+    private static final int ITEM_TITLE = 1;
+    private static final int ITEM_LINK = 2;
+    private static final int ITEM_DATE = 3;
+    private static final int ITEM_DESCRIPTION = 4;
+    private static final String[] ITEM_FIELDS = {"guid", "title", "link", "pubDate",
+            "description"};
+
+    private static final int NO_TEXT = 0;
+    private static final int PLAIN_TEXT = 1;
+    private static final int CDATA_TEXT = 2;
+
+    private final XMLStreamReader reader;
+    private final InputStream input;
+    private final String url;
+
+    private String type;
+    private int depth;
+    private int channelDepth;
+    private boolean channelDone;
+
+    private final boolean[] channelSeen;
+    private final String[] channelValues;
+    private boolean imageChildPending;
+    private final List<String> skipHours;
+    private final List<String> skipDays;
+    private List<String> skipTarget;
+    private final String[] skipValue;
+
+    private boolean inItem;
+    private boolean[] itemSeen;
+    private String[] itemValues;
+
+    private String[] captureTarget;
+    private int captureIndex;
+    private int captureType;
+    private final StringBuilder captureBuffer;
+
+    /**
+     * Constructor
+     *
+     * Creates a new XMLStreamReader on top of the stream. The stream is closed when the FeedReader
+     * is closed.
+     *
+     * @param input                 The stream containing the XML file.
+     * @param url                   The URL to the XML file, is added to every Item as Feed
+     *                              identifier.
+     * @throws XMLStreamException   If the stream could not be read as XML.
+     */
+    FeedReader(InputStream input, String url) throws XMLStreamException {
+        this.input = input;
+        this.url = url;
+        this.reader = factory.createXMLStreamReader(url, input);
+
+        type = null;
+        depth = 0;
+        channelDepth = -1;
+        channelDone = false;
+        channelSeen = new boolean[CHANNEL_FIELDS.length];
+        channelValues = new String[CHANNEL_FIELDS.length];
+        imageChildPending = false;
+        skipHours = new ArrayList<>();
+        skipDays = new ArrayList<>();
+        skipTarget = null;
+        skipValue = new String[1];
+        inItem = false;
+        captureTarget = null;
+        captureBuffer = new StringBuilder();
+    }
+
+    /**
+     * Reads forward in the stream until the next complete and valid item has been read and returns
+     * it as an Item. Items without a guid or link are skipped. When the end of the channel is
+     * reached null is returned.
+     *
+     * @return                      The next Item in the feed, or null if there are no more Items.
+     * @throws XMLStreamException   If the XML file is broken.
+     */
+    Item nextItem() throws XMLStreamException {
+        while(!channelDone && reader.hasNext()) {
+            Item item = processEvent(reader.next());
+
+            if(item != null)
+                return item;
+        }
+
+        if(channelDepth == -1)
+            throw new XMLStreamException("No channel element found in " + url);
+
+        return null;
+    }
+
+    /**
+     * Reads forward in the stream only until the title of the channel is known. This is the case
+     * when the first title element inside the channel has been read, or when the first item
+     * starts. The rest of the stream is never read. An Atom feed has no channel, so reading stops
+     * as soon as the root element shows that the file is one.
+     *
+     * @return                      A String containing the title of the feed.
+     * @throws XMLStreamException   If the XML file is broken or is not an RSS feed.
+     */
+    String readTitle() throws XMLStreamException {
+        while(!channelDone && reader.hasNext()) {
+            processEvent(reader.next());
+
+            if("atom".equals(type))
+                throw new XMLStreamException(url + " is an Atom feed");
+
+            if(channelSeen[CHANNEL_TITLE] && captureTarget == null)
+                return getTitle();
+            if(inItem)
+                return getTitle();
+        }
+
+        if(channelDepth == -1)
+            throw new XMLStreamException("No channel element found in " + url);
+
+        return getTitle();
+    }
+
+    /**
+     * Closes the XMLStreamReader and the underlying stream.
+     */
+    public void close() {
+        try {
+            reader.close();
+        }
+        catch(XMLStreamException expt) {
+            // Nothing to do, the stream is closed below
+        }
+
+        try {
+            input.close();
+        }
+        catch(IOException expt) {
+            // Nothing to do
+        }
+    }
+
+    /**
+     * Handles a single event from the XMLStreamReader and returns an Item if the event completed
+     * one.
+     *
+     * @param event An integer describing the event type.
+     * @return      The completed Item, or null.
+     */
+    private Item processEvent(int event) {
+        switch(event) {
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                if(capture(PLAIN_TEXT))
+                    return null;
+                break;
+            case XMLStreamConstants.CDATA:
+                if(capture(CDATA_TEXT))
+                    return null;
+                break;
+            case XMLStreamConstants.START_ELEMENT:
+                finishCapture();
+                depth++;
+                startElement();
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                finishCapture();
+                return endElement();
+            default:
+                finishCapture();
+        }
+        return null;
+    }
+
+    private void startElement() {
+        String name = getName();
+
+        if(type == null)
+            type = getType(reader.getLocalName());
+
+        if(channelDepth == -1) {
+            if(name.equals("channel"))
+                channelDepth = depth;
+            return;
+        }
+
+        if(imageChildPending && depth == channelDepth + 2) {
+            imageChildPending = false;
+            startCapture(channelValues, CHANNEL_IMAGE);
+        }
+
+        if(skipTarget != null && depth == channelDepth + 2) {
+            skipValue[0] = null;
+            startCapture(skipValue, 0);
+        }
+
+        if(!inItem && depth == channelDepth + 1) {
+            if(name.equals("skipHours"))
+                skipTarget = skipHours;
+            else if(name.equals("skipDays"))
+                skipTarget = skipDays;
+        }
+
+        if(!inItem && depth == channelDepth + 1 && name.equals("item")) {
+            inItem = true;
+            itemSeen = new boolean[ITEM_FIELDS.length];
+            itemValues = new String[ITEM_FIELDS.length];
+            return;
+        }
+
+        markChannelField(name);
+
+        if(inItem) {
+            int index = indexOf(ITEM_FIELDS, name);
+            if(index != -1 && !itemSeen[index]) {
+                itemSeen[index] = true;
+                startCapture(itemValues, index);
+            }
+        }
+    }
+
+    private Item endElement() {
+        if(channelDepth == -1) {
+            depth--;
+            return null;
+        }
+
+        if(depth == channelDepth) {
+            channelDone = true;
+            depth--;
+            return null;
+        }
+
+        if(skipTarget != null && depth == channelDepth + 2 && skipValue[0] != null)
+            skipTarget.add(skipValue[0]);
+
+        if(depth == channelDepth + 1) {
+            imageChildPending = false;
+            skipTarget = null;
+
+            if(inItem) {
+                inItem = false;
+                depth--;
+                return createItem();
+            }
+        }
+
+        depth--;
+        return null;
+    }
+
+    /**
+     * Marks the first occurrence of a channel field inside the channel. The value is only captured
+     * if the element is a direct child of the channel, just like the DOM based parser did. The
+     * image is the text of the first element inside the image element, which is normally url.
+     *
+     * @param name The name of the element that just started.
+     */
+    private void markChannelField(String name) {
+        int index = indexOf(CHANNEL_FIELDS, name);
+
+        if(index == -1 || channelSeen[index])
+            return;
+
+        channelSeen[index] = true;
+
+        if(depth == channelDepth + 1) {
+            if(index == CHANNEL_IMAGE)
+                imageChildPending = true;
+            else
+                startCapture(channelValues, index);
+        }
+    }
+
+    private Item createItem() {
+        String id = itemValues[ITEM_GUID];
+        String link = itemValues[ITEM_LINK];
+
+        if(id == null || link == null)
+            return null;
+
+        Item item = new Item();
+        item.setId(id);
+        item.setLink(link);
+        item.setTitle(itemValues[ITEM_TITLE] != null ? itemValues[ITEM_TITLE] : "Untitled");
+        item.setDate(itemValues[ITEM_DATE] != null ? itemValues[ITEM_DATE] :
+                "Thu, 01 Jan 1970 00:00:00 +0000");
+        item.setDescription(itemValues[ITEM_DESCRIPTION] != null ?
+                itemValues[ITEM_DESCRIPTION] : "");
+        item.setFeedIdentifier(url);
+
+        return item;
+    }
+
+    /*
+    ----------------------------------- TEXT CAPTURING ---------------------------------------------
+    */
+
+    /**
+     * Starts capturing the first child text of the element that just started. The value ends up in
+     * target at index when the capture is finished.
+     */
+    private void startCapture(String[] target, int index) {
+        captureTarget = target;
+        captureIndex = index;
+        captureType = NO_TEXT;
+        captureBuffer.setLength(0);
+    }
+
+    /**
+     * Adds text to the current capture. Adjacent text of the same kind is joined, the same way a
+     * normalized Document joins text nodes. Text of another kind ends the capture.
+     *
+     * @param type  The kind of text, PLAIN_TEXT or CDATA_TEXT.
+     * @return      True if the text was captured.
+     */
+    private boolean capture(int type) {
+        if(captureTarget == null)
+            return false;
+
+        if(captureType != NO_TEXT && captureType != type) {
+            finishCapture();
+            return false;
+        }
+
+        captureType = type;
+        captureBuffer.append(reader.getTextCharacters(), reader.getTextStart(),
+                reader.getTextLength());
+        return true;
+    }
+
+    private void finishCapture() {
+        if(captureTarget == null)
+            return;
+
+        if(captureType != NO_TEXT)
+            captureTarget[captureIndex] = captureBuffer.toString();
+
+        captureTarget = null;
+    }
+
+    /*
+    ----------------------------------- ACCESSORS --------------------------------------------------
+    */
+
+    /**
+     * @return  A String containing the type of the feed, 'rss', 'rdf', or 'atom', taken from the
+     *          root element. If the root element is unknown its name is returned, and if no
+     *          element has been read yet null is returned.
+     */
+    String getType() {
+        return type;
+    }
+
+    /**
+     * @return A String containing the title of the feed, or 'Untitled' if it has none.
+     */
+    String getTitle() {
+        return getTitle("Untitled");
+    }
+
+    /**
+     * @return A String containing the link of the feed, or an empty String if it has none.
+     */
+    String getLink() {
+        return getLink("");
+    }
+
+    /**
+     * @return A String containing the description of the feed, or 'No description'.
+     */
+    String getDescription() {
+        return getDescription("No description");
+    }
+
+    /**
+     * @return A String containing the URL to the image of the feed, or the default image.
+     */
+    String getImage() {
+        return getImage("file:img/default_feed.png");
+    }
+
+    /**
+     * @return True if any of the elements giving hints for when to poll the feed has been read.
+     */
+    boolean hasScheduleHints() {
+        return channelValues[CHANNEL_TTL] != null || channelValues[CHANNEL_UPDATE_PERIOD] != null ||
+                channelValues[CHANNEL_UPDATE_FREQUENCY] != null || !skipHours.isEmpty() ||
+                !skipDays.isEmpty();
+    }
+
+    /**
+     * @return A String containing the text of the ttl element, or null if it has none.
+     */
+    String getTtl() {
+        return channelValues[CHANNEL_TTL];
+    }
+
+    /**
+     * @return A List of the text of each hour element in skipHours.
+     */
+    List<String> getSkipHours() {
+        return skipHours;
+    }
+
+    /**
+     * @return A List of the text of each day element in skipDays.
+     */
+    List<String> getSkipDays() {
+        return skipDays;
+    }
+
+    /**
+     * @return A String containing the text of the sy:updatePeriod element, or null.
+     */
+    String getUpdatePeriod() {
+        return channelValues[CHANNEL_UPDATE_PERIOD];
+    }
+
+    /**
+     * @return A String containing the text of the sy:updateFrequency element, or null.
+     */
+    String getUpdateFrequency() {
+        return channelValues[CHANNEL_UPDATE_FREQUENCY];
+    }
+
+    /**
+     * The accessors taking a fallback are used when the reader stopped before the end of the
+     * channel, so a value which has not been read yet is not replaced by the default.
+     *
+     * @param fallback  The String returned if no title has been read.
+     * @return          A String containing the title of the feed, or fallback.
+     */
+    String getTitle(String fallback) {
+        return channelValues[CHANNEL_TITLE] != null ? channelValues[CHANNEL_TITLE] : fallback;
+    }
+
+    /**
+     * @param fallback  The String returned if no link has been read.
+     * @return          A String containing the link of the feed, or fallback.
+     */
+    String getLink(String fallback) {
+        return channelValues[CHANNEL_LINK] != null ? channelValues[CHANNEL_LINK] : fallback;
+    }
+
+    /**
+     * @param fallback  The String returned if no description has been read.
+     * @return          A String containing the description of the feed, or fallback.
+     */
+    String getDescription(String fallback) {
+        return channelValues[CHANNEL_DESCRIPTION] != null ? channelValues[CHANNEL_DESCRIPTION] :
+                fallback;
+    }
+
+    /**
+     * @param fallback  The String returned if no image has been read.
+     * @return          A String containing the URL to the image of the feed, or fallback.
+     */
+    String getImage(String fallback) {
+        return channelValues[CHANNEL_IMAGE] != null ? channelValues[CHANNEL_IMAGE] : fallback;
+    }
+
+    /*
+    ----------------------------------- HELPERS ----------------------------------------------------
+    */
+
+    /**
+     * Returns the qualified name of the current element, prefix included, which is the name the
+     * DOM based parser matched on.
+     */
+    private String getName() {
+        String prefix = reader.getPrefix();
+
+        if(prefix == null || prefix.isEmpty())
+            return reader.getLocalName();
+
+        return prefix + ":" + reader.getLocalName();
+    }
+
+    private static String getType(String rootName) {
+        switch(rootName) {
+            case "rss":
+                return "rss";
+            case "RDF":
+                return "rdf";
+            case "feed":
+                return "atom";
+            default:
+                return rootName;
+        }
+    }
+
+    private static int indexOf(String[] names, String name) {
+        for(int i = 0; i < names.length; i++) {
+            if(names[i].equals(name))
+                return i;
+        }
+        return -1;
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
@@ -0,0 +1,499 @@
+package system.rss;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class FeedRefresher
+ *
+ * FeedRefresher updates many Feeds at the same time. Each Feed is fetched and parsed on a thread
+ * from a pool of a fixed size, so one slow server does not hold up the rest of the Feeds.
+ *
+ * To not flood a single server only a limited number of Feeds from the same host are refreshed
+ * at the same time. Each Feed also has a timeout, and a Feed which takes longer is given up on and
+ * left as it was. A worker blocked on the network may not stop when it is interrupted, so the
+ * refresh of a Feed which was given up on keeps its place in the limits until its worker is done.
+ *
+ * The worker threads never touch the Feeds. The Feeds are picked and copied by prepare or
+ * prepareDue before the refresh starts, on the thread the Feeds are changed on, and the workers
+ * only update the copies. Each updated copy is applied to the real Feed by the applier, one Feed
+ * at a time. A Feed which fails or times out is therefore never left half updated. By default the
+ * copy is applied on the thread which called refresh, but a GUI can give an applier which hands
+ * it to its own thread instead, so refresh can run in the background while the Feeds are only read
+ * and changed on the GUI thread.
+ *
+ * After each Feed is refreshed the FeedScheduler decides when it should be polled next, and
+ * prepareDue only picks the Feeds which are due. The FeedSchedule of a Feed which was not
+ * modified, failed, or timed out is changed through the applier as well.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class FeedRefresher {
+    private static final long POLL_INTERVAL = 50;
+
+    private RssParser rssParser;
+    private FeedScheduler scheduler;
+    private ThreadPoolExecutor executor;
+    private Executor applier;
+    private int threads;
+    private int threadsPerHost;
+    private int feedTimeout;
+
+    /**
+     * Constructor
+     *
+     * Creates a FeedRefresher with 8 threads, at most 2 at the same time for a single host, and a
+     * timeout of 60 seconds for each Feed.
+     */
+    public FeedRefresher() {
+        this(new RssParser(), 8, 2, 60000);
+    }
+
+    /**
+     * Constructor
+     *
+     * Takes each arguments and assigns the value to the corresponding field, and creates the
+     * thread pool.
+     */
+    FeedRefresher(RssParser rssParser, int threads, int threadsPerHost, int feedTimeout) {
+        this.rssParser = rssParser;
+        this.scheduler = new FeedScheduler();
+        this.applier = Runnable::run;
+        this.threads = threads;
+        this.threadsPerHost = threadsPerHost;
+        this.executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(
+                threads, runnable -> {
+                    Thread thread = new Thread(runnable, "FeedRefresher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.setKeepAliveTime(POLL_INTERVAL * 100, TimeUnit.MILLISECONDS);
+        this.executor.allowCoreThreadTimeOut(true);
+        setFeedTimeout(feedTimeout);
+    }
+
+    /**
+     * Refreshes the Feeds which the FeedScheduler says are due, see refresh.
+     *
+     * @param feeds A List of Feeds, of which the due ones are refreshed.
+     * @return      A RefreshStats with the statistics of the refresh cycle.
+     */
+    public RefreshStats refreshDue(List<Feed> feeds) {
+        return refreshDue(feeds, null);
+    }
+
+    /**
+     * Refreshes the Feeds which the FeedScheduler says are due, see refresh. The Feeds are picked
+     * and copied on the calling thread, see prepareDue.
+     *
+     * @param feeds     A List of Feeds, of which the due ones are refreshed.
+     * @param listener  A ProgressListener told each time a Feed is done, or null.
+     * @return          A RefreshStats with the statistics of the refresh cycle.
+     */
+    public RefreshStats refreshDue(List<Feed> feeds, ProgressListener listener) {
+        return refresh(prepareDue(feeds), listener);
+    }
+
+    /**
+     * Refreshes all Feeds and waits until every Feed has been refreshed, has failed, or has timed
+     * out. The Feeds are copied on the calling thread, see prepare.
+     *
+     * @param feeds A List of the Feeds to refresh.
+     * @return      A RefreshStats with the statistics of the refresh cycle.
+     */
+    public RefreshStats refresh(List<Feed> feeds) {
+        return refresh(feeds, null);
+    }
+
+    /**
+     * Same as refresh above, but tells listener each time a Feed has been refreshed, has failed, or
+     * has timed out.
+     *
+     * @param feeds     A List of the Feeds to refresh.
+     * @param listener  A ProgressListener told each time a Feed is done, or null.
+     * @return          A RefreshStats with the statistics of the refresh cycle.
+     */
+    public RefreshStats refresh(List<Feed> feeds, ProgressListener listener) {
+        return refresh(prepare(feeds), listener);
+    }
+
+    /**
+     * Copies each Feed for a refresh. Must be called on the thread the Feeds are changed on, which
+     * is the thread of the applier, since the Feeds are read.
+     *
+     * @param feeds A List of the Feeds to refresh.
+     * @return      A Batch with the Feeds and their copies.
+     */
+    public Batch prepare(List<Feed> feeds) {
+        return new Batch(feeds, 0);
+    }
+
+    /**
+     * Picks the Feeds which the FeedScheduler says are due and copies them for a refresh. Must be
+     * called on the thread the Feeds are changed on, like prepare.
+     *
+     * @param feeds A List of Feeds, of which the due ones are refreshed.
+     * @return      A Batch with the due Feeds and their copies.
+     */
+    public Batch prepareDue(List<Feed> feeds) {
+        List<Feed> due = scheduler.getDue(feeds, System.currentTimeMillis());
+        return new Batch(due, feeds.size() - due.size());
+    }
+
+    /**
+     * Refreshes the copies in a Batch and waits until every Feed has been refreshed, has failed,
+     * or has timed out. Feeds are started in the order they are in the Batch, but taking turns
+     * between hosts so that every host gets going as soon as possible. If the calling thread is
+     * interrupted the running refreshes are cancelled and the waiting ones are never started.
+     *
+     * The Feeds in the Batch are only changed through the applier, so this can be called on any
+     * thread.
+     *
+     * @param batch     A Batch returned by prepare or prepareDue.
+     * @param listener  A ProgressListener told each time a Feed is done, or null.
+     * @return          A RefreshStats with the statistics of the refresh cycle.
+     */
+    public synchronized RefreshStats refresh(Batch batch, ProgressListener listener) {
+        long start = System.currentTimeMillis();
+        long bytesBefore = rssParser.getBytesRead();
+        int total = batch.feeds.size();
+
+        RefreshStats stats = new RefreshStats(total);
+        BlockingQueue<Refresh> finished = new LinkedBlockingQueue<>();
+        Map<String, LinkedList<Refresh>> waiting = new LinkedHashMap<>();
+        Map<String, Integer> running = new LinkedHashMap<>();
+        ArrayList<Refresh> active = new ArrayList<>();
+        ArrayList<Refresh> abandoned = new ArrayList<>();   // Timed out but still running
+        int done = 0;
+
+        for(int i = 0; i < total; i++) {
+            Feed copy = batch.copies.get(i);
+            String host = getHost(copy.getUrlToXML());
+            waiting.computeIfAbsent(host, key -> new LinkedList<>())
+                    .add(new Refresh(batch.feeds.get(i), copy, host, finished));
+            running.put(host, 0);
+        }
+
+        dispatch(waiting, running, active, abandoned);
+
+        // Refreshes may be waiting with none active while abandoned ones hold their places
+        while(!active.isEmpty() || (!waiting.isEmpty() && !abandoned.isEmpty())) {
+            Refresh refresh;
+
+            try {
+                refresh = finished.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            }
+            catch(InterruptedException expt) {
+                for(Refresh unfinished : active) {
+                    unfinished.future.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            int doneBefore = done;
+
+            if(refresh != null && active.remove(refresh)) {
+                running.merge(refresh.host, -1, Integer::sum);
+                apply(refresh, stats);
+                done++;
+            }
+            else if(refresh != null && abandoned.remove(refresh)) {
+                // Already counted as timed out, so only its place is given up
+                running.merge(refresh.host, -1, Integer::sum);
+            }
+
+            long now = System.currentTimeMillis();
+            Iterator<Refresh> iterator = active.iterator();
+
+            while(iterator.hasNext()) {
+                Refresh unfinished = iterator.next();
+
+                if(unfinished.startedAt != 0 && now - unfinished.startedAt > feedTimeout) {
+                    unfinished.future.cancel(true);
+                    iterator.remove();
+                    abandoned.add(unfinished);
+                    applier.execute(() -> scheduler.failed(unfinished.feed, now));
+                    stats.addTimedOut();
+                    done++;
+                }
+            }
+
+            if(listener != null && done > doneBefore)
+                listener.progress(done, total);
+
+            dispatch(waiting, running, active, abandoned);
+        }
+
+        stats.setNotDue(batch.notDue);
+        stats.finish(System.currentTimeMillis() - start, rssParser.getBytesRead() - bytesBefore);
+        return stats;
+    }
+
+    /**
+     * Stops the thread pool. Refreshes which are running are interrupted.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts waiting refreshes until all threads are busy or the hosts of all waiting refreshes
+     * have reached threadsPerHost. One refresh is started per host in each round. The refreshes
+     * which timed out but are still running keep their threads busy and count for their hosts.
+     */
+    private void dispatch(Map<String, LinkedList<Refresh>> waiting, Map<String, Integer> running,
+                          ArrayList<Refresh> active, ArrayList<Refresh> abandoned) {
+        boolean started = true;
+
+        while(started && active.size() + abandoned.size() < threads) {
+            started = false;
+            Iterator<Map.Entry<String, LinkedList<Refresh>>> iterator =
+                    waiting.entrySet().iterator();
+
+            while(iterator.hasNext() && active.size() + abandoned.size() < threads) {
+                Map.Entry<String, LinkedList<Refresh>> entry = iterator.next();
+
+                if(running.get(entry.getKey()) >= threadsPerHost)
+                    continue;
+
+                Refresh refresh = entry.getValue().poll();
+                if(entry.getValue().isEmpty())
+                    iterator.remove();
+
+                running.merge(entry.getKey(), 1, Integer::sum);
+                refresh.future = executor.submit(refresh);
+                active.add(refresh);
+                started = true;
+            }
+        }
+    }
+
+    /**
+     * Schedules the next poll of the Feed, hands the result of a finished refresh to the applier,
+     * and counts it in stats. When the Feed was modified the next poll is set on the copy, since
+     * the FeedSchedule of the copy replaces the one of the Feed when the copy is applied. Otherwise
+     * the next poll is set on the Feed by the applier.
+     */
+    private void apply(Refresh refresh, RefreshStats stats) {
+        long now = System.currentTimeMillis();
+
+        if(refresh.update == null) {
+            applier.execute(() -> scheduler.failed(refresh.feed, now));
+            stats.addFailed();
+            return;
+        }
+
+        if(refresh.update.isNotModified()) {
+            applier.execute(() -> scheduler.polled(refresh.feed, now));
+        }
+        else {
+            scheduler.polled(refresh.copy, now);
+            applier.execute(() -> refresh.feed.setContent(refresh.copy));
+        }
+
+        stats.addRefreshed(refresh.update);
+    }
+
+    /**
+     * Returns the host of the URL, which is used to limit the number of Feeds refreshed at the
+     * same time from one server. Paths on the local file system are all given the same host.
+     *
+     * @param url   A String containing the URL to the XML file.
+     * @return      A String containing the host.
+     */
+    private static String getHost(String url) {
+        try {
+            return new URL(url).getHost();
+        }
+        catch(MalformedURLException expt) {
+            return "";
+        }
+    }
+
+    /*
+    ------------------------------- ACCESSORS AND MUTATORS -----------------------------------------
+    */
+
+    /**
+     * Accessor method for threads
+     *
+     * @return The number of Feeds refreshed at the same time.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Accessor method for threadsPerHost
+     *
+     * @return The number of Feeds from the same host refreshed at the same time.
+     */
+    public int getThreadsPerHost() {
+        return threadsPerHost;
+    }
+
+    /**
+     * Accessor method for feedTimeout
+     *
+     * @return The number of milliseconds a Feed may take to refresh.
+     */
+    public int getFeedTimeout() {
+        return feedTimeout;
+    }
+
+    /**
+     * Accessor method for scheduler
+     *
+     * @return The FeedScheduler deciding when each Feed is polled.
+     */
+    public FeedScheduler getScheduler() {
+        return scheduler;
+    }
+
+    /**
+     * Accessor method for rssParser
+     *
+     * @return The RssParser used to update the Feeds.
+     */
+    RssParser getRssParser() {
+        return rssParser;
+    }
+
+    /**
+     * Mutator method for threads. Changes the size of the thread pool.
+     *
+     * @param threads The number of Feeds refreshed at the same time.
+     */
+    public synchronized void setThreads(int threads) {
+        if(threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        }
+        else {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Mutator method for applier
+     *
+     * @param applier The Executor which applies refreshed copies to the Feeds.
+     */
+    public synchronized void setApplier(Executor applier) {
+        this.applier = applier;
+    }
+
+    /**
+     * Mutator method for threadsPerHost
+     *
+     * @param threadsPerHost The number of Feeds from the same host refreshed at the same time.
+     */
+    public synchronized void setThreadsPerHost(int threadsPerHost) {
+        this.threadsPerHost = threadsPerHost;
+    }
+
+    /**
+     * Mutator method for feedTimeout. The timeouts of the connections are lowered to twice the
+     * value if they are longer, so a Feed which times out does not keep its thread much longer.
+     *
+     * @param milliseconds The number of milliseconds a Feed may take to refresh.
+     */
+    public synchronized void setFeedTimeout(int milliseconds) {
+        FeedFetcher fetcher = rssParser.getFetcher();
+        fetcher.setConnectTimeout(Math.min(fetcher.getConnectTimeout(), milliseconds * 2));
+        fetcher.setReadTimeout(Math.min(fetcher.getReadTimeout(), milliseconds * 2));
+        feedTimeout = milliseconds;
+    }
+
+    /**
+     * Interface ProgressListener
+     *
+     * Told by refresh each time a Feed has been refreshed, has failed, or has timed out. It is
+     * called on the thread which called refresh.
+     */
+    public interface ProgressListener {
+        void progress(int done, int total);
+    }
+
+    /**
+     * Class Batch
+     *
+     * The Feeds picked for a refresh by prepare or prepareDue, together with a copy of each made
+     * on the thread the Feeds are changed on. Only the copies are given to the worker threads.
+     */
+    public static class Batch {
+        private final ArrayList<Feed> feeds;
+        private final ArrayList<Feed> copies;
+        private final int notDue;
+
+        private Batch(List<Feed> feeds, int notDue) {
+            this.feeds = new ArrayList<>(feeds);
+            this.copies = new ArrayList<>(feeds.size());
+            this.notDue = notDue;
+
+            for(Feed feed : feeds) {
+                copies.add(feed.copy());
+            }
+        }
+
+        /**
+         * @return The Feeds which are refreshed, in order
+         */
+        public ArrayList<Feed> getFeeds() {
+            return feeds;
+        }
+    }
+
+    /**
+     * Class Refresh
+     *
+     * The refresh of a single Feed, run on a worker thread. The copy of the Feed is updated, and
+     * when done the Refresh puts itself in the finished queue.
+     */
+    private class Refresh implements Runnable {
+        private final Feed feed;
+        private final Feed copy;
+        private final String host;
+        private final BlockingQueue<Refresh> finished;
+        private Future<?> future;
+        private volatile long startedAt;
+        private FeedUpdate update;
+
+        Refresh(Feed feed, Feed copy, String host, BlockingQueue<Refresh> finished) {
+            this.feed = feed;
+            this.copy = copy;
+            this.host = host;
+            this.finished = finished;
+        }
+
+        public void run() {
+            startedAt = System.currentTimeMillis();
+
+            try {
+                update = rssParser.updateFeed(copy);
+            }
+            catch(RuntimeException expt) {
+                update = null;
+            }
+            finally {
+                finished.add(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package system.rss;
+
+import java.time.DayOfWeek;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Class FeedSchedule
+ *
+ * FeedSchedule holds what is needed to decide when a Feed should be polled next. It has the hints
+ * the feed itself gives in its channel, which are ttl, skipHours, skipDays, and sy:updatePeriod
+ * with sy:updateFrequency, and the state of the polling, which is when the Feed was last polled,
+ * when it should be polled next, and how many polls in a row have failed.
+ *
+ * The hints are set by the RssParser when the XML file is read and the state is set by the
+ * FeedScheduler.
+ *
+ * It also counts the incremental updates made by the RssParser since it last read the whole feed.
+ * The count is not saved, so a Feed loaded from a save file is read whole on its first update.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class FeedSchedule {
+    private static final long MINUTE = 60000;
+
+    private int ttl;                        // Minutes the feed may be cached, or -1
+    private Set<Integer> skipHours;         // Hours in GMT when the feed should not be polled
+    private Set<DayOfWeek> skipDays;        // Days when the feed should not be polled
+    private long syndicationPeriod;         // Milliseconds between updates from sy:, or 0
+    private long lastPolled;                // When the Feed was last polled, or 0
+    private long nextPoll;                  // When the Feed should be polled next, or 0
+    private int failures;                   // Number of polls in a row which failed
+    private int incrementalUpdates;         // Updates since the whole feed was read, or -1
+
+    /**
+     * Constructor
+     *
+     * Creates a FeedSchedule without any hints which has never been polled.
+     */
+    FeedSchedule() {
+        ttl = -1;
+        skipHours = new TreeSet<>();
+        skipDays = EnumSet.noneOf(DayOfWeek.class);
+        syndicationPeriod = 0;
+        lastPolled = 0;
+        nextPoll = 0;
+        failures = 0;
+        incrementalUpdates = -1;
+    }
+
+    /**
+     * Creates a copy of this FeedSchedule.
+     *
+     * @return A new FeedSchedule with the same hints and state.
+     */
+    FeedSchedule copy() {
+        FeedSchedule copy = new FeedSchedule();
+        copy.ttl = ttl;
+        copy.skipHours.addAll(skipHours);
+        copy.skipDays.addAll(skipDays);
+        copy.syndicationPeriod = syndicationPeriod;
+        copy.lastPolled = lastPolled;
+        copy.nextPoll = nextPoll;
+        copy.failures = failures;
+        copy.incrementalUpdates = incrementalUpdates;
+        return copy;
+    }
+
+    /**
+     * Sets the hints from the text of the elements in the XML file. Values which can't be read are
+     * ignored.
+     *
+     * @param ttl               The text of the ttl element, or null.
+     * @param skipHours         The text of each hour element in skipHours.
+     * @param skipDays          The text of each day element in skipDays.
+     * @param updatePeriod      The text of the sy:updatePeriod element, or null.
+     * @param updateFrequency   The text of the sy:updateFrequency element, or null.
+     */
+    void setHints(String ttl, List<String> skipHours, List<String> skipDays, String updatePeriod,
+                  String updateFrequency) {
+        this.ttl = parseInt(ttl, -1);
+
+        this.skipHours.clear();
+        for(String hour : skipHours) {
+            int value = parseInt(hour, -1);
+            if(value >= 0 && value <= 23)
+                this.skipHours.add(value);
+            else if(value == 24)
+                this.skipHours.add(0);
+        }
+
+        this.skipDays.clear();
+        for(String day : skipDays) {
+            try {
+                this.skipDays.add(DayOfWeek.valueOf(day.trim().toUpperCase()));
+            }
+            catch(IllegalArgumentException expt) {
+                // Not a day, ignored
+            }
+        }
+
+        syndicationPeriod = parseSyndicationPeriod(updatePeriod, updateFrequency);
+    }
+
+    /**
+     * Returns the number of milliseconds between updates given by sy:updatePeriod and
+     * sy:updateFrequency. The period defaults to daily and the frequency to 1.
+     */
+    private static long parseSyndicationPeriod(String updatePeriod, String updateFrequency) {
+        if(updatePeriod == null && updateFrequency == null)
+            return 0;
+
+        long period;
+
+        switch(updatePeriod == null ? "daily" : updatePeriod.trim().toLowerCase()) {
+            case "hourly":
+                period = 60 * MINUTE;
+                break;
+            case "weekly":
+                period = 7 * 24 * 60 * MINUTE;
+                break;
+            case "monthly":
+                period = 30 * 24 * 60 * MINUTE;
+                break;
+            case "yearly":
+                period = 365 * 24 * 60 * MINUTE;
+                break;
+            default:
+                period = 24 * 60 * MINUTE;
+        }
+
+        int frequency = parseInt(updateFrequency, 1);
+        return period / Math.max(frequency, 1);
+    }
+
+    private static int parseInt(String text, int fallback) {
+        if(text == null)
+            return fallback;
+
+        try {
+            return Integer.parseInt(text.trim());
+        }
+        catch(NumberFormatException expt) {
+            return fallback;
+        }
+    }
+
+    /*
+    ------------------------------- ACCESSORS AND MUTATORS -----------------------------------------
+    */
+
+    /**
+     * @return The number of minutes the feed may be cached, or -1 if the feed has no ttl.
+     */
+    public int getTtl() {
+        return ttl;
+    }
+
+    /**
+     * @return A Set of the hours, 0 to 23 in GMT, when the feed should not be polled.
+     */
+    public Set<Integer> getSkipHours() {
+        return Collections.unmodifiableSet(skipHours);
+    }
+
+    /**
+     * @return A Set of the days when the feed should not be polled.
+     */
+    public Set<DayOfWeek> getSkipDays() {
+        return Collections.unmodifiableSet(skipDays);
+    }
+
+    /**
+     * @return The number of milliseconds between updates according to the feed, or 0.
+     */
+    public long getSyndicationPeriod() {
+        return syndicationPeriod;
+    }
+
+    /**
+     * @return The time in milliseconds when the Feed was last polled, or 0 if never.
+     */
+    public long getLastPolled() {
+        return lastPolled;
+    }
+
+    /**
+     * @return The time in milliseconds when the Feed should be polled next, or 0 if not decided.
+     */
+    public long getNextPoll() {
+        return nextPoll;
+    }
+
+    /**
+     * @return The number of polls in a row which have failed.
+     */
+    public int getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return The number of incremental updates since the whole feed was read, or -1 if the feed
+     *         has not been read whole since it was loaded.
+     */
+    int getIncrementalUpdates() {
+        return incrementalUpdates;
+    }
+
+    /**
+     * Sets the hints directly, used when the FeedSchedule is loaded from a save file.
+     *
+     * @param ttl               The number of minutes the feed may be cached, or -1.
+     * @param skipHours         The hours in GMT when the feed should not be polled.
+     * @param skipDays          The days when the feed should not be polled.
+     * @param syndicationPeriod The number of milliseconds between updates, or 0.
+     */
+    public void setHints(int ttl, Set<Integer> skipHours, Set<DayOfWeek> skipDays,
+                         long syndicationPeriod) {
+        this.ttl = ttl;
+        this.skipHours.clear();
+        this.skipHours.addAll(skipHours);
+        this.skipDays.clear();
+        this.skipDays.addAll(skipDays);
+        this.syndicationPeriod = syndicationPeriod;
+    }
+
+    /**
+     * Sets the state of the polling.
+     *
+     * @param lastPolled    The time in milliseconds when the Feed was last polled, or 0.
+     * @param nextPoll      The time in milliseconds when the Feed should be polled next, or 0.
+     * @param failures      The number of polls in a row which have failed.
+     */
+    public void setState(long lastPolled, long nextPoll, int failures) {
+        this.lastPolled = lastPolled;
+        this.nextPoll = nextPoll;
+        this.failures = failures;
+    }
+
+    /**
+     * Sets the number of incremental updates since the whole feed was read.
+     *
+     * @param incrementalUpdates    The number of incremental updates, 0 after a whole read.
+     */
+    void setIncrementalUpdates(int incrementalUpdates) {
+        this.incrementalUpdates = incrementalUpdates;
+    }
+}
@@ -0,0 +1,267 @@
+package system.rss;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Class FeedScheduler
+ *
+ * FeedScheduler decides when each Feed should be polled next, so that a feed which posts every
+ * hour is polled often and a feed which posts once a year is not. The interval of a Feed is worked
+ * out from its FeedSchedule and its Items:
+ *
+ * The interval starts at half of the median time between the newest Items, or defaultInterval if
+ * the Feed has too few dated Items. It is then raised to the ttl and to the period given by
+ * sy:updatePeriod and sy:updateFrequency, since the feed says it does not change more often than
+ * that, and kept between minInterval and maxInterval. A random jitter is added so Feeds added at
+ * the same time do not stay in step. If the next poll falls in one of the skipHours or skipDays it
+ * is moved to the first hour after them.
+ *
+ * When a poll fails the interval is doubled for every failure in a row, up to maxInterval.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class FeedScheduler {
+    private static final long MINUTE = 60000;
+    private static final int CADENCE_ITEMS = 20;
+
+    private long minInterval;
+    private long maxInterval;
+    private long defaultInterval;
+    private double jitter;
+    private Random random;
+
+    /**
+     * Constructor
+     *
+     * Creates a FeedScheduler polling each Feed at most every 15 minutes and at least once a day,
+     * and every hour if nothing is known about the feed. The jitter is up to 10% of the interval.
+     */
+    public FeedScheduler() {
+        this(15 * MINUTE, 24 * 60 * MINUTE, 60 * MINUTE, 0.1, new Random());
+    }
+
+    /**
+     * Constructor
+     *
+     * Takes each arguments and assigns the value to the corresponding field.
+     */
+    FeedScheduler(long minInterval, long maxInterval, long defaultInterval, double jitter,
+                  Random random) {
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.defaultInterval = defaultInterval;
+        this.jitter = jitter;
+        this.random = random;
+    }
+
+    /**
+     * Returns the Feeds which should be polled at the time now. A Feed which has been polled but
+     * has no next poll decided yet, for example one that was just added, gets one here.
+     *
+     * @param feeds A List of Feeds.
+     * @param now   The current time in milliseconds.
+     * @return      A List of the Feeds which are due.
+     */
+    public List<Feed> getDue(List<Feed> feeds, long now) {
+        ArrayList<Feed> due = new ArrayList<>();
+
+        for(Feed feed : feeds) {
+            if(isDue(feed, now))
+                due.add(feed);
+        }
+
+        return due;
+    }
+
+    /**
+     * Checks if the Feed should be polled at the time now. A Feed which has never been polled is
+     * always due.
+     *
+     * @param feed  The Feed to check.
+     * @param now   The current time in milliseconds.
+     * @return      True if the Feed should be polled.
+     */
+    public boolean isDue(Feed feed, long now) {
+        FeedSchedule schedule = feed.getSchedule();
+
+        if(schedule.getLastPolled() == 0)
+            return true;
+
+        if(schedule.getNextPoll() == 0) {
+            schedule.setState(schedule.getLastPolled(),
+                    getNextPoll(feed, schedule.getLastPolled()), schedule.getFailures());
+        }
+
+        return now >= schedule.getNextPoll();
+    }
+
+    /**
+     * Records a successful poll of the Feed and decides when it should be polled next.
+     *
+     * @param feed  The Feed which was polled.
+     * @param now   The current time in milliseconds.
+     */
+    public void polled(Feed feed, long now) {
+        feed.getSchedule().setState(now, getNextPoll(feed, now), 0);
+    }
+
+    /**
+     * Records a failed poll of the Feed. The Feed is polled again after the interval doubled once
+     * for every failure in a row, but never later than maxInterval.
+     *
+     * @param feed  The Feed which failed.
+     * @param now   The current time in milliseconds.
+     */
+    public void failed(Feed feed, long now) {
+        FeedSchedule schedule = feed.getSchedule();
+        int failures = schedule.getFailures() + 1;
+        long interval = getInterval(feed);
+
+        for(int i = 0; i < failures && interval < maxInterval; i++) {
+            interval *= 2;
+        }
+
+        schedule.setState(schedule.getLastPolled(), now + Math.min(interval, maxInterval),
+                failures);
+    }
+
+    /**
+     * Returns the time when the Feed should be polled next if it was polled at the time from.
+     *
+     * @param feed  The Feed.
+     * @param from  The time in milliseconds when the Feed was polled.
+     * @return      The time in milliseconds of the next poll.
+     */
+    long getNextPoll(Feed feed, long from) {
+        long interval = getInterval(feed);
+        interval += (long) (interval * jitter * (random.nextDouble() * 2 - 1));
+
+        return skip(feed.getSchedule(), from + interval);
+    }
+
+    /**
+     * Returns the interval between polls for the Feed, without jitter.
+     *
+     * @param feed  The Feed.
+     * @return      The interval in milliseconds.
+     */
+    long getInterval(Feed feed) {
+        FeedSchedule schedule = feed.getSchedule();
+        long cadence = getCadence(feed.getItems());
+        long interval = cadence > 0 ? cadence / 2 : defaultInterval;
+
+        if(schedule.getTtl() > 0)
+            interval = Math.max(interval, schedule.getTtl() * MINUTE);
+
+        interval = Math.max(interval, schedule.getSyndicationPeriod());
+
+        return Math.min(Math.max(interval, minInterval), maxInterval);
+    }
+
+    /**
+     * Returns the median time between the newest Items, or 0 if there are fewer than two dated
+     * Items. Items without a date have the epoch date and are left out.
+     *
+     * @param items The Items of the Feed.
+     * @return      The median time between Items in milliseconds, or 0.
+     */
+    static long getCadence(List<Item> items) {
+        ArrayList<Long> dates = new ArrayList<>();
+
+        for(Item item : items) {
+            if(item.getDate().getTime() > 0)
+                dates.add(item.getDate().getTime());
+        }
+
+        Collections.sort(dates, Collections.reverseOrder());
+
+        ArrayList<Long> intervals = new ArrayList<>();
+        for(int i = 1; i < dates.size() && i <= CADENCE_ITEMS; i++) {
+            long interval = dates.get(i - 1) - dates.get(i);
+            if(interval > 0)
+                intervals.add(interval);
+        }
+
+        if(intervals.isEmpty())
+            return 0;
+
+        Collections.sort(intervals);
+        return intervals.get(intervals.size() / 2);
+    }
+
+    /**
+     * Moves time forward to the start of the first hour which is not in skipHours or skipDays.
+     * Hours and days are in GMT, as the RSS specification says.
+     */
+    private static long skip(FeedSchedule schedule, long time) {
+        if(schedule.getSkipHours().isEmpty() && schedule.getSkipDays().isEmpty())
+            return time;
+
+        ZonedDateTime date = Instant.ofEpochMilli(time).atZone(ZoneOffset.UTC);
+        boolean moved = false;
+
+        for(int i = 0; i < 7 * 24; i++) {
+            if(!schedule.getSkipHours().contains(date.getHour()) &&
+                    !schedule.getSkipDays().contains(date.getDayOfWeek()))
+                break;
+
+            date = date.truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            moved = true;
+        }
+
+        return moved ? date.toInstant().toEpochMilli() : time;
+    }
+
+    /*
+    ------------------------------- ACCESSORS AND MUTATORS -----------------------------------------
+    */
+
+    /**
+     * @return The shortest time in milliseconds between polls of a Feed.
+     */
+    public long getMinInterval() {
+        return minInterval;
+    }
+
+    /**
+     * @return The longest time in milliseconds between polls of a Feed.
+     */
+    public long getMaxInterval() {
+        return maxInterval;
+    }
+
+    /**
+     * @return The time in milliseconds between polls of a Feed nothing is known about.
+     */
+    public long getDefaultInterval() {
+        return defaultInterval;
+    }
+
+    /**
+     * @param milliseconds The shortest time in milliseconds between polls of a Feed.
+     */
+    public void setMinInterval(long milliseconds) {
+        minInterval = milliseconds;
+    }
+
+    /**
+     * @param milliseconds The longest time in milliseconds between polls of a Feed.
+     */
+    public void setMaxInterval(long milliseconds) {
+        maxInterval = milliseconds;
+    }
+
+    /**
+     * @param milliseconds The time in milliseconds between polls of a Feed nothing is known about.
+     */
+    public void setDefaultInterval(long milliseconds) {
+        defaultInterval = milliseconds;
+    }
+}
@@ -1,5 +1,7 @@
 package system.rss;
 
+import system.rss.exceptions.NoXMLFileFound;
+
 import java.util.ArrayList;
 
 /**
@@ -25,14 +27,22 @@ public class FeedSniffer {
 
     /**
      * Takes a String containing a URL to an RSS feed. In the future a URL to a website should
-     * search the html for links to an RSS feed.
+     * search the html for links to an RSS feed. Only the start of the feed is downloaded. If no
+     * RSS feed can be read at the url the returned ArrayList is empty.
      *
      * @param url   A String containing a link to an RSS feed.
      * @return      An ArrayList of MinimalFeed objects with the Feeds found at url.
      */
     public ArrayList<FeedMinimal> getFeeds(String url) {
         ArrayList<FeedMinimal> feeds = new ArrayList<>();
-        feeds.add(rssParser.getMinimalFeed(url));
+
+        try {
+            feeds.add(rssParser.getMinimalFeed(url));
+        }
+        catch(NoXMLFileFound expt) {
+            // No feed found at url
+        }
+
         return feeds;
     }
 
@@ -0,0 +1,106 @@
+package system.rss;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class FeedUpdate
+ *
+ * FeedUpdate is the result of RssParser.updateFeed. It describes what changed in a Feed during the
+ * update: which Items were added, which were removed, and which are still in the feed but have a
+ * new title, link, description, or date. Items which did not change are not listed.
+ *
+ * It also tells how the update was made. A not modified update means the server answered that the
+ * XML file has not changed, so nothing was read. An incremental update means reading stopped at
+ * the first Item which was already in the Feed.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class FeedUpdate {
+    private List<Item> added;
+    private List<Item> removed;
+    private List<Item> changed;
+    private boolean notModified;
+    private boolean incremental;
+
+    /**
+     * Constructor
+     *
+     * Creates a FeedUpdate for a Feed where the XML file was not modified.
+     */
+    FeedUpdate() {
+        this.added = Collections.emptyList();
+        this.removed = Collections.emptyList();
+        this.changed = Collections.emptyList();
+        this.notModified = true;
+        this.incremental = false;
+    }
+
+    /**
+     * Constructor
+     *
+     * Takes each arguments and assigns the value to the corresponding field.
+     */
+    FeedUpdate(ArrayList<Item> added, ArrayList<Item> removed, ArrayList<Item> changed,
+               boolean incremental) {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.changed = Collections.unmodifiableList(changed);
+        this.notModified = false;
+        this.incremental = incremental;
+    }
+
+    /**
+     * @return True if any Items were added to the Feed.
+     */
+    public boolean hasNewItems() {
+        return !added.isEmpty();
+    }
+
+    /**
+     * @return True if no Items were added, removed, or changed.
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && changed.isEmpty();
+    }
+
+    /*
+    ------------------------------- ACCESSORS AND MUTATORS -----------------------------------------
+    */
+
+    /**
+     * @return A List of the Items added to the Feed, in the order they appear in the Feed.
+     */
+    public List<Item> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return A List of the Items removed from the Feed.
+     */
+    public List<Item> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return A List of the Items which replaced an Item with the same id but other content.
+     */
+    public List<Item> getChanged() {
+        return changed;
+    }
+
+    /**
+     * @return True if the server answered that the XML file has not been modified.
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /**
+     * @return True if reading stopped at the first Item already in the Feed.
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+}
@@ -1,5 +1,6 @@
 package system.rss;
 
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -12,16 +13,24 @@ import java.util.Locale;
  * descriptive text and an id. They also have a field for if they have been visited or not and if
  * they are starred.
  *
+ * Once the Item has been adopted by a Feed its visited status is kept in the ReadState of the Feed
+ * instead of in the visited field, so the Feed can mark all its Items as visited at once.
+ *
  * @author Axel Nilsson (axnion)
  */
 public class Item {
+    private static final ThreadLocal<SimpleDateFormat> dateFormat = ThreadLocal.withInitial(() ->
+            new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.ENGLISH));
+
     private String title;           // The title of the item
     private String link;            // The link to the content of the item
     private String description;     // A descriptive text about the item
+    private volatile byte[] encodedDescription;  // The description in UTF-8 until first used
     private String id;              // A unique ID for this item
     private String feedIdentifier;  // The identifier of the feed this item belongs to.
     private Date date;              // The date the item was released
-    private boolean visited;        // The visited status of the Item
+    private boolean visited;        // The visited status of the Item until it has a ReadState
+    private volatile ReadState readState;   // The ReadState of the Feed of the Item, or null
     private boolean starred;        // The starred status of the Item
 
     /**
@@ -40,6 +49,52 @@ public class Item {
         starred = false;
     }
 
+    /**
+     * Constructor
+     *
+     * Takes each arguments and assigns the value to the corresponding field. Used to restore an
+     * Item from a save file.
+     */
+    public Item(String title, String link, String description, Date date, String id,
+                String feedIdentifier, boolean visited, boolean starred) {
+        this.title = title;
+        this.link = link;
+        this.description = description;
+        this.date = date;
+        this.id = id;
+        this.feedIdentifier = feedIdentifier;
+        this.visited = visited;
+        this.starred = starred;
+    }
+
+    /**
+     * Constructor
+     *
+     * Same as above, but takes the description encoded in UTF-8. The description is only decoded
+     * the first time it is used, as most descriptions in a save file are never read.
+     */
+    public Item(String title, String link, byte[] description, Date date, String id,
+                String feedIdentifier, boolean visited, boolean starred) {
+        this(title, link, (String) null, date, id, feedIdentifier, visited, starred);
+        encodedDescription = description;
+    }
+
+    /**
+     * Creates a copy of this Item which keeps its visited status in state, a copy of the ReadState
+     * of the Feed, so the copy does not change when this Item does.
+     *
+     * @param state The ReadState of the copied Feed, or null if the Item keeps its own status.
+     * @return      A new Item with the same content and status as this Item.
+     */
+    Item copy(ReadState state) {
+        byte[] encoded = encodedDescription;
+        Item copy = encoded != null ?
+                new Item(title, link, encoded, date, id, feedIdentifier, isVisited(), starred) :
+                new Item(title, link, description, date, id, feedIdentifier, isVisited(), starred);
+        copy.readState = state;
+        return copy;
+    }
+
     /**
      * Compares this Items title to another Item objects title, if this Items title is
      * earlier in the alphabet than the other the value returned is lower than 0. If this items
@@ -87,9 +142,31 @@ public class Item {
      * @return A String containing a description of the item
      */
     public String getDescription() {
+        byte[] encoded = encodedDescription;
+
+        // description is written before encodedDescription is cleared, so a thread which sees it
+        // cleared also sees the description
+        if(encoded != null) {
+            description = new String(encoded, StandardCharsets.UTF_8);
+            encodedDescription = null;
+        }
+
         return description;
     }
 
+    /**
+     * Returns the description encoded in UTF-8, without decoding it if it has not been used yet.
+     *
+     * @return A byte array with the description in UTF-8, or null if the description is null.
+     */
+    public byte[] getDescriptionUTF8() {
+        byte[] encoded = encodedDescription;
+        if(encoded != null)
+            return encoded;
+
+        return description == null ? null : description.getBytes(StandardCharsets.UTF_8);
+    }
+
     /**
      * Accessor method for id
      *
@@ -123,7 +200,8 @@ public class Item {
      * @return The boolean value of visited.
      */
     public boolean isVisited() {
-        return visited;
+        ReadState state = readState;
+        return state != null ? state.isVisited(this) : visited;
     }
 
     /**     //Mon Jul 25 2016 12:13:33 GMT+0000
@@ -160,6 +238,7 @@ public class Item {
      */
     void setDescription(String description) {
         this.description = description;
+        encodedDescription = null;
     }
 
     /**
@@ -177,11 +256,8 @@ public class Item {
      * @param date The new String we want assigned to date
      */
     void setDate(String date) {
-        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z",
-                Locale.ENGLISH);
         try {
-            this.date = format.parse(date);
-            this.date.setTime(this.date.getTime());
+            this.date = dateFormat.get().parse(date);
         }
         catch(ParseException expt) {
             this.date = new Date(0);
@@ -204,7 +280,30 @@ public class Item {
      * @param visited The new boolean value of visited
      */
     public void setVisited(boolean visited) {
-        this.visited = visited;
+        ReadState state = readState;
+
+        if(state != null)
+            state.setVisited(this, visited);
+        else
+            this.visited = visited;
+    }
+
+    /**
+     * Accessor method for readState
+     *
+     * @return The ReadState the visited status is kept in, or null if it is kept in the Item.
+     */
+    ReadState getReadState() {
+        return readState;
+    }
+
+    /**
+     * Mutator method for readState. The ReadState should already have adopted the Item.
+     *
+     * @param readState The ReadState of the Feed which has adopted the Item.
+     */
+    void setReadState(ReadState readState) {
+        this.readState = readState;
     }
 
     /**
@@ -0,0 +1,204 @@
+package system.rss;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Class ReadState
+ *
+ * The visited status of the Items of a Feed, kept as a watermark and a set of exceptions instead of
+ * a flag on each Item. An Item dated at or before readUpTo has been visited and a newer Item has
+ * not, unless the id of the Item is in exceptions, which turns its status around. Marking every
+ * Item as visited moves readUpTo past the newest Item and empties exceptions, so it does not go
+ * through the Items.
+ *
+ * An Item is given the ReadState of its Feed when it is adopted by it. Until then it keeps its own
+ * flag, which is how an update gives new Items their status. The exceptions may be read from
+ * another thread while they are changed, so they are kept in a concurrent set.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+class ReadState {
+    private volatile long readUpTo;     // Items dated at or before this have been visited
+    private volatile long newest;       // The date of the newest Item adopted
+    private final Set<String> exceptions;   // Ids of Items with the other status than readUpTo's
+
+    /**
+     * Constructor
+     *
+     * Creates a ReadState where no Item has been visited.
+     */
+    ReadState() {
+        readUpTo = Long.MIN_VALUE;
+        newest = Long.MIN_VALUE;
+        exceptions = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Creates a copy of this ReadState with its own exceptions.
+     *
+     * @return A new ReadState where the same Items have been visited.
+     */
+    ReadState copy() {
+        ReadState copy = new ReadState();
+        copy.readUpTo = readUpTo;
+        copy.newest = newest;
+        copy.exceptions.addAll(exceptions);
+        return copy;
+    }
+
+    /**
+     * Returns true if the Item has been visited.
+     *
+     * @param item  An Item of the Feed.
+     * @return      True if the Item has been visited, false if not.
+     */
+    boolean isVisited(Item item) {
+        return (dateOf(item) <= readUpTo) != exceptions.contains(item.getId());
+    }
+
+    /**
+     * Sets the visited status of an Item, by adding it to or removing it from exceptions.
+     *
+     * @param item      An Item of the Feed.
+     * @param visited   The new visited status of the Item.
+     */
+    void setVisited(Item item, boolean visited) {
+        if((dateOf(item) <= readUpTo) == visited)
+            exceptions.remove(item.getId());
+        else
+            exceptions.add(item.getId());
+    }
+
+    /**
+     * Takes in an Item which has been added to the Feed, keeping the visited status it had.
+     *
+     * @param item      The added Item.
+     * @param visited   The visited status of the Item before it was added.
+     */
+    void adopt(Item item, boolean visited) {
+        newest = Math.max(newest, dateOf(item));
+        setVisited(item, visited);
+    }
+
+    /**
+     * Takes in the first Items of the Feed, which each have a visited status of their own. The
+     * readUpTo which leaves the fewest exceptions is chosen, so Items saved with a flag of their own
+     * are turned into a watermark when they are loaded.
+     *
+     * @param items The Items of the Feed.
+     */
+    void fit(ArrayList<Item> items) {
+        Item[] byDate = items.toArray(new Item[items.size()]);
+        boolean[] visited = new boolean[byDate.length];
+        Arrays.sort(byDate, Comparator.comparingLong(ReadState::dateOf));
+
+        // With nothing read every visited Item is an exception
+        int cost = 0;
+        for(int i = 0; i < byDate.length; i++) {
+            visited[i] = byDate[i].isVisited();
+            if(visited[i])
+                cost++;
+        }
+
+        int best = cost;
+        long bestUpTo = Long.MIN_VALUE;
+
+        for(int i = 0; i < byDate.length;) {
+            long date = dateOf(byDate[i]);
+
+            for(; i < byDate.length && dateOf(byDate[i]) == date; i++) {
+                cost += visited[i] ? -1 : 1;
+            }
+
+            if(cost < best) {
+                best = cost;
+                bestUpTo = date;
+            }
+        }
+
+        readUpTo = bestUpTo;
+        exceptions.clear();
+        for(int i = 0; i < byDate.length; i++) {
+            adopt(byDate[i], visited[i]);
+        }
+    }
+
+    /**
+     * Sets every Item adopted so far as visited.
+     *
+     * @return The new readUpTo, which is always later than the last one.
+     */
+    long markAllRead() {
+        readUpTo = Math.max(readUpTo + 1, newest);
+        exceptions.clear();
+        return readUpTo;
+    }
+
+    /**
+     * Sets every Item dated at or before upTo as visited, as markAllRead did when it returned upTo.
+     * Nothing is changed if readUpTo is already at or past upTo, since readUpTo only moves forward
+     * and the exceptions made after that markAllRead have then been kept.
+     *
+     * @param upTo  A readUpTo returned by markAllRead.
+     * @return      True if the ReadState was changed.
+     */
+    boolean markReadUpTo(long upTo) {
+        if(upTo <= readUpTo)
+            return false;
+
+        readUpTo = upTo;
+        exceptions.clear();
+        return true;
+    }
+
+    /**
+     * Replaces the watermark and exceptions with saved ones.
+     *
+     * @param upTo    The saved readUpTo.
+     * @param saved   The saved ids of the exceptions.
+     */
+    void restore(long upTo, Collection<String> saved) {
+        readUpTo = upTo;
+        exceptions.clear();
+        exceptions.addAll(saved);
+    }
+
+    /**
+     * Removes the exceptions of Items which are no longer in the Feed.
+     *
+     * @param items The Items of the Feed.
+     */
+    void retain(ArrayList<Item> items) {
+        if(exceptions.isEmpty())
+            return;
+
+        HashSet<String> ids = new HashSet<>();
+        for(Item item : items) {
+            ids.add(item.getId());
+        }
+
+        exceptions.retainAll(ids);
+    }
+
+    long getReadUpTo() {
+        return readUpTo;
+    }
+
+    ArrayList<String> getExceptions() {
+        return new ArrayList<>(exceptions);
+    }
+
+    /**
+     * Returns the date of the Item in milliseconds, where an Item without a date is dated at the
+     * epoch like the Items created by the default constructor of Item.
+     */
+    private static long dateOf(Item item) {
+        return item.getDate() == null ? 0 : item.getDate().getTime();
+    }
+}
@@ -0,0 +1,138 @@
+package system.rss;
+
+/**
+ * Class RefreshStats
+ *
+ * RefreshStats holds the statistics of one refresh cycle run by a FeedRefresher. It tells how many
+ * Feeds were refreshed, how many of those the server answered were not modified, how many failed
+ * or timed out, how many were left out because they were not due, how many new Items were found,
+ * and how long the cycle took and how many bytes were downloaded.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class RefreshStats {
+    private int feeds;
+    private int notDue;
+    private int refreshed;
+    private int notModified;
+    private int failed;
+    private int timedOut;
+    private int newItems;
+    private long wallTime;
+    private long bytesRead;
+
+    /**
+     * Constructor
+     *
+     * @param feeds The number of Feeds in the refresh cycle.
+     */
+    RefreshStats(int feeds) {
+        this.feeds = feeds;
+    }
+
+    /**
+     * Counts a Feed which was refreshed.
+     *
+     * @param update The FeedUpdate returned when the Feed was updated.
+     */
+    void addRefreshed(FeedUpdate update) {
+        refreshed++;
+
+        if(update.isNotModified())
+            notModified++;
+
+        newItems += update.getAdded().size();
+    }
+
+    void addFailed() {
+        failed++;
+    }
+
+    void addTimedOut() {
+        timedOut++;
+    }
+
+    void setNotDue(int notDue) {
+        this.notDue = notDue;
+    }
+
+    void finish(long wallTime, long bytesRead) {
+        this.wallTime = wallTime;
+        this.bytesRead = bytesRead;
+    }
+
+    @Override
+    public String toString() {
+        return "Refreshed " + refreshed + " of " + feeds + " feeds (" + notModified +
+                " not modified, " + failed + " failed, " + timedOut + " timed out, " + notDue +
+                " not due), " + newItems + " new items, " + wallTime + " ms, " + bytesRead +
+                " bytes";
+    }
+
+    /*
+    ------------------------------- ACCESSORS AND MUTATORS -----------------------------------------
+    */
+
+    /**
+     * @return The number of Feeds in the refresh cycle.
+     */
+    public int getFeeds() {
+        return feeds;
+    }
+
+    /**
+     * @return The number of Feeds which were left out because they were not due.
+     */
+    public int getNotDue() {
+        return notDue;
+    }
+
+    /**
+     * @return The number of Feeds which were refreshed, including the ones not modified.
+     */
+    public int getRefreshed() {
+        return refreshed;
+    }
+
+    /**
+     * @return The number of Feeds the server answered were not modified.
+     */
+    public int getNotModified() {
+        return notModified;
+    }
+
+    /**
+     * @return The number of Feeds which could not be fetched or read.
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * @return The number of Feeds which took longer than the timeout to refresh.
+     */
+    public int getTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * @return The number of new Items found in all Feeds.
+     */
+    public int getNewItems() {
+        return newItems;
+    }
+
+    /**
+     * @return The number of milliseconds the refresh cycle took.
+     */
+    public long getWallTime() {
+        return wallTime;
+    }
+
+    /**
+     * @return The number of bytes downloaded during the refresh cycle.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+}
@@ -2,15 +2,13 @@ package system.rss;
 
 import system.rss.exceptions.NoXMLFileFound;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLStreamException;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 
 /**
  * Class RssParser
@@ -19,11 +17,28 @@ import java.util.ArrayList;
  *
  * It has two public methods. getFeed takes a URL to an XML document with an RSS feed as an argument
  * and creates a new Feed object with the information from the system.rss feed.
- * updateFeed takes an already existing Feed and updates all information and Items in the Feed.
+ * updateFeed takes an already existing Feed and updates all information and Items in the Feed,
+ * and returns a FeedUpdate describing what changed.
+ *
+ * The XML file is read as a stream by a FeedReader, so no Document is ever built and each Item is
+ * created directly from the stream.
  *
  * @author Axel Nilsson (axnion)
  */
 public class RssParser {
+    private static final int FULL_READ_INTERVAL = 10;   // Incremental updates between whole reads
+
+    private FeedFetcher fetcher;
+
+    /**
+     * Constructor
+     *
+     * Creates the FeedFetcher used to download the XML files.
+     */
+    public RssParser() {
+        fetcher = new FeedFetcher();
+    }
+
     /**
      * Uses the other methods in the class to read the XML file and creates and returns a new Feed
      * object with the results from the methods.
@@ -35,14 +50,18 @@ public class RssParser {
         Feed feed;
 
         try {
-            Element channel = getChannelElement(url);
-            String title = getTitle(channel);
-            String link = getLink(channel);
-            String description = getDescription(channel);
-            String image = getImage(channel);
-            ArrayList<Item> items = getItems(channel, url);
-
-            feed = new Feed(title, link, description, image, url, items);
+            FeedFetcher.Response response = fetch(url, null, null);
+
+            try(FeedReader reader = openReader(response, url)) {
+                ArrayList<Item> items = readItems(reader, url);
+
+                feed = new Feed(reader.getTitle(), reader.getLink(), reader.getDescription(),
+                        reader.getImage(), url, items);
+                feed.setValidators(response.getETag(), response.getLastModified());
+                setScheduleHints(feed, reader);
+                feed.getSchedule().setState(System.currentTimeMillis(), 0, 0);
+                feed.getSchedule().setIncrementalUpdates(0);
+            }
         }
         catch(NoXMLFileFound expt) {
             feed = new Feed(url);
@@ -51,213 +70,353 @@ public class RssParser {
         return feed;
     }
 
+    /**
+     * Reads the XML file only until the title of the feed is known and then closes the connection,
+     * so the rest of the file is never downloaded. If the file can't be read as an RSS feed a
+     * NoXMLFileFound exception is thrown.
+     *
+     * @param url   A String containing the URL to the XML file.
+     * @return      A FeedMinimal with the title and type of the feed.
+     */
     FeedMinimal getMinimalFeed(String url) {
-        Element channel = getChannelElement(url);
-        return new FeedMinimal(url, getTitle(channel));
+        try(FeedFetcher.Response response = fetch(url, null, null);
+            FeedReader reader = openReader(response, url)) {
+            return new FeedMinimal(url, reader.readTitle(), reader.getType());
+        }
+        catch(XMLStreamException | RuntimeException expt) {
+            throw new NoXMLFileFound(url);
+        }
     }
 
     /**
      * Updates an already created Feed object. It takes one Feed as an argument and updates the
-     * Feeds title, link and description. It also gets all items from the system.rss feed and compares the
-     * updated ArrayList with the old and copies visited and starred status to the new Items and
-     * determines which Items are new. Returns the update status.
+     * Feeds title, link and description, and the Items of the Feed. Items which are still in the
+     * feed keep their visited and starred status. Returns a FeedUpdate describing which Items were
+     * added, removed, and changed.
+     *
+     * The request is sent with the validators stored on the Feed. If the server answers that the
+     * XML file has not been modified nothing is parsed and the Feed is left as it is.
+     *
+     * The hints in the FeedSchedule of the Feed are updated, but not the state of the polling,
+     * which is up to the FeedScheduler.
+     *
+     * If the Items of the Feed are ordered newest first the update is incremental, see
+     * updateIncrementally. Otherwise every Item is read and merged with the old ones. The whole
+     * feed is also read every FULL_READ_INTERVAL updates, and on the first update after the Feed
+     * was loaded, so the Items which have dropped off the feed are removed.
      *
      * @param feed  The Feed object to be updated.
-     * @return      True if
+     * @return      A FeedUpdate with the changes made to the Feed.
      */
-    public boolean updateFeed(Feed feed) {
-        Element channel = getChannelElement(feed.getUrlToXML());
-        boolean updated = false;
-
-        feed.setTitle(getTitle(channel));
-        feed.setLink(getLink(channel));
-        feed.setDescription(getDescription(channel));
-        feed.setImage(getImage(channel));
+    public FeedUpdate updateFeed(Feed feed) {
+        String url = feed.getUrlToXML();
+        FeedFetcher.Response response = fetch(url, feed.getETag(), feed.getLastModified());
 
-        boolean newItemStatus;
-        ArrayList<Item> oldItems = feed.getItems();
-        ArrayList<Item> newItems = getItems(channel, feed.getUrlToXML());
+        if(response.isNotModified())
+            return new FeedUpdate();
 
-        for(Item newItem : newItems) {
-            newItemStatus = true;
-            newItem.setVisited(false);
-            newItem.setStarred(false);
-            for(Item oldItem : oldItems) {
-                if(newItem.getId().equals(oldItem.getId())) {
-                    newItem.setVisited(oldItem.isVisited());
-                    newItem.setStarred(oldItem.isStarred());
-                    newItemStatus = false;
-                }
+        ArrayList<Item> items = new ArrayList<>();
+        FeedUpdate update;
+        int incrementalUpdates = feed.getSchedule().getIncrementalUpdates();
+
+        try(FeedReader reader = openReader(response, url)) {
+            if(incrementalUpdates >= 0 && incrementalUpdates < FULL_READ_INTERVAL &&
+                    isNewestFirst(feed.getItems()))
+                update = updateIncrementally(reader, feed.getItems(), items, url);
+            else
+                update = merge(readItems(reader, url), feed.getItems(), items);
+
+            if(!update.isIncremental() || reader.hasScheduleHints())
+                setScheduleHints(feed, reader);
+
+            if(update.isIncremental()) {
+                feed.setTitle(reader.getTitle(feed.getTitle()));
+                feed.setLink(reader.getLink(feed.getLink()));
+                feed.setDescription(reader.getDescription(feed.getDescription()));
+                feed.setImage(reader.getImage(feed.getImage()));
             }
-            if(newItemStatus)
-                updated = true;
+            else {
+                feed.setTitle(reader.getTitle());
+                feed.setLink(reader.getLink());
+                feed.setDescription(reader.getDescription());
+                feed.setImage(reader.getImage());
+            }
+
+            feed.setValidators(response.getETag(), response.getLastModified());
+            feed.getSchedule().setIncrementalUpdates(
+                    update.isIncremental() ? incrementalUpdates + 1 : 0);
         }
 
-        feed.setItems(newItems);
-        return updated;
+        if(update.isIncremental())
+            setItemsIncrementally(feed, items, update);
+        else
+            feed.setItems(items);
+        return update;
     }
 
     /**
-     * Takes a URL to an XML file with an system.rss feed and creates a Document object. It then gets the
-     * channel element and returns it. If something goes wrong while reading the XML file a
-     * NoXMLFileFound exception is thrown.
+     * Gives the Feed the Items of an incremental update together with the number of unread and
+     * starred Items, which are found from the counts of the Feed and the Items which were added
+     * and removed. Every added Item is new, so it is unread and not starred.
      *
-     * @param url   A String containing the URL to the XML file.
-     * @return      The channel element from the XML file.
+     * @param feed      The Feed being updated, still holding its old Items.
+     * @param items     The Items of the updated Feed.
+     * @param update    The changes made by updateIncrementally.
+     */
+    private void setItemsIncrementally(Feed feed, ArrayList<Item> items, FeedUpdate update) {
+        int unread = feed.getUnreadCount() + update.getAdded().size();
+        int starred = feed.getStarredCount();
+
+        for(Item item : update.getRemoved()) {
+            if(!item.isVisited())
+                unread--;
+            if(item.isStarred())
+                starred--;
+        }
+
+        feed.setItems(items, unread, starred);
+    }
+
+    /**
+     * Reads Items from the FeedReader until an Item which is already in oldItems is found. The new
+     * Items read before it are placed first and the old Items are reused for the rest of the
+     * feed, so the rest of the XML file is never parsed.
+     *
+     * Since the feed is not read to the end there is no way to see which Items were removed from
+     * it, so every old Item is kept, starred or not. An Item which has dropped off the feed is
+     * only removed, and reported as removed, the next time the whole feed is read and merged,
+     * which updateFeed does at least every FULL_READ_INTERVAL updates.
+     *
+     * This only works if the first known Item is the newest old Item and the new Items are newer
+     * than it. If not, the feed is not ordered the way it was assumed and the rest of the feed is
+     * read and merged with merge instead.
+     *
+     * @param reader    The FeedReader to read from.
+     * @param oldItems  The Items currently in the Feed, ordered newest first.
+     * @param items     An empty ArrayList which is filled with the Items of the updated Feed.
+     * @param url       The URL to the XML file.
+     * @return          A FeedUpdate with the changes.
      */
-    private Element getChannelElement(String url) {
-        Element channel;
+    private FeedUpdate updateIncrementally(FeedReader reader, ArrayList<Item> oldItems,
+                                           ArrayList<Item> items, String url) {
+        HashMap<String, Integer> oldIndexes = new HashMap<>();
+        for(int i = oldItems.size() - 1; i >= 0; i--) {
+            oldIndexes.put(oldItems.get(i).getId(), i);
+        }
+
+        ArrayList<Item> newItems = new ArrayList<>();
+        Item known = null;
 
         try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document document = builder.parse(url);
-            document.getDocumentElement().normalize();
-            channel = (Element) document.getElementsByTagName("channel").item(0);
+            Item item;
+            while((item = reader.nextItem()) != null) {
+                if(oldIndexes.containsKey(item.getId())) {
+                    known = item;
+                    break;
+                }
+                newItems.add(item);
+            }
         }
-        catch(Exception err) {
+        catch(XMLStreamException | RuntimeException expt) {
             throw new NoXMLFileFound(url);
         }
 
-        return channel;
+        if(known == null || oldIndexes.get(known.getId()) != 0 ||
+                !isNewestFirst(newItems, known)) {
+            if(known != null) {
+                newItems.add(known);
+                newItems.addAll(readItems(reader, url));
+            }
+            return merge(newItems, oldItems, items);
+        }
+
+        for(Item newItem : newItems) {
+            newItem.setVisited(false);
+            newItem.setStarred(false);
+        }
+
+        items.addAll(newItems);
+        items.addAll(oldItems);
+
+        return new FeedUpdate(newItems, new ArrayList<>(), new ArrayList<>(), true);
     }
 
     /**
-     * Takes the channel Element and gets the title node and returns the value. If no title node is
-     * found then a String with 'Untitled' is returned.
+     * Merges the Items read from the whole XML file with the Items currently in the Feed. Items
+     * which are unchanged are reused, Items with the same id but other content are replaced and
+     * keep their visited and starred status, and Items which are not in newItems are removed.
      *
-     * @param channel   The channel Element of the Document.
-     * @return          A String containing the title of the feed.
+     * @param newItems  The Items read from the XML file.
+     * @param oldItems  The Items currently in the Feed.
+     * @param items     An empty ArrayList which is filled with the Items of the updated Feed.
+     * @return          A FeedUpdate with the changes.
      */
-    private String getTitle(Element channel) {
-        Node node = channel.getElementsByTagName("title").item(0);
+    private FeedUpdate merge(ArrayList<Item> newItems, ArrayList<Item> oldItems,
+                             ArrayList<Item> items) {
+        ArrayList<Item> added = new ArrayList<>();
+        ArrayList<Item> removed = new ArrayList<>();
+        ArrayList<Item> changed = new ArrayList<>();
+
+        HashMap<String, Item> oldById = new HashMap<>();
+        for(Item oldItem : oldItems) {
+            oldById.putIfAbsent(oldItem.getId(), oldItem);
+        }
+
+        HashSet<String> newIds = new HashSet<>();
 
-        if(node.getParentNode().getNodeName().equals("channel")) {
-            return node.getFirstChild().getNodeValue();
+        for(Item newItem : newItems) {
+            newIds.add(newItem.getId());
+            Item oldItem = oldById.get(newItem.getId());
+
+            if(oldItem == null) {
+                newItem.setVisited(false);
+                newItem.setStarred(false);
+                added.add(newItem);
+                items.add(newItem);
+            }
+            else if(hasSameContent(oldItem, newItem)) {
+                items.add(oldItem);
+            }
+            else {
+                newItem.setVisited(oldItem.isVisited());
+                newItem.setStarred(oldItem.isStarred());
+                changed.add(newItem);
+                items.add(newItem);
+            }
         }
 
-        return "Untitled";
+        for(Item oldItem : oldItems) {
+            if(!newIds.contains(oldItem.getId()))
+                removed.add(oldItem);
+        }
+
+        return new FeedUpdate(added, removed, changed, false);
     }
 
     /**
-     * Takes the channel Element and gets the link node and returns the value. If no link node is
-     * found then an empty String is returned.
+     * Uses the FeedFetcher to open the XML file at the URL. If the file can't be opened a
+     * NoXMLFileFound exception is thrown.
      *
-     * @param channel   The channel Element of the Document.
-     * @return          A String containing the link of the feed.
+     * @param url           A String containing the URL to the XML file.
+     * @param eTag          The ETag from the last fetch, or null.
+     * @param lastModified  The Last-Modified from the last fetch, or null.
+     * @return              The Response from the FeedFetcher.
      */
-    private String getLink(Element channel) {
-        Node node = channel.getElementsByTagName("link").item(0);
-
-        if(node.getParentNode().getNodeName().equals("channel")) {
-            return node.getFirstChild().getNodeValue();
+    private FeedFetcher.Response fetch(String url, String eTag, String lastModified) {
+        try {
+            return fetcher.fetch(url, eTag, lastModified);
+        }
+        catch(IOException | RuntimeException expt) {
+            throw new NoXMLFileFound(url);
         }
-
-        return "";
     }
 
     /**
-     * Takes the channel Element and gets the description node and returns the value. If no
-     * description is found then an empty String is returned.
+     * Opens a FeedReader on the stream in the Response. If the stream is not XML a NoXMLFileFound
+     * exception is thrown.
      *
-     * @param channel   The channel Element of the Document.
-     * @return          A String containing the description of the feed.
+     * @param response  A Response from the FeedFetcher with a stream to the XML file.
+     * @param url       A String containing the URL to the XML file.
+     * @return          A FeedReader reading from the XML file.
      */
-    private String getDescription(Element channel) {
-        Node node = channel.getElementsByTagName("description").item(0);
-        String description = "No description";
-
+    private FeedReader openReader(FeedFetcher.Response response, String url) {
         try {
-            if(node.getParentNode().getNodeName().equals("channel")) {
-                description = node.getFirstChild().getNodeValue();
-            }
+            return new FeedReader(new BufferedInputStream(response.getStream()), url);
         }
-        catch(NullPointerException expt) {
-            return description;
+        catch(XMLStreamException expt) {
+            response.close();
+            throw new NoXMLFileFound(url);
         }
-
-        return description;
     }
 
-    private String getImage(Element channel) {
-        Node node = channel.getElementsByTagName("image").item(0);
-        String image = "file:img/default_feed.png";
+    /**
+     * Reads all Item objects from the FeedReader. If the XML file turns out to be broken a
+     * NoXMLFileFound exception is thrown and no Items are returned.
+     *
+     * @param reader    The FeedReader to read from.
+     * @param url       The URL to the XML file.
+     * @return          An ArrayList of Item objects from the RSS feed.
+     */
+    private ArrayList<Item> readItems(FeedReader reader, String url) {
+        ArrayList<Item> items = new ArrayList<>();
 
         try {
-            if(node.getParentNode().getNodeName().equals("channel")) {
-                image = node.getFirstChild().getFirstChild().getNodeValue();
+            Item item;
+            while((item = reader.nextItem()) != null) {
+                items.add(item);
             }
         }
-        catch(NullPointerException expt) {
-            return image;
+        catch(XMLStreamException | RuntimeException expt) {
+            throw new NoXMLFileFound(url);
         }
 
-        return image;
+        return items;
     }
 
     /**
-     * Iterates through every node in the channel Element and looks for item nodes. If an item node
-     * is found then the method will get the id, title, link, pubDate, and description from the item
-     * node and produce a new Item object and put it in the ArrayList. The ArrayList is then
-     * returned.
+     * Checks if the Items are ordered newest first, which most feeds are. An empty list is not
+     * considered ordered since there is nothing to stop at.
      *
-     * @param channel   The channel Element of the Document.
-     * @param url       The URL to the XML file, is added to every Item as Feed identifier.
-     * @return          An ArrayList of Item objects from the RSS feed.
+     * @param items An ArrayList of Item objects.
+     * @return      True if no Item is newer than the Item before it.
      */
-    private ArrayList<Item> getItems(Element channel, String url) {
-        NodeList nodes = channel.getChildNodes();
-        ArrayList<Item> items = new ArrayList<>();
+    private boolean isNewestFirst(ArrayList<Item> items) {
+        if(items.isEmpty())
+            return false;
 
-        for(int i = 0; i < nodes.getLength(); i++) {
-            if(nodes.item(i).getNodeName().equals("item")) {
-                Element itemElement = (Element) nodes.item(i);
-                Item item = new Item();
+        for(int i = 1; i < items.size(); i++) {
+            if(items.get(i).compareDate(items.get(i - 1)) > 0)
+                return false;
+        }
+        return true;
+    }
 
-                try {
-                    item.setId(itemElement.getElementsByTagName("guid").item(0).getFirstChild()
-                            .getNodeValue());
-                }
-                catch(RuntimeException err) {
-                    continue;
-                }
+    /**
+     * Checks if the Items are ordered newest first and none of them are older than last.
+     *
+     * @param items An ArrayList of Item objects.
+     * @param last  The Item which follows the Items in the feed.
+     * @return      True if no Item is newer than the Item before it.
+     */
+    private boolean isNewestFirst(ArrayList<Item> items, Item last) {
+        Item previous = null;
 
-                try {
-                    item.setTitle(itemElement.getElementsByTagName("title").item(0).getFirstChild()
-                            .getNodeValue());
-                }
-                catch(RuntimeException err) {
-                    item.setTitle("Untitled");
-                }
+        for(Item item : items) {
+            if(previous != null && item.compareDate(previous) > 0)
+                return false;
+            previous = item;
+        }
 
-                try {
-                    item.setLink(itemElement.getElementsByTagName("link").item(0).getFirstChild()
-                            .getNodeValue());
-                }
-                catch(RuntimeException err) {
-                    continue;
-                }
+        return previous == null || last.compareDate(previous) <= 0;
+    }
 
-                try {
-                    item.setDate(itemElement.getElementsByTagName("pubDate").item(0).getFirstChild()
-                            .getNodeValue());
-                }
-                catch(RuntimeException err) {
-                    item.setDate("Thu, 01 Jan 1970 00:00:00 +0000");
-                }
+    private void setScheduleHints(Feed feed, FeedReader reader) {
+        feed.getSchedule().setHints(reader.getTtl(), reader.getSkipHours(), reader.getSkipDays(),
+                reader.getUpdatePeriod(), reader.getUpdateFrequency());
+    }
 
-                try {
-                    item.setDescription(itemElement.getElementsByTagName("description").item(0)
-                            .getFirstChild().getNodeValue());
-                }
-                catch(RuntimeException err) {
-                    item.setDescription("");
-                }
+    private boolean hasSameContent(Item oldItem, Item newItem) {
+        return oldItem.getTitle().equals(newItem.getTitle()) &&
+                oldItem.getLink().equals(newItem.getLink()) &&
+                oldItem.getDescription().equals(newItem.getDescription()) &&
+                oldItem.getDate().equals(newItem.getDate());
+    }
 
-                item.setFeedIdentifier(url);
-                items.add(item);
-            }
-        }
-        return items;
+    /**
+     * Returns the number of bytes this RssParser has downloaded so far.
+     *
+     * @return The total number of bytes read from all XML files.
+     */
+    public long getBytesRead() {
+        return fetcher.getBytesRead();
+    }
+
+    /**
+     * Accessor method for fetcher
+     *
+     * @return The FeedFetcher currently used by this RssParser.
+     */
+    FeedFetcher getFetcher() {
+        return fetcher;
     }
 }
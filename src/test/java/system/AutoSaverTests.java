@@ -0,0 +1,285 @@
+package system;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import system.rss.Feed;
+import system.rss.FeedServer;
+import system.rss.Item;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Class AutoSaverTests
+ *
+ * This is the test class for the AutoSaver class and the autosave methods of Configuration. The
+ * DataAccessObjectJSON is spied on to count the saves.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class AutoSaverTests {
+    private static final String FEED = "http://feed1.com/feed.xml";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DataAccessObjectJSON dao;
+
+    /**
+     * Test preparation. Loads a saved configuration with one FeedList holding one Feed with 50
+     * Items, so the Configuration starts out saved.
+     */
+    @Before
+    public void createConfiguration() throws Exception {
+        ArrayList<Item> items = new ArrayList<>();
+        for(int i = 0; i < 50; i++) {
+            items.add(new Item("Item " + i, FEED + "/" + i, "", new Date(1451606400000L + i),
+                    "item" + i, FEED, false, false));
+        }
+
+        FeedList feedList = new FeedList("FeedList1", "DATE_DEC", true);
+        feedList.addFetched(new Feed("Feed", FEED, "", "", FEED, items));
+        ArrayList<FeedList> feedLists = new ArrayList<>();
+        feedLists.add(feedList);
+
+        dao = spy(new DataAccessObjectJSON());
+        Configuration.setDao(dao);
+        Configuration.setFeedLists(feedLists);
+        Configuration.save(new File(folder.getRoot(), "save.json").getPath());
+        Configuration.load(dao.getPath());
+        reset(dao);
+    }
+
+    @After
+    public void stopAutoSave() {
+        Configuration.stopAutoSave();
+        Configuration.setAutoSaveDelays(5000, 60000);
+        Configuration.setDao(new DataAccessObjectJSON());
+    }
+
+    /**
+     * Name: Clean after load
+     * Unit: isDirty(), autoSave()
+     *
+     * A loaded Configuration has nothing to save, so autoSave should not save until something
+     * changes.
+     */
+    @Test
+    public void cleanAfterLoad() throws Exception {
+        assertFalse(Configuration.isDirty());
+        assertFalse(Configuration.autoSave());
+        verify(dao, never()).save(any(), any(Date.class));
+
+        Configuration.setSortingRules("FeedList1", "TITLE_ASC");
+        assertTrue(Configuration.isDirty());
+        assertTrue(Configuration.autoSave());
+        assertFalse(Configuration.isDirty());
+        verify(dao, times(1)).save(any(), any(Date.class));
+    }
+
+    /**
+     * Name: Coalesce a burst of changes
+     * Unit: changed()
+     *
+     * Many changes made right after each other should be saved with a single write.
+     */
+    @Test
+    public void coalesceBurst() throws Exception {
+        Configuration.setAutoSaveDelays(300, 10000);
+        Configuration.startAutoSave();
+
+        for(int i = 0; i < 50; i++) {
+            Configuration.setSortingRules("FeedList1", i % 2 == 0 ? "TITLE_ASC" : "DATE_DEC");
+        }
+
+        verify(dao, timeout(5000).times(1)).save(any(), any(Date.class));
+        Thread.sleep(600);
+        verify(dao, times(1)).save(any(), any(Date.class));
+        assertFalse(Configuration.isDirty());
+    }
+
+    /**
+     * Name: Save within the max delay
+     * Unit: changed()
+     *
+     * Changes which keep coming more often than the delay should still be saved once the max delay
+     * has passed since the first unsaved change.
+     */
+    @Test
+    public void saveWithinMaxDelay() throws Exception {
+        Configuration.setAutoSaveDelays(400, 800);
+        Configuration.startAutoSave();
+
+        for(int i = 0; i < 25; i++) {
+            Configuration.setSortingRules("FeedList1", i % 2 == 0 ? "TITLE_ASC" : "DATE_DEC");
+            Thread.sleep(100);
+        }
+
+        verify(dao, atLeast(2)).save(any(), any(Date.class));
+    }
+
+    /**
+     * Name: Stop saves pending changes
+     * Unit: stopAutoSave()
+     *
+     * Stopping the AutoSaver before a scheduled save has run should save the changes right away.
+     */
+    @Test
+    public void stopSavesPendingChanges() throws Exception {
+        Configuration.setAutoSaveDelays(10000, 20000);
+        Configuration.startAutoSave();
+        Configuration.setSortingRules("FeedList1", "TITLE_ASC");
+
+        Configuration.stopAutoSave();
+
+        verify(dao, times(1)).save(any(), any(Date.class));
+        assertFalse(Configuration.isDirty());
+
+        Configuration.load(dao.getPath());
+        assertEquals("TITLE_ASC", Configuration.getFeedListByName("FeedList1").getSortingRules());
+    }
+
+    /**
+     * Name: Journaled changes are not autosaved
+     * Unit: changed(), stopAutoSave()
+     *
+     * Changes to visited and starred are appended to the journal, so they should neither make the
+     * Configuration dirty nor schedule a save, and should be back after loading again.
+     */
+    @Test
+    public void journaledChangesAreNotAutoSaved() throws Exception {
+        Configuration.setAutoSaveDelays(100, 200);
+        Configuration.startAutoSave();
+
+        for(int i = 0; i < 10; i++) {
+            Configuration.setVisited("FeedList1", FEED, "item" + i, true);
+        }
+        Configuration.setStarred("FeedList1", FEED, "item3", true);
+        Configuration.markFeedRead("FeedList1", FEED);
+
+        assertFalse(Configuration.isDirty());
+        Thread.sleep(400);
+        Configuration.stopAutoSave();
+        verify(dao, never()).save(any(), any(Date.class));
+
+        Configuration.load(dao.getPath());
+        Feed feed = Configuration.getFeedListByName("FeedList1").get(0);
+        assertTrue(feed.getItemById("item3").isStarred());
+        assertEquals(0, feed.getUnreadCount());
+    }
+
+    /**
+     * Name: Stop cancels a waiting snapshot
+     * Unit: stop(), autoSave(AutoSaver)
+     *
+     * Stopping the AutoSaver while a save waits for a snapshot the applier has not taken, like
+     * when the application exits on the thread of the applier, should drop that save instead of
+     * waiting for it, and the changes should be saved by stopAutoSave.
+     */
+    @Test
+    public void stopCancelsWaitingSnapshot() throws Exception {
+        ArrayList<Runnable> queued = new ArrayList<>();
+
+        try {
+            Configuration.setApplier(runnable -> {
+                synchronized(queued) {
+                    queued.add(runnable);
+                }
+            });
+            Configuration.setAutoSaveDelays(0, 0);
+            Configuration.startAutoSave();
+            Configuration.setSortingRules("FeedList1", "TITLE_ASC");
+
+            for(int i = 0; i < 500 && queued.isEmpty(); i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, queued.size());
+
+            long start = System.currentTimeMillis();
+            Configuration.stopAutoSave();
+            assertTrue(System.currentTimeMillis() - start < 5000);
+
+            queued.get(0).run();
+            verify(dao, times(1)).save(any(), any(Date.class));
+            assertFalse(Configuration.isDirty());
+        }
+        finally {
+            Configuration.setApplier(Runnable::run);
+        }
+    }
+
+    /**
+     * Name: Snapshot keeps the status of Items
+     * Unit: getSnapshot()
+     *
+     * A snapshot should hold the Items as they were when it was taken, so changes made while it is
+     * saved are not written with a lastUpdated from before them.
+     */
+    @Test
+    public void snapshotKeepsItemStatus() throws Exception {
+        Snapshot snapshot = Configuration.getSnapshot();
+        Configuration.setStarred("FeedList1", FEED, "item3", true);
+        Configuration.setVisited("FeedList1", FEED, "item4", true);
+        Configuration.markFeedRead("FeedList1", FEED);
+
+        Feed copy = snapshot.getFeedLists().get(0).getFeeds().get(0);
+        assertFalse(copy.getItemById("item3").isStarred());
+        assertFalse(copy.getItemById("item4").isVisited());
+        assertEquals(50, copy.getUnreadCount());
+        assertNotSame(Configuration.getFeedListByName("FeedList1").get(0), copy);
+    }
+
+    /**
+     * Name: Poll without new Items is saved on stop
+     * Unit: isDirty(), Configuration.update(), stopAutoSave()
+     *
+     * Polling a Feed which has not been modified finds no new Items, but gives the Feed a new
+     * FeedSchedule. That should not make the Configuration dirty or schedule a save, but the
+     * FeedSchedule should be saved when the AutoSaver is stopped.
+     */
+    @Test
+    public void pollWithoutNewItemsIsSavedOnStop() throws Exception {
+        FeedServer server = new FeedServer();
+
+        try {
+            String url = server.serve("feed.xml", AutoSaverTests.class
+                    .getResource("../../../resources/test/RssParserTestResources/update/")
+                    .getPath() + "original.xml");
+            Configuration.addFeed(url, "FeedList1");
+            Feed feed = Configuration.getFeedFromFeedList("FeedList1", url);
+            feed.getSchedule().setState(1, 1, 0);
+            Configuration.save();
+            assertFalse(Configuration.isDirty());
+
+            Configuration.setAutoSaveDelays(100, 200);
+            Configuration.startAutoSave();
+            reset(dao);
+
+            assertEquals(1, Configuration.update().getNotModified());
+            assertFalse(Configuration.isDirty());
+            long nextPoll = feed.getSchedule().getNextPoll();
+            assertTrue(nextPoll > 1);
+
+            Thread.sleep(400);
+            verify(dao, never()).save(any(), any(Date.class));
+
+            Configuration.stopAutoSave();
+            verify(dao, times(1)).save(any(), any(Date.class));
+
+            Configuration.load(dao.getPath());
+            assertEquals(nextPoll, Configuration.getFeedFromFeedList("FeedList1", url)
+                    .getSchedule().getNextPoll());
+        }
+        finally {
+            server.stop();
+        }
+    }
+}
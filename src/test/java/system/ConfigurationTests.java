@@ -2,6 +2,8 @@ package system;
 
 import system.exceptions.FeedListAlreadyExists;
 import system.exceptions.FeedListDoesNotExist;
+import system.rss.Feed;
+import system.rss.Item;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -200,6 +202,34 @@ public class ConfigurationTests {
         verify(feedLists.get(1), never()).add(any());
     }
 
+    /**
+     * Name: Get snapshot
+     * Unit: getSnapshot()
+     *
+     * Takes a snapshot of the FeedLists and then removes a Feed. The snapshot should still hold
+     * the Feed.
+     */
+    @Test
+    public void getSnapshot() {
+        String url = ConfigurationTests.class
+                .getResource("../../../resources/test/RssParserTestResources/exampleFeed1.xml")
+                .getPath();
+
+        Configuration.addFeedList("FeedList1");
+        Configuration.addFeed(url, "FeedList1");
+
+        Snapshot snapshot = Configuration.getSnapshot();
+        Date snapshotUpdated = Configuration.getLastUpdated();
+        Configuration.removeFeed(url, "FeedList1");
+
+        assertEquals(1, snapshot.getFeedLists().size());
+        assertEquals("FeedList1", snapshot.getFeedLists().get(0).getName());
+        assertEquals(1, snapshot.getFeedLists().get(0).getFeeds().size());
+        assertEquals(snapshotUpdated, snapshot.getLastUpdated());
+        assertTrue(Configuration.getLastUpdated().after(snapshotUpdated));
+        assertEquals(0, Configuration.getAllFeedsFromFeedList("FeedList1").size());
+    }
+
     /**
      * Name: Add Feed to nonexistent FeedList
      * Unit: addFeed(String, String)
@@ -393,6 +423,52 @@ public class ConfigurationTests {
         verify(feedLists.get(1), never()).getAllItems();
     }
 
+    /**
+     * Name: Get a window of Items from existing FeedList
+     * Unit: getItemsFromFeedList(String, int, int), getItemCountOfFeedList(String)
+     *
+     * Tries to get a window of Item objects and the number of Items from a specific existing
+     * FeedList. Should only call getItems and getItemCount on the correct FeedList.
+     */
+    @Test
+    public void getItemsFromExistingFeedList() {
+        ArrayList<FeedList> feedLists = new ArrayList<>();
+        feedLists.add(Mocks.createFeedListMock("FeedList1"));
+        feedLists.add(Mocks.createFeedListMock("FeedList2"));
+
+        Configuration.setFeedLists(feedLists);
+        Configuration.getItemsFromFeedList("FeedList2", 10, 20);
+        Configuration.getItemCountOfFeedList("FeedList2");
+
+        verify(feedLists.get(0), never()).getItems(anyInt(), anyInt());
+        verify(feedLists.get(1), times(1)).getItems(10, 20);
+        verify(feedLists.get(1), times(1)).getItemCount();
+        verify(feedLists.get(1), never()).getAllItems();
+    }
+
+    /**
+     * Name: Get counts from existing FeedList
+     * Unit: getUnreadCountOfFeedList(String), getStarredCountOfFeedList(String)
+     *
+     * Tries to get the number of unread and starred Items of a specific existing FeedList. Should
+     * only ask the correct FeedList, which never sorts its Items for it.
+     */
+    @Test
+    public void getCountsFromExistingFeedList() {
+        ArrayList<FeedList> feedLists = new ArrayList<>();
+        feedLists.add(Mocks.createFeedListMock("FeedList1"));
+        feedLists.add(Mocks.createFeedListMock("FeedList2"));
+
+        Configuration.setFeedLists(feedLists);
+        Configuration.getUnreadCountOfFeedList("FeedList2");
+        Configuration.getStarredCountOfFeedList("FeedList2");
+
+        verify(feedLists.get(0), never()).getUnreadCount();
+        verify(feedLists.get(1), times(1)).getUnreadCount();
+        verify(feedLists.get(1), times(1)).getStarredCount();
+        verify(feedLists.get(1), never()).getAllItems();
+    }
+
     /**
      * Name: Get all Feeds from existing FeedList
      * Unit: getAllFeedsFromFeedList(String)
@@ -598,7 +674,7 @@ public class ConfigurationTests {
      * Name: Reset test
      * Unit: reset()
      *
-     * Runs the reset method and checks so setPath("temp.sqlite") and load() is called on dao.
+     * Runs the reset method and checks so setPath("temp.sqlite") and load(FeedRegistry) is called on dao.
      */
     @Test
     public void resetTest() {
@@ -618,7 +694,7 @@ public class ConfigurationTests {
             Configuration.reset();
             assertTrue(currentDate.before(Configuration.getLastUpdated()));
             verify(dao, times(1)).setPath("temp.sqlite");
-            verify(dao, times(1)).load();
+            verify(dao, times(1)).load(any(FeedRegistry.class));
         }
         catch(Exception expt) {
             expt.printStackTrace();
@@ -690,11 +766,59 @@ public class ConfigurationTests {
         try {
             Configuration.load("path/to/database");
             verify(dao, times(1)).setPath("path/to/database");
-            verify(dao, times(1)).load();
+            verify(dao, times(1)).load(any(FeedRegistry.class));
         }
         catch(Exception expt) {
             expt.printStackTrace();
             fail();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Name: Listeners are told about changes
+     * Unit: addListener(ConfigurationListener), removeListener(ConfigurationListener)
+     *
+     * Each change made through the Configuration should be told to the listener as an event of the
+     * right type with the FeedList, Feed, and Item it is about, and a removed listener should not
+     * be told anything.
+     */
+    @Test
+    public void listenersAreToldAboutChanges() {
+        Configuration.setDao(Mocks.createDatabaseAccessObjectMock());
+        ArrayList<ConfigurationEvent> events = new ArrayList<>();
+        ConfigurationListener listener = events::add;
+        String url = "http://events.com/feed.xml";
+        ArrayList<Item> items = new ArrayList<>();
+        items.add(new Item("Item", url + "/item", "", new Date(), "item", url, false, false));
+
+        Configuration.addListener(listener);
+        try {
+            Configuration.addFeedList("Events");
+            Configuration.addFeed(new Feed("Feed", url, "", "", url, items), "Events");
+            Configuration.setStarred("Events", url, "item", true);
+            Configuration.setSortingRules("Events", "TITLE_ASC");
+            Configuration.setShowVisitedStatus("Events", false);
+            Configuration.removeFeed(url, "Events");
+            Configuration.removeFeedList("Events");
+        }
+        finally {
+            Configuration.removeListener(listener);
+        }
+        Configuration.addFeedList("NotTold");
+
+        assertEquals(7, events.size());
+        assertEquals(ConfigurationEvent.Type.FEED_LIST_ADDED, events.get(0).getType());
+        assertEquals(ConfigurationEvent.Type.FEED_ADDED, events.get(1).getType());
+        assertEquals(url, events.get(1).getFeedIdentifier());
+        assertEquals(ConfigurationEvent.Type.ITEM_CHANGED, events.get(2).getType());
+        assertEquals("item", events.get(2).getItemId());
+        assertEquals(ConfigurationEvent.Type.SORTING_CHANGED, events.get(3).getType());
+        assertEquals(ConfigurationEvent.Type.SETTINGS_CHANGED, events.get(4).getType());
+        assertEquals(ConfigurationEvent.Type.FEED_REMOVED, events.get(5).getType());
+        assertEquals(ConfigurationEvent.Type.FEED_LIST_REMOVED, events.get(6).getType());
+
+        for(ConfigurationEvent event : events) {
+            assertEquals("Events", event.getListName());
+        }
+    }
+}
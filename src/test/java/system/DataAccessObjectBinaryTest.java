@@ -0,0 +1,209 @@
+package system;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import system.rss.Feed;
+import system.rss.FeedSchedule;
+import system.rss.Item;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class DataAccessObjectBinaryTest
+ *
+ * This is the test class for the DataAccessObjectBinary class.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class DataAccessObjectBinaryTest {
+    private static final String SHARED = "http://shared.com/feed.xml";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DataAccessObjectBinary dao;
+    private ArrayList<FeedList> feedLists;
+
+    /**
+     * Test preparation. Creates two FeedLists with a Feed of their own each which also share a
+     * Feed, and saves them.
+     */
+    @Before
+    public void createSnapshot() throws Exception {
+        FeedRegistry registry = new FeedRegistry();
+        feedLists = new ArrayList<>();
+
+        for(int i = 0; i < 2; i++) {
+            FeedList feedList = new FeedList("FeedList" + i, "DATE_DEC", i == 0, registry);
+            feedList.addFetched(createFeed("http://feed" + i + ".com/feed.xml"));
+            feedList.addFetched(createFeed(SHARED));
+            feedLists.add(feedList);
+        }
+
+        Feed shared = feedLists.get(0).get(1);
+        shared.setValidators("\"etag\"", null);
+        shared.getSchedule().setHints(60, new TreeSet<>(Arrays.asList(0, 23)),
+                EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.SUNDAY), 3600000);
+        shared.getSchedule().setState(1000, 5000, 2);
+        shared.setStarred("item3", true);
+        shared.setVisited("item4", true);
+
+        dao = new DataAccessObjectBinary();
+        dao.setPath(new File(folder.getRoot(), "save.bin").getPath());
+        dao.save(feedLists, new Date(1000));
+    }
+
+    /**
+     * Name: Save and load
+     * Unit: save(ArrayList<FeedList>, Date), load(FeedRegistry)
+     *
+     * Loading the snapshot should give the same FeedLists with their settings, still sharing the
+     * Feed, with the same Items, validators, and FeedSchedules.
+     */
+    @Test
+    public void saveAndLoad() throws Exception {
+        assertEquals(new Date(1000), dao.getLastSaved());
+
+        ArrayList<FeedList> loaded = dao.load(new FeedRegistry());
+
+        assertEquals(2, loaded.size());
+        assertEquals("FeedList1", loaded.get(1).getName());
+        assertEquals("DATE_DEC", loaded.get(1).getSortingRules());
+        assertTrue(loaded.get(0).getShowVisitedStatus());
+        assertFalse(loaded.get(1).getShowVisitedStatus());
+
+        Feed shared = loaded.get(0).get(1);
+        assertSame(shared, loaded.get(1).get(1));
+        assertEquals("Feed", shared.getTitle());
+        assertEquals("\"etag\"", shared.getETag());
+        assertNull(shared.getLastModified());
+
+        FeedSchedule schedule = shared.getSchedule();
+        assertEquals(60, schedule.getTtl());
+        assertEquals(new TreeSet<>(Arrays.asList(0, 23)), schedule.getSkipHours());
+        assertEquals(EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.SUNDAY), schedule.getSkipDays());
+        assertEquals(3600000, schedule.getSyndicationPeriod());
+        assertEquals(5000, schedule.getNextPoll());
+        assertEquals(2, schedule.getFailures());
+
+        ArrayList<Item> items = shared.getItems();
+        assertEquals(5, items.size());
+        for(int i = 0; i < 5; i++) {
+            assertEquals("item" + i, items.get(i).getId());
+            assertEquals("Item " + i, items.get(i).getTitle());
+            assertEquals("Description " + i + " åäö ☃", items.get(i).getDescription());
+            assertEquals(new Date(1451606400000L + i), items.get(i).getDate());
+            assertEquals(SHARED, items.get(i).getFeedIdentifier());
+            assertEquals(i == 4, items.get(i).isVisited());
+            assertEquals(i == 3, items.get(i).isStarred());
+        }
+    }
+
+    /**
+     * Name: Save loaded snapshot
+     * Unit: save(ArrayList<FeedList>, Date)
+     *
+     * Saving what was loaded, with the descriptions not yet decoded, should give the same file.
+     */
+    @Test
+    public void saveLoadedSnapshot() throws Exception {
+        byte[] saved = readFile(dao.getPath());
+
+        dao.save(dao.load(new FeedRegistry()), new Date(2000));
+
+        assertArrayEquals(saved, readFile(dao.getPath()));
+    }
+
+    /**
+     * Name: Reject other files
+     * Unit: load(FeedRegistry)
+     *
+     * Loading a file which is not a snapshot, of another version, or cut off should throw an
+     * IOException.
+     */
+    @Test
+    public void rejectOtherFiles() throws Exception {
+        try(RandomAccessFile file = new RandomAccessFile(dao.getPath(), "rw")) {
+            file.seek(4);
+            file.writeInt(2);
+        }
+        assertLoadFails("version 2");
+
+        try(RandomAccessFile file = new RandomAccessFile(dao.getPath(), "rw")) {
+            file.seek(4);
+            file.writeInt(1);
+            file.setLength(file.length() / 2);
+        }
+        assertLoadFails("corrupt");
+
+        try(RandomAccessFile file = new RandomAccessFile(dao.getPath(), "rw")) {
+            file.seek(0);
+            file.writeBytes("[{}]");
+        }
+        assertLoadFails("not a binary save file");
+    }
+
+    /**
+     * Name: Import and export JSON
+     * Unit: exportJSON(String), importJSON(String)
+     *
+     * Exporting the snapshot to a JSON save file and importing it again should give the same
+     * snapshot.
+     */
+    @Test
+    public void importAndExportJSON() throws Exception {
+        byte[] saved = readFile(dao.getPath());
+        String json = new File(folder.getRoot(), "save.json").getPath();
+
+        dao.exportJSON(json);
+
+        DataAccessObjectJSON jsonDao = new DataAccessObjectJSON();
+        jsonDao.setPath(json);
+        ArrayList<FeedList> loaded = jsonDao.load(new FeedRegistry());
+        assertEquals(2, loaded.size());
+        assertTrue(loaded.get(1).get(1).getItemById("item3").isStarred());
+
+        new File(dao.getPath()).delete();
+        dao.importJSON(json);
+
+        assertArrayEquals(saved, readFile(dao.getPath()));
+    }
+
+    private void assertLoadFails(String message) {
+        try {
+            dao.load(new FeedRegistry());
+            fail("Expected an IOException");
+        }
+        catch(IOException expt) {
+            assertTrue(expt.getMessage(), expt.getMessage().contains(message));
+        }
+    }
+
+    private static byte[] readFile(String path) throws IOException {
+        return Files.readAllBytes(new File(path).toPath());
+    }
+
+    private Feed createFeed(String url) {
+        ArrayList<Item> items = new ArrayList<>();
+
+        for(int i = 0; i < 5; i++) {
+            items.add(new Item("Item " + i, url + "/" + i, "Description " + i + " åäö ☃",
+                    new Date(1451606400000L + i), "item" + i, url, false, false));
+        }
+
+        return new Feed("Feed", url, "", "", url, items);
+    }
+}
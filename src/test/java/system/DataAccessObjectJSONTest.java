@@ -4,14 +4,23 @@ import org.apache.commons.io.FileUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import system.rss.Feed;
+import system.rss.FeedSchedule;
+import system.rss.FeedServer;
+import system.rss.Item;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.time.DayOfWeek;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.EnumSet;
+import java.util.TreeSet;
 
 import static org.junit.Assert.*;
+import static org.mockito.Mockito.doThrow;
 
 /**
  * Class DataAccessObjectJSONTest
@@ -102,7 +111,7 @@ public class DataAccessObjectJSONTest {
         ArrayList<FeedList> feedLists = new ArrayList<>();
         try {
             dao.setPath(resources + "exampleSaveWithExistingFeed.json");
-            feedLists = dao.load();
+            feedLists = dao.load(new FeedRegistry());
         }
         catch(Exception expt) {
             expt.printStackTrace();
@@ -156,6 +165,187 @@ public class DataAccessObjectJSONTest {
         assertEquals(false, feedLists.get(1).getFeeds().get(1).getItems().get(1).isVisited());
     }
 
+    /**
+     * Name: Save and load validators
+     * Unit: save(ArrayList<FeedList>, Date), load(FeedRegistry)
+     *
+     * Saves a configuration where a Feed has ETag and Last-Modified validators and loads it again.
+     * The validators should survive since the local XML file gives no validators of its own.
+     */
+    @Test
+    public void saveAndLoadValidators() throws Exception {
+        FeedList feedList = new FeedList("FeedList1", "DATE_DEC", true);
+        feedList.add(resources + "feed1.xml");
+        feedList.get(0).setValidators("\"etag-1\"", "Fri, 01 Jan 2016 00:00:00 GMT");
+
+        ArrayList<FeedList> feedLists = new ArrayList<>();
+        feedLists.add(feedList);
+
+        dao.setPath(resources + "testValidators.json");
+        urlsToCreatedFiles.add(dao.getPath());
+        dao.save(feedLists, new Date());
+
+        ArrayList<FeedList> loaded = dao.load(new FeedRegistry());
+        Feed feed = loaded.get(0).get(0);
+
+        assertEquals("\"etag-1\"", feed.getETag());
+        assertEquals("Fri, 01 Jan 2016 00:00:00 GMT", feed.getLastModified());
+    }
+
+    /**
+     * Name: Save and load schedule
+     * Unit: save(ArrayList<FeedList>, Date), load(FeedRegistry)
+     *
+     * Saves a configuration where a Feed has schedule hints and polling state and loads it again.
+     * Since the feed can't be fetched when loaded the saved FeedSchedule should be restored.
+     */
+    @Test
+    public void saveAndLoadSchedule() throws Exception {
+        FeedList feedList = new FeedList("FeedList1", "DATE_DEC", true);
+        feedList.add(resources + "missing.xml");
+        FeedSchedule schedule = feedList.get(0).getSchedule();
+        schedule.setHints(60, new TreeSet<>(Arrays.asList(1, 2)), EnumSet.of(DayOfWeek.SUNDAY),
+                3600000);
+        schedule.setState(1000, 5000, 2);
+
+        ArrayList<FeedList> feedLists = new ArrayList<>();
+        feedLists.add(feedList);
+
+        dao.setPath(resources + "testSchedule.json");
+        urlsToCreatedFiles.add(dao.getPath());
+        dao.save(feedLists, new Date());
+
+        FeedSchedule loaded = dao.load(new FeedRegistry()).get(0).get(0).getSchedule();
+
+        assertEquals(60, loaded.getTtl());
+        assertEquals(new TreeSet<>(Arrays.asList(1, 2)), loaded.getSkipHours());
+        assertEquals(EnumSet.of(DayOfWeek.SUNDAY), loaded.getSkipDays());
+        assertEquals(3600000, loaded.getSyndicationPeriod());
+        assertEquals(1000, loaded.getLastPolled());
+        assertEquals(5000, loaded.getNextPoll());
+        assertEquals(2, loaded.getFailures());
+    }
+
+    /**
+     * Name: Save without pretty printing
+     * Unit: save(ArrayList<FeedList>, Date), load(FeedRegistry)
+     *
+     * Saves a configuration without pretty printing. The file should be on a single line and load
+     * to the same FeedLists and Items.
+     */
+    @Test
+    public void saveWithoutPrettyPrint() throws Exception {
+        dao.setPath(resources + "testCompact.json");
+        dao.setPrettyPrint(false);
+        urlsToCreatedFiles.add(dao.getPath());
+        dao.save(Mocks.createFullConfigurationWithoutExistingFeeds(), new Date());
+
+        String content = FileUtils.readFileToString(new File(dao.getPath()), "UTF-8");
+        assertFalse(content.contains("\n"));
+
+        ArrayList<FeedList> feedLists = dao.load(new FeedRegistry());
+        assertEquals(2, feedLists.size());
+        assertEquals("TITLE_ASC", feedLists.get(1).getSortingRules());
+        assertFalse(feedLists.get(1).getShowVisitedStatus());
+        assertEquals("feed4", feedLists.get(1).get(1).getTitle());
+        assertEquals("item8", feedLists.get(1).get(1).getItems().get(1).getId());
+        assertEquals("http://feed4.com/item8", feedLists.get(1).get(1).getItems().get(1).getLink());
+    }
+
+    /**
+     * Name: Failed save keeps the old file
+     * Unit: save(ArrayList<FeedList>, Date)
+     *
+     * A save which fails half way should leave the old save file and lastSaved as they were, and
+     * no temporary file behind. A save which succeeds should set lastSaved.
+     */
+    @Test
+    public void failedSaveKeepsOldFile() throws Exception {
+        dao.setPath(resources + "testAtomic.json");
+        urlsToCreatedFiles.add(dao.getPath());
+        dao.save(Mocks.createFullConfigurationWithoutExistingFeeds(), new Date(1000));
+
+        String saved = FileUtils.readFileToString(new File(dao.getPath()), "UTF-8");
+        assertEquals(new Date(1000), dao.getLastSaved());
+
+        ArrayList<FeedList> broken = Mocks.createFullConfigurationWithoutExistingFeeds();
+        FeedList feedList = Mocks.createFeedListMock("Broken");
+        doThrow(new IllegalStateException()).when(feedList).getFeeds();
+        broken.add(feedList);
+
+        try {
+            dao.save(broken, new Date(2000));
+            fail();
+        }
+        catch(IllegalStateException expt) {
+            assertEquals(saved, FileUtils.readFileToString(new File(dao.getPath()), "UTF-8"));
+            assertFalse(new File(dao.getPath() + ".tmp").exists());
+            assertEquals(new Date(1000), dao.getLastSaved());
+        }
+    }
+
+    /**
+     * Name: Load without network
+     * Unit: load(FeedRegistry)
+     *
+     * Saves a configuration with 200 Feeds from a server and loads it again. No request should be
+     * made to the server when loading, and the Feeds should have the same content as when saved.
+     */
+    @Test
+    public void loadWithoutNetwork() throws Exception {
+        FeedServer server = new FeedServer();
+        String feeds = DataAccessObject.class
+                .getResource("../../../resources/test/RssParserTestResources/update/")
+                .getPath();
+
+        try {
+            FeedList feedList = new FeedList("FeedList1", "DATE_DEC", true);
+            for(int i = 0; i < 200; i++) {
+                feedList.add(server.serve("feed" + i + ".xml", feeds + "original.xml"));
+            }
+            feedList.get(0).getItems().get(1).setStarred(true);
+
+            ArrayList<FeedList> feedLists = new ArrayList<>();
+            feedLists.add(feedList);
+
+            dao.setPath(resources + "testOffline.json");
+            urlsToCreatedFiles.add(dao.getPath());
+            dao.save(feedLists, new Date());
+
+            int requests = server.getRequests();
+            ArrayList<FeedList> loaded = dao.load(new FeedRegistry());
+
+            assertEquals(requests, server.getRequests());
+            assertEquals(200, loaded.get(0).size());
+
+            Feed saved = feedList.get(0);
+            Feed feed = loaded.get(0).get(0);
+            assertEquals(saved.getTitle(), feed.getTitle());
+            assertEquals(saved.getLink(), feed.getLink());
+            assertEquals(saved.getDescription(), feed.getDescription());
+            assertEquals(saved.getUrlToXML(), feed.getUrlToXML());
+            assertEquals(saved.getItems().size(), feed.getItems().size());
+
+            for(int i = 0; i < feed.getItems().size(); i++) {
+                Item savedItem = saved.getItems().get(i);
+                Item item = feed.getItems().get(i);
+
+                assertEquals(savedItem.getId(), item.getId());
+                assertEquals(savedItem.getTitle(), item.getTitle());
+                assertEquals(savedItem.getLink(), item.getLink());
+                assertEquals(savedItem.getDescription(), item.getDescription());
+                assertEquals(savedItem.getDate(), item.getDate());
+                assertEquals(saved.getUrlToXML(), item.getFeedIdentifier());
+                assertEquals(savedItem.isVisited(), item.isVisited());
+                assertEquals(savedItem.isStarred(), item.isStarred());
+            }
+            assertTrue(feed.getItems().get(1).isStarred());
+        }
+        finally {
+            server.stop();
+        }
+    }
+
     @Test
     public void createExampleFile() {
         String content = "[ {\n" +
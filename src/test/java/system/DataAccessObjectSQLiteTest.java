@@ -0,0 +1,237 @@
+package system;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import system.rss.Feed;
+import system.rss.FeedSchedule;
+import system.rss.Item;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class DataAccessObjectSQLiteTest
+ *
+ * This is the test class for the DataAccessObjectSQLite class.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class DataAccessObjectSQLiteTest {
+    private static final String SHARED = "http://shared.com/feed.xml";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DataAccessObjectSQLite dao;
+    private ArrayList<FeedList> feedLists;
+
+    /**
+     * Test preparation. Creates three FeedLists with a Feed of their own each, where the first and
+     * the last also share a Feed, and saves them.
+     */
+    @Before
+    public void createDatabase() throws Exception {
+        FeedRegistry registry = new FeedRegistry();
+        feedLists = new ArrayList<>();
+
+        for(int i = 0; i < 3; i++) {
+            FeedList feedList = new FeedList("FeedList" + i, "DATE_DEC", true, registry);
+            feedList.addFetched(createFeed("http://feed" + i + ".com/feed.xml"));
+            if(i != 1)
+                feedList.addFetched(createFeed(SHARED));
+            feedLists.add(feedList);
+        }
+
+        dao = new DataAccessObjectSQLite();
+        dao.setPath(new File(folder.getRoot(), "save.sqlite").getPath());
+        dao.save(feedLists, new Date(1000));
+    }
+
+    @After
+    public void closeDatabase() throws Exception {
+        dao.close();
+    }
+
+    /**
+     * Name: Save and load
+     * Unit: save(ArrayList<FeedList>, Date), load(FeedRegistry)
+     *
+     * Loading the database with another DataAccessObjectSQLite should give the same FeedLists in
+     * the same order, still sharing the Feed, with the same Items, validators, and FeedSchedules.
+     */
+    @Test
+    public void saveAndLoad() throws Exception {
+        assertEquals(4, dao.getWritten());
+        assertEquals(new Date(1000), dao.getLastSaved());
+
+        Feed shared = feedLists.get(0).get(1);
+        shared.setValidators("\"etag\"", "Fri, 01 Jan 2016 00:00:00 GMT");
+        FeedSchedule schedule = shared.getSchedule();
+        schedule.setHints(60, new TreeSet<>(Arrays.asList(1, 2)), EnumSet.of(DayOfWeek.SUNDAY),
+                3600000);
+        schedule.setState(1000, 5000, 2);
+        feedLists.get(2).setStarred(SHARED, "item3", true);
+        feedLists.get(1).setSortingRules("TITLE_ASC");
+        dao.save(feedLists, new Date(2000));
+
+        ArrayList<FeedList> loaded = loadWithOtherDao();
+
+        assertEquals(3, loaded.size());
+        for(int i = 0; i < 3; i++) {
+            assertEquals("FeedList" + i, loaded.get(i).getName());
+            assertEquals(i == 1 ? 1 : 2, loaded.get(i).size());
+        }
+        assertEquals("TITLE_ASC", loaded.get(1).getSortingRules());
+
+        Feed loadedShared = loaded.get(0).get(1);
+        assertSame(loadedShared, loaded.get(2).get(1));
+        assertEquals("\"etag\"", loadedShared.getETag());
+        assertEquals(60, loadedShared.getSchedule().getTtl());
+        assertEquals(EnumSet.of(DayOfWeek.SUNDAY), loadedShared.getSchedule().getSkipDays());
+        assertEquals(5000, loadedShared.getSchedule().getNextPoll());
+        assertTrue(loadedShared.getItemById("item3").isStarred());
+
+        ArrayList<Item> items = loaded.get(2).get(0).getItems();
+        assertEquals(5, items.size());
+        for(int i = 0; i < 5; i++) {
+            assertEquals("item" + i, items.get(i).getId());
+            assertEquals("Item " + i, items.get(i).getTitle());
+            assertEquals(new Date(1451606400000L + i), items.get(i).getDate());
+        }
+    }
+
+    /**
+     * Name: Save only changed Feeds
+     * Unit: save(ArrayList<FeedList>, Date)
+     *
+     * Saving without changes should write no Feeds, and changing a Feed should only write that
+     * Feed, even when it is shared by several FeedLists.
+     */
+    @Test
+    public void saveOnlyChangedFeeds() throws Exception {
+        dao.save(feedLists, new Date(2000));
+        assertEquals(0, dao.getWritten());
+
+        feedLists.get(0).setVisited(SHARED, "item0", true);
+        dao.save(feedLists, new Date(3000));
+        assertEquals(1, dao.getWritten());
+
+        feedLists.get(1).get(0).getSchedule().setState(5000, 6000, 1);
+        dao.save(feedLists, new Date(4000));
+        assertEquals(1, dao.getWritten());
+    }
+
+    /**
+     * Name: Save status of a single Item
+     * Unit: saveVisited(String, String, boolean), saveStarred(String, String, boolean)
+     *
+     * The status of an Item should be in the database right after saveVisited or saveStarred,
+     * without a save.
+     */
+    @Test
+    public void saveStatusOfSingleItem() throws Exception {
+        assertTrue(dao.saveVisited(SHARED, "item1", true));
+        assertTrue(dao.saveStarred("http://feed1.com/feed.xml", "item2", true));
+
+        ArrayList<FeedList> loaded = loadWithOtherDao();
+
+        assertTrue(loaded.get(0).get(1).getItemById("item1").isVisited());
+        assertFalse(loaded.get(0).get(1).getItemById("item1").isStarred());
+        assertTrue(loaded.get(1).get(0).getItemById("item2").isStarred());
+    }
+
+    /**
+     * Name: Remove Feeds and Items
+     * Unit: save(ArrayList<FeedList>, Date)
+     *
+     * Feeds no longer in any FeedList and Items no longer in their Feed should be deleted from the
+     * database.
+     */
+    @Test
+    public void removeFeedsAndItems() throws Exception {
+        feedLists.get(1).remove("http://feed1.com/feed.xml");
+        feedLists.get(0).remove(SHARED);
+        feedLists.get(0).get(0).getItems().remove(4);
+        feedLists.get(0).get(0).itemsChanged();
+        dao.save(feedLists, new Date(2000));
+
+        ArrayList<FeedList> loaded = loadWithOtherDao();
+
+        assertEquals(1, loaded.get(0).size());
+        assertEquals(4, loaded.get(0).get(0).getItems().size());
+        assertEquals(0, loaded.get(1).size());
+        assertEquals(2, loaded.get(2).size());
+
+        feedLists.get(2).remove(SHARED);
+        dao.save(feedLists, new Date(3000));
+
+        assertEquals(0, count("SELECT COUNT(*) FROM items WHERE feed = '" + SHARED + "'"));
+        assertEquals(2, count("SELECT COUNT(*) FROM feeds"));
+    }
+
+    /**
+     * Name: WAL mode and indexes
+     * Unit: save(ArrayList<FeedList>, Date)
+     *
+     * The database should be in WAL mode, with Items indexed on their date.
+     */
+    @Test
+    public void walModeAndIndexes() throws Exception {
+        try(Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dao.getPath());
+            Statement statement = connection.createStatement()) {
+            try(ResultSet rows = statement.executeQuery("PRAGMA journal_mode")) {
+                rows.next();
+                assertEquals("wal", rows.getString(1));
+            }
+        }
+
+        assertEquals(1, count("SELECT COUNT(*) FROM sqlite_master WHERE type = 'index' AND " +
+                "name = 'itemsByDate'"));
+    }
+
+    private ArrayList<FeedList> loadWithOtherDao() throws Exception {
+        DataAccessObjectSQLite other = new DataAccessObjectSQLite();
+        other.setPath(dao.getPath());
+
+        try {
+            return other.load(new FeedRegistry());
+        }
+        finally {
+            other.close();
+        }
+    }
+
+    private int count(String sql) throws Exception {
+        try(Connection connection = DriverManager.getConnection("jdbc:sqlite:" + dao.getPath());
+            Statement statement = connection.createStatement();
+            ResultSet rows = statement.executeQuery(sql)) {
+            rows.next();
+            return rows.getInt(1);
+        }
+    }
+
+    private Feed createFeed(String url) {
+        ArrayList<Item> items = new ArrayList<>();
+
+        for(int i = 0; i < 5; i++) {
+            items.add(new Item("Item " + i, url + "/" + i, "", new Date(1451606400000L + i),
+                    "item" + i, url, false, false));
+        }
+
+        return new Feed("Feed", url, "", "", url, items);
+    }
+}
@@ -0,0 +1,334 @@
+package system;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import system.rss.Feed;
+import system.rss.Item;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class DataAccessObjectShardedTest
+ *
+ * This is the test class for the DataAccessObjectSharded class.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class DataAccessObjectShardedTest {
+    private static final String SHARED = "http://shared.com/feed.xml";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DataAccessObjectSharded dao;
+    private ArrayList<FeedList> feedLists;
+
+    /**
+     * Test preparation. Creates three FeedLists with a Feed of their own each, where the first and
+     * the last also share a Feed, and saves them.
+     */
+    @Before
+    public void createConfiguration() throws Exception {
+        FeedRegistry registry = new FeedRegistry();
+        feedLists = new ArrayList<>();
+
+        for(int i = 0; i < 3; i++) {
+            FeedList feedList = new FeedList("FeedList" + i, "DATE_DEC", true, registry);
+            feedList.addFetched(createFeed("http://feed" + i + ".com/feed.xml"));
+            if(i != 1)
+                feedList.addFetched(createFeed(SHARED));
+            feedLists.add(feedList);
+        }
+
+        dao = new DataAccessObjectSharded();
+        dao.setPath(new File(folder.getRoot(), "save.json").getPath());
+        dao.save(feedLists, new Date(1000));
+    }
+
+    /**
+     * Name: Save and load
+     * Unit: save(ArrayList<FeedList>, Date), load(FeedRegistry)
+     *
+     * The first save should write a file for each FeedList and the manifest. Loading them with
+     * another DataAccessObjectSharded should give the same FeedLists in the same order, still
+     * sharing the Feed.
+     */
+    @Test
+    public void saveAndLoad() throws Exception {
+        assertEquals(4, dao.getWritten());
+        assertEquals(new Date(1000), dao.getLastSaved());
+        assertEquals(3, new File(dao.getPath() + ".lists").list().length);
+
+        feedLists.get(2).setStarred(SHARED, "item3", true);
+        feedLists.get(1).setSortingRules("TITLE_ASC");
+        dao.save(feedLists, new Date(2000));
+
+        DataAccessObjectSharded other = new DataAccessObjectSharded();
+        other.setPath(dao.getPath());
+        ArrayList<FeedList> loaded = other.load(new FeedRegistry());
+
+        assertEquals(3, loaded.size());
+        for(int i = 0; i < 3; i++) {
+            assertEquals("FeedList" + i, loaded.get(i).getName());
+            assertEquals(i == 1 ? 1 : 2, loaded.get(i).size());
+        }
+        assertEquals("TITLE_ASC", loaded.get(1).getSortingRules());
+        assertSame(loaded.get(0).get(1), loaded.get(2).get(1));
+        assertTrue(loaded.get(0).get(1).getItemById("item3").isStarred());
+        assertEquals("Item 4", loaded.get(2).get(0).getItemById("item4").getTitle());
+
+        other.save(loaded, new Date(3000));
+        assertEquals(0, other.getWritten());
+    }
+
+    /**
+     * Name: Save only changed FeedLists
+     * Unit: save(ArrayList<FeedList>, Date)
+     *
+     * Saving without changes should write nothing. Changing a FeedList or one of its Feeds should
+     * only write that FeedList, and changing a shared Feed every FeedList holding it.
+     */
+    @Test
+    public void saveOnlyChangedFeedLists() throws Exception {
+        dao.save(feedLists, new Date(2000));
+        assertEquals(0, dao.getWritten());
+
+        feedLists.get(1).setVisited("http://feed1.com/feed.xml", "item0", true);
+        dao.save(feedLists, new Date(3000));
+        assertEquals(1, dao.getWritten());
+
+        feedLists.get(0).setStarred(SHARED, "item0", true);
+        dao.save(feedLists, new Date(4000));
+        assertEquals(2, dao.getWritten());
+
+        feedLists.get(2).get(0).getSchedule().setState(5000, 6000, 1);
+        dao.save(feedLists, new Date(5000));
+        assertEquals(1, dao.getWritten());
+    }
+
+    /**
+     * Name: Add and remove FeedLists
+     * Unit: save(ArrayList<FeedList>, Date)
+     *
+     * Adding a FeedList should write its file and the manifest, and removing one should write the
+     * manifest and delete its file.
+     */
+    @Test
+    public void addAndRemoveFeedLists() throws Exception {
+        feedLists.add(new FeedList("FeedList3", "DATE_DEC", true));
+        dao.save(feedLists, new Date(2000));
+        assertEquals(2, dao.getWritten());
+        assertEquals(4, new File(dao.getPath() + ".lists").list().length);
+
+        feedLists.remove(1);
+        dao.save(feedLists, new Date(3000));
+        assertEquals(1, dao.getWritten());
+        assertEquals(3, new File(dao.getPath() + ".lists").list().length);
+
+        DataAccessObjectSharded other = new DataAccessObjectSharded();
+        other.setPath(dao.getPath());
+        ArrayList<FeedList> loaded = other.load(new FeedRegistry());
+
+        assertEquals(3, loaded.size());
+        assertEquals("FeedList0", loaded.get(0).getName());
+        assertEquals("FeedList2", loaded.get(1).getName());
+        assertEquals("FeedList3", loaded.get(2).getName());
+    }
+
+    /**
+     * Name: Save to a new path
+     * Unit: setPath(String)
+     *
+     * After the path is changed every FeedList should be written again.
+     */
+    @Test
+    public void saveToNewPath() throws Exception {
+        dao.setPath(new File(folder.getRoot(), "other.json").getPath());
+        dao.save(feedLists, new Date(2000));
+
+        assertEquals(4, dao.getWritten());
+        assertEquals(3, new File(dao.getPath() + ".lists").list().length);
+    }
+
+    /**
+     * Name: Load lazily
+     * Unit: load(FeedRegistry), setLazy(boolean)
+     *
+     * A lazy load should only read the manifest, and the file of a FeedList should be read the
+     * first time its Feeds are needed. Saving should not write the FeedLists which are not loaded,
+     * unless they share a Feed which was written.
+     */
+    @Test
+    public void loadLazily() throws Exception {
+        DataAccessObjectSharded other = new DataAccessObjectSharded();
+        other.setLazy(true);
+        other.setPath(dao.getPath());
+        FeedRegistry registry = new FeedRegistry();
+        ArrayList<FeedList> loaded = other.load(registry);
+
+        assertEquals(3, loaded.size());
+        assertEquals("FeedList1", loaded.get(1).getName());
+        assertEquals("DATE_DEC", loaded.get(1).getSortingRules());
+        for(FeedList feedList : loaded) {
+            assertFalse(feedList.isLoaded());
+        }
+        assertEquals(0, registry.size());
+
+        assertEquals(10, loaded.get(2).getAllItems().size());
+        assertTrue(loaded.get(2).isLoaded());
+        assertFalse(loaded.get(0).isLoaded());
+        assertEquals(2, registry.size());
+
+        loaded.get(0).setSortingRules("TITLE_ASC");
+        loaded.get(2).setStarred(SHARED, "item3", true);
+        other.save(loaded, new Date(2000));
+        assertEquals(3, other.getWritten());
+        assertFalse(loaded.get(0).isLoaded());
+        assertFalse(loaded.get(1).isLoaded());
+        assertEquals(2, registry.size());
+
+        DataAccessObjectSharded eager = new DataAccessObjectSharded();
+        eager.setPath(other.getPath());
+        ArrayList<FeedList> reloaded = eager.load(new FeedRegistry());
+
+        assertEquals("TITLE_ASC", reloaded.get(0).getSortingRules());
+        assertTrue(reloaded.get(0).get(1).getItemById("item3").isStarred());
+        assertEquals(1, reloaded.get(1).size());
+    }
+
+    /**
+     * Name: Unload saved FeedLists
+     * Unit: FeedList.unload()
+     *
+     * A lazily loaded FeedList should only be unloaded when it is saved as it is, which should
+     * release its Feeds, and it should be loaded again when it is used.
+     */
+    @Test
+    public void unloadSavedFeedLists() throws Exception {
+        DataAccessObjectSharded other = new DataAccessObjectSharded();
+        other.setLazy(true);
+        other.setPath(dao.getPath());
+        FeedRegistry registry = new FeedRegistry();
+        ArrayList<FeedList> loaded = other.load(registry);
+
+        loaded.get(0).getFeeds();
+        loaded.get(2).getFeeds();
+        assertEquals(3, registry.size());
+
+        loaded.get(0).setVisited("http://feed0.com/feed.xml", "item1", true);
+        assertFalse(loaded.get(0).unload());
+        assertTrue(loaded.get(2).unload());
+        assertEquals(2, registry.size());
+
+        other.save(loaded, new Date(2000));
+        assertTrue(loaded.get(0).unload());
+        assertEquals(0, registry.size());
+
+        assertTrue(loaded.get(0).get(0).getItemById("item1").isVisited());
+        assertSame(loaded.get(0).get(1), loaded.get(2).get(1));
+
+        loaded.get(2).setVisited(SHARED, "item2", true);
+        assertFalse(loaded.get(0).unload());
+        assertFalse(loaded.get(2).unload());
+
+        other.save(loaded, new Date(3000));
+        assertEquals(2, other.getWritten());
+        assertTrue(loaded.get(0).unload());
+        assertTrue(loaded.get(2).unload());
+        assertEquals(0, registry.size());
+    }
+
+    /**
+     * Name: Replay without loading
+     * Unit: Journal.replay(ArrayList<FeedList>), FeedList.install(ArrayList<Feed>)
+     *
+     * Replaying the journal after a lazy load should not load the FeedLists, but keep the records
+     * until they are loaded. The records should also survive a save which leaves the FeedLists
+     * unloaded.
+     */
+    @Test
+    public void replayWithoutLoading() throws Exception {
+        DataAccessObjectSharded other = new DataAccessObjectSharded();
+        other.setLazy(true);
+
+        try {
+            Configuration.setDao(other);
+            Configuration.load(dao.getPath());
+            Configuration.setStarred("FeedList1", "http://feed1.com/feed.xml", "item2", true);
+
+            Configuration.load(dao.getPath());
+            FeedList feedList = Configuration.getFeedLists().get(1);
+            assertFalse(feedList.isLoaded());
+            assertEquals(1, feedList.getDeferred().size());
+
+            Configuration.save(Configuration.getSnapshot());
+            assertFalse(feedList.isLoaded());
+
+            Configuration.load(dao.getPath());
+            assertTrue(Configuration.getFeedLists().get(1).get(0).getItemById("item2")
+                    .isStarred());
+            assertTrue(Configuration.getFeedLists().get(1).getDeferred().isEmpty());
+        }
+        finally {
+            Configuration.getJournal().close();
+            Configuration.setDao(new DataAccessObjectJSON());
+        }
+    }
+
+    /**
+     * Name: Load in the background
+     * Unit: Configuration.loadFeedListInBackground(String)
+     *
+     * A FeedList should be read on another thread and then installed, which fires
+     * FEED_LIST_LOADED, without loading the other FeedLists.
+     */
+    @Test
+    public void loadInBackground() throws Exception {
+        DataAccessObjectSharded other = new DataAccessObjectSharded();
+        other.setLazy(true);
+        CountDownLatch loaded = new CountDownLatch(1);
+        ConfigurationListener listener = event -> {
+            if(event.getType() == ConfigurationEvent.Type.FEED_LIST_LOADED &&
+                    event.getListName().equals("FeedList2"))
+                loaded.countDown();
+        };
+
+        try {
+            Configuration.setDao(other);
+            Configuration.load(dao.getPath());
+            Configuration.addListener(listener);
+
+            assertFalse(Configuration.isFeedListLoaded("FeedList2"));
+            Configuration.loadFeedListInBackground("FeedList2");
+
+            assertTrue(loaded.await(5, TimeUnit.SECONDS));
+            assertTrue(Configuration.isFeedListLoaded("FeedList2"));
+            assertFalse(Configuration.isFeedListLoaded("FeedList0"));
+            assertEquals(10, Configuration.getAllItemsFromFeedList("FeedList2").size());
+        }
+        finally {
+            Configuration.removeListener(listener);
+            Configuration.getJournal().close();
+            Configuration.setDao(new DataAccessObjectJSON());
+        }
+    }
+
+    private Feed createFeed(String url) {
+        ArrayList<Item> items = new ArrayList<>();
+
+        for(int i = 0; i < 5; i++) {
+            items.add(new Item("Item " + i, url + "/" + i, "", new Date(1451606400000L + i),
+                    "item" + i, url, false, false));
+        }
+
+        return new Feed("Feed", url, "", "", url, items);
+    }
+}
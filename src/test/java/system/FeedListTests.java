@@ -14,6 +14,7 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import java.util.ArrayList;
+import java.util.Date;
 
 /**
  * Class FeedListTests
@@ -75,16 +76,24 @@ public class FeedListTests {
     }
 
 
+    /**
+     * Name: Set show visited status
+     * Unit: setShowVisitedStatus(boolean)
+     *
+     * Hiding the visited status should mark every Feed read through its watermark, without
+     * setting the visited status of each Item.
+     */
     @Test
     public void setShowVisitedStatus() {
-        addFeedMocks(true);
+        ArrayList<Feed> feeds = addFeedMocks(true);
 
         feedList.setShowVisitedStatus(false);
 
-        ArrayList<Item> items = feedList.getAllItems();
-
-        for(Item item : items) {
-            verify(item, times(1)).setVisited(true);
+        for(Feed feed : feeds) {
+            verify(feed, times(1)).markAllRead();
+            for(Item item : feed.getItems()) {
+                verify(item, never()).setVisited(anyBoolean());
+            }
         }
     }
     /**
@@ -260,8 +269,10 @@ public class FeedListTests {
         ArrayList<Feed> feedMocks = addFeedMocks(false);
         RssParser rssParserMock = Mocks.createRssParser();
 
-        doReturn(false).when(rssParserMock).updateFeed(feedMocks.get(0));
-        doReturn(false).when(rssParserMock).updateFeed(feedMocks.get(1));
+        doReturn(Mocks.createFeedUpdateMock(false)).when(rssParserMock)
+                .updateFeed(feedMocks.get(0));
+        doReturn(Mocks.createFeedUpdateMock(false)).when(rssParserMock)
+                .updateFeed(feedMocks.get(1));
 
         feedList.setRssParser(rssParserMock);
         boolean updateStatus = feedList.update();
@@ -280,8 +291,10 @@ public class FeedListTests {
         ArrayList<Feed> feedMocks = addFeedMocks(false);
         RssParser rssParserMock = Mocks.createRssParser();
 
-        doReturn(true).when(rssParserMock).updateFeed(feedMocks.get(0));
-        doReturn(false).when(rssParserMock).updateFeed(feedMocks.get(1));
+        doReturn(Mocks.createFeedUpdateMock(true)).when(rssParserMock)
+                .updateFeed(feedMocks.get(0));
+        doReturn(Mocks.createFeedUpdateMock(false)).when(rssParserMock)
+                .updateFeed(feedMocks.get(1));
 
         feedList.setRssParser(rssParserMock);
         boolean updateStatus = feedList.update();
@@ -300,8 +313,10 @@ public class FeedListTests {
         ArrayList<Feed> feedMocks = addFeedMocks(false);
         RssParser rssParserMock = Mocks.createRssParser();
 
-        doReturn(true).when(rssParserMock).updateFeed(feedMocks.get(0));
-        doReturn(true).when(rssParserMock).updateFeed(feedMocks.get(1));
+        doReturn(Mocks.createFeedUpdateMock(true)).when(rssParserMock)
+                .updateFeed(feedMocks.get(0));
+        doReturn(Mocks.createFeedUpdateMock(true)).when(rssParserMock)
+                .updateFeed(feedMocks.get(1));
 
         feedList.setRssParser(rssParserMock);
         boolean updateStatus = feedList.update();
@@ -449,6 +464,73 @@ public class FeedListTests {
         assertEquals(0, items.size());
     }
 
+    /**
+     * Name: Sorted Items follow changes
+     * Unit: getAllItems(), setSortingRules(String), remove(String), addFetched(Feed)
+     *
+     * The sorted Items should follow Items added to a Feed, a changed sorting rule, and removed and
+     * added Feeds. Items with the same date should come in the order of their Feeds when sorted
+     * ascending, and in the reverse order when sorted descending.
+     */
+    @Test
+    public void sortedItemsFollowChanges() {
+        Feed first = createFeed("http://first.com/feed.xml", 0, 2, 4);
+        Feed second = createFeed("http://second.com/feed.xml", 1, 2, 3);
+        feedList.addFetched(first);
+        feedList.addFetched(second);
+
+        feedList.setSortingRules("DATE_ASC");
+        assertDates(feedList.getAllItems(), 0, 1, 2, 2, 3, 4);
+        assertEquals("http://first.com/feed.xml/2", feedList.getAllItems().get(2).getId());
+
+        feedList.setSortingRules("DATE_DEC");
+        assertDates(feedList.getAllItems(), 4, 3, 2, 2, 1, 0);
+        assertEquals("http://second.com/feed.xml/2", feedList.getAllItems().get(2).getId());
+
+        second.getItems().add(createItem("http://second.com/feed.xml", 5));
+        second.itemsChanged();
+        assertDates(feedList.getAllItems(), 5, 4, 3, 2, 2, 1, 0);
+
+        feedList.setSortingRules("TITLE_ASC");
+        assertEquals(7, feedList.getAllItems().size());
+        assertEquals("Item 0", feedList.getAllItems().get(0).getTitle());
+
+        feedList.setSortingRules("DATE_ASC");
+        feedList.remove("http://first.com/feed.xml");
+        assertDates(feedList.getAllItems(), 1, 2, 3, 5);
+
+        feedList.addFetched(createFeed("http://third.com/feed.xml", 2));
+        assertDates(feedList.getAllItems(), 1, 2, 2, 3, 5);
+        assertEquals("http://third.com/feed.xml/2", feedList.getAllItems().get(2).getId());
+    }
+
+    /**
+     * Name: Get a window of Items
+     * Unit: getItems(int, int), getItemCount()
+     *
+     * Windows of the Items should be the same as the same part of getAllItems, and be cut off at
+     * the last Item.
+     */
+    @Test
+    public void getWindowOfItems() {
+        feedList.addFetched(createFeed("http://first.com/feed.xml", 0, 2, 4, 6));
+        feedList.addFetched(createFeed("http://second.com/feed.xml", 1, 3, 5));
+
+        assertEquals(7, feedList.getItemCount());
+        assertDates(feedList.getItems(0, 3), 6, 5, 4);
+        assertDates(feedList.getItems(3, 3), 3, 2, 1);
+        assertDates(feedList.getItems(6, 3), 0);
+        assertDates(feedList.getItems(7, 3));
+        assertDates(feedList.getItems(10, 3));
+
+        feedList.setSortingRules("DATE_ASC");
+        assertDates(feedList.getItems(2, 2), 2, 3);
+
+        feedList.remove("http://second.com/feed.xml");
+        assertEquals(4, feedList.getItemCount());
+        assertDates(feedList.getItems(2, 2), 4, 6);
+    }
+
     /**
      * Name: Set visited on existing Feed
      * Unit: setVisited()
@@ -546,4 +628,24 @@ public class FeedListTests {
         feedList.setFeeds(feeds);
         return feeds;
     }
+
+    private void assertDates(ArrayList<Item> items, long... dates) {
+        assertEquals(dates.length, items.size());
+        for(int i = 0; i < dates.length; i++) {
+            assertEquals(dates[i], items.get(i).getDate().getTime());
+        }
+    }
+
+    private Feed createFeed(String url, long... dates) {
+        ArrayList<Item> items = new ArrayList<>();
+        for(long date : dates) {
+            items.add(createItem(url, date));
+        }
+        return new Feed("Feed", url, "", "", url, items);
+    }
+
+    private Item createItem(String url, long date) {
+        return new Item("Item " + date, url + "/" + date, "", new Date(date), url + "/" + date, url,
+                false, false);
+    }
 }
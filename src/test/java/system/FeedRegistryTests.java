@@ -0,0 +1,186 @@
+package system;
+
+import org.junit.Before;
+import org.junit.Test;
+import system.rss.Feed;
+import system.rss.FeedServer;
+import system.rss.Item;
+import system.rss.Mocks;
+import system.rss.RssParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Class FeedRegistryTests
+ *
+ * This is the test class for the FeedRegistry class.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class FeedRegistryTests {
+    private FeedRegistry registry;
+    private String resources = FeedRegistry.class
+            .getResource("../../../resources/test/RssParserTestResources/")
+            .getPath();
+
+    /**
+     * Test preparation. Create a new FeedRegistry before each test.
+     */
+    @Before
+    public void createObject() {
+        registry = new FeedRegistry();
+    }
+
+    /**
+     * Name: Acquire shared Feed
+     * Unit: acquire(String, FeedList, RssParser)
+     *
+     * Adds the same URL to two FeedLists sharing a FeedRegistry. Both should hold the same Feed
+     * object and the feed should only be fetched once.
+     */
+    @Test
+    public void acquireSharedFeed() {
+        RssParser rssParser = Mocks.createRssParser();
+        FeedList feedList1 = createFeedList("FeedList1", rssParser);
+        FeedList feedList2 = createFeedList("FeedList2", rssParser);
+
+        feedList1.add("http://feed-website-1.com/feed.xml");
+        feedList2.add("http://feed-website-1.com/feed.xml");
+
+        assertSame(feedList1.get(0), feedList2.get(0));
+        assertEquals(2, registry.getReferenceCount("http://feed-website-1.com/feed.xml"));
+        assertEquals(1, registry.size());
+        verify(rssParser, times(1)).getFeed("http://feed-website-1.com/feed.xml");
+    }
+
+    /**
+     * Name: Release shared Feed
+     * Unit: release(String, FeedList)
+     *
+     * Removes a shared Feed from one FeedList at the time. The Feed should stay in the registry
+     * until the last FeedList has removed it.
+     */
+    @Test
+    public void releaseSharedFeed() {
+        RssParser rssParser = Mocks.createRssParser();
+        FeedList feedList1 = createFeedList("FeedList1", rssParser);
+        FeedList feedList2 = createFeedList("FeedList2", rssParser);
+
+        feedList1.add("http://feed-website-1.com/feed.xml");
+        feedList2.add("http://feed-website-1.com/feed.xml");
+        feedList2.add("http://feed-website-3.com/feed.xml");
+
+        feedList1.remove("http://feed-website-1.com/feed.xml");
+        assertEquals(1, registry.getReferenceCount("http://feed-website-1.com/feed.xml"));
+        assertEquals(2, registry.size());
+
+        feedList2.clear();
+        assertEquals(0, registry.getReferenceCount("http://feed-website-1.com/feed.xml"));
+        assertEquals(0, registry.size());
+        assertEquals(0, feedList2.size());
+    }
+
+    /**
+     * Name: Fetch then acquire Feed
+     * Unit: fetch(String, RssParser), acquire(Feed, FeedList)
+     *
+     * Fetches a Feed without registering it and then adds it to two FeedLists. The second fetch
+     * should return the registered Feed without fetching it again.
+     */
+    @Test
+    public void fetchThenAcquireFeed() {
+        RssParser rssParser = Mocks.createRssParser();
+        FeedList feedList1 = createFeedList("FeedList1", rssParser);
+        FeedList feedList2 = createFeedList("FeedList2", rssParser);
+
+        Feed feed = feedList1.fetch("http://feed-website-1.com/feed.xml");
+        assertEquals(0, registry.size());
+
+        feedList1.addFetched(feed);
+        assertSame(feed, feedList2.fetch("http://feed-website-1.com/feed.xml"));
+        feedList2.addFetched(feedList2.fetch("http://feed-website-1.com/feed.xml"));
+
+        assertSame(feedList1.get(0), feedList2.get(0));
+        assertEquals(2, registry.getReferenceCount("http://feed-website-1.com/feed.xml"));
+        verify(rssParser, times(1)).getFeed("http://feed-website-1.com/feed.xml");
+    }
+
+    /**
+     * Name: Show visited status with shared Feed
+     * Unit: isVisitedStatusShownElsewhere(String, FeedList)
+     *
+     * Hides the visited status in one of two FeedLists sharing a Feed. The Items should not be set
+     * to visited until both FeedLists hide the visited status.
+     */
+    @Test
+    public void showVisitedStatusWithSharedFeed() {
+        RssParser rssParser = new RssParser();
+        FeedList feedList1 = createFeedList("FeedList1", rssParser);
+        FeedList feedList2 = createFeedList("FeedList2", rssParser);
+        String url = resources + "update/original.xml";
+
+        feedList1.add(url);
+        feedList2.add(url);
+
+        Feed feed = feedList1.get(0);
+        for(Item item : feed.getItems()) {
+            item.setVisited(false);
+        }
+
+        feedList1.setShowVisitedStatus(false);
+        for(Item item : feed.getItems()) {
+            assertFalse(item.isVisited());
+        }
+
+        feedList2.setShowVisitedStatus(false);
+        for(Item item : feed.getItems()) {
+            assertTrue(item.isVisited());
+        }
+    }
+
+    /**
+     * Name: Update shared Feed once
+     * Unit: Configuration.update()
+     *
+     * Adds the same feed to two FeedLists in the Configuration and updates. The feed should be
+     * fetched once when added and once when updated.
+     */
+    @Test
+    public void updateSharedFeedOnce() throws IOException {
+        FeedServer server = new FeedServer();
+        Configuration.setFeedLists(new ArrayList<>());
+
+        try {
+            String url = server.serve("feed.xml", resources + "update/original.xml");
+            Configuration.addFeedList("FeedList1");
+            Configuration.addFeedList("FeedList2");
+            Configuration.addFeed(url, "FeedList1");
+            Configuration.addFeed(url, "FeedList2");
+
+            Feed feed = Configuration.getAllFeedsFromFeedList("FeedList1").get(0);
+            feed.getSchedule().setState(1, 1, 0);
+
+            server.serve("feed.xml", resources + "update/itemAdded.xml");
+            Configuration.update();
+
+            assertEquals(2, server.getRequests());
+            assertEquals(5, Configuration.getAllFeedsFromFeedList("FeedList2").get(0).getItems()
+                    .size());
+        }
+        finally {
+            Configuration.removeFeedList("FeedList1");
+            Configuration.removeFeedList("FeedList2");
+            server.stop();
+        }
+    }
+
+    private FeedList createFeedList(String name, RssParser rssParser) {
+        FeedList feedList = new FeedList(name, "DATE_DEC", true, registry);
+        feedList.setRssParser(rssParser);
+        return feedList;
+    }
+}
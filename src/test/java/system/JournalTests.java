@@ -0,0 +1,369 @@
+package system;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import system.rss.Feed;
+import system.rss.Item;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class JournalTests
+ *
+ * This is the test class for the Journal class and how Configuration uses it. A crash is simulated
+ * by loading the save file again without saving, which drops the loaded FeedLists like a stopped
+ * application would.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class JournalTests {
+    private static final String FEED1 = "http://feed1.com/feed.xml";
+    private static final String FEED2 = "http://feed2.com/feed.xml";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String path;
+
+    /**
+     * Test preparation. Saves a configuration with two FeedLists sharing a Feed to a temporary save
+     * file and loads it, which opens its journal.
+     */
+    @Before
+    public void createConfiguration() throws Exception {
+        path = new File(folder.getRoot(), "save.json").getPath();
+
+        FeedList feedList1 = new FeedList("FeedList1", "DATE_DEC", true);
+        feedList1.addFetched(createFeed(FEED1));
+        feedList1.addFetched(createFeed(FEED2));
+        FeedList feedList2 = new FeedList("FeedList2", "DATE_DEC", true);
+        feedList2.addFetched(createFeed(FEED2));
+
+        ArrayList<FeedList> feedLists = new ArrayList<>();
+        feedLists.add(feedList1);
+        feedLists.add(feedList2);
+
+        Configuration.setDao(new DataAccessObjectJSON());
+        Configuration.setFeedLists(feedLists);
+        Configuration.save(path);
+        Configuration.load(path);
+    }
+
+    @After
+    public void closeJournal() throws IOException {
+        if(Configuration.getJournal() != null)
+            Configuration.getJournal().close();
+        Configuration.setDao(new DataAccessObjectJSON());
+    }
+
+    /**
+     * Name: Replay after crash
+     * Unit: append(char, boolean, String, String, String), replay(ArrayList<FeedList>)
+     *
+     * Changes visited and starred without saving. The changes should be in the journal and not in
+     * the save file, and be back after loading again.
+     */
+    @Test
+    public void replayAfterCrash() throws Exception {
+        String saved = readFile(path);
+
+        Configuration.setVisited("FeedList1", FEED1, "item0", true);
+        Configuration.setStarred("FeedList1", FEED2, "item1", true);
+        Configuration.setVisited("FeedList2", FEED2, "item2", true);
+        Configuration.setVisited("FeedList2", FEED2, "item2", false);
+
+        assertEquals(saved, readFile(path));
+        assertTrue(new File(path + ".journal").exists());
+
+        Configuration.load(path);
+
+        assertTrue(getItem("FeedList1", 0, "item0").isVisited());
+        assertTrue(getItem("FeedList1", 1, "item1").isStarred());
+        assertFalse(getItem("FeedList2", 0, "item2").isVisited());
+        assertFalse(getItem("FeedList1", 0, "item1").isVisited());
+    }
+
+    /**
+     * Name: Truncated record
+     * Unit: replay(ArrayList<FeedList>)
+     *
+     * A record without a line end, left by a crash in the middle of a write, should be ignored
+     * while the records before it are replayed.
+     */
+    @Test
+    public void truncatedRecord() throws Exception {
+        Configuration.setVisited("FeedList1", FEED1, "item0", true);
+        Configuration.getJournal().close();
+        appendToFile(path + ".journal", "V1\tFeedList1\t" + FEED1 + "\tite");
+
+        Configuration.load(path);
+
+        assertTrue(getItem("FeedList1", 0, "item0").isVisited());
+        assertFalse(getItem("FeedList1", 0, "item1").isVisited());
+    }
+
+    /**
+     * Name: Append after truncated record
+     * Unit: append(char, boolean, String, String, String), replay(ArrayList<FeedList>)
+     *
+     * A record appended after loading a journal which ends with a partly written record should not
+     * be joined to it, so it is replayed after loading again.
+     */
+    @Test
+    public void appendAfterTruncatedRecord() throws Exception {
+        Configuration.setVisited("FeedList1", FEED1, "item0", true);
+        Configuration.getJournal().close();
+        appendToFile(path + ".journal", "V1\tFeedList1\t" + FEED1 + "\tite");
+
+        Configuration.load(path);
+        Configuration.setStarred("FeedList1", FEED1, "item1", true);
+        Configuration.load(path);
+
+        assertTrue(getItem("FeedList1", 0, "item0").isVisited());
+        assertTrue(getItem("FeedList1", 0, "item1").isStarred());
+        assertFalse(getItem("FeedList1", 0, "item1").isVisited());
+    }
+
+    /**
+     * Name: Crash during compaction
+     * Unit: rotate(), replay(ArrayList<FeedList>)
+     *
+     * When the application stops after a snapshot is taken but before it is saved, the records in
+     * the rotated journal and the records appended after the snapshot should both be replayed.
+     */
+    @Test
+    public void crashDuringCompaction() throws Exception {
+        Configuration.setVisited("FeedList1", FEED1, "item0", true);
+        Configuration.getSnapshot();
+        Configuration.setStarred("FeedList1", FEED1, "item1", true);
+
+        assertTrue(new File(path + ".journal.1").exists());
+
+        Configuration.load(path);
+
+        assertTrue(getItem("FeedList1", 0, "item0").isVisited());
+        assertTrue(getItem("FeedList1", 0, "item1").isStarred());
+
+        // A second snapshot before the first was saved keeps the records of both
+        Configuration.getSnapshot();
+        Configuration.load(path);
+
+        assertTrue(getItem("FeedList1", 0, "item0").isVisited());
+        assertTrue(getItem("FeedList1", 0, "item1").isStarred());
+    }
+
+    /**
+     * Name: Compaction of an earlier snapshot
+     * Unit: rotate(), compacted(long)
+     *
+     * Saving a snapshot should only delete the rotated journals it covers, so the records of a
+     * snapshot taken after it are kept until that snapshot is saved, and a snapshot taken before
+     * the one saved last should not be saved over it.
+     */
+    @Test
+    public void compactionOfEarlierSnapshot() throws Exception {
+        Configuration.setVisited("FeedList1", FEED1, "item0", true);
+        Snapshot first = Configuration.getSnapshot();
+        Configuration.setStarred("FeedList1", FEED1, "item1", true);
+        Snapshot second = Configuration.getSnapshot();
+
+        Configuration.save(first);
+        assertFalse(new File(path + ".journal.1").exists());
+        assertTrue(new File(path + ".journal.2").exists());
+
+        Configuration.load(path);
+        assertTrue(getItem("FeedList1", 0, "item0").isVisited());
+        assertTrue(getItem("FeedList1", 0, "item1").isStarred());
+
+        Configuration.setVisited("FeedList1", FEED1, "item2", true);
+        Snapshot third = Configuration.getSnapshot();
+        Configuration.save(third);
+        Configuration.save(second);
+        assertFalse(new File(path + ".journal.3").exists());
+
+        Configuration.load(path);
+        assertTrue(getItem("FeedList1", 0, "item1").isStarred());
+        assertTrue(getItem("FeedList1", 0, "item2").isVisited());
+    }
+
+    /**
+     * Name: Compaction
+     * Unit: save(ArrayList<FeedList>), needsCompaction()
+     *
+     * Saving should move the changes from the journal to the save file and delete the journal, and
+     * loading again should give the same state.
+     */
+    @Test
+    public void compaction() throws Exception {
+        Configuration.setCompactionThreshold(100);
+        assertFalse(Configuration.needsCompaction());
+
+        for(int i = 0; i < 10; i++) {
+            Configuration.setVisited("FeedList1", FEED1, "item" + i, true);
+        }
+        Configuration.setStarred("FeedList2", FEED2, "item3", true);
+        assertTrue(Configuration.needsCompaction());
+
+        Configuration.save(Configuration.getSnapshot());
+
+        assertFalse(Configuration.needsCompaction());
+        assertFalse(new File(path + ".journal").exists());
+        assertFalse(new File(path + ".journal.1").exists());
+
+        Configuration.load(path);
+
+        for(int i = 0; i < 10; i++) {
+            assertTrue(getItem("FeedList1", 0, "item" + i).isVisited());
+        }
+        assertTrue(getItem("FeedList2", 0, "item3").isStarred());
+        Configuration.setCompactionThreshold(65536);
+    }
+
+    /**
+     * Name: Save as
+     * Unit: moveTo(String)
+     *
+     * After saving to another path the journal should belong to the new save file.
+     */
+    @Test
+    public void saveAs() throws Exception {
+        String newPath = new File(folder.getRoot(), "other.json").getPath();
+
+        Configuration.save(newPath);
+        Configuration.setVisited("FeedList1", FEED1, "item0", true);
+
+        assertTrue(new File(newPath + ".journal").exists());
+        assertFalse(new File(path + ".journal").exists());
+
+        Configuration.load(newPath);
+        assertTrue(getItem("FeedList1", 0, "item0").isVisited());
+    }
+
+    /**
+     * Name: Skip unknown records
+     * Unit: replay(ArrayList<FeedList>)
+     *
+     * Records for FeedLists, Feeds, or Items which don't exist, and records which can't be read,
+     * should be skipped.
+     */
+    @Test
+    public void skipUnknownRecords() throws Exception {
+        appendToFile(path + ".journal", "V1\tFeedList3\t" + FEED1 + "\titem0\n" +
+                "V1\tFeedList2\t" + FEED1 + "\titem0\n" +
+                "V1\tFeedList1\t" + FEED1 + "\titem99\n" +
+                "X1\tFeedList1\t" + FEED1 + "\titem0\n" +
+                "garbage\n" +
+                "S1\tFeedList1\t" + FEED1 + "\titem2\n");
+
+        Journal journal = new Journal(path);
+        assertEquals(1, journal.replay(Configuration.getFeedLists()));
+        assertFalse(getItem("FeedList1", 0, "item0").isVisited());
+        assertTrue(getItem("FeedList1", 0, "item2").isStarred());
+    }
+
+    /**
+     * Name: Escape fields
+     * Unit: append(char, boolean, String, String, String), replay(ArrayList<FeedList>)
+     *
+     * Names holding tabs, line ends, and backslashes should be written and read back unchanged.
+     */
+    @Test
+    public void escapeFields() throws Exception {
+        Configuration.addFeedList("Tab\tNew\nline\\");
+        Configuration.addFeed(createFeed(FEED1), "Tab\tNew\nline\\");
+        Configuration.setVisited("Tab\tNew\nline\\", FEED1, "item0", true);
+        Configuration.getFeedListByName("Tab\tNew\nline\\").get(0).getItems().get(0)
+                .setVisited(false);
+
+        Configuration.getJournal().replay(Configuration.getFeedLists());
+
+        assertTrue(getItem("Tab\tNew\nline\\", 0, "item0").isVisited());
+    }
+
+    /**
+     * Name: Replay marked read
+     * Unit: append(char, boolean, String, String, String), replay(ArrayList<FeedList>)
+     *
+     * Marks a Feed and a FeedList as read without saving, with an Item set as not visited after
+     * the mark. The Items should be visited after loading again, except the one set afterwards.
+     */
+    @Test
+    public void replayMarkedRead() throws Exception {
+        Configuration.markFeedRead("FeedList1", FEED1);
+        Configuration.setVisited("FeedList1", FEED1, "item3", false);
+        Configuration.markFeedListRead("FeedList2");
+
+        Configuration.load(path);
+
+        for(int i = 0; i < 10; i++) {
+            assertEquals(i != 3, getItem("FeedList1", 0, "item" + i).isVisited());
+            assertTrue(getItem("FeedList2", 0, "item" + i).isVisited());
+        }
+        assertEquals(1, Configuration.getUnreadCountOfFeedList("FeedList1"));
+
+        // Replaying the same records on top of them changes nothing
+        Configuration.getJournal().replay(Configuration.getFeedLists());
+        assertFalse(getItem("FeedList1", 0, "item3").isVisited());
+    }
+
+    /**
+     * Name: Replay hidden visited status
+     * Unit: setShowVisitedStatus(String, boolean), replay(ArrayList<FeedList>)
+     *
+     * Hiding the visited status of a FeedList marks its Feeds read, except the Feed shared with a
+     * FeedList which still shows it. The marks should be in the journal and be back after loading
+     * again without saving.
+     */
+    @Test
+    public void replayHiddenVisitedStatus() throws Exception {
+        Configuration.setShowVisitedStatus("FeedList1", false);
+
+        Configuration.load(path);
+
+        for(int i = 0; i < 10; i++) {
+            assertTrue(getItem("FeedList1", 0, "item" + i).isVisited());
+            assertFalse(getItem("FeedList1", 1, "item" + i).isVisited());
+        }
+    }
+
+    private Feed createFeed(String url) {
+        ArrayList<Item> items = new ArrayList<>();
+
+        for(int i = 0; i < 10; i++) {
+            items.add(new Item("Item " + i, url + "/" + i, "", new Date(1451606400000L + i),
+                    "item" + i, url, false, false));
+        }
+
+        return new Feed("Feed", url, "", "", url, items);
+    }
+
+    private Item getItem(String listName, int feedIndex, String itemId) {
+        for(Item item : Configuration.getFeedListByName(listName).get(feedIndex).getItems()) {
+            if(item.getId().equals(itemId))
+                return item;
+        }
+        fail();
+        return null;
+    }
+
+    private static String readFile(String path) throws IOException {
+        return FileUtils.readFileToString(new File(path), "UTF-8");
+    }
+
+    private static void appendToFile(String path, String text) throws IOException {
+        try(FileOutputStream output = new FileOutputStream(path, true)) {
+            output.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
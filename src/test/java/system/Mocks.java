@@ -204,7 +204,7 @@ class Mocks {
         try {
             doNothing().when(dao).setPath(anyString());
             doNothing().when(dao).save(any(), any(Date.class));
-            doReturn(new ArrayList<FeedList>()).when(dao).load();
+            doReturn(new ArrayList<FeedList>()).when(dao).load(any(FeedRegistry.class));
         }
         catch(Exception expt) {
             expt.printStackTrace();
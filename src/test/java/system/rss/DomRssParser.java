@@ -0,0 +1,204 @@
+package system.rss;
+
+import system.rss.exceptions.NoXMLFileFound;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import java.util.ArrayList;
+
+/**
+ * Class DomRssParser
+ *
+ * This is the DOM based parser RssParser used before it started to read feeds as a stream. It is
+ * only kept as a reference to compare the results of the streaming parser against.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+class DomRssParser {
+    /**
+     * Reads the whole XML file into a Document and creates a Feed from it.
+     *
+     * @param url   A String containing the URL to the XML file.
+     * @return      A Feed representing the content of the feed from the XML file at url.
+     */
+    Feed getFeed(String url) {
+        try {
+            Element channel = getChannelElement(url);
+            return new Feed(getTitle(channel), getLink(channel), getDescription(channel),
+                    getImage(channel), url, getItems(channel, url));
+        }
+        catch(NoXMLFileFound expt) {
+            return new Feed(url);
+        }
+    }
+
+    /**
+     * Takes a URL to an XML file with an RSS feed and creates a Document object. It then gets the
+     * channel element and returns it. If something goes wrong while reading the XML file a
+     * NoXMLFileFound exception is thrown.
+     *
+     * @param url   A String containing the URL to the XML file.
+     * @return      The channel element from the XML file.
+     */
+    private Element getChannelElement(String url) {
+        Element channel;
+
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            DocumentBuilder builder = factory.newDocumentBuilder();
+            Document document = builder.parse(url);
+            document.getDocumentElement().normalize();
+            channel = (Element) document.getElementsByTagName("channel").item(0);
+        }
+        catch(Exception err) {
+            throw new NoXMLFileFound(url);
+        }
+
+        return channel;
+    }
+
+    /**
+     * Takes the channel Element and gets the title node and returns the value. If no title node is
+     * found then a String with 'Untitled' is returned.
+     *
+     * @param channel   The channel Element of the Document.
+     * @return          A String containing the title of the feed.
+     */
+    private String getTitle(Element channel) {
+        Node node = channel.getElementsByTagName("title").item(0);
+
+        if(node.getParentNode().getNodeName().equals("channel")) {
+            return node.getFirstChild().getNodeValue();
+        }
+
+        return "Untitled";
+    }
+
+    /**
+     * Takes the channel Element and gets the link node and returns the value. If no link node is
+     * found then an empty String is returned.
+     *
+     * @param channel   The channel Element of the Document.
+     * @return          A String containing the link of the feed.
+     */
+    private String getLink(Element channel) {
+        Node node = channel.getElementsByTagName("link").item(0);
+
+        if(node.getParentNode().getNodeName().equals("channel")) {
+            return node.getFirstChild().getNodeValue();
+        }
+
+        return "";
+    }
+
+    /**
+     * Takes the channel Element and gets the description node and returns the value. If no
+     * description is found then an empty String is returned.
+     *
+     * @param channel   The channel Element of the Document.
+     * @return          A String containing the description of the feed.
+     */
+    private String getDescription(Element channel) {
+        Node node = channel.getElementsByTagName("description").item(0);
+        String description = "No description";
+
+        try {
+            if(node.getParentNode().getNodeName().equals("channel")) {
+                description = node.getFirstChild().getNodeValue();
+            }
+        }
+        catch(NullPointerException expt) {
+            return description;
+        }
+
+        return description;
+    }
+
+    private String getImage(Element channel) {
+        Node node = channel.getElementsByTagName("image").item(0);
+        String image = "file:img/default_feed.png";
+
+        try {
+            if(node.getParentNode().getNodeName().equals("channel")) {
+                image = node.getFirstChild().getFirstChild().getNodeValue();
+            }
+        }
+        catch(NullPointerException expt) {
+            return image;
+        }
+
+        return image;
+    }
+
+    /**
+     * Iterates through every node in the channel Element and looks for item nodes. If an item node
+     * is found then the method will get the id, title, link, pubDate, and description from the item
+     * node and produce a new Item object and put it in the ArrayList. The ArrayList is then
+     * returned.
+     *
+     * @param channel   The channel Element of the Document.
+     * @param url       The URL to the XML file, is added to every Item as Feed identifier.
+     * @return          An ArrayList of Item objects from the RSS feed.
+     */
+    private ArrayList<Item> getItems(Element channel, String url) {
+        NodeList nodes = channel.getChildNodes();
+        ArrayList<Item> items = new ArrayList<>();
+
+        for(int i = 0; i < nodes.getLength(); i++) {
+            if(nodes.item(i).getNodeName().equals("item")) {
+                Element itemElement = (Element) nodes.item(i);
+                Item item = new Item();
+
+                try {
+                    item.setId(itemElement.getElementsByTagName("guid").item(0).getFirstChild()
+                            .getNodeValue());
+                }
+                catch(RuntimeException err) {
+                    continue;
+                }
+
+                try {
+                    item.setTitle(itemElement.getElementsByTagName("title").item(0).getFirstChild()
+                            .getNodeValue());
+                }
+                catch(RuntimeException err) {
+                    item.setTitle("Untitled");
+                }
+
+                try {
+                    item.setLink(itemElement.getElementsByTagName("link").item(0).getFirstChild()
+                            .getNodeValue());
+                }
+                catch(RuntimeException err) {
+                    continue;
+                }
+
+                try {
+                    item.setDate(itemElement.getElementsByTagName("pubDate").item(0).getFirstChild()
+                            .getNodeValue());
+                }
+                catch(RuntimeException err) {
+                    item.setDate("Thu, 01 Jan 1970 00:00:00 +0000");
+                }
+
+                try {
+                    item.setDescription(itemElement.getElementsByTagName("description").item(0)
+                            .getFirstChild().getNodeValue());
+                }
+                catch(RuntimeException err) {
+                    item.setDescription("");
+                }
+
+                item.setFeedIdentifier(url);
+                items.add(item);
+            }
+        }
+        return items;
+    }
+}
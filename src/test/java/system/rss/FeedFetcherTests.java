@@ -0,0 +1,160 @@
+package system.rss;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class FeedFetcherTests
+ *
+ * This is the test class for the FeedFetcher class. The HTTP tests run against a FeedServer on
+ * localhost.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class FeedFetcherTests {
+    private FeedFetcher fetcher;
+    private FeedServer server;
+    private String resources = FeedSniffer.class
+            .getResource("../../../../resources/test/RssParserTestResources/")
+            .getPath();
+
+    /**
+     * Test preparation. Creates a new FeedFetcher and starts a FeedServer before each test.
+     */
+    @Before
+    public void createObject() throws IOException {
+        fetcher = new FeedFetcher();
+        server = new FeedServer();
+    }
+
+    /**
+     * Stops the FeedServer after each test.
+     */
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
+    /**
+     * Name: Fetch local file
+     * Unit: fetch(String)
+     *
+     * Fetches an XML file from the local file system. There are no validators for local files.
+     */
+    @Test
+    public void fetchLocalFile() throws IOException {
+        FeedFetcher.Response response = fetcher.fetch(resources + "FeedBasic.xml");
+
+        assertFalse(response.isNotModified());
+        assertNull(response.getETag());
+        assertNull(response.getLastModified());
+        response.getStream().close();
+    }
+
+    /**
+     * Name: Fetch nonexistent local file
+     * Unit: fetch(String)
+     */
+    @Test(expected = IOException.class)
+    public void fetchNonexistentLocalFile() throws IOException {
+        fetcher.fetch("/ThisFileShouldNotExist.xml");
+    }
+
+    /**
+     * Name: Fetch from server
+     * Unit: fetch(String)
+     *
+     * Fetches an XML file from the server and checks so the validators are returned.
+     */
+    @Test
+    public void fetchFromServer() throws IOException {
+        String url = server.serve("feed.xml", resources + "FeedBasic.xml");
+        FeedFetcher.Response response = fetcher.fetch(url);
+
+        assertFalse(response.isNotModified());
+        assertNotNull(response.getETag());
+        assertEquals(FeedServer.LAST_MODIFIED, response.getLastModified());
+        assertEquals(1, server.getFullResponses());
+        response.getStream().close();
+    }
+
+    /**
+     * Name: Fetch not modified
+     * Unit: fetch(String, String, String)
+     *
+     * Fetches an XML file a second time with the validators from the first fetch. The server
+     * should answer 304 Not Modified and no stream should be returned.
+     */
+    @Test
+    public void fetchNotModified() throws IOException {
+        String url = server.serve("feed.xml", resources + "FeedBasic.xml");
+        FeedFetcher.Response first = fetcher.fetch(url);
+        first.getStream().close();
+
+        FeedFetcher.Response second = fetcher.fetch(url, first.getETag(),
+                first.getLastModified());
+
+        assertTrue(second.isNotModified());
+        assertNull(second.getStream());
+        assertEquals(first.getETag(), second.getETag());
+        assertEquals(1, server.getFullResponses());
+        assertEquals(1, server.getNotModifiedResponses());
+    }
+
+    /**
+     * Name: Fetch modified
+     * Unit: fetch(String, String, String)
+     *
+     * Fetches an XML file which has changed since the validators were received. The new content
+     * and the new validators should be returned.
+     */
+    @Test
+    public void fetchModified() throws IOException {
+        String url = server.serve("feed.xml", resources + "FeedBasic.xml");
+        FeedFetcher.Response first = fetcher.fetch(url);
+        first.getStream().close();
+
+        server.serve("feed.xml", resources + "FeedUpdate.xml");
+        FeedFetcher.Response second = fetcher.fetch(url, first.getETag(), null);
+
+        assertFalse(second.isNotModified());
+        assertNotEquals(first.getETag(), second.getETag());
+        assertEquals(2, server.getFullResponses());
+        second.getStream().close();
+    }
+
+    /**
+     * Name: Fetch compressed
+     * Unit: fetch(String)
+     *
+     * Fetches an XML file which the server sends gzip compressed. The returned stream should be
+     * decompressed.
+     */
+    @Test
+    public void fetchCompressed() throws IOException {
+        server.setGzip(true);
+        String url = server.serve("feed.xml", resources + "FeedBasic.xml");
+        FeedFetcher.Response response = fetcher.fetch(url);
+
+        try(InputStream input = response.getStream()) {
+            byte[] start = new byte[5];
+            assertEquals(5, input.read(start));
+            assertEquals("<rss>", new String(start, "UTF-8"));
+        }
+    }
+
+    /**
+     * Name: Fetch nonexistent file from server
+     * Unit: fetch(String)
+     */
+    @Test(expected = IOException.class)
+    public void fetchNonexistentFromServer() throws IOException {
+        fetcher.fetch(server.getUrl("missing.xml"));
+    }
+}
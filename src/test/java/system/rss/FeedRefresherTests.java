@@ -0,0 +1,288 @@
+package system.rss;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class FeedRefresherTests
+ *
+ * This is the test class for the FeedRefresher class.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class FeedRefresherTests {
+    private RssParser rssParser;
+    private FeedServer server;
+    private String resources = FeedSniffer.class
+            .getResource("../../../../resources/test/RssParserTestResources/")
+            .getPath();
+
+    /**
+     * Test preparation. Start a new FeedServer before each test.
+     */
+    @Before
+    public void startServer() throws IOException {
+        rssParser = new RssParser();
+        server = new FeedServer();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop();
+    }
+
+    /**
+     * Name: Refresh Feeds
+     * Unit: refresh(List)
+     *
+     * Refreshes six Feeds where three have a new Item on the server. The other three should be
+     * answered with not modified.
+     */
+    @Test
+    public void refreshFeeds() throws IOException {
+        ArrayList<Feed> feeds = new ArrayList<>();
+
+        for(int i = 0; i < 6; i++) {
+            feeds.add(rssParser.getFeed(server.serve("feed" + i + ".xml",
+                    resources + "update/original.xml")));
+        }
+
+        for(int i = 0; i < 3; i++) {
+            server.serve("feed" + i + ".xml", resources + "update/itemAdded.xml");
+        }
+
+        FeedRefresher refresher = new FeedRefresher(rssParser, 4, 4, 10000);
+        RefreshStats stats = refresher.refresh(feeds);
+        refresher.shutdown();
+
+        assertEquals(6, stats.getFeeds());
+        assertEquals(6, stats.getRefreshed());
+        assertEquals(3, stats.getNotModified());
+        assertEquals(0, stats.getFailed());
+        assertEquals(0, stats.getTimedOut());
+        assertEquals(3, stats.getNewItems());
+        assertTrue(stats.getBytesRead() > 0);
+
+        for(int i = 0; i < 6; i++) {
+            assertEquals(i < 3 ? 5 : 4, feeds.get(i).getItems().size());
+        }
+    }
+
+    /**
+     * Name: Refresh with threads per host
+     * Unit: refresh(List)
+     *
+     * Refreshes four Feeds from each of two hosts on a slow server with two threads per host. No
+     * more than two requests to each host, four in total, should be running at the same time.
+     */
+    @Test
+    public void refreshThreadsPerHost() throws IOException {
+        ArrayList<Feed> feeds = new ArrayList<>();
+
+        for(int i = 0; i < 8; i++) {
+            String url = server.serve("feed" + i + ".xml", resources + "update/original.xml");
+            if(i % 2 == 1)
+                url = url.replace("localhost", "127.0.0.1");
+            feeds.add(new Feed(url));
+        }
+
+        server.setDelay(200);
+
+        FeedRefresher refresher = new FeedRefresher(rssParser, 8, 2, 10000);
+        RefreshStats stats = refresher.refresh(feeds);
+        refresher.shutdown();
+
+        assertEquals(8, stats.getRefreshed());
+        assertEquals(8, server.getRequests());
+        assertTrue(server.getMaxConcurrentRequests() <= 4);
+        assertTrue(server.getMaxConcurrentRequests() > 2);
+    }
+
+    /**
+     * Name: Refresh with timeout
+     * Unit: refresh(List)
+     *
+     * Refreshes a Feed from a server which is slower than the timeout and a Feed from the local
+     * file system. The slow Feed should time out and be left as it was without holding up the
+     * refresh.
+     */
+    @Test
+    public void refreshTimeout() throws IOException {
+        ArrayList<Feed> feeds = new ArrayList<>();
+        feeds.add(new Feed(server.serve("slow.xml", resources + "update/original.xml")));
+        feeds.add(new Feed(resources + "update/original.xml"));
+
+        server.setDelay(3000);
+
+        FeedRefresher refresher = new FeedRefresher(rssParser, 2, 2, 300);
+        RefreshStats stats = refresher.refresh(feeds);
+        refresher.shutdown();
+
+        assertEquals(1, stats.getRefreshed());
+        assertEquals(1, stats.getTimedOut());
+        assertTrue(stats.getWallTime() < 3000);
+        assertEquals("Unknown", feeds.get(0).getTitle());
+        assertEquals(0, feeds.get(0).getItems().size());
+        assertEquals(4, feeds.get(1).getItems().size());
+    }
+
+    /**
+     * Name: Refresh with timeout keeps threads per host
+     * Unit: refresh(List)
+     *
+     * Refreshes three Feeds from a server which is slower than the timeout, with one thread per
+     * host and connections which don't time out before the server answers. Each Feed should time
+     * out, but the next Feed should not be started until the worker of the last one is done.
+     */
+    @Test
+    public void refreshTimeoutKeepsThreadsPerHost() throws IOException {
+        ArrayList<Feed> feeds = new ArrayList<>();
+        for(int i = 0; i < 3; i++) {
+            String url = server.serve("slow" + i + ".xml", resources + "update/original.xml");
+            feeds.add(new Feed(url));
+        }
+
+        server.setDelay(400);
+
+        FeedRefresher refresher = new FeedRefresher(rssParser, 4, 1, 100);
+        rssParser.getFetcher().setReadTimeout(5000);
+        RefreshStats stats = refresher.refresh(feeds);
+        refresher.shutdown();
+
+        assertEquals(3, stats.getTimedOut());
+        assertEquals(3, server.getRequests());
+        assertEquals(1, server.getMaxConcurrentRequests());
+        assertEquals("Unknown", feeds.get(0).getTitle());
+    }
+
+    /**
+     * Name: Refresh due Feeds
+     * Unit: refreshDue(List)
+     *
+     * Refreshes two Feeds where only one is due. The other should be left out and counted as not
+     * due, and the refreshed Feed should get a new next poll.
+     */
+    @Test
+    public void refreshDueFeeds() throws IOException {
+        ArrayList<Feed> feeds = new ArrayList<>();
+        feeds.add(rssParser.getFeed(server.serve("feed0.xml", resources + "update/original.xml")));
+        feeds.add(rssParser.getFeed(server.serve("feed1.xml", resources + "update/original.xml")));
+
+        long now = System.currentTimeMillis();
+        feeds.get(0).getSchedule().setState(now - 60000, now - 1, 0);
+        feeds.get(1).getSchedule().setState(now - 60000, now + 60000, 0);
+
+        FeedRefresher refresher = new FeedRefresher(rssParser, 2, 2, 10000);
+        RefreshStats stats = refresher.refreshDue(feeds);
+        refresher.shutdown();
+
+        assertEquals(1, stats.getRefreshed());
+        assertEquals(1, stats.getNotDue());
+        assertEquals(3, server.getRequests());
+        assertTrue(feeds.get(0).getSchedule().getNextPoll() > now);
+        assertEquals(now + 60000, feeds.get(1).getSchedule().getNextPoll());
+    }
+
+    /**
+     * Name: Refresh with applier
+     * Unit: refresh(List, ProgressListener), setApplier(Executor)
+     *
+     * Refreshes two Feeds with an applier which holds on to the updates. The Feeds should not
+     * change until the updates are run, and the ProgressListener should be told about each Feed.
+     */
+    @Test
+    public void refreshWithApplier() throws IOException {
+        ArrayList<Feed> feeds = new ArrayList<>();
+        feeds.add(rssParser.getFeed(server.serve("feed0.xml", resources + "update/original.xml")));
+        feeds.add(rssParser.getFeed(server.serve("feed1.xml", resources + "update/original.xml")));
+
+        server.serve("feed0.xml", resources + "update/itemAdded.xml");
+        server.serve("feed1.xml", resources + "update/itemAdded.xml");
+
+        ArrayList<Runnable> updates = new ArrayList<>();
+        ArrayList<Integer> progress = new ArrayList<>();
+
+        FeedRefresher refresher = new FeedRefresher(rssParser, 2, 2, 10000);
+        refresher.setApplier(updates::add);
+        RefreshStats stats = refresher.refresh(feeds, (done, total) -> {
+            assertEquals(2, total);
+            progress.add(done);
+        });
+        refresher.shutdown();
+
+        assertEquals(2, stats.getNewItems());
+        assertEquals(2, updates.size());
+        assertEquals(2, (int) progress.get(progress.size() - 1));
+        assertEquals(4, feeds.get(0).getItems().size());
+
+        for(Runnable update : updates) {
+            update.run();
+        }
+
+        assertEquals(5, feeds.get(0).getItems().size());
+        assertEquals(5, feeds.get(1).getItems().size());
+        assertTrue(feeds.get(0).getSchedule().getNextPoll() > 0);
+    }
+
+    /**
+     * Name: Refresh not modified with applier
+     * Unit: refresh(List, ProgressListener), setApplier(Executor)
+     *
+     * Refreshes a Feed which has not been modified and a Feed which does not exist with an
+     * applier which holds on to the updates. The FeedSchedules of the Feeds should only be changed
+     * when the updates are run.
+     */
+    @Test
+    public void refreshNotModifiedWithApplier() throws IOException {
+        ArrayList<Feed> feeds = new ArrayList<>();
+        feeds.add(rssParser.getFeed(server.serve("feed0.xml", resources + "update/original.xml")));
+        feeds.add(new Feed(server.getUrl("missing.xml")));
+
+        ArrayList<Runnable> updates = new ArrayList<>();
+
+        FeedRefresher refresher = new FeedRefresher(rssParser, 2, 2, 10000);
+        refresher.setApplier(updates::add);
+        RefreshStats stats = refresher.refresh(feeds, null);
+        refresher.shutdown();
+
+        assertEquals(1, stats.getNotModified());
+        assertEquals(1, stats.getFailed());
+        assertEquals(2, updates.size());
+        assertEquals(0, feeds.get(0).getSchedule().getNextPoll());
+        assertEquals(0, feeds.get(1).getSchedule().getFailures());
+
+        for(Runnable update : updates) {
+            update.run();
+        }
+
+        assertTrue(feeds.get(0).getSchedule().getNextPoll() > 0);
+        assertEquals(1, feeds.get(1).getSchedule().getFailures());
+    }
+
+    /**
+     * Name: Refresh with failure
+     * Unit: refresh(List)
+     *
+     * Refreshes a Feed which does not exist. It should be counted as failed and left as it was.
+     */
+    @Test
+    public void refreshFailure() {
+        ArrayList<Feed> feeds = new ArrayList<>();
+        feeds.add(new Feed("/ThisFileShouldNotExist.xml"));
+        feeds.add(new Feed(server.getUrl("missing.xml")));
+
+        FeedRefresher refresher = new FeedRefresher(rssParser, 2, 2, 10000);
+        RefreshStats stats = refresher.refresh(feeds);
+        refresher.shutdown();
+
+        assertEquals(0, stats.getRefreshed());
+        assertEquals(2, stats.getFailed());
+        assertEquals("Unknown", feeds.get(0).getTitle());
+    }
+}
@@ -0,0 +1,178 @@
+package system.rss;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.time.DayOfWeek;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Class FeedSchedulerTests
+ *
+ * This is the test class for the FeedScheduler class.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class FeedSchedulerTests {
+    private static final long MINUTE = 60000;
+    private static final long HOUR = 60 * MINUTE;
+
+    private FeedScheduler scheduler;
+
+    /**
+     * Test preparation. Create a FeedScheduler without jitter polling between every 15 minutes and
+     * once a day, and every hour by default.
+     */
+    @Before
+    public void createObject() {
+        scheduler = new FeedScheduler(15 * MINUTE, 24 * HOUR, HOUR, 0, new Random(0));
+    }
+
+    /**
+     * Name: Interval from cadence
+     * Unit: getInterval(Feed)
+     *
+     * A Feed with an Item every 4 hours should be polled every 2 hours, and a Feed without dated
+     * Items should be polled at the default interval.
+     */
+    @Test
+    public void intervalFromCadence() {
+        assertEquals(2 * HOUR, scheduler.getInterval(createFeed(4 * HOUR, 10)));
+        assertEquals(HOUR, scheduler.getInterval(createFeed(4 * HOUR, 1)));
+        assertEquals(HOUR, scheduler.getInterval(new Feed("feed.xml")));
+    }
+
+    /**
+     * Name: Interval within bounds
+     * Unit: getInterval(Feed)
+     *
+     * The interval should never be shorter than ttl or the syndication period, and always be
+     * between the minimum and maximum interval.
+     */
+    @Test
+    public void intervalWithinBounds() {
+        Feed feed = createFeed(4 * HOUR, 10);
+        feed.getSchedule().setHints(180, new TreeSet<>(), EnumSet.noneOf(DayOfWeek.class), 0);
+        assertEquals(3 * HOUR, scheduler.getInterval(feed));
+
+        feed.getSchedule().setHints(-1, new TreeSet<>(), EnumSet.noneOf(DayOfWeek.class),
+                6 * HOUR);
+        assertEquals(6 * HOUR, scheduler.getInterval(feed));
+
+        feed.getSchedule().setHints(-1, new TreeSet<>(), EnumSet.noneOf(DayOfWeek.class),
+                365 * 24 * HOUR);
+        assertEquals(24 * HOUR, scheduler.getInterval(feed));
+
+        assertEquals(15 * MINUTE, scheduler.getInterval(createFeed(MINUTE, 10)));
+    }
+
+    /**
+     * Name: Skip hours and days
+     * Unit: getNextPoll(Feed, long)
+     *
+     * A next poll falling in skipHours or skipDays should be moved to the start of the first hour
+     * after them.
+     */
+    @Test
+    public void skipHoursAndDays() {
+        Feed feed = new Feed("feed.xml");
+        // Friday 2016-01-01 00:30 GMT, next poll one hour later at 01:30
+        long from = ZonedDateTime.of(2016, 1, 1, 0, 30, 0, 0, ZoneOffset.UTC).toInstant()
+                .toEpochMilli();
+
+        assertEquals(from + HOUR, scheduler.getNextPoll(feed, from));
+
+        feed.getSchedule().setHints(-1, new TreeSet<>(Arrays.asList(1, 2)),
+                EnumSet.noneOf(DayOfWeek.class), 0);
+        assertEquals(utc(2016, 1, 1, 3), scheduler.getNextPoll(feed, from));
+
+        feed.getSchedule().setHints(-1, new TreeSet<>(),
+                EnumSet.of(DayOfWeek.FRIDAY, DayOfWeek.SATURDAY), 0);
+        assertEquals(utc(2016, 1, 3, 0), scheduler.getNextPoll(feed, from));
+    }
+
+    /**
+     * Name: Back off after failures
+     * Unit: failed(Feed, long)
+     *
+     * Each failure in a row should double the time until the next poll, up to the maximum
+     * interval. A successful poll should reset the failures.
+     */
+    @Test
+    public void backOffAfterFailures() {
+        Feed feed = new Feed("feed.xml");
+        long now = 1000000;
+
+        scheduler.failed(feed, now);
+        assertEquals(now + 2 * HOUR, feed.getSchedule().getNextPoll());
+        assertEquals(1, feed.getSchedule().getFailures());
+
+        scheduler.failed(feed, now);
+        assertEquals(now + 4 * HOUR, feed.getSchedule().getNextPoll());
+
+        for(int i = 0; i < 10; i++) {
+            scheduler.failed(feed, now);
+        }
+        assertEquals(now + 24 * HOUR, feed.getSchedule().getNextPoll());
+
+        scheduler.polled(feed, now);
+        assertEquals(now + HOUR, feed.getSchedule().getNextPoll());
+        assertEquals(0, feed.getSchedule().getFailures());
+    }
+
+    /**
+     * Name: Get due Feeds
+     * Unit: getDue(List, long)
+     *
+     * A Feed which has never been polled should always be due. A Feed which has been polled but has
+     * no next poll should get one from when it was last polled.
+     */
+    @Test
+    public void getDueFeeds() {
+        Feed neverPolled = new Feed("feed1.xml");
+        Feed polled = new Feed("feed2.xml");
+        Feed notDue = new Feed("feed3.xml");
+        long now = 10 * HOUR;
+
+        polled.getSchedule().setState(now - 2 * HOUR, 0, 0);
+        notDue.getSchedule().setState(now - 10 * MINUTE, 0, 0);
+
+        assertEquals(Arrays.asList(neverPolled, polled),
+                scheduler.getDue(Arrays.asList(neverPolled, polled, notDue), now));
+        assertEquals(now - HOUR, polled.getSchedule().getNextPoll());
+        assertEquals(now + 50 * MINUTE, notDue.getSchedule().getNextPoll());
+    }
+
+    private Feed createFeed(long cadence, int itemCount) {
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z",
+                Locale.ENGLISH);
+        ArrayList<Item> items = new ArrayList<>();
+
+        for(int i = 0; i < itemCount; i++) {
+            Item item = new Item();
+            item.setId("item" + i);
+            item.setDate(format.format(new Date(1000 * HOUR - i * cadence)));
+            items.add(item);
+        }
+
+        Collections.reverse(items);
+        return new Feed("Feed", "http://feed.com", "", "", "feed.xml", items);
+    }
+
+    private static long utc(int year, int month, int day, int hour) {
+        return ZonedDateTime.of(year, month, day, hour, 0, 0, 0, ZoneOffset.UTC).toInstant()
+                .toEpochMilli();
+    }
+}
@@ -0,0 +1,185 @@
+package system.rss;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Class FeedServer
+ *
+ * A small HTTP server running on localhost which is used as a stand-in for real feed servers in
+ * tests. Each path is mapped to an XML file which is served with an ETag and a Last-Modified
+ * header, and conditional requests are answered with 304 Not Modified when the validators match.
+ * Requests are handled on a thread pool, and can be delayed to imitate a slow server.
+ *
+ * @author Axel Nilsson (axnion)
+ */
+public class FeedServer {
+    public static final String LAST_MODIFIED = "Fri, 01 Jan 2016 00:00:00 GMT";
+
+    private HttpServer server;
+    private Map<String, byte[]> files;
+    private Map<String, String> eTags;
+    private AtomicInteger requests;
+    private AtomicInteger fullResponses;
+    private AtomicInteger notModifiedResponses;
+    private AtomicInteger concurrentRequests;
+    private AtomicInteger maxConcurrentRequests;
+    private ExecutorService executor;
+    private volatile boolean gzip;
+    private volatile long delay;
+
+    /**
+     * Constructor
+     *
+     * Starts the server on a free port on localhost.
+     *
+     * @throws IOException If the server could not be started.
+     */
+    public FeedServer() throws IOException {
+        files = new ConcurrentHashMap<>();
+        eTags = new ConcurrentHashMap<>();
+        requests = new AtomicInteger();
+        fullResponses = new AtomicInteger();
+        notModifiedResponses = new AtomicInteger();
+        concurrentRequests = new AtomicInteger();
+        maxConcurrentRequests = new AtomicInteger();
+        executor = Executors.newCachedThreadPool();
+        gzip = false;
+        delay = 0;
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Serves the content of the file at path on the URL returned. Serving a new file on the same
+     * name changes the ETag.
+     *
+     * @param name          The name of the file on the server.
+     * @param path          The path to the file on the local file system.
+     * @return              The URL to the file on the server.
+     * @throws IOException  If the file could not be read.
+     */
+    public String serve(String name, String path) throws IOException {
+        byte[] content = Files.readAllBytes(Paths.get(path));
+        files.put("/" + name, content);
+        eTags.put("/" + name, "\"" + name + "-" + content.length + "-" +
+                System.nanoTime() + "\"");
+        return getUrl(name);
+    }
+
+    public String getUrl(String name) {
+        return "http://localhost:" + server.getAddress().getPort() + "/" + name;
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public int getRequests() {
+        return requests.get();
+    }
+
+    public int getFullResponses() {
+        return fullResponses.get();
+    }
+
+    public int getNotModifiedResponses() {
+        return notModifiedResponses.get();
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests.get();
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * Makes the server wait before answering each request.
+     *
+     * @param milliseconds The number of milliseconds to wait.
+     */
+    public void setDelay(long milliseconds) {
+        this.delay = milliseconds;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        maxConcurrentRequests.accumulateAndGet(concurrentRequests.incrementAndGet(), Math::max);
+
+        try {
+            if(delay > 0)
+                Thread.sleep(delay);
+
+            respond(exchange);
+        }
+        catch(InterruptedException expt) {
+            exchange.close();
+        }
+        finally {
+            concurrentRequests.decrementAndGet();
+        }
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        String path = exchange.getRequestURI().getPath();
+        byte[] content = files.get(path);
+
+        if(content == null) {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        String eTag = eTags.get(path);
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        String ifModifiedSince = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+
+        exchange.getResponseHeaders().add("ETag", eTag);
+        exchange.getResponseHeaders().add("Last-Modified", LAST_MODIFIED);
+
+        if(eTag.equals(ifNoneMatch) || (ifNoneMatch == null &&
+                LAST_MODIFIED.equals(ifModifiedSince))) {
+            notModifiedResponses.incrementAndGet();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if(gzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            try(GZIPOutputStream output = new GZIPOutputStream(compressed)) {
+                output.write(content);
+            }
+            content = compressed.toByteArray();
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+        }
+
+        fullResponses.incrementAndGet();
+        exchange.getResponseHeaders().add("Content-Type", "application/rss+xml");
+        exchange.sendResponseHeaders(200, content.length);
+
+        try(OutputStream output = exchange.getResponseBody()) {
+            output.write(content);
+        }
+    }
+}
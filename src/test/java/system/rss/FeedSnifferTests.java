@@ -39,6 +39,30 @@ public class FeedSnifferTests {
         ArrayList<FeedMinimal> feeds = feedSniffer.getFeeds(resources + "exampleFeed.xml");
         assertEquals(1, feeds.size());
         assertEquals("Feed", feeds.get(0).title);
+        assertEquals("rss", feeds.get(0).type);
         assertEquals(resources + "exampleFeed.xml", feeds.get(0).urlToXml);
     }
+
+    /**
+     * Name: Sniffer test with Atom feed
+     * Unit: getFeeds(String)
+     *
+     * Gives a url to an Atom feed, which RSSReader can't read, as an argument. No feeds should be
+     * returned.
+     */
+    @Test
+    public void snifferTestAtomFeed() {
+        ArrayList<FeedMinimal> feeds = feedSniffer.getFeeds(resources + "exampleAtomFeed.xml");
+        assertEquals(0, feeds.size());
+    }
+
+    /**
+     * Name: Sniffer test with nonexistent file
+     * Unit: getFeeds(String)
+     */
+    @Test
+    public void snifferTestNonexistentFile() {
+        ArrayList<FeedMinimal> feeds = feedSniffer.getFeeds("/ThisFileShouldNotExist.xml");
+        assertEquals(0, feeds.size());
+    }
 }
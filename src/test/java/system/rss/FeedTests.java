@@ -9,6 +9,9 @@ import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Random;
 
 /**
  * Class FeedTests
@@ -122,4 +125,294 @@ public class FeedTests {
         assertEquals("ItemTitle3", feed.getItems().get(0).getTitle());
         assertEquals("ItemTitle4", feed.getItems().get(1).getTitle());
     }
+
+    /**
+     * Name: Item index follows the Items
+     * Unit: getItemById(String), setItems(ArrayList<Item>), itemsChanged()
+     *
+     * The Items found by id should follow Items being added, removed, or replaced, and of several
+     * Items with the same id the first should be found.
+     */
+    @Test
+    public void itemIndexFollowsItems() {
+        assertSame(items.get(1), feed.getItemById("item_id_2"));
+
+        Item added = Mocks.createItemMock("ItemTitle3", "http://link3.com", "Description3",
+                "1451649600000", "item_id_3", false, false);
+        feed.getItems().add(added);
+        assertSame(added, feed.getItemById("item_id_3"));
+
+        Item duplicate = Mocks.createItemMock("ItemTitle4", "http://link4.com", "Description4",
+                "1451649600000", "item_id_1", false, false);
+        feed.getItems().set(0, duplicate);
+        feed.itemsChanged();
+        assertSame(duplicate, feed.getItemById("item_id_1"));
+
+        feed.getItems().add(Mocks.createItemMock("ItemTitle5", "http://link5.com",
+                "Description5", "1451649600000", "item_id_1", false, false));
+        assertSame(duplicate, feed.getItemById("item_id_1"));
+
+        feed.setItems(new ArrayList<>());
+        try {
+            feed.getItemById("item_id_1");
+            fail("Expected ItemDoesNotExist");
+        }
+        catch(ItemDoesNotExist expt) {
+            // The Items were replaced
+        }
+    }
+
+    /**
+     * Name: Counts follow random changes
+     * Unit: getUnreadCount(), getStarredCount()
+     *
+     * Makes random changes to a Feed of Items, through the Feed, directly to the Items, and through
+     * a copy as a refresh does, and compares the counts of unread and starred Items with counting
+     * the Items after each change.
+     */
+    @Test
+    public void countsFollowRandomChanges() {
+        Random random = new Random(0);
+        ArrayList<Item> realItems = new ArrayList<>();
+        int next;
+
+        for(next = 0; next < 20; next++) {
+            realItems.add(createItem(next, random));
+        }
+        feed = new Feed("FeedTitle", "http://www.link-to-feed-website.com", "Description",
+                "image.png", "https:link-to-feed-website.com/feed.xml", realItems);
+
+        for(int step = 0; step < 5000; step++) {
+            ArrayList<Item> current = feed.getItems();
+            Item item = current.isEmpty() ? null : current.get(random.nextInt(current.size()));
+
+            switch(random.nextInt(7)) {
+                case 0:
+                    if(item != null)
+                        feed.setVisited(item.getId(), random.nextBoolean());
+                    break;
+                case 1:
+                    if(item != null)
+                        feed.setStarred(item.getId(), random.nextBoolean());
+                    break;
+                case 2:
+                    // Noticed by the size without itemsChanged
+                    current.add(createItem(next++, random));
+                    break;
+                case 3:
+                    if(item != null) {
+                        current.remove(item);
+                        feed.itemsChanged();
+                    }
+                    break;
+                case 4:
+                    if(item != null) {
+                        item.setVisited(random.nextBoolean());
+                        item.setStarred(random.nextBoolean());
+                        feed.statusChanged();
+                    }
+                    break;
+                case 5:
+                    ArrayList<Item> kept = new ArrayList<>();
+                    for(Item old : current) {
+                        if(random.nextInt(4) != 0)
+                            kept.add(old);
+                    }
+                    feed.setItems(kept);
+                    break;
+                case 6:
+                    Feed copy = feed.copy();
+                    ArrayList<Item> refreshed = new ArrayList<>(copy.getItems());
+                    refreshed.add(0, createItem(next++, random));
+                    refreshed.get(0).setVisited(false);
+                    refreshed.get(0).setStarred(false);
+                    copy.setItems(refreshed, copy.getUnreadCount() + 1, copy.getStarredCount());
+
+                    // A change to the Feed while it is refreshed
+                    if(item != null && random.nextBoolean())
+                        feed.setVisited(item.getId(), !item.isVisited());
+
+                    feed.setContent(copy);
+                    break;
+            }
+
+            assertCounts(feed);
+        }
+    }
+
+    /**
+     * Name: Read watermark follows random changes
+     * Unit: markAllRead(), markReadUpTo(long), restoreReadState(long, Collection)
+     *
+     * Makes random changes to the visited status of a Feed, including marking every Item as read
+     * and refreshing it with new Items of random dates, and compares the status of each Item with
+     * a flag kept for it in the test. After each change the watermark is restored onto new Items
+     * with the same ids and dates, as loading a save file does, which must give the same status.
+     */
+    @Test
+    public void readWatermarkFollowsRandomChanges() {
+        Random random = new Random(0);
+        HashMap<String, Boolean> expected = new HashMap<>();
+        ArrayList<Item> realItems = new ArrayList<>();
+        int next;
+
+        for(next = 0; next < 20; next++) {
+            Item item = createItem(next, random);
+            expected.put(item.getId(), item.isVisited());
+            realItems.add(item);
+        }
+        feed = new Feed("FeedTitle", "http://www.link-to-feed-website.com", "Description",
+                "image.png", "https:link-to-feed-website.com/feed.xml", realItems);
+
+        for(int step = 0; step < 2000; step++) {
+            ArrayList<Item> current = feed.getItems();
+            Item item = current.isEmpty() ? null : current.get(random.nextInt(current.size()));
+
+            switch(random.nextInt(4)) {
+                case 0:
+                    if(item != null) {
+                        boolean status = random.nextBoolean();
+                        feed.setVisited(item.getId(), status);
+                        expected.put(item.getId(), status);
+                    }
+                    break;
+                case 1:
+                    long upTo = feed.markAllRead();
+                    for(Item old : current) {
+                        expected.put(old.getId(), true);
+                    }
+                    assertTrue(upTo > Long.MIN_VALUE);
+
+                    // Replaying the same mark again changes nothing
+                    feed.markReadUpTo(upTo);
+                    break;
+                case 2:
+                    Feed copy = feed.copy();
+                    ArrayList<Item> refreshed = new ArrayList<>(copy.getItems());
+                    Item added = new Item("ItemTitle" + next, "http://link" + next + ".com",
+                            "Description", new Date(random.nextInt(next + 1)), "item_id_" + next,
+                            "https:link-to-feed-website.com/feed.xml", false, false);
+                    next++;
+                    refreshed.add(0, added);
+                    expected.put(added.getId(), false);
+                    copy.setItems(refreshed);
+                    feed.setContent(copy);
+                    break;
+                case 3:
+                    if(item != null) {
+                        current.remove(item);
+                        feed.itemsChanged();
+                        expected.remove(item.getId());
+                    }
+                    break;
+            }
+
+            for(Item each : feed.getItems()) {
+                assertEquals(expected.get(each.getId()), each.isVisited());
+            }
+            assertCounts(feed);
+
+            ArrayList<Item> loadedItems = new ArrayList<>();
+            for(Item each : feed.getItems()) {
+                loadedItems.add(new Item(each.getTitle(), each.getLink(), each.getDescription(),
+                        each.getDate(), each.getId(), each.getFeedIdentifier(), random.nextBoolean(),
+                        each.isStarred()));
+            }
+            Feed loaded = new Feed("FeedTitle", "http://www.link-to-feed-website.com",
+                    "Description", "image.png", "https:link-to-feed-website.com/feed.xml",
+                    loadedItems);
+            loaded.restoreReadState(feed.getReadUpTo(), feed.getReadExceptions());
+
+            for(Item each : loaded.getItems()) {
+                assertEquals(expected.get(each.getId()), each.isVisited());
+            }
+            assertCounts(loaded);
+        }
+    }
+
+    /**
+     * Name: Read watermark is fitted to the visited status of each Item
+     * Unit: Feed(String, String, String, String, String, ArrayList)
+     *
+     * Items which each have a visited status of their own, as in an older save file, keep their
+     * status once the Feed has turned it into a watermark, which leaves few exceptions when the
+     * older Items are visited and the newer are not.
+     */
+    @Test
+    public void readWatermarkFittedToItems() {
+        ArrayList<Item> realItems = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            realItems.add(new Item("ItemTitle" + i, "http://link" + i + ".com", "Description",
+                    new Date(i), "item_id_" + i, "https:link-to-feed-website.com/feed.xml",
+                    i < 6 || i == 8, false));
+        }
+        feed = new Feed("FeedTitle", "http://www.link-to-feed-website.com", "Description",
+                "image.png", "https:link-to-feed-website.com/feed.xml", realItems);
+
+        assertEquals(3, feed.getUnreadCount());
+        for(int i = 0; i < 10; i++) {
+            assertEquals(i < 6 || i == 8, feed.getItems().get(i).isVisited());
+        }
+        assertEquals(5, feed.getReadUpTo());
+        assertEquals(1, feed.getReadExceptions().size());
+        assertEquals("item_id_8", feed.getReadExceptions().get(0));
+    }
+
+    /**
+     * Name: Snapshot copies only changed Items
+     * Unit: snapshot()
+     *
+     * A snapshot taken while the Feed is unchanged should share the copies of the Items with the
+     * last snapshot. After a change the next snapshot should copy them again, while the last
+     * snapshot keeps the status it was taken with.
+     */
+    @Test
+    public void snapshotCopiesOnlyChangedItems() {
+        ArrayList<Item> realItems = new ArrayList<>();
+        for(int i = 0; i < 10; i++) {
+            realItems.add(new Item("ItemTitle" + i, "http://link" + i + ".com", "Description",
+                    new Date(i), "item_id_" + i, "https:link-to-feed-website.com/feed.xml",
+                    false, false));
+        }
+        feed = new Feed("FeedTitle", "http://www.link-to-feed-website.com", "Description",
+                "image.png", "https:link-to-feed-website.com/feed.xml", realItems);
+
+        Feed first = feed.snapshot();
+        Feed second = feed.snapshot();
+        assertNotSame(first, second);
+        assertSame(first.getItems(), second.getItems());
+        assertNotSame(feed.getItems().get(0), first.getItems().get(0));
+
+        feed.setStarred("item_id_3", true);
+        feed.markAllRead();
+        Feed third = feed.snapshot();
+
+        assertNotSame(second.getItems(), third.getItems());
+        assertTrue(third.getItemById("item_id_3").isStarred());
+        assertEquals(0, third.getUnreadCount());
+        assertFalse(second.getItemById("item_id_3").isStarred());
+        assertEquals(10, second.getUnreadCount());
+        assertEquals(feed.getVersion(), third.getVersion());
+    }
+
+    private void assertCounts(Feed feed) {
+        int unread = 0;
+        int starred = 0;
+
+        for(Item item : feed.getItems()) {
+            if(!item.isVisited())
+                unread++;
+            if(item.isStarred())
+                starred++;
+        }
+
+        assertEquals(unread, feed.getUnreadCount());
+        assertEquals(starred, feed.getStarredCount());
+    }
+
+    private Item createItem(int number, Random random) {
+        return new Item("ItemTitle" + number, "http://link" + number + ".com", "Description",
+                new Date(number), "item_id_" + number, "https:link-to-feed-website.com/feed.xml",
+                random.nextBoolean(), random.nextBoolean());
+    }
 }
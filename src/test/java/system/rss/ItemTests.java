@@ -2,6 +2,7 @@ package system.rss;
 
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 
 import static org.junit.Assert.*;
@@ -73,6 +74,26 @@ public class ItemTests {
      *
      * Checks the result of comparing by title two Items with the same title. It should return a 0.
      */
+    /**
+     * Name: Description encoded in UTF-8
+     * Unit: Item(String, String, byte[], Date, String, String, boolean, boolean), getDescription()
+     *
+     * A description given encoded in UTF-8 should be decoded when it is used, and be given back
+     * encoded as it was.
+     */
+    @Test
+    public void descriptionEncodedInUTF8() {
+        byte[] encoded = "Åäö ☃".getBytes(StandardCharsets.UTF_8);
+        Item testItem = new Item("Title", "Link", encoded, new Date(0), "id", "feed", false, false);
+
+        assertSame(encoded, testItem.getDescriptionUTF8());
+        assertEquals("Åäö ☃", testItem.getDescription());
+        assertArrayEquals(encoded, testItem.getDescriptionUTF8());
+
+        testItem.setDescription("Other");
+        assertEquals("Other", testItem.getDescription());
+    }
+
     @Test
     public void compareTitleEqual() {
         Item testItem = new Item();
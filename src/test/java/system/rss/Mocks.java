@@ -25,7 +25,8 @@ public class Mocks {
      * @param desc  The description of the Feed
      * @param url   The URL to the XML file
      * @param items An ArrayList of Items.
-     * @return      A Feed mock which can return its title, link, description, url, and items.
+     * @return      A Feed mock which can return its title, link, description, url, items, and an
+     *              empty FeedSchedule.
      */
     public static Feed createFeedMock(String title, String link, String desc, String url,
                                       ArrayList<Item> items) {
@@ -34,8 +35,10 @@ public class Mocks {
         doReturn(title).when(feed).getTitle();
         doReturn(link).when(feed).getLink();
         doReturn(desc).when(feed).getDescription();
+        doReturn("").when(feed).getImage();
         doReturn(url).when(feed).getUrlToXML();
         doReturn(items).when(feed).getItems();
+        doReturn(new FeedSchedule()).when(feed).getSchedule();
 
         for(Item item : items)
             when(feed.getItemById(item.getId())).thenReturn(item);
@@ -101,6 +104,20 @@ public class Mocks {
         doThrow(new NoXMLFileFound("http://feed-website-4.com/feed.xml")).when(rssParser)
                 .getFeed("http://feed-website-4.com/feed.xml");
 
+        doReturn(createFeedUpdateMock(false)).when(rssParser).updateFeed(any(Feed.class));
+
         return rssParser;
     }
+
+    /**
+     * Creates a FeedUpdate mock which knows if the update found new Items.
+     *
+     * @param newItems  True if the update should have found new Items.
+     * @return          A FeedUpdate mock which knows if there were new Items.
+     */
+    public static FeedUpdate createFeedUpdateMock(boolean newItems) {
+        FeedUpdate update = mock(FeedUpdate.class);
+        doReturn(newItems).when(update).hasNewItems();
+        return update;
+    }
 }
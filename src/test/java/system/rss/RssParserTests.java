@@ -4,6 +4,15 @@ import org.junit.Before;
 import org.junit.Test;
 import system.rss.exceptions.NoXMLFileFound;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.DayOfWeek;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.TreeSet;
+
 import static org.junit.Assert.*;
 
 /**
@@ -49,6 +58,28 @@ public class RssParserTests {
         assertEquals("test-id", feed.getItems().get(0).getId());
     }
 
+    /**
+     * Name: Read schedule hints
+     * Unit: getFeed(String)
+     *
+     * Reads an XML file with ttl, skipHours, skipDays, and sy:updatePeriod elements. The hints
+     * should be set on the FeedSchedule of the Feed, with hour 24 read as hour 0.
+     */
+    @Test
+    public void readScheduleHints() {
+        Feed feed = rssParser.getFeed(resources + "FeedScheduleHints.xml");
+        FeedSchedule schedule = feed.getSchedule();
+
+        assertEquals("Test title", feed.getTitle());
+        assertEquals(1, feed.getItems().size());
+
+        assertEquals(90, schedule.getTtl());
+        assertEquals(6 * 60 * 60000, schedule.getSyndicationPeriod());
+        assertEquals(new TreeSet<>(Arrays.asList(0, 1, 2)), schedule.getSkipHours());
+        assertEquals(EnumSet.of(DayOfWeek.SATURDAY, DayOfWeek.SUNDAY), schedule.getSkipDays());
+        assertTrue(schedule.getLastPolled() > 0);
+    }
+
     /**
      * Name: Read nonexistent Feed
      * Unit: getFeed(String)
@@ -346,11 +377,420 @@ public class RssParserTests {
         assertEquals("item4", feed.getItems().get(3).getId());
 
         feed.setUrlToXML(resources + "update/itemRemoved.xml");
-        rssParser.updateFeed(feed);
+        FeedUpdate update = rssParser.updateFeed(feed);
 
         assertEquals(3, feed.getItems().size());
         assertEquals("item1", feed.getItems().get(0).getId());
         assertEquals("item2", feed.getItems().get(1).getId());
         assertEquals("item4", feed.getItems().get(2).getId());
+
+        assertFalse(update.hasNewItems());
+        assertEquals(1, update.getRemoved().size());
+        assertEquals("item3", update.getRemoved().get(0).getId());
+    }
+
+    /**
+     * Name: Update Feed changed Item
+     * Unit: updateFeed(Feed)
+     *
+     * Tries to update a Feed where the title of an Item has changed. The Item should be replaced
+     * and keep its starred status, and the unchanged Items should be kept as they are.
+     */
+    @Test
+    public void updateFeedChangedItem() {
+        Feed feed = rssParser.getFeed(resources + "update/original.xml");
+        Item unchanged = feed.getItems().get(0);
+        feed.setStarred("item2", true);
+
+        feed.setUrlToXML(resources + "update/itemChanged.xml");
+        FeedUpdate update = rssParser.updateFeed(feed);
+
+        assertFalse(update.isIncremental());
+        assertTrue(update.getAdded().isEmpty());
+        assertTrue(update.getRemoved().isEmpty());
+        assertEquals(1, update.getChanged().size());
+
+        assertEquals(4, feed.getItems().size());
+        assertSame(unchanged, feed.getItems().get(0));
+        assertSame(update.getChanged().get(0), feed.getItems().get(1));
+        assertEquals("Item 2 corrected", feed.getItems().get(1).getTitle());
+        assertTrue(feed.getItems().get(1).isStarred());
+    }
+
+    /**
+     * Name: Update Feed incrementally
+     * Unit: updateFeed(Feed)
+     *
+     * Updates a Feed ordered newest first where two Items have been added at the top and two
+     * have dropped off the bottom. The old Items should be reused with their starred status, and
+     * none of them should be removed, since the rest of the feed is not read.
+     */
+    @Test
+    public void updateFeedIncremental() {
+        Feed feed = rssParser.getFeed(resources + "update/newestFirst/original.xml");
+        ArrayList<Item> oldItems = feed.getItems();
+        feed.setStarred("item3", true);
+
+        feed.setUrlToXML(resources + "update/newestFirst/itemsAdded.xml");
+        FeedUpdate update = rssParser.updateFeed(feed);
+
+        assertTrue(update.isIncremental());
+        assertEquals(2, update.getAdded().size());
+        assertEquals("item7", update.getAdded().get(0).getId());
+        assertEquals("item6", update.getAdded().get(1).getId());
+        assertTrue(update.getRemoved().isEmpty());
+        assertTrue(update.getChanged().isEmpty());
+
+        assertEquals(7, feed.getItems().size());
+        assertFalse(feed.getItems().get(0).isVisited());
+        for(int i = 0; i < oldItems.size(); i++) {
+            assertSame(oldItems.get(i), feed.getItems().get(i + 2));
+        }
+        assertTrue(feed.getItems().get(4).isStarred());
+    }
+
+    /**
+     * Name: Update Feed incrementally keeps counts
+     * Unit: updateFeed(Feed)
+     *
+     * The counts of unread and starred Items should be carried through an incremental update from
+     * the Items added and removed, and match the Items of the updated Feed.
+     */
+    @Test
+    public void updateFeedIncrementalKeepsCounts() {
+        Feed feed = rssParser.getFeed(resources + "update/newestFirst/original.xml");
+        feed.setStarred("item3", true);
+        feed.setStarred("item1", true);
+        feed.setVisited("item5", false);
+        feed.setVisited("item3", false);
+        feed.setVisited("item1", false);
+        assertEquals(3, feed.getUnreadCount());
+        assertEquals(2, feed.getStarredCount());
+
+        feed.setUrlToXML(resources + "update/newestFirst/itemsAdded.xml");
+        assertTrue(rssParser.updateFeed(feed).isIncremental());
+
+        // item7, item6, item5, item3, and item1 are unread and item3 and item1 are starred
+        assertEquals(5, feed.getUnreadCount());
+        assertEquals(2, feed.getStarredCount());
+    }
+
+    /**
+     * Name: Update Feed stops at known Item
+     * Unit: updateFeed(Feed)
+     *
+     * Updates a Feed ordered newest first from an XML file which is broken after the first known
+     * Item. Since reading stops at the known Item the broken part is never parsed.
+     */
+    @Test
+    public void updateFeedStopsAtKnownItem() {
+        Feed feed = rssParser.getFeed(resources + "update/newestFirst/original.xml");
+
+        feed.setUrlToXML(resources + "update/newestFirst/brokenTail.xml");
+        FeedUpdate update = rssParser.updateFeed(feed);
+
+        assertTrue(update.isIncremental());
+        assertEquals(1, update.getAdded().size());
+        assertEquals("item6", feed.getItems().get(0).getId());
+        assertEquals("item5", feed.getItems().get(1).getId());
+        assertEquals(6, feed.getItems().size());
+    }
+
+    /**
+     * Name: Update Feed unordered
+     * Unit: updateFeed(Feed)
+     *
+     * Updates a Feed ordered newest first where the new XML file is not ordered. The update
+     * should fall back to reading the whole file and merging.
+     */
+    @Test
+    public void updateFeedUnordered() {
+        Feed feed = rssParser.getFeed(resources + "update/newestFirst/original.xml");
+
+        feed.setUrlToXML(resources + "update/newestFirst/reordered.xml");
+        FeedUpdate update = rssParser.updateFeed(feed);
+
+        assertFalse(update.isIncremental());
+        assertEquals(1, update.getAdded().size());
+        assertEquals("item6", update.getAdded().get(0).getId());
+        assertEquals(1, update.getRemoved().size());
+        assertEquals("item1", update.getRemoved().get(0).getId());
+
+        assertEquals(5, feed.getItems().size());
+        assertEquals("item6", feed.getItems().get(0).getId());
+        assertEquals("item4", feed.getItems().get(1).getId());
+        assertEquals("item5", feed.getItems().get(2).getId());
+        assertEquals("item3", feed.getItems().get(3).getId());
+        assertEquals("item2", feed.getItems().get(4).getId());
+    }
+
+    /**
+     * Name: Update Feed incrementally stays bounded
+     * Unit: updateFeed(Feed)
+     *
+     * Polls a Feed ordered newest first where each poll adds one Item at the top and drops one
+     * from the bottom. The old Items are kept by the incremental updates, but the whole feed
+     * should be read at least every tenth update, which removes the dropped Items and reports
+     * them, so the Feed never grows past the Items added since then.
+     */
+    @Test
+    public void updateFeedIncrementalStaysBounded() throws IOException {
+        File file = File.createTempFile("slidingFeed", ".xml");
+        file.deleteOnExit();
+
+        writeSlidingFeed(file, 0);
+        Feed feed = rssParser.getFeed(file.getPath());
+        assertEquals(5, feed.getItems().size());
+
+        int incremental = 0;
+        int removed = 0;
+
+        for(int poll = 1; poll <= 25; poll++) {
+            writeSlidingFeed(file, poll);
+            FeedUpdate update = rssParser.updateFeed(feed);
+
+            if(update.isIncremental())
+                incremental++;
+            else
+                incremental = 0;
+            removed += update.getRemoved().size();
+
+            assertTrue(incremental <= 10);
+            assertEquals(5 + incremental, feed.getItems().size());
+            assertEquals("item" + (poll + 4), feed.getItems().get(0).getId());
+        }
+
+        assertEquals(25 - incremental, removed);
+    }
+
+    /**
+     * Name: Update Feed not modified
+     * Unit: updateFeed(Feed)
+     *
+     * Updates a Feed from a server which answers 304 Not Modified. Nothing should be parsed and
+     * the Items should be left as they are.
+     */
+    @Test
+    public void updateFeedNotModified() throws IOException {
+        FeedServer server = new FeedServer();
+
+        try {
+            String url = server.serve("feed.xml", resources + "update/original.xml");
+            Feed feed = rssParser.getFeed(url);
+            ArrayList<Item> items = feed.getItems();
+
+            assertNotNull(feed.getETag());
+            assertEquals(FeedServer.LAST_MODIFIED, feed.getLastModified());
+
+            assertTrue(rssParser.updateFeed(feed).isNotModified());
+
+            assertSame(items, feed.getItems());
+            assertEquals(1, server.getFullResponses());
+            assertEquals(1, server.getNotModifiedResponses());
+        }
+        finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Name: Update Feed modified on server
+     * Unit: updateFeed(Feed)
+     *
+     * Updates a Feed from a server where the XML file has changed. The Feed should be updated and
+     * get the new validators.
+     */
+    @Test
+    public void updateFeedModifiedOnServer() throws IOException {
+        FeedServer server = new FeedServer();
+
+        try {
+            String url = server.serve("feed.xml", resources + "update/original.xml");
+            Feed feed = rssParser.getFeed(url);
+            String oldETag = feed.getETag();
+
+            server.serve("feed.xml", resources + "update/itemAdded.xml");
+
+            assertTrue(rssParser.updateFeed(feed).hasNewItems());
+            assertEquals(5, feed.getItems().size());
+            assertNotEquals(oldETag, feed.getETag());
+            assertEquals(2, server.getFullResponses());
+        }
+        finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Name: Get minimal Feed
+     * Unit: getMinimalFeed(String)
+     *
+     * Reads the title from a large XML file. Only the start of the file should be read.
+     */
+    @Test
+    public void getMinimalFeedReadsOnlyStart() throws IOException {
+        File file = File.createTempFile("largeFeed", ".xml");
+        file.deleteOnExit();
+
+        try(PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("<rss><channel><title>Large feed</title><link>http://large.com</link>");
+            for(int i = 0; i < 5000; i++) {
+                writer.println("<item><title>Item " + i + "</title><guid>id" + i + "</guid>" +
+                        "<link>http://large.com/" + i + "</link></item>");
+            }
+            writer.println("</channel></rss>");
+        }
+
+        FeedMinimal feed = rssParser.getMinimalFeed(file.getPath());
+
+        assertEquals("Large feed", feed.title);
+        assertEquals("rss", feed.type);
+        assertEquals(file.getPath(), feed.urlToXml);
+        assertTrue(rssParser.getBytesRead() < file.length() / 10);
+    }
+
+    /**
+     * Name: Get minimal Feed without title
+     * Unit: getMinimalFeed(String)
+     *
+     * Reads the title from an XML file where the channel has no title. The first title is in an
+     * Item so the title should be 'Untitled'.
+     */
+    @Test
+    public void getMinimalFeedWithoutTitle() {
+        FeedMinimal feed = rssParser.getMinimalFeed(resources + "FeedWithoutTitle.xml");
+        assertEquals("Untitled", feed.title);
+    }
+
+    /**
+     * Name: Get minimal Feed from server
+     * Unit: getMinimalFeed(String)
+     */
+    @Test
+    public void getMinimalFeedFromServer() throws IOException {
+        FeedServer server = new FeedServer();
+
+        try {
+            String url = server.serve("feed.xml", resources + "FeedBasic.xml");
+            FeedMinimal feed = rssParser.getMinimalFeed(url);
+
+            assertEquals("Test title", feed.title);
+            assertEquals(url, feed.urlToXml);
+        }
+        finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Name: Get minimal Feed from nonexistent file
+     * Unit: getMinimalFeed(String)
+     */
+    @Test(expected = NoXMLFileFound.class)
+    public void getMinimalFeedNonexistent() {
+        rssParser.getMinimalFeed("/ThisFileShouldNotExist.xml");
+    }
+
+    /**
+     * Name: Streaming parser matches DOM parser
+     * Unit: getFeed(String)
+     *
+     * Reads every XML file in the test resources with both the streaming parser and the old DOM
+     * based parser and checks so the resulting Feeds and Items are the same. Broken files should
+     * give an empty Feed with both parsers.
+     */
+    @Test
+    public void streamingParserMatchesDomParser() {
+        DomRssParser domParser = new DomRssParser();
+        ArrayList<File> files = new ArrayList<>();
+        collectXmlFiles(new File(resources), files);
+
+        assertFalse(files.isEmpty());
+
+        for(File file : files) {
+            String url = file.getPath();
+            Feed expected = domParser.getFeed(url);
+            Feed actual = rssParser.getFeed(url);
+
+            assertEquals(url, expected.getTitle(), actual.getTitle());
+            assertEquals(url, expected.getLink(), actual.getLink());
+            assertEquals(url, expected.getDescription(), actual.getDescription());
+            assertEquals(url, expected.getImage(), actual.getImage());
+            assertEquals(url, expected.getItems().size(), actual.getItems().size());
+
+            for(int i = 0; i < expected.getItems().size(); i++) {
+                Item expectedItem = expected.getItems().get(i);
+                Item actualItem = actual.getItems().get(i);
+
+                assertEquals(url, expectedItem.getId(), actualItem.getId());
+                assertEquals(url, expectedItem.getTitle(), actualItem.getTitle());
+                assertEquals(url, expectedItem.getLink(), actualItem.getLink());
+                assertEquals(url, expectedItem.getDate(), actualItem.getDate());
+                assertEquals(url, expectedItem.getDescription(), actualItem.getDescription());
+                assertEquals(url, expectedItem.getFeedIdentifier(),
+                        actualItem.getFeedIdentifier());
+            }
+        }
+    }
+
+    /**
+     * Name: Read feed with CDATA and entities
+     * Unit: getFeed(String)
+     *
+     * Reads an XML file where the text is split by entities and CDATA sections, and where the
+     * channel has an image.
+     */
+    @Test
+    public void readFeedWithCdataAndEntities() {
+        Feed feed = rssParser.getFeed(resources + "stream/FeedCdataAndEntities.xml");
+
+        assertEquals("Title & more", feed.getTitle());
+        assertEquals("http://www.feed-link.com/image.png", feed.getImage());
+
+        assertEquals(1, feed.getItems().size());
+        assertEquals("Item <b>title</b>", feed.getItems().get(0).getTitle());
+        assertEquals("Description with \"quotes\"", feed.getItems().get(0).getDescription());
+        assertEquals("test-id", feed.getItems().get(0).getId());
+    }
+
+    /**
+     * Name: Read broken feed
+     * Unit: getFeed(String)
+     *
+     * Reads an XML file which is cut off in the middle of an item. No partial result should be
+     * returned.
+     */
+    @Test
+    public void readBrokenFeed() {
+        Feed feed = rssParser.getFeed(resources + "stream/FeedTruncated.xml");
+
+        assertEquals("Unknown", feed.getTitle());
+        assertEquals(0, feed.getItems().size());
+    }
+
+    private void collectXmlFiles(File directory, ArrayList<File> files) {
+        File[] children = directory.listFiles();
+
+        if(children == null)
+            return;
+
+        for(File child : children) {
+            if(child.isDirectory())
+                collectXmlFiles(child, files);
+            else if(child.getName().endsWith(".xml"))
+                files.add(child);
+        }
+    }
+
+    private static void writeSlidingFeed(File file, int from) throws IOException {
+        try(PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+            writer.println("<rss><channel><title>Sliding feed</title>");
+            for(int i = from + 4; i >= from; i--) {
+                writer.println("<item><title>Item " + i + "</title><guid>item" + i + "</guid>" +
+                        String.format("<pubDate>Fri, 01 Jan 2016 12:%02d:00 +0000</pubDate>", i) +
+                        "<link>http://sliding.com/" + i + "</link></item>");
+            }
+            writer.println("</channel></rss>");
+        }
     }
 }